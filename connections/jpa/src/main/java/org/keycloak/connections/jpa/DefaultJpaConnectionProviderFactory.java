@@ -88,6 +88,12 @@ public class DefaultJpaConnectionProviderFactory implements JpaConnectionProvide
                             properties.put("hibernate.hbm2ddl.auto", databaseSchema);
                         }
 
+                        Integer batchSize = config.getInt("batchSize");
+                        if (batchSize != null) {
+                            properties.put("hibernate.jdbc.batch_size", batchSize);
+                            properties.put("hibernate.order_inserts", true);
+                        }
+
                         properties.put("hibernate.show_sql", config.getBoolean("showSql", false));
                         properties.put("hibernate.format_sql", config.getBoolean("formatSql", true));
                     }
@@ -33,6 +33,11 @@ public interface MongoStore {
 
     <T extends MongoIdentifiableEntity> List<T> loadEntities(Class<T> type, DBObject query, DBObject sort, int firstResult, int maxResults, MongoStoreInvocationContext context);
 
+    /**
+     * Ids of the entities matching the query. Only the <code>_id</code> field is read from the database
+     */
+    List<String> loadEntityIds(Class<? extends MongoIdentifiableEntity> type, DBObject query, MongoStoreInvocationContext context);
+
     <T extends MongoIdentifiableEntity> int countEntities(Class<T> type, DBObject query, MongoStoreInvocationContext context);
 
     boolean removeEntity(MongoIdentifiableEntity entity, MongoStoreInvocationContext context);
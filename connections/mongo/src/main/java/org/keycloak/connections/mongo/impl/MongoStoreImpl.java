@@ -300,6 +300,25 @@ public class MongoStoreImpl implements MongoStore {
         return convertCursor(type, cursor, context);
     }
 
+    @Override
+    public List<String> loadEntityIds(Class<? extends MongoIdentifiableEntity> type, DBObject query, MongoStoreInvocationContext context) {
+        // First we should execute all pending tasks before searching DB
+        context.beforeDBSearch(type);
+
+        DBCollection dbCollection = getDBCollectionForType(type);
+        DBCursor cursor = dbCollection.find(query, new BasicDBObject("_id", 1));
+
+        List<String> result = new ArrayList<String>();
+        try {
+            for (DBObject dbObject : cursor) {
+                result.add(dbObject.get("_id").toString());
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
     public <T extends MongoIdentifiableEntity> int countEntities(Class<T> type, DBObject query, MongoStoreInvocationContext context) {
         context.beforeDBSearch(type);
 
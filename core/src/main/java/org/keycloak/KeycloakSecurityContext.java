@@ -10,8 +10,8 @@ import java.io.Serializable;
  * @version $Revision: 1 $
  */
 public class KeycloakSecurityContext implements Serializable {
-    protected String tokenString;
-    protected AccessToken token;
+    protected volatile String tokenString;
+    protected volatile AccessToken token;
     protected IDToken idToken;
     protected String idTokenString;
 
@@ -2,6 +2,7 @@ package org.keycloak;
 
 import org.keycloak.jose.jws.JWSInput;
 import org.keycloak.jose.jws.crypto.RSAProvider;
+import org.keycloak.jose.jws.crypto.RSASignaturePool;
 import org.keycloak.representations.AccessToken;
 
 import java.io.IOException;
@@ -17,14 +18,33 @@ public class RSATokenVerifier {
     }
 
     public static AccessToken verifyToken(String tokenString, PublicKey realmKey, String realm, boolean checkActive) throws VerificationException {
-        JWSInput input = null;
+        JWSInput input = parse(tokenString);
+        if (!isPublicKeyValid(input, realmKey)) throw new VerificationException("Invalid token signature.");
+        return readToken(input, realm, checkActive);
+    }
+
+    /**
+     * Verifies the token with engines from the pool of the realm key
+     */
+    public static AccessToken verifyToken(String tokenString, RSASignaturePool realmKey, String realm) throws VerificationException {
+        return verifyToken(tokenString, realmKey, realm, true);
+    }
+
+    public static AccessToken verifyToken(String tokenString, RSASignaturePool realmKey, String realm, boolean checkActive) throws VerificationException {
+        JWSInput input = parse(tokenString);
+        if (!isPublicKeyValid(input, realmKey)) throw new VerificationException("Invalid token signature.");
+        return readToken(input, realm, checkActive);
+    }
+
+    private static JWSInput parse(String tokenString) throws VerificationException {
         try {
-            input = new JWSInput(tokenString);
+            return new JWSInput(tokenString);
         } catch (Exception e) {
             throw new VerificationException("Couldn't parse token", e);
         }
-        if (!isPublicKeyValid(input, realmKey)) throw new VerificationException("Invalid token signature.");
+    }
 
+    private static AccessToken readToken(JWSInput input, String realm, boolean checkActive) throws VerificationException {
         AccessToken token;
         try {
             token = input.readJsonContent(AccessToken.class);
@@ -53,4 +73,12 @@ public class RSATokenVerifier {
             throw new VerificationException("Token signature not validated.", e);
         }
     }
+
+    private static boolean isPublicKeyValid(JWSInput input, RSASignaturePool realmKey) throws VerificationException {
+        try {
+            return realmKey.verify(input);
+        } catch (Exception e) {
+            throw new VerificationException("Token signature not validated.", e);
+        }
+    }
 }
@@ -15,26 +15,36 @@ public class JWSInput {
     String encodedHeader;
     String encodedContent;
     String encodedSignature;
-    JWSHeader header;
+    volatile JWSHeader header;
     byte[] content;
     byte[] signature;
 
 
     public JWSInput(String wire) {
         this.wireString = wire;
-        String[] parts = wire.split("\\.");
-        if (parts.length < 2 || parts.length > 3) throw new IllegalArgumentException("Parsing error");
-        encodedHeader = parts[0];
-        encodedContent = parts[1];
-        try {
-            content = Base64Url.decode(encodedContent);
-            if (parts.length > 2) {
-                encodedSignature = parts[2];
-                signature = Base64Url.decode(encodedSignature);
 
+        // find the same parts as String.split("\\.") would, which ignores trailing empty parts
+        int end = wire.length();
+        while (end > 0 && wire.charAt(end - 1) == '.') end--;
+
+        int headerEnd = wire.indexOf('.');
+        if (headerEnd == -1 || headerEnd >= end) throw new IllegalArgumentException("Parsing error");
+        int contentEnd = wire.indexOf('.', headerEnd + 1);
+        if (contentEnd == -1 || contentEnd >= end) {
+            contentEnd = end;
+        } else {
+            int extra = wire.indexOf('.', contentEnd + 1);
+            if (extra != -1 && extra < end) throw new IllegalArgumentException("Parsing error");
+        }
+
+        encodedHeader = wire.substring(0, headerEnd);
+        encodedContent = wire.substring(headerEnd + 1, contentEnd);
+        try {
+            content = Base64Url.decode(wire, headerEnd + 1, contentEnd - headerEnd - 1);
+            if (contentEnd < end) {
+                encodedSignature = wire.substring(contentEnd + 1, end);
+                signature = Base64Url.decode(wire, contentEnd + 1, end - contentEnd - 1);
             }
-            byte[] headerBytes = Base64Url.decode(encodedHeader);
-            header = JsonSerialization.readValue(headerBytes, JWSHeader.class);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -56,8 +66,20 @@ public class JWSInput {
         return encodedSignature;
     }
 
+    /**
+     * The header is only parsed the first time it's needed
+     */
     public JWSHeader getHeader() {
-        return header;
+        JWSHeader h = header;
+        if (h == null) {
+            try {
+                h = JsonSerialization.readValue(Base64Url.decode(encodedHeader), JWSHeader.class);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            header = h;
+        }
+        return h;
     }
 
     public byte[] getContent() {
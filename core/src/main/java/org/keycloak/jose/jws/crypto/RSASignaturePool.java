@@ -0,0 +1,131 @@
+package org.keycloak.jose.jws.crypto;
+
+import org.keycloak.jose.jws.Algorithm;
+import org.keycloak.jose.jws.JWSInput;
+
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Signature engines initialized with one key, so signing or verifying repeatedly with the same key skips both the
+ * provider lookup and the key initialization. Engines are not thread safe, so each call takes an idle engine, or
+ * creates one, and returns it when done. At most <code>maxIdle</code> engines per algorithm are kept.
+ * <p/>
+ * The pool belongs to whoever holds the key, for example an adapter deployment, and should be cleared when the key is
+ * replaced or the owner is closed.
+ */
+public class RSASignaturePool {
+
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private final Key key;
+    private final int maxIdle;
+    private final Map<Algorithm, Queue<Signature>> idle = new EnumMap<Algorithm, Queue<Signature>>(Algorithm.class);
+
+    public RSASignaturePool(PublicKey key) {
+        this(key, DEFAULT_MAX_IDLE);
+    }
+
+    public RSASignaturePool(PrivateKey key) {
+        this(key, DEFAULT_MAX_IDLE);
+    }
+
+    private RSASignaturePool(Key key, int maxIdle) {
+        this.key = key;
+        this.maxIdle = maxIdle;
+        for (Algorithm alg : new Algorithm[] { Algorithm.RS256, Algorithm.RS384, Algorithm.RS512 }) {
+            idle.put(alg, new ConcurrentLinkedQueue<Signature>());
+        }
+    }
+
+    public Key getKey() {
+        return key;
+    }
+
+    public byte[] sign(byte[] data, Algorithm algorithm) {
+        if (!(key instanceof PrivateKey)) {
+            throw new IllegalStateException("Not a private key");
+        }
+        Signature signature = take(algorithm);
+        try {
+            signature.update(data);
+            byte[] result = signature.sign();
+            release(algorithm, signature);
+            return result;
+        } catch (Exception e) {
+            // a failed operation may leave the engine with partial data, so it's not returned
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean verify(JWSInput input) {
+        if (!(key instanceof PublicKey)) {
+            throw new IllegalStateException("Not a public key");
+        }
+        Algorithm algorithm = input.getHeader().getAlgorithm();
+        Signature verifier = take(algorithm);
+        try {
+            verifier.update(input.getContent());
+            boolean result = verifier.verify(input.getSignature());
+            release(algorithm, verifier);
+            return result;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Discards the idle engines
+     */
+    public void clear() {
+        for (Queue<Signature> queue : idle.values()) {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Number of idle engines for the algorithm
+     */
+    public int getIdle(Algorithm algorithm) {
+        Queue<Signature> queue = idle.get(algorithm);
+        return queue != null ? queue.size() : 0;
+    }
+
+    private Signature take(Algorithm algorithm) {
+        Queue<Signature> queue = idle.get(algorithm);
+        if (queue == null) {
+            throw new IllegalArgumentException("Not an RSA Algorithm");
+        }
+
+        Signature signature = queue.poll();
+        if (signature != null) {
+            return signature;
+        }
+
+        signature = RSAProvider.getSignature(algorithm);
+        try {
+            if (key instanceof PrivateKey) {
+                signature.initSign((PrivateKey) key);
+            } else {
+                signature.initVerify((PublicKey) key);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return signature;
+    }
+
+    private void release(Algorithm algorithm, Signature signature) {
+        Queue<Signature> queue = idle.get(algorithm);
+        if (queue.size() < maxIdle) {
+            queue.offer(signature);
+        }
+    }
+
+}
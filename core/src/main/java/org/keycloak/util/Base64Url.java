@@ -1,44 +1,119 @@
 package org.keycloak.util;
 
 
-import net.iharder.Base64;
-
 /**
+ * Base64 encoding with the url and filename safe alphabet and without padding (RFC 4648 section 5). Encodes and
+ * decodes in a single pass without intermediate strings. For compatibility, decoding also accepts the standard
+ * alphabet and trailing padding. Input that isn't the canonical encoding of some bytes, such as misplaced padding or
+ * unused bits that aren't zero, is rejected.
+ *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
 public class Base64Url {
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final byte[] DECODABET = new byte[128];
+
+    static {
+        for (int i = 0; i < DECODABET.length; i++) {
+            DECODABET[i] = -1;
+        }
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODABET[ALPHABET[i]] = (byte) i;
+        }
+        DECODABET['+'] = 62;
+        DECODABET['/'] = 63;
+    }
+
     public static String encode(byte[] bytes) {
-        String s = Base64.encodeBytes(bytes);
-        s = s.split("=")[0]; // Remove any trailing '='s
-        s = s.replace('+', '-'); // 62nd char of encoding
-        s = s.replace('/', '_'); // 63rd char of encoding
-        return s;
+        return encode(bytes, 0, bytes.length);
+    }
+
+    public static String encode(byte[] bytes, int offset, int length) {
+        return new String(encodeToChars(bytes, offset, length));
+    }
+
+    public static char[] encodeToChars(byte[] bytes, int offset, int length) {
+        char[] out = new char[(length * 4 + 2) / 3];
+        int end = offset + length;
+        int i = offset;
+        int o = 0;
+        while (end - i >= 3) {
+            int bits = (bytes[i++] & 0xff) << 16 | (bytes[i++] & 0xff) << 8 | (bytes[i++] & 0xff);
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+            out[o++] = ALPHABET[bits & 0x3f];
+        }
+        int remaining = end - i;
+        if (remaining == 1) {
+            int bits = (bytes[i] & 0xff) << 16;
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o] = ALPHABET[(bits >>> 12) & 0x3f];
+        } else if (remaining == 2) {
+            int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8;
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o] = ALPHABET[(bits >>> 6) & 0x3f];
+        }
+        return out;
     }
 
     public static byte[] decode(String s) {
-        s = s.replace('-', '+'); // 62nd char of encoding
-        s = s.replace('_', '/'); // 63rd char of encoding
-        switch (s.length() % 4) // Pad with trailing '='s
-        {
-            case 0:
-                break; // No pad chars in this case
-            case 2:
-                s += "==";
-                break; // Two pad chars
-            case 3:
-                s += "=";
-                break; // One pad char
-            default:
-                throw new RuntimeException(
-                        "Illegal base64url string!");
-        }
-        try {
-            return Base64.decode(s);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        return decode(s, 0, s.length());
+    }
+
+    /**
+     * Decodes <code>length</code> characters starting at <code>offset</code>, so parts of a larger string can be
+     * decoded without extracting them first
+     */
+    public static byte[] decode(CharSequence s, int offset, int length) {
+        // ignore trailing padding, but only as much as is needed to complete the last group
+        int padding = 0;
+        while (length > 0 && s.charAt(offset + length - 1) == '=') {
+            length--;
+            padding++;
+        }
+        if (length % 4 == 1 || padding > 2 || (padding > 0 && (length + padding) % 4 != 0)) {
+            throw new RuntimeException("Illegal base64url string!");
         }
+
+        byte[] out = new byte[length * 3 / 4];
+        int end = offset + length;
+        int i = offset;
+        int o = 0;
+        while (end - i >= 4) {
+            int bits = decode(s.charAt(i++)) << 18 | decode(s.charAt(i++)) << 12 | decode(s.charAt(i++)) << 6 | decode(s.charAt(i++));
+            out[o++] = (byte) (bits >>> 16);
+            out[o++] = (byte) (bits >>> 8);
+            out[o++] = (byte) bits;
+        }
+        int remaining = end - i;
+        if (remaining == 2) {
+            int bits = decode(s.charAt(i)) << 18 | decode(s.charAt(i + 1)) << 12;
+            if ((bits & 0xffff) != 0) {
+                throw new RuntimeException("Illegal base64url string!");
+            }
+            out[o] = (byte) (bits >>> 16);
+        } else if (remaining == 3) {
+            int bits = decode(s.charAt(i)) << 18 | decode(s.charAt(i + 1)) << 12 | decode(s.charAt(i + 2)) << 6;
+            if ((bits & 0xff) != 0) {
+                throw new RuntimeException("Illegal base64url string!");
+            }
+            out[o++] = (byte) (bits >>> 16);
+            out[o] = (byte) (bits >>> 8);
+        }
+        return out;
     }
 
+    private static int decode(char c) {
+        int value = c < DECODABET.length ? DECODABET[c] : -1;
+        if (value < 0) {
+            throw new RuntimeException("Illegal base64url character: " + c);
+        }
+        return value;
+    }
 
 }
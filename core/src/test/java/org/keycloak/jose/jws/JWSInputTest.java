@@ -0,0 +1,39 @@
+package org.keycloak.jose.jws;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.util.Base64Url;
+
+public class JWSInputTest {
+
+    private static final String HEADER = Base64Url.encode("{\"alg\":\"none\"}".getBytes());
+    private static final String CONTENT = Base64Url.encode("content".getBytes());
+
+    @Test
+    public void testWithoutSignature() {
+        JWSInput input = new JWSInput(HEADER + "." + CONTENT);
+        Assert.assertEquals(HEADER, input.getEncodedHeader());
+        Assert.assertEquals("content", input.readContentAsString());
+        Assert.assertNull(input.getEncodedSignature());
+        Assert.assertEquals("none", input.getHeader().getAlgorithm().name());
+    }
+
+    @Test
+    public void testWithSignature() {
+        JWSInput input = new JWSInput(HEADER + "." + CONTENT + ".c2ln");
+        Assert.assertEquals("c2ln", input.getEncodedSignature());
+        Assert.assertArrayEquals("sig".getBytes(), input.getSignature());
+        Assert.assertEquals("content", input.readContentAsString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyParts() {
+        new JWSInput(HEADER + "." + CONTENT + ".c2ln.c2ln");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSinglePart() {
+        new JWSInput(HEADER);
+    }
+
+}
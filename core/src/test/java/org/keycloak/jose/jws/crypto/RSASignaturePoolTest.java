@@ -0,0 +1,113 @@
+package org.keycloak.jose.jws.crypto;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.keycloak.jose.jws.Algorithm;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.jose.jws.JWSInput;
+import org.keycloak.util.Base64Url;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+
+public class RSASignaturePoolTest {
+
+    private static KeyPair keyPair1;
+    private static KeyPair keyPair2;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        keyPair1 = generator.generateKeyPair();
+        keyPair2 = generator.generateKeyPair();
+    }
+
+    @Test
+    public void signAndVerify() {
+        RSASignaturePool signer = new RSASignaturePool(keyPair1.getPrivate());
+        RSASignaturePool verifier = new RSASignaturePool(keyPair1.getPublic());
+
+        for (Algorithm alg : new Algorithm[] { Algorithm.RS256, Algorithm.RS384, Algorithm.RS512 }) {
+            for (int i = 0; i < 3; i++) {
+                JWSInput input = new JWSInput(sign(signer, alg, "content" + i));
+                Assert.assertTrue(verifier.verify(input));
+                Assert.assertTrue(RSAProvider.verify(input, keyPair1.getPublic()));
+            }
+            // the engines are reused
+            Assert.assertEquals(1, signer.getIdle(alg));
+            Assert.assertEquals(1, verifier.getIdle(alg));
+        }
+    }
+
+    @Test
+    public void sameSignatureAsProvider() {
+        RSASignaturePool signer = new RSASignaturePool(keyPair1.getPrivate());
+        byte[] data = "content".getBytes();
+        Assert.assertArrayEquals(RSAProvider.sign(data, Algorithm.RS256, keyPair1.getPrivate()), signer.sign(data, Algorithm.RS256));
+    }
+
+    @Test
+    public void keyChange() {
+        String token1 = new JWSBuilder().content("content".getBytes()).rsa256(keyPair1.getPrivate());
+        String token2 = new JWSBuilder().content("content".getBytes()).rsa256(keyPair2.getPrivate());
+
+        RSASignaturePool verifier = new RSASignaturePool(keyPair1.getPublic());
+        Assert.assertTrue(verifier.verify(new JWSInput(token1)));
+        Assert.assertFalse(verifier.verify(new JWSInput(token2)));
+
+        // the key changes, so the pool is replaced and the engines of the old key are discarded
+        verifier.clear();
+        Assert.assertEquals(0, verifier.getIdle(Algorithm.RS256));
+        verifier = new RSASignaturePool(keyPair2.getPublic());
+
+        Assert.assertFalse(verifier.verify(new JWSInput(token1)));
+        Assert.assertTrue(verifier.verify(new JWSInput(token2)));
+
+        RSASignaturePool signer = new RSASignaturePool(keyPair2.getPrivate());
+        Assert.assertTrue(verifier.verify(new JWSInput(sign(signer, Algorithm.RS256, "other"))));
+    }
+
+    @Test
+    public void engineNotReusedAfterFailure() {
+        RSASignaturePool verifier = new RSASignaturePool(keyPair1.getPublic());
+        String token = new JWSBuilder().content("content".getBytes()).rsa256(keyPair1.getPrivate());
+
+        // a signature of the wrong length makes the engine throw
+        try {
+            verifier.verify(new JWSInput(token.substring(0, token.lastIndexOf('.') + 1) + Base64Url.encode(new byte[1])));
+            Assert.fail("Expected exception");
+        } catch (RuntimeException expected) {
+        }
+        Assert.assertEquals(0, verifier.getIdle(Algorithm.RS256));
+
+        Assert.assertTrue(verifier.verify(new JWSInput(token)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void verifyWithPrivateKey() {
+        String token = new JWSBuilder().content("content".getBytes()).rsa256(keyPair1.getPrivate());
+        new RSASignaturePool(keyPair1.getPrivate()).verify(new JWSInput(token));
+    }
+
+    /**
+     * Replaces the signature of a token signed with the provider by one from the pool
+     */
+    private String sign(RSASignaturePool signer, Algorithm alg, String content) {
+        String token;
+        switch (alg) {
+            case RS384:
+                token = new JWSBuilder().content(content.getBytes()).rsa384(keyPair1.getPrivate());
+                break;
+            case RS512:
+                token = new JWSBuilder().content(content.getBytes()).rsa512(keyPair1.getPrivate());
+                break;
+            default:
+                token = new JWSBuilder().content(content.getBytes()).rsa256(keyPair1.getPrivate());
+        }
+        // the signature covers the content only
+        return token.substring(0, token.lastIndexOf('.') + 1) + Base64Url.encode(signer.sign(content.getBytes(), alg));
+    }
+
+}
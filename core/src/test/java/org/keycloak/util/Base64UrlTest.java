@@ -0,0 +1,77 @@
+package org.keycloak.util;
+
+import net.iharder.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class Base64UrlTest {
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = new byte[random.nextInt(100)];
+            random.nextBytes(bytes);
+
+            String expected = Base64.encodeBytes(bytes).split("=")[0].replace('+', '-').replace('/', '_');
+            String encoded = Base64Url.encode(bytes);
+            Assert.assertEquals(expected, encoded);
+            Assert.assertArrayEquals(bytes, Base64Url.decode(encoded));
+
+            // standard alphabet and padding are still accepted
+            Assert.assertArrayEquals(bytes, Base64Url.decode(Base64.encodeBytes(bytes)));
+        }
+    }
+
+    @Test
+    public void testDecodePart() {
+        Assert.assertArrayEquals("foo".getBytes(), Base64Url.decode("xx.Zm9v.yy", 3, 4));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testIllegalLength() {
+        Base64Url.decode("Zm9vY");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testIllegalCharacter() {
+        Base64Url.decode("Zm9*");
+    }
+
+    @Test
+    public void testPadding() {
+        Assert.assertArrayEquals("f".getBytes(), Base64Url.decode("Zg=="));
+        Assert.assertArrayEquals("fo".getBytes(), Base64Url.decode("Zm8="));
+        Assert.assertArrayEquals("foo".getBytes(), Base64Url.decode("Zm9v"));
+    }
+
+    @Test
+    public void testMisplacedPadding() {
+        assertIllegal("Zm9v=");
+        assertIllegal("Zm9v==");
+        assertIllegal("Zg=");
+        assertIllegal("Zg===");
+        assertIllegal("Zm8==");
+        assertIllegal("Zm=9v");
+        assertIllegal("====");
+    }
+
+    @Test
+    public void testNonZeroUnusedBits() {
+        assertIllegal("Zh");
+        assertIllegal("Zm9");
+        Assert.assertArrayEquals("fo".getBytes(), Base64Url.decode("Zm8"));
+    }
+
+    private void assertIllegal(String s) {
+        try {
+            Base64Url.decode(s);
+            Assert.fail("Expected " + s + " to be rejected");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+}
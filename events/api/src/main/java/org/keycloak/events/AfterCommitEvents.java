@@ -0,0 +1,85 @@
+package org.keycloak.events;
+
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakTransaction;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Keeps the events sent within the transaction of a session, and hands them to {@link #onCommit(Event)} in the order
+ * they were sent once the transaction commits. Events of a transaction that rolls back are discarded, and events sent
+ * outside a transaction are handed on straight away.
+ * <p/>
+ * Used by providers that pass events on to a background thread, so it isn't told about work that was rolled back.
+ */
+public abstract class AfterCommitEvents {
+
+    private final KeycloakSession session;
+    private List<Event> pending;
+
+    protected AfterCommitEvents(KeycloakSession session) {
+        this.session = session;
+    }
+
+    public void add(Event event) {
+        if (!session.getTransaction().isActive()) {
+            onCommit(event);
+            return;
+        }
+
+        if (pending == null) {
+            pending = new LinkedList<Event>();
+            session.getTransaction().enlistAfterCompletion(new PendingEvents());
+        }
+        pending.add(event);
+    }
+
+    /**
+     * Called for each event once the transaction it was sent in has committed
+     */
+    protected abstract void onCommit(Event event);
+
+    private class PendingEvents implements KeycloakTransaction {
+
+        private boolean active;
+        private boolean rollbackOnly;
+
+        @Override
+        public void begin() {
+            active = true;
+        }
+
+        @Override
+        public void commit() {
+            List<Event> events = pending;
+            pending = null;
+            active = false;
+            for (Event event : events) {
+                onCommit(event);
+            }
+        }
+
+        @Override
+        public void rollback() {
+            pending = null;
+            active = false;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            rollbackOnly = true;
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            return rollbackOnly;
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+}
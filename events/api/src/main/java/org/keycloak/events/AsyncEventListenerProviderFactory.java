@@ -0,0 +1,285 @@
+package org.keycloak.events;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.utils.KeycloakModelUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers events to an event listener in the background. Events are added to a bounded queue of its own and passed
+ * to the listener by a dedicated thread, one event per session and transaction, so a slow listener doesn't delay the
+ * request that sent the event or the other listeners. Events are delivered in the order they were queued.
+ * <p/>
+ * Events sent within a transaction are only queued once it commits, so the listener isn't told about work that was
+ * rolled back.
+ * <p/>
+ * A listener is delivered events this way when <code>async</code> is enabled in its config. On close, events still
+ * queued are delivered for up to <code>drainTimeout</code> milliseconds.
+ */
+public class AsyncEventListenerProviderFactory implements EventListenerProviderFactory {
+
+    private static final Logger logger = Logger.getLogger(AsyncEventListenerProviderFactory.class);
+
+    private static final long POLL_INTERVAL = 1000;
+
+    /**
+     * What to do with an event when the queue is full
+     */
+    public enum Overflow {
+        /**
+         * Wait for space in the queue
+         */
+        BLOCK,
+        /**
+         * Discard the event
+         */
+        DROP
+    }
+
+    private final EventListenerProviderFactory delegate;
+
+    private BlockingQueue<Event> queue;
+    private Overflow overflow;
+    private long drainTimeout;
+
+    private volatile KeycloakSessionFactory sessionFactory;
+    private volatile boolean run = true;
+    private Thread thread;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong totalLag = new AtomicLong();
+    private volatile long lastLag;
+
+    public AsyncEventListenerProviderFactory(EventListenerProviderFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public EventListenerProvider create(KeycloakSession session) {
+        if (sessionFactory == null) {
+            start(session.getKeycloakSessionFactory());
+        }
+        return new QueueingEventListenerProvider(session);
+    }
+
+    private synchronized void start(KeycloakSessionFactory sessionFactory) {
+        if (this.sessionFactory != null) {
+            return;
+        }
+        this.sessionFactory = sessionFactory;
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                deliverEvents();
+            }
+        }, "Event Listener " + delegate.getId());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void init(Config.Scope config) {
+        delegate.init(config);
+
+        queue = new ArrayBlockingQueue<Event>(config.getInt("queueSize", 1000));
+        overflow = Overflow.valueOf(config.get("overflow", "drop").toUpperCase());
+        drainTimeout = config.getLong("drainTimeout", 10000L);
+    }
+
+    @Override
+    public void close() {
+        run = false;
+
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) {
+            try {
+                t.join(drainTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (t.isAlive()) {
+                t.interrupt();
+            }
+        }
+
+        int remaining = queue.size();
+        if (remaining > 0) {
+            queue.clear();
+            dropped.addAndGet(remaining);
+            logger.warnv("Discarded {0} events not delivered to event listener {1}", remaining, delegate.getId());
+        }
+
+        delegate.close();
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    public EventListenerProviderFactory getDelegate() {
+        return delegate;
+    }
+
+    private void deliverEvents() {
+        while (true) {
+            Event event;
+            try {
+                event = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            if (event != null) {
+                deliver(event);
+            } else if (!run) {
+                break;
+            }
+        }
+    }
+
+    private void deliver(final Event event) {
+        try {
+            KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+                @Override
+                public void run(KeycloakSession session) {
+                    EventListenerProvider listener = delegate.create(session);
+                    try {
+                        listener.onEvent(event);
+                    } finally {
+                        listener.close();
+                    }
+                }
+            });
+
+            long lag = System.currentTimeMillis() - event.getTime();
+            lastLag = lag;
+            totalLag.addAndGet(lag);
+            delivered.incrementAndGet();
+        } catch (Throwable t) {
+            failed.incrementAndGet();
+            logger.error("Failed to deliver event to event listener " + delegate.getId(), t);
+        }
+    }
+
+    /**
+     * Number of events waiting to be delivered
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Number of events delivered
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * Number of events the listener failed to process
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Number of events discarded because the queue was full, or still queued on close
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Time in milliseconds between the last delivered event happening and it being delivered
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * Average time in milliseconds between an event happening and it being delivered
+     */
+    public long getAverageLag() {
+        long count = delivered.get();
+        return count > 0 ? totalLag.get() / count : 0;
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put("queueSize", (long) getQueueSize());
+        stats.put("delivered", getDelivered());
+        stats.put("failed", getFailed());
+        stats.put("dropped", getDropped());
+        stats.put("lastLag", getLastLag());
+        stats.put("averageLag", getAverageLag());
+        return stats;
+    }
+
+    private void enqueue(Event event) {
+        if (!run) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+                break;
+            case DROP:
+                if (!queue.offer(event)) {
+                    dropped.incrementAndGet();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Queues the events sent within the transaction of its session once the transaction commits
+     */
+    private class QueueingEventListenerProvider implements EventListenerProvider {
+
+        private final AfterCommitEvents events;
+
+        private QueueingEventListenerProvider(KeycloakSession session) {
+            events = new AfterCommitEvents(session) {
+                @Override
+                protected void onCommit(Event event) {
+                    enqueue(event);
+                }
+            };
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            // the builder may change and send the same event again
+            events.add(event.clone());
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -33,6 +33,8 @@ public interface Errors {
 
     String NOT_ALLOWED = "not_allowed";
 
+    String TEMPORARILY_UNAVAILABLE = "temporarily_unavailable";
+
     String SOCIAL_PROVIDER_NOT_FOUND = "social_provider_not_found";
     String SOCIAL_ID_IN_USE = "social_id_in_use";
 
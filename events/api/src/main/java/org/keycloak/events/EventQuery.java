@@ -1,5 +1,6 @@
 package org.keycloak.events;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -21,6 +22,26 @@ public interface EventQuery {
 
     public EventQuery maxResults(int results);
 
+    /**
+     * Only return events after the event with the given time and id, in result order (newest first). Unlike
+     * {@link #firstResult(int)} this doesn't need to skip over the previous results, so it stays fast for deep pages.
+     * Calling it again replaces the previous position.
+     *
+     * @param time time of the last event of the previous page
+     * @param id id of the last event of the previous page
+     * @return
+     */
+    public EventQuery after(long time, String id);
+
     public List<Event> getResultList();
 
+    /**
+     * Returns all matching events, newest first, fetching <code>batchSize</code> events at a time. First and max
+     * results are ignored.
+     *
+     * @param batchSize
+     * @return
+     */
+    public Iterator<Event> getResultIterator(int batchSize);
+
 }
@@ -0,0 +1,59 @@
+package org.keycloak.events;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the results of a query one page at a time, using {@link EventQuery#after(long, String)} to continue
+ * from the last event of the previous page.
+ */
+public class EventQueryIterator implements Iterator<Event> {
+
+    private final EventQuery query;
+    private final int batchSize;
+    private Iterator<Event> page;
+    private Event last;
+    private boolean lastPage;
+
+    public EventQueryIterator(EventQuery query, int batchSize) {
+        this.query = query;
+        this.batchSize = batchSize;
+        query.firstResult(0);
+        query.maxResults(batchSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (page != null && page.hasNext()) {
+            return true;
+        }
+        if (lastPage) {
+            return false;
+        }
+
+        if (last != null) {
+            query.after(last.getTime(), last.getId());
+        }
+
+        List<Event> events = query.getResultList();
+        lastPage = events.size() < batchSize;
+        page = events.iterator();
+        return page.hasNext();
+    }
+
+    @Override
+    public Event next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        last = page.next();
+        return last;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -13,4 +13,12 @@ public interface EventStoreProvider extends EventListenerProvider {
 
     public void clear(String realmId, long olderThan);
 
+    /**
+     * Removes at most <code>maxResults</code> events older than <code>olderThan</code>, oldest first. Used to expire
+     * events in chunks, so each transaction only touches a bounded number of events.
+     *
+     * @return the number of events removed
+     */
+    public int clear(String realmId, long olderThan, int maxResults);
+
 }
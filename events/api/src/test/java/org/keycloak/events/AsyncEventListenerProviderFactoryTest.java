@@ -0,0 +1,302 @@
+package org.keycloak.events;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakTransaction;
+import org.keycloak.models.KeycloakTransactionManager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncEventListenerProviderFactoryTest {
+
+    private String prefix;
+    private AsyncEventListenerProviderFactory factory;
+    private TestListenerFactory listener = new TestListenerFactory();
+
+    @After
+    public void after() {
+        listener.release.countDown();
+        if (factory != null) {
+            factory.close();
+        }
+        System.clearProperty(prefix + "queueSize");
+        System.clearProperty(prefix + "overflow");
+    }
+
+    @Test
+    public void deliveredInOrder() throws InterruptedException {
+        init(1000, "drop");
+        listener.release.countDown();
+
+        EventListenerProvider provider = factory.create(createSession().session);
+        for (int i = 0; i < 100; i++) {
+            provider.onEvent(event(i));
+        }
+
+        awaitDelivered(100);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("event" + i, listener.events.get(i).getId());
+        }
+    }
+
+    @Test
+    public void queuedOnCommit() throws InterruptedException {
+        init(1000, "drop");
+        listener.release.countDown();
+
+        TestSession session = createSession();
+        session.transaction.begin();
+        EventListenerProvider provider = factory.create(session.session);
+        provider.onEvent(event(0));
+        provider.onEvent(event(1));
+
+        Thread.sleep(100);
+        Assert.assertEquals(0, factory.getQueueSize());
+        Assert.assertTrue(listener.events.isEmpty());
+
+        session.transaction.commit();
+        awaitDelivered(2);
+        Assert.assertEquals("event0", listener.events.get(0).getId());
+        Assert.assertEquals("event1", listener.events.get(1).getId());
+    }
+
+    @Test
+    public void notQueuedOnRollback() throws InterruptedException {
+        init(1000, "drop");
+        listener.release.countDown();
+
+        TestSession session = createSession();
+        session.transaction.begin();
+        factory.create(session.session).onEvent(event(0));
+        session.transaction.rollback();
+
+        factory.create(createSession().session).onEvent(event(1));
+        awaitDelivered(1);
+        Thread.sleep(100);
+
+        Assert.assertEquals(1, listener.events.size());
+        Assert.assertEquals("event1", listener.events.get(0).getId());
+        Assert.assertEquals(0, factory.getDropped());
+    }
+
+    @Test
+    public void dropWhenFull() throws InterruptedException {
+        init(1, "drop");
+        EventListenerProvider provider = factory.create(createSession().session);
+
+        // the first event is taken by the listener, which blocks, and the second fills the queue
+        provider.onEvent(event(0));
+        Assert.assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+        provider.onEvent(event(1));
+        provider.onEvent(event(2));
+
+        Assert.assertEquals(1, factory.getDropped());
+        Assert.assertEquals(1, factory.getQueueSize());
+
+        listener.release.countDown();
+        awaitDelivered(2);
+        Assert.assertEquals("event0", listener.events.get(0).getId());
+        Assert.assertEquals("event1", listener.events.get(1).getId());
+    }
+
+    @Test
+    public void blockWhenFull() throws InterruptedException {
+        init(1, "block");
+        final EventListenerProvider provider = factory.create(createSession().session);
+
+        provider.onEvent(event(0));
+        Assert.assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+        provider.onEvent(event(1));
+
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                provider.onEvent(event(2));
+            }
+        };
+        sender.start();
+
+        // the sender waits for space in the queue
+        sender.join(200);
+        Assert.assertTrue(sender.isAlive());
+
+        listener.release.countDown();
+        sender.join(10000);
+        Assert.assertFalse(sender.isAlive());
+
+        awaitDelivered(3);
+        Assert.assertEquals(0, factory.getDropped());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("event" + i, listener.events.get(i).getId());
+        }
+    }
+
+    private void init(int queueSize, String overflow) {
+        prefix = "test.eventListener." + UUID.randomUUID() + ".";
+        System.setProperty(prefix + "queueSize", Integer.toString(queueSize));
+        System.setProperty(prefix + "overflow", overflow);
+
+        factory = new AsyncEventListenerProviderFactory(listener);
+        factory.init(new Config.SystemPropertiesScope(prefix));
+    }
+
+    private void awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (factory.getDelivered() < count) {
+            if (System.currentTimeMillis() > deadline) Assert.fail("Expected " + count + " delivered events");
+            Thread.sleep(10);
+        }
+    }
+
+    private static Event event(int i) {
+        Event event = new Event();
+        event.setId("event" + i);
+        event.setType(EventType.LOGIN);
+        event.setTime(System.currentTimeMillis());
+        return event;
+    }
+
+    private TestSession createSession() {
+        return new TestSession();
+    }
+
+    /**
+     * Records the events, and blocks delivery of the first one until the test releases it
+     */
+    private static class TestListenerFactory implements EventListenerProviderFactory {
+
+        private final List<Event> events = new CopyOnWriteArrayList<Event>();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public EventListenerProvider create(KeycloakSession session) {
+            return new EventListenerProvider() {
+                @Override
+                public void onEvent(Event event) {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    events.add(event);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public void init(Config.Scope config) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+    }
+
+    /**
+     * Session with a transaction that runs the after completion transactions, as the default transaction manager
+     * does. The session factory creates a new one of these for each delivery.
+     */
+    private class TestSession implements InvocationHandler {
+
+        private final TestTransactionManager transaction = new TestTransactionManager();
+        private final KeycloakSession session = (KeycloakSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { KeycloakSession.class }, this);
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getTransaction")) {
+                return transaction;
+            } else if (method.getName().equals("getKeycloakSessionFactory")) {
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { KeycloakSessionFactory.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return method.getName().equals("create") ? new TestSession().session : null;
+                    }
+                });
+            }
+            return null;
+        }
+
+    }
+
+    private static class TestTransactionManager implements KeycloakTransactionManager {
+
+        private final List<KeycloakTransaction> afterCompletion = new LinkedList<KeycloakTransaction>();
+        private boolean active;
+        private boolean rollbackOnly;
+
+        @Override
+        public void enlist(KeycloakTransaction transaction) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void enlistAfterCompletion(KeycloakTransaction transaction) {
+            if (active && !transaction.isActive()) {
+                transaction.begin();
+            }
+            afterCompletion.add(transaction);
+        }
+
+        @Override
+        public void begin() {
+            active = true;
+        }
+
+        @Override
+        public void commit() {
+            for (KeycloakTransaction tx : afterCompletion) {
+                tx.commit();
+            }
+            active = false;
+        }
+
+        @Override
+        public void rollback() {
+            for (KeycloakTransaction tx : afterCompletion) {
+                tx.rollback();
+            }
+            active = false;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+            rollbackOnly = true;
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            return rollbackOnly;
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+    }
+
+}
@@ -1,5 +1,7 @@
 package org.keycloak.events.jpa;
 
+import org.hibernate.annotations.Index;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -16,19 +18,23 @@ public class EventEntity {
     @Column(name="ID", length = 36)
     private String id;
 
+    // Hibernate adds the columns of an index in the order of the property names, so this is (REALM_ID, TIME)
     @Column(name="TIME")
+    @Index(name = "IDX_EVENT_REALM_TIME")
     private long time;
 
     @Column(name="TYPE")
     private String type;
 
     @Column(name="REALM_ID")
+    @Index(name = "IDX_EVENT_REALM_TIME")
     private String realmId;
 
     @Column(name="CLIENT_ID")
     private String clientId;
 
     @Column(name="USER_ID")
+    @Index(name = "IDX_EVENT_USER")
     private String userId;
 
     @Column(name="SESSION_ID")
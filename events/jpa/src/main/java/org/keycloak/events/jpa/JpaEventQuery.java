@@ -2,15 +2,18 @@ package org.keycloak.events.jpa;
 
 import org.keycloak.events.Event;
 import org.keycloak.events.EventQuery;
+import org.keycloak.events.EventQueryIterator;
 import org.keycloak.events.EventType;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -26,6 +29,8 @@ public class JpaEventQuery implements EventQuery {
     private final ArrayList<Predicate> predicates;
     private Integer firstResult;
     private Integer maxResults;
+    private Long afterTime;
+    private String afterId;
 
     public JpaEventQuery(EntityManager em) {
         this.em = em;
@@ -82,13 +87,27 @@ public class JpaEventQuery implements EventQuery {
         return this;
     }
 
+    @Override
+    public EventQuery after(long time, String id) {
+        this.afterTime = time;
+        this.afterId = id;
+        return this;
+    }
+
     @Override
     public List<Event> getResultList() {
+        ArrayList<Predicate> predicates = new ArrayList<Predicate>(this.predicates);
+        if (afterTime != null) {
+            Path<Long> time = root.get("time");
+            Path<String> id = root.get("id");
+            predicates.add(cb.or(cb.lessThan(time, afterTime), cb.and(cb.equal(time, afterTime), cb.lessThan(id, afterId))));
+        }
+
         if (!predicates.isEmpty()) {
             cq.where(cb.and(predicates.toArray(new Predicate[predicates.size()])));
         }
 
-        cq.orderBy(cb.desc(root.get("time")));
+        cq.orderBy(cb.desc(root.get("time")), cb.desc(root.get("id")));
 
         TypedQuery<EventEntity> query = em.createQuery(cq);
 
@@ -108,4 +127,9 @@ public class JpaEventQuery implements EventQuery {
         return events;
     }
 
+    @Override
+    public Iterator<Event> getResultIterator(int batchSize) {
+        return new EventQueryIterator(this, batchSize);
+    }
+
 }
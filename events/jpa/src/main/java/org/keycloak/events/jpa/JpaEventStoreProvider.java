@@ -3,14 +3,17 @@ package org.keycloak.events.jpa;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
 import org.jboss.logging.Logger;
+import org.keycloak.events.AfterCommitEvents;
 import org.keycloak.events.EventStoreProvider;
 import org.keycloak.events.Event;
 import org.keycloak.events.EventQuery;
 import org.keycloak.events.EventType;
+import org.keycloak.models.KeycloakSession;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -28,10 +31,21 @@ public class JpaEventStoreProvider implements EventStoreProvider {
     private EntityManager em;
     private EntityTransaction tx;
     private Set<EventType> includedEvents;
+    private AfterCommitEvents writerEvents;
 
-    public JpaEventStoreProvider(EntityManager em, Set<EventType> includedEvents) {
+    public JpaEventStoreProvider(KeycloakSession session, EntityManager em, Set<EventType> includedEvents, final JpaEventWriter writer) {
         this.em = em;
         this.includedEvents = includedEvents;
+        if (writer != null) {
+            // events are only handed to the writer once their transaction commits, so events for work that was rolled
+            // back are not stored
+            this.writerEvents = new AfterCommitEvents(session) {
+                @Override
+                protected void onCommit(Event event) {
+                    writer.add(event);
+                }
+            };
+        }
     }
 
     @Override
@@ -54,10 +68,24 @@ public class JpaEventStoreProvider implements EventStoreProvider {
         em.createQuery("delete from EventEntity where realmId = :realmId and time < :time").setParameter("realmId", realmId).setParameter("time", olderThan).executeUpdate();
     }
 
+    @Override
+    public int clear(String realmId, long olderThan, int maxResults) {
+        List<String> ids = em.createQuery("select e.id from EventEntity e where e.realmId = :realmId and e.time < :time order by e.time", String.class)
+                .setParameter("realmId", realmId).setParameter("time", olderThan).setMaxResults(maxResults).getResultList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return em.createQuery("delete from EventEntity where id in (:ids)").setParameter("ids", ids).executeUpdate();
+    }
+
     @Override
     public void onEvent(Event event) {
         if (includedEvents.contains(event.getType())) {
-            em.persist(convert(event));
+            if (writerEvents != null) {
+                writerEvents.add(event.clone());
+            } else {
+                em.persist(convert(event));
+            }
         }
     }
 
@@ -67,7 +95,7 @@ public class JpaEventStoreProvider implements EventStoreProvider {
 
     static EventEntity convert(Event o) {
         EventEntity e = new EventEntity();
-        e.setId(UUID.randomUUID().toString());
+        e.setId(o.getId() != null ? o.getId() : UUID.randomUUID().toString());
         e.setTime(o.getTime());
         e.setType(o.getType().toString());
         e.setRealmId(o.getRealmId());
@@ -86,6 +114,7 @@ public class JpaEventStoreProvider implements EventStoreProvider {
 
     static Event convert(EventEntity o) {
         Event e = new Event();
+        e.setId(o.getId());
         e.setTime(o.getTime());
         e.setType(EventType.valueOf(o.getType()));
         e.setRealmId(o.getRealmId());
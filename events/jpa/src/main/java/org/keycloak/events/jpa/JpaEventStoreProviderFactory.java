@@ -6,27 +6,66 @@ import org.keycloak.events.EventStoreProviderFactory;
 import org.keycloak.events.EventType;
 import org.keycloak.connections.jpa.JpaConnectionProvider;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.provider.ProviderStatistics;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class JpaEventStoreProviderFactory implements EventStoreProviderFactory {
+public class JpaEventStoreProviderFactory implements EventStoreProviderFactory, ProviderStatistics {
 
     public static final String ID = "jpa";
 
     private Set<EventType> includedEvents = new HashSet<EventType>();
 
+    private Config.Scope config;
+
+    private volatile JpaEventWriter writer;
+
     @Override
     public EventStoreProvider create(KeycloakSession session) {
         JpaConnectionProvider connection = session.getProvider(JpaConnectionProvider.class);
-        return new JpaEventStoreProvider(connection.getEntityManager(), includedEvents);
+        return new JpaEventStoreProvider(session, connection.getEntityManager(), includedEvents, getWriter(session));
+    }
+
+    private JpaEventWriter getWriter(KeycloakSession session) {
+        if (writer == null && config.getBoolean("async", false)) {
+            synchronized (this) {
+                if (writer == null) {
+                    JpaEventWriter.Overflow overflow = JpaEventWriter.Overflow.valueOf(config.get("overflow", "block").toUpperCase());
+                    JpaEventWriter w = new JpaEventWriter(session.getKeycloakSessionFactory(), config.getInt("queueSize", 10000), config.getInt("batchSize", 100), config.getLong("flushInterval", 1000L), overflow);
+                    w.start();
+                    writer = w;
+                }
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Returns the background writer, or <code>null</code> if events are stored synchronously
+     */
+    public JpaEventWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Returns the statistics of the background writer, or an empty map if events are stored synchronously
+     */
+    @Override
+    public Map<String, Long> getStats() {
+        JpaEventWriter w = writer;
+        return w != null ? w.getStats() : Collections.<String, Long>emptyMap();
     }
 
     @Override
     public void init(Config.Scope config) {
+        this.config = config;
+
         String[] include = config.getArray("include-events");
         if (include != null) {
             for (String i : include) {
@@ -48,6 +87,9 @@ public class JpaEventStoreProviderFactory implements EventStoreProviderFactory {
 
     @Override
     public void close() {
+        if (writer != null) {
+            writer.close();
+        }
     }
 
     @Override
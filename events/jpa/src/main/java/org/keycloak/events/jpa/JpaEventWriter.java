@@ -0,0 +1,251 @@
+package org.keycloak.events.jpa;
+
+import org.jboss.logging.Logger;
+import org.keycloak.connections.jpa.JpaConnectionProvider;
+import org.keycloak.events.Event;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores events in the background. Events are added to a bounded queue and written by a single thread, in one
+ * transaction per batch, once <code>batchSize</code> events are queued or the oldest queued event has waited
+ * <code>flushInterval</code> milliseconds. If a batch fails it is split in halves that are written separately, so only
+ * the events that can't be stored are lost.
+ */
+public class JpaEventWriter implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(JpaEventWriter.class);
+
+    /**
+     * What to do with an event when the queue is full
+     */
+    public enum Overflow {
+        /**
+         * Wait for space in the queue
+         */
+        BLOCK,
+        /**
+         * Discard the event
+         */
+        DROP,
+        /**
+         * Discard the event, but write it to the server log
+         */
+        LOG
+    }
+
+    private final KeycloakSessionFactory sessionFactory;
+    private final BlockingQueue<Event> queue;
+    private final int batchSize;
+    private final long flushInterval;
+    private final Overflow overflow;
+
+    private volatile boolean run = true;
+    private Thread thread;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long lastLag;
+    private volatile long totalLag;
+
+    public JpaEventWriter(KeycloakSessionFactory sessionFactory, int queueSize, int batchSize, long flushInterval, Overflow overflow) {
+        this.sessionFactory = sessionFactory;
+        this.queue = new ArrayBlockingQueue<Event>(queueSize);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.overflow = overflow;
+    }
+
+    public synchronized void start() {
+        thread = new Thread(this, "Event Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void add(Event event) {
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+                break;
+            case DROP:
+                if (!queue.offer(event)) {
+                    dropped.incrementAndGet();
+                }
+                break;
+            case LOG:
+                if (!queue.offer(event)) {
+                    dropped.incrementAndGet();
+                    logger.warnv("Event queue full, event not stored: type={0}, realmId={1}, clientId={2}, userId={3}, ipAddress={4}, error={5}, details={6}",
+                            event.getType(), event.getRealmId(), event.getClientId(), event.getUserId(), event.getIpAddress(), event.getError(), event.getDetails());
+                }
+                break;
+        }
+    }
+
+    public void run() {
+        List<Event> batch = new ArrayList<Event>(batchSize);
+        long batchStart = 0;
+
+        while (run) {
+            try {
+                Event event = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    if (batch.isEmpty()) {
+                        batchStart = System.currentTimeMillis();
+                    }
+                    batch.add(event);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+
+                if (batch.size() >= batchSize || (!batch.isEmpty() && System.currentTimeMillis() - batchStart >= flushInterval)) {
+                    write(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    public void close() {
+        run = false;
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) {
+            try {
+                t.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void write(List<Event> batch) {
+        Throwable error = persist(batch);
+        if (error == null) {
+            return;
+        }
+
+        if (batch.size() == 1) {
+            Event event = batch.get(0);
+            failed.incrementAndGet();
+            logger.errorv(error, "Failed to store event: type={0}, realmId={1}, clientId={2}, userId={3}, ipAddress={4}, error={5}, details={6}",
+                    event.getType(), event.getRealmId(), event.getClientId(), event.getUserId(), event.getIpAddress(), event.getError(), event.getDetails());
+        } else {
+            logger.debugv("Failed to store {0} events, retrying in smaller batches", batch.size());
+            int half = batch.size() / 2;
+            write(new ArrayList<Event>(batch.subList(0, half)));
+            write(new ArrayList<Event>(batch.subList(half, batch.size())));
+        }
+    }
+
+    /**
+     * Stores a batch in one transaction. Returns the error if the transaction failed, in which case none of the events
+     * are stored.
+     */
+    private Throwable persist(List<Event> batch) {
+        KeycloakSession session = sessionFactory.create();
+        try {
+            session.getTransaction().begin();
+            EntityManager em = session.getProvider(JpaConnectionProvider.class).getEntityManager();
+            for (Event event : batch) {
+                em.persist(JpaEventStoreProvider.convert(event));
+            }
+            session.getTransaction().commit();
+
+            long currentTime = System.currentTimeMillis();
+            for (Event event : batch) {
+                long lag = currentTime - event.getTime();
+                lastLag = lag;
+                totalLag += lag;
+            }
+            written.addAndGet(batch.size());
+            return null;
+        } catch (Throwable t) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            return t;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Number of events waiting to be stored
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Number of events stored
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Number of events that failed to be stored
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Number of events discarded because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Time in milliseconds between the last stored event happening and it being stored
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * Average time in milliseconds between an event happening and it being stored
+     */
+    public long getAverageLag() {
+        long count = written.get();
+        return count > 0 ? totalLag / count : 0;
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put("queueSize", (long) getQueueSize());
+        stats.put("written", getWritten());
+        stats.put("failed", getFailed());
+        stats.put("dropped", getDropped());
+        stats.put("lastLag", getLastLag());
+        stats.put("averageLag", getAverageLag());
+        return stats;
+    }
+
+}
@@ -3,10 +3,13 @@ package org.keycloak.events.mongo;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
+import org.bson.types.ObjectId;
 import org.keycloak.events.Event;
 import org.keycloak.events.EventQuery;
+import org.keycloak.events.EventQueryIterator;
 import org.keycloak.events.EventType;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -71,9 +74,24 @@ public class MongoEventQuery implements EventQuery {
         return this;
     }
 
+    @Override
+    public EventQuery after(long time, String id) {
+        BasicDBObject sameTime = new BasicDBObject("time", time);
+        sameTime.put("_id", new BasicDBObject("$lt", new ObjectId(id)));
+
+        List<BasicDBObject> or = new LinkedList<BasicDBObject>();
+        or.add(new BasicDBObject("time", new BasicDBObject("$lt", time)));
+        or.add(sameTime);
+        query.put("$or", or);
+        return this;
+    }
+
     @Override
     public List<Event> getResultList() {
-        DBCursor cur = audit.find(query).sort(new BasicDBObject("time", -1));
+        BasicDBObject sort = new BasicDBObject("time", -1);
+        sort.put("_id", -1);
+
+        DBCursor cur = audit.find(query).sort(sort);
         if (firstResult != null) {
             cur.skip(firstResult);
         }
@@ -89,4 +107,9 @@ public class MongoEventQuery implements EventQuery {
         return events;
     }
 
+    @Override
+    public Iterator<Event> getResultIterator(int batchSize) {
+        return new EventQueryIterator(this, batchSize);
+    }
+
 }
@@ -2,6 +2,7 @@ package org.keycloak.events.mongo;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import org.keycloak.events.EventStoreProvider;
 import org.keycloak.events.Event;
@@ -9,6 +10,8 @@ import org.keycloak.events.EventQuery;
 import org.keycloak.events.EventType;
 
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -48,6 +51,24 @@ public class MongoEventStoreProvider implements EventStoreProvider {
         events.remove(q);
     }
 
+    @Override
+    public int clear(String realmId, long olderThan, int maxResults) {
+        BasicDBObject q = new BasicDBObject();
+        q.put("realmId", realmId);
+        q.put("time", new BasicDBObject("$lt", olderThan));
+
+        List<Object> ids = new LinkedList<Object>();
+        DBCursor cur = events.find(q, new BasicDBObject("_id", 1)).sort(new BasicDBObject("time", 1)).limit(maxResults);
+        while (cur.hasNext()) {
+            ids.add(cur.next().get("_id"));
+        }
+
+        if (!ids.isEmpty()) {
+            events.remove(new BasicDBObject("_id", new BasicDBObject("$in", ids)));
+        }
+        return ids.size();
+    }
+
     @Override
     public void onEvent(Event event) {
         if (includedEvents.contains(event.getType())) {
@@ -83,6 +104,9 @@ public class MongoEventStoreProvider implements EventStoreProvider {
 
     static Event convert(BasicDBObject o) {
         Event e = new Event();
+        if (o.get("_id") != null) {
+            e.setId(o.get("_id").toString());
+        }
         e.setTime(o.getLong("time"));
         e.setType(EventType.valueOf(o.getString("type")));
         e.setRealmId(o.getString("realmId"));
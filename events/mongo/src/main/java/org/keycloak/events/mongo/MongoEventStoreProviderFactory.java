@@ -1,5 +1,6 @@
 package org.keycloak.events.mongo;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
 import com.mongodb.WriteConcern;
 import org.jboss.logging.Logger;
@@ -24,6 +25,8 @@ public class MongoEventStoreProviderFactory implements EventStoreProviderFactory
 
     private Set<EventType> includedEvents = new HashSet<EventType>();
 
+    private volatile boolean indexesCreated;
+
     @Override
     public EventStoreProvider create(KeycloakSession session) {
         MongoConnectionProvider connection = session.getProvider(MongoConnectionProvider.class);
@@ -31,9 +34,30 @@ public class MongoEventStoreProviderFactory implements EventStoreProviderFactory
         DBCollection collection = connection.getDB().getCollection("events");
         collection.setWriteConcern(WriteConcern.UNACKNOWLEDGED);
 
+        if (!indexesCreated) {
+            createIndexes(collection);
+            indexesCreated = true;
+        }
+
         return new MongoEventStoreProvider(collection, includedEvents);
     }
 
+    private void createIndexes(DBCollection collection) {
+        BasicDBObject realmTime = new BasicDBObject("realmId", 1);
+        realmTime.put("time", -1);
+        collection.ensureIndex(realmTime);
+
+        BasicDBObject realmUserTime = new BasicDBObject("realmId", 1);
+        realmUserTime.put("userId", 1);
+        realmUserTime.put("time", -1);
+        collection.ensureIndex(realmUserTime);
+
+        BasicDBObject realmTypeTime = new BasicDBObject("realmId", 1);
+        realmTypeTime.put("type", 1);
+        realmTypeTime.put("time", -1);
+        collection.ensureIndex(realmTypeTime);
+    }
+
     @Override
     public void init(Config.Scope config) {
         String[] include = config.getArray("include-events");
@@ -2,6 +2,7 @@ package org.keycloak.examples.providers.events;
 
 import org.keycloak.events.Event;
 import org.keycloak.events.EventQuery;
+import org.keycloak.events.EventQueryIterator;
 import org.keycloak.events.EventType;
 
 import java.util.Collections;
@@ -97,6 +98,37 @@ public class MemEventQuery implements EventQuery {
         return this;
     }
 
+    @Override
+    public EventQuery after(long time, String id) {
+        boolean found = false;
+        for (Event event : events) {
+            if (event.getTime() == time && event.getId().equals(id)) {
+                found = true;
+                break;
+            }
+        }
+
+        Iterator<Event> itr = this.events.iterator();
+        while (itr.hasNext()) {
+            Event next = itr.next();
+            if (found) {
+                itr.remove();
+                if (next.getTime() == time && next.getId().equals(id)) {
+                    break;
+                }
+            } else if (next.getTime() >= time) {
+                // the event is gone, for example because it expired, so only its time is known
+                itr.remove();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Iterator<Event> getResultIterator(int batchSize) {
+        return new EventQueryIterator(this, batchSize);
+    }
+
     @Override
     public List<Event> getResultList() {
         if (events.size() < first) {
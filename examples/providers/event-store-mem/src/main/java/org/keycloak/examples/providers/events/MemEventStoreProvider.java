@@ -9,6 +9,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
@@ -57,8 +58,26 @@ public class MemEventStoreProvider implements EventStoreProvider {
         }
     }
 
+    @Override
+    public int clear(String realmId, long olderThan, int maxResults) {
+        int removed = 0;
+        synchronized(events) {
+            Iterator<Event> itr = events.iterator();
+            while (itr.hasNext() && removed < maxResults) {
+                Event e = itr.next();
+                if (e.getRealmId().equals(realmId) && e.getTime() < olderThan) {
+                    itr.remove();
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
     @Override
     public void onEvent(Event event) {
+        event = event.clone();
+        event.setId(UUID.randomUUID().toString());
         events.add(0, event);
     }
 
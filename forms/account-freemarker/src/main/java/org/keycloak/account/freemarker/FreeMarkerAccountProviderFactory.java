@@ -1,11 +1,16 @@
 package org.keycloak.account.freemarker;
 
 import org.keycloak.Config;
+import org.keycloak.account.AccountPages;
 import org.keycloak.account.AccountProvider;
 import org.keycloak.account.AccountProviderFactory;
 import org.keycloak.freemarker.FreeMarkerUtil;
+import org.keycloak.freemarker.Theme;
 import org.keycloak.models.KeycloakSession;
 
+import java.util.LinkedList;
+import java.util.List;
+
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
@@ -15,6 +20,7 @@ public class FreeMarkerAccountProviderFactory implements AccountProviderFactory
 
     @Override
     public AccountProvider create(KeycloakSession session) {
+        freeMarker.precompile(session, Theme.Type.ACCOUNT, getTemplates());
         return new FreeMarkerAccountProvider(session, freeMarker);
     }
 
@@ -33,4 +39,12 @@ public class FreeMarkerAccountProviderFactory implements AccountProviderFactory
         return "freemarker";
     }
 
+    private static List<String> getTemplates() {
+        List<String> templates = new LinkedList<String>();
+        for (AccountPages page : AccountPages.values()) {
+            templates.add(Templates.getTemplate(page));
+        }
+        return templates;
+    }
+
 }
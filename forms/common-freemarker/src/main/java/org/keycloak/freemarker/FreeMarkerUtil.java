@@ -1,62 +1,185 @@
 package org.keycloak.freemarker;
 
+import freemarker.cache.MruCacheStorage;
 import freemarker.cache.URLTemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
+import org.jboss.logging.Logger;
 import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
 
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Processes templates with one long-lived FreeMarker <code>Configuration</code> per theme, so the template cache and
+ * FreeMarker's introspection caches are kept between renders. At most <code>templateCacheSize</code> templates are
+ * kept strongly referenced per theme. With <code>cacheTemplates</code> disabled, templates are still cached but are
+ * reloaded when they are modified.
+ * <p/>
+ * With <code>precompileTemplates</code> enabled, the templates of the default theme and of the themes used by realms
+ * are compiled when the provider is first created, so the first page after a deploy doesn't have to wait for them.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class FreeMarkerUtil {
 
-    private ConcurrentHashMap<String, Template> cache;
+    private static final Logger logger = Logger.getLogger(FreeMarkerUtil.class);
+
+    private static final ConcurrentHashMap<String, RenderStats> renderStats = new ConcurrentHashMap<String, RenderStats>();
+
+    private final ConcurrentHashMap<String, ThemeConfiguration> configurations = new ConcurrentHashMap<String, ThemeConfiguration>();
+    private final boolean cacheTemplates;
+    private final int templateCacheSize;
+    private final boolean precompileTemplates;
+    private final AtomicBoolean precompiled = new AtomicBoolean();
 
     public FreeMarkerUtil() {
-        if (Config.scope("theme").getBoolean("cacheTemplates", true)) {
-            cache = new ConcurrentHashMap<String, Template>();
-        }
+        Config.Scope config = Config.scope("theme");
+        cacheTemplates = config.getBoolean("cacheTemplates", true);
+        templateCacheSize = config.getInt("templateCacheSize", 100);
+        precompileTemplates = config.getBoolean("precompileTemplates", false);
     }
 
     public String processTemplate(Object data, String templateName, Theme theme) throws FreeMarkerException {
+        long start = System.currentTimeMillis();
+        boolean success = false;
         try {
-            Template template;
-            if (cache != null) {
-                String key = theme.getName() + "/" + templateName;
-                template = cache.get(key);
-                if (template == null) {
-                    template = getTemplate(templateName, theme);
-                    if (cache.putIfAbsent(key, template) != null) {
-                        template = cache.get(key);
-                    }
-                }
-            } else {
-                template = getTemplate(templateName, theme);
-            }
+            Template template = getConfiguration(theme).getTemplate(templateName);
 
             Writer out = new StringWriter();
             template.process(data, out);
+            success = true;
             return out.toString();
         } catch (Exception e) {
             throw new FreeMarkerException("Failed to process template " + templateName, e);
+        } finally {
+            getRenderStats(theme.getType().toString().toLowerCase() + "/" + templateName).record(System.currentTimeMillis() - start, success);
         }
     }
 
-    private Template getTemplate(String templateName, Theme theme) throws IOException {
-        Configuration cfg = new Configuration();
-        cfg.setTemplateLoader(new ThemeTemplateLoader(theme));
-        return cfg.getTemplate(templateName);
+    /**
+     * Compiles the templates of the default theme and of the themes used by realms, the first time it's called if
+     * <code>precompileTemplates</code> is enabled
+     */
+    public void precompile(KeycloakSession session, Theme.Type type, Collection<String> templateNames) {
+        if (!precompileTemplates || !precompiled.compareAndSet(false, true)) {
+            return;
+        }
+
+        Set<String> themeNames = new LinkedHashSet<String>();
+        themeNames.add(null);
+        for (RealmModel realm : session.realms().getRealms()) {
+            switch (type) {
+                case LOGIN:
+                    themeNames.add(realm.getLoginTheme());
+                    break;
+                case ACCOUNT:
+                    themeNames.add(realm.getAccountTheme());
+                    break;
+                case EMAIL:
+                    themeNames.add(realm.getEmailTheme());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        ThemeProvider themeProvider = session.getProvider(ThemeProvider.class, "extending");
+        for (String themeName : themeNames) {
+            try {
+                precompile(themeProvider.getTheme(themeName, type), templateNames);
+            } catch (Exception e) {
+                logger.warnf(e, "Failed to precompile templates of %s theme '%s'", type.toString().toLowerCase(), themeName);
+            }
+        }
+    }
+
+    public void precompile(Theme theme, Collection<String> templateNames) {
+        long start = System.currentTimeMillis();
+        Configuration cfg = getConfiguration(theme);
+        int count = 0;
+        for (String templateName : templateNames) {
+            try {
+                cfg.getTemplate(templateName);
+                count++;
+            } catch (IOException e) {
+                // not all themes have all templates
+                logger.debugf("Failed to precompile template '%s' of theme '%s': %s", templateName, theme.getName(), e.getMessage());
+            }
+        }
+        logger.debugf("Precompiled %d templates of %s theme '%s' in %d ms", count, theme.getType().toString().toLowerCase(), theme.getName(), System.currentTimeMillis() - start);
+    }
+
+    private Configuration getConfiguration(Theme theme) {
+        String key = theme.getType() + "/" + theme.getName();
+        ThemeConfiguration cfg = configurations.get(key);
+        if (cfg == null) {
+            cfg = new ThemeConfiguration(theme);
+            ThemeConfiguration existing = configurations.putIfAbsent(key, cfg);
+            if (existing != null) {
+                cfg = existing;
+            }
+        }
+        // when themes aren't cached a new instance is loaded for every request
+        cfg.loader.theme = theme;
+        return cfg.configuration;
+    }
+
+    private static RenderStats getRenderStats(String key) {
+        RenderStats stats = renderStats.get(key);
+        if (stats == null) {
+            stats = new RenderStats();
+            RenderStats existing = renderStats.putIfAbsent(key, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns render counts and times in milliseconds by theme type and template name, for example
+     * <code>login/login.ftl</code>
+     */
+    public static Map<String, Map<String, Long>> getRenderStats() {
+        Map<String, Map<String, Long>> stats = new HashMap<String, Map<String, Long>>();
+        for (Map.Entry<String, RenderStats> e : renderStats.entrySet()) {
+            stats.put(e.getKey(), e.getValue().toMap());
+        }
+        return stats;
+    }
+
+    private class ThemeConfiguration {
+
+        private final Configuration configuration;
+        private final ThemeTemplateLoader loader;
+
+        private ThemeConfiguration(Theme theme) {
+            loader = new ThemeTemplateLoader(theme);
+            configuration = new Configuration();
+            configuration.setTemplateLoader(loader);
+            configuration.setCacheStorage(new MruCacheStorage(templateCacheSize, templateCacheSize));
+            // in seconds, templates are only checked for modification when they aren't cached
+            configuration.setTemplateUpdateDelay(cacheTemplates ? Integer.MAX_VALUE : 0);
+        }
+
     }
 
     class ThemeTemplateLoader extends URLTemplateLoader {
 
-        private Theme theme;
+        private volatile Theme theme;
 
         public ThemeTemplateLoader(Theme theme) {
             this.theme = theme;
@@ -73,4 +196,40 @@ public class FreeMarkerUtil {
 
     }
 
+    private static class RenderStats {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+        private volatile long lastTime;
+
+        private void record(long time, boolean success) {
+            count.incrementAndGet();
+            if (!success) {
+                failures.incrementAndGet();
+            }
+            totalTime.addAndGet(time);
+            lastTime = time;
+            long max = maxTime.get();
+            while (time > max && !maxTime.compareAndSet(max, time)) {
+                max = maxTime.get();
+            }
+        }
+
+        private Map<String, Long> toMap() {
+            Map<String, Long> m = new HashMap<String, Long>();
+            long c = count.get();
+            long total = totalTime.get();
+            m.put("count", c);
+            m.put("failures", failures.get());
+            m.put("totalTime", total);
+            m.put("averageTime", c > 0 ? total / c : 0);
+            m.put("maxTime", maxTime.get());
+            m.put("lastTime", lastTime);
+            return m;
+        }
+
+    }
+
 }
@@ -5,6 +5,10 @@ package org.keycloak.email;
  */
 public class EmailException extends Exception {
 
+    public EmailException(String message) {
+        super(message);
+    }
+
     public EmailException(Throwable cause) {
         super(cause);
     }
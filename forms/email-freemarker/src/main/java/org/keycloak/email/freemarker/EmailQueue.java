@@ -0,0 +1,342 @@
+package org.keycloak.email.freemarker;
+
+import org.jboss.logging.Logger;
+import org.keycloak.email.EmailException;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends emails in the background. Emails are added to a bounded queue and sent by <code>threads</code> worker threads.
+ * Each worker keeps its connections to SMTP servers open, one per SMTP configuration, until they have been idle for
+ * <code>idleTimeout</code> milliseconds. An email that fails to send is retried up to <code>maxRetries</code> times,
+ * waiting <code>retryDelay</code> milliseconds before the first retry and twice as long before each following one.
+ */
+public class EmailQueue {
+
+    private static final Logger logger = Logger.getLogger(EmailQueue.class);
+
+    private static final long POLL_INTERVAL = 1000;
+
+    private final BlockingQueue<EmailMessage> queue;
+    private final int threads;
+    private final int maxRetries;
+    private final long retryDelay;
+    private final long idleTimeout;
+
+    private final ScheduledThreadPoolExecutor retries;
+    private final List<Thread> workers = new ArrayList<Thread>();
+    private volatile boolean run = true;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong totalSendTime = new AtomicLong();
+    private final AtomicLong totalLag = new AtomicLong();
+    private volatile long lastLag;
+
+    public EmailQueue(int threads, int queueSize, int maxRetries, long retryDelay, long idleTimeout) {
+        this.queue = new ArrayBlockingQueue<EmailMessage>(queueSize);
+        this.threads = threads;
+        this.maxRetries = maxRetries;
+        this.retryDelay = retryDelay;
+        this.idleTimeout = idleTimeout;
+
+        this.retries = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Email Retry");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.retries.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public synchronized void start() {
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(new Worker(), "Email Sender " + (i + 1));
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+    }
+
+    /**
+     * Queues an email
+     *
+     * @throws EmailException if the address isn't valid, or if the queue is full
+     */
+    public void add(Map<String, String> smtpConfig, String address, String subject, String body) throws EmailException {
+        try {
+            new InternetAddress(address, true);
+        } catch (AddressException e) {
+            throw new EmailException(e);
+        }
+
+        EmailMessage message = new EmailMessage(new HashMap<String, String>(smtpConfig), address, subject, body);
+        if (!run) {
+            throw new EmailException("Email queue closed");
+        }
+        if (!queue.offer(message)) {
+            rejected.incrementAndGet();
+            logger.warnv("Email queue full, email to {0} not sent", address);
+            throw new EmailException("Email queue full");
+        }
+    }
+
+    /**
+     * Stops accepting emails and waits up to 10 seconds for the queued ones to be sent. Emails waiting to be retried
+     * are discarded.
+     */
+    public void close() {
+        run = false;
+
+        List<Runnable> pending = retries.shutdownNow();
+        if (!pending.isEmpty()) {
+            failed.addAndGet(pending.size());
+            logger.warnv("Discarded {0} emails waiting to be retried", pending.size());
+        }
+
+        List<Thread> ts;
+        synchronized (this) {
+            ts = new ArrayList<Thread>(workers);
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        try {
+            for (Thread t : ts) {
+                t.join(Math.max(deadline - System.currentTimeMillis(), 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Thread t : ts) {
+            t.interrupt();
+        }
+        if (!queue.isEmpty()) {
+            logger.warnv("Discarded {0} queued emails", queue.size());
+        }
+    }
+
+    private void send(EmailMessage message, SmtpConnection connection) {
+        long start = System.currentTimeMillis();
+        try {
+            connection.send(message.address, message.subject, message.body);
+
+            long time = System.currentTimeMillis();
+            sent.incrementAndGet();
+            totalSendTime.addAndGet(time - start);
+            lastLag = time - message.created;
+            totalLag.addAndGet(lastLag);
+        } catch (MessagingException e) {
+            connection.close();
+            retry(message, e);
+        } catch (RuntimeException e) {
+            connection.close();
+            failed.incrementAndGet();
+            logger.error("Failed to send email to " + message.address, e);
+        }
+    }
+
+    private void retry(final EmailMessage message, MessagingException e) {
+        message.attempts++;
+        if (!run || message.attempts > maxRetries || isPermanent(e)) {
+            failed.incrementAndGet();
+            logger.error("Failed to send email to " + message.address + " after " + message.attempts + " attempts", e);
+            return;
+        }
+
+        long delay = retryDelay << (message.attempts - 1);
+        logger.warnv("Failed to send email to {0}, retrying in {1} ms: {2}", message.address, delay, e.getMessage());
+        retried.incrementAndGet();
+        try {
+            retries.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!queue.offer(message)) {
+                        failed.incrementAndGet();
+                        logger.errorv("Email queue full, email to {0} not retried", message.address);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException re) {
+            // closed concurrently
+            failed.incrementAndGet();
+        }
+    }
+
+    private static boolean isPermanent(MessagingException e) {
+        if (e instanceof SendFailedException) {
+            Address[] invalid = ((SendFailedException) e).getInvalidAddresses();
+            return invalid != null && invalid.length > 0;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a snapshot of the counters, as reported by the server info
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put("queueSize", (long) getQueueSize());
+        stats.put("sent", getSent());
+        stats.put("failed", getFailed());
+        stats.put("retried", getRetried());
+        stats.put("rejected", getRejected());
+        stats.put("connects", getConnects());
+        stats.put("averageSendTime", getAverageSendTime());
+        stats.put("lastLag", getLastLag());
+        stats.put("averageLag", getAverageLag());
+        return stats;
+    }
+
+    /**
+     * Number of emails waiting to be sent
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Number of emails sent
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * Number of emails that couldn't be sent, after retrying
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Number of retries scheduled
+     */
+    public long getRetried() {
+        return retried.get();
+    }
+
+    /**
+     * Number of emails not accepted because the queue was full
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Number of connections opened to SMTP servers
+     */
+    public long getConnects() {
+        return connects.get();
+    }
+
+    /**
+     * Average time in milliseconds to send an email, not including the time it waited in the queue
+     */
+    public long getAverageSendTime() {
+        long count = sent.get();
+        return count > 0 ? totalSendTime.get() / count : 0;
+    }
+
+    /**
+     * Time in milliseconds between the last sent email being queued and it being sent
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * Average time in milliseconds between an email being queued and it being sent
+     */
+    public long getAverageLag() {
+        long count = sent.get();
+        return count > 0 ? totalLag.get() / count : 0;
+    }
+
+    private class Worker implements Runnable {
+
+        private final Map<Map<String, String>, SmtpConnection> connections = new HashMap<Map<String, String>, SmtpConnection>();
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    EmailMessage message = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (message != null) {
+                        send(message, getConnection(message.smtpConfig));
+                    } else if (!run) {
+                        break;
+                    }
+                    closeIdle();
+                }
+            } catch (InterruptedException e) {
+                // closing
+            } finally {
+                for (SmtpConnection connection : connections.values()) {
+                    connection.close();
+                }
+            }
+        }
+
+        private SmtpConnection getConnection(Map<String, String> smtpConfig) {
+            SmtpConnection connection = connections.get(smtpConfig);
+            if (connection == null) {
+                connection = new SmtpConnection(smtpConfig, connects);
+                connections.put(smtpConfig, connection);
+            }
+            return connection;
+        }
+
+        private void closeIdle() {
+            long now = System.currentTimeMillis();
+            Iterator<SmtpConnection> itr = connections.values().iterator();
+            while (itr.hasNext()) {
+                SmtpConnection connection = itr.next();
+                if (now - connection.getLastUsed() > idleTimeout) {
+                    connection.close();
+                    itr.remove();
+                }
+            }
+        }
+
+    }
+
+    private static class EmailMessage {
+
+        private final Map<String, String> smtpConfig;
+        private final String address;
+        private final String subject;
+        private final String body;
+        private final long created = System.currentTimeMillis();
+        private int attempts;
+
+        private EmailMessage(Map<String, String> smtpConfig, String address, String subject, String body) {
+            this.smtpConfig = smtpConfig;
+            this.address = address;
+            this.subject = subject;
+            this.body = body;
+        }
+
+    }
+
+}
@@ -2,6 +2,7 @@ package org.keycloak.email.freemarker;
 
 import org.jboss.logging.Logger;
 import org.keycloak.events.Event;
+import org.keycloak.events.EventType;
 import org.keycloak.email.EmailException;
 import org.keycloak.email.EmailProvider;
 import org.keycloak.email.freemarker.beans.EventBean;
@@ -12,15 +13,12 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
 
-import javax.mail.Message;
-import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
@@ -29,14 +27,42 @@ public class FreeMarkerEmailProvider implements EmailProvider {
 
     private static final Logger log = Logger.getLogger(FreeMarkerEmailProvider.class);
 
+    static final String PASSWORD_RESET_TEMPLATE = "password-reset.ftl";
+    static final String EMAIL_VERIFICATION_TEMPLATE = "email-verification.ftl";
+
+    /**
+     * Events that have an email template, named by {@link #getEventTemplate(EventType)}
+     */
+    static final List<EventType> TEMPLATE_EVENTS = Arrays.asList(EventType.LOGIN_ERROR, EventType.UPDATE_PASSWORD, EventType.UPDATE_TOTP, EventType.REMOVE_TOTP);
+
+    /**
+     * All templates used to send emails, compiled in advance when <code>precompileTemplates</code> is enabled
+     */
+    static final List<String> TEMPLATES;
+
+    static {
+        List<String> templates = new LinkedList<String>();
+        templates.add(EMAIL_VERIFICATION_TEMPLATE);
+        templates.add(PASSWORD_RESET_TEMPLATE);
+        for (EventType event : TEMPLATE_EVENTS) {
+            templates.add(getEventTemplate(event));
+        }
+        TEMPLATES = Collections.unmodifiableList(templates);
+    }
+
     private KeycloakSession session;
     private FreeMarkerUtil freeMarker;
+    private EmailQueue queue;
     private RealmModel realm;
     private UserModel user;
 
-    public FreeMarkerEmailProvider(KeycloakSession session, FreeMarkerUtil freeMarker) {
+    /**
+     * @param queue queue to send emails in the background, or <code>null</code> to send them before returning
+     */
+    public FreeMarkerEmailProvider(KeycloakSession session, FreeMarkerUtil freeMarker, EmailQueue queue) {
         this.session = session;
         this.freeMarker = freeMarker;
+        this.queue = queue;
     }
 
     @Override
@@ -56,7 +82,7 @@ public class FreeMarkerEmailProvider implements EmailProvider {
         Map<String, Object> attributes = new HashMap<String, Object>();
         attributes.put("event", new EventBean(event));
 
-        send("passwordResetSubject", "event-" + event.getType().toString().toLowerCase() + ".ftl", attributes);
+        send("passwordResetSubject", getEventTemplate(event.getType()), attributes);
     }
 
     @Override
@@ -65,7 +91,7 @@ public class FreeMarkerEmailProvider implements EmailProvider {
         attributes.put("link", link);
         attributes.put("linkExpiration", expirationInMinutes);
 
-        send("passwordResetSubject", "password-reset.ftl", attributes);
+        send("passwordResetSubject", PASSWORD_RESET_TEMPLATE, attributes);
     }
 
     @Override
@@ -74,7 +100,11 @@ public class FreeMarkerEmailProvider implements EmailProvider {
         attributes.put("link", link);
         attributes.put("linkExpiration", expirationInMinutes);
 
-        send("emailVerificationSubject", "email-verification.ftl", attributes);
+        send("emailVerificationSubject", EMAIL_VERIFICATION_TEMPLATE, attributes);
+    }
+
+    static String getEventTemplate(EventType eventType) {
+        return "event-" + eventType.toString().toLowerCase() + ".ftl";
     }
 
     private void send(String subjectKey, String template, Map<String, Object> attributes) throws EmailException {
@@ -93,56 +123,22 @@ public class FreeMarkerEmailProvider implements EmailProvider {
 
 
     private void send(String subject, String body) throws EmailException {
+        String address = user.getEmail();
+        Map<String, String> config = realm.getSmtpConfig();
+
+        if (queue != null) {
+            queue.add(config, address, subject, body);
+            return;
+        }
+
+        SmtpConnection connection = new SmtpConnection(config, null);
         try {
-            String address = user.getEmail();
-            Map<String, String> config = realm.getSmtpConfig();
-
-            Properties props = new Properties();
-            props.setProperty("mail.smtp.host", config.get("host"));
-
-            boolean auth = "true".equals(config.get("auth"));
-            boolean ssl = "true".equals(config.get("ssl"));
-            boolean starttls = "true".equals(config.get("starttls"));
-
-            if (config.containsKey("port")) {
-                props.setProperty("mail.smtp.port", config.get("port"));
-            }
-
-            if (auth) {
-                props.put("mail.smtp.auth", "true");
-            }
-
-            if (ssl) {
-                props.put("mail.smtp.socketFactory.port", config.get("port"));
-                props.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
-            }
-
-            if (starttls) {
-                props.put("mail.smtp.starttls.enable", "true");
-            }
-
-            String from = config.get("from");
-
-            Session session = Session.getInstance(props);
-
-            Message msg = new MimeMessage(session);
-            msg.setFrom(new InternetAddress(from));
-            msg.setHeader("To", address);
-            msg.setSubject(subject);
-            msg.setText(body);
-            msg.saveChanges();
-            msg.setSentDate(new Date());
-
-            Transport transport = session.getTransport("smtp");
-            if (auth) {
-                transport.connect(config.get("user"), config.get("password"));
-            } else {
-                transport.connect();
-            }
-            transport.sendMessage(msg, new InternetAddress[]{new InternetAddress(address)});
+            connection.send(address, subject, body);
         } catch (Exception e) {
             log.warn("Failed to send email", e);
             throw new EmailException(e);
+        } finally {
+            connection.close();
         }
     }
 
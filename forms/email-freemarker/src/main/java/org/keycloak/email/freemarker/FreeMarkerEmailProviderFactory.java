@@ -4,27 +4,72 @@ import org.keycloak.Config;
 import org.keycloak.email.EmailProvider;
 import org.keycloak.email.EmailProviderFactory;
 import org.keycloak.freemarker.FreeMarkerUtil;
+import org.keycloak.freemarker.Theme;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.provider.ProviderStatistics;
+
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class FreeMarkerEmailProviderFactory implements EmailProviderFactory {
+public class FreeMarkerEmailProviderFactory implements EmailProviderFactory, ProviderStatistics {
 
     private FreeMarkerUtil freeMarker;
 
+    private Config.Scope config;
+
+    private volatile EmailQueue queue;
+
     @Override
     public EmailProvider create(KeycloakSession session) {
-        return new FreeMarkerEmailProvider(session, freeMarker);
+        freeMarker.precompile(session, Theme.Type.EMAIL, FreeMarkerEmailProvider.TEMPLATES);
+        return new FreeMarkerEmailProvider(session, freeMarker, createQueue());
+    }
+
+    private EmailQueue createQueue() {
+        if (queue == null && config.getBoolean("async", false)) {
+            synchronized (this) {
+                if (queue == null) {
+                    EmailQueue q = new EmailQueue(config.getInt("threads", 2), config.getInt("queueSize", 1000),
+                            config.getInt("maxRetries", 3), config.getLong("retryDelay", 1000L), config.getLong("idleTimeout", 30000L));
+                    q.start();
+                    queue = q;
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Returns the queue emails are sent from, or <code>null</code> if emails are sent synchronously
+     */
+    public EmailQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Returns the counters of the email queue, or an empty map if emails are sent synchronously or none has been sent
+     * yet
+     */
+    @Override
+    public Map<String, Long> getStats() {
+        EmailQueue q = queue;
+        return q != null ? q.getStats() : Collections.<String, Long>emptyMap();
     }
 
     @Override
     public void init(Config.Scope config) {
+        this.config = config;
         freeMarker = new FreeMarkerUtil();
     }
 
     @Override
     public void close() {
+        if (queue != null) {
+            queue.close();
+        }
         freeMarker = null;
     }
 
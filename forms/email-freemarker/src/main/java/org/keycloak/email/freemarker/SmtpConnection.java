@@ -0,0 +1,108 @@
+package org.keycloak.email.freemarker;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection to the SMTP server of a realm. The connection is opened, and authenticated, on the first send and kept
+ * open for the following ones until it's closed. Not thread-safe.
+ */
+public class SmtpConnection {
+
+    private final Map<String, String> config;
+    private final Session session;
+    private final AtomicLong connects;
+
+    private Transport transport;
+    private long lastUsed;
+
+    /**
+     * @param connects incremented every time a connection is opened, may be <code>null</code>
+     */
+    public SmtpConnection(Map<String, String> config, AtomicLong connects) {
+        this.config = config;
+        this.session = Session.getInstance(createProperties(config));
+        this.connects = connects;
+    }
+
+    public void send(String address, String subject, String body) throws MessagingException {
+        Message msg = new MimeMessage(session);
+        msg.setFrom(new InternetAddress(config.get("from")));
+        msg.setHeader("To", address);
+        msg.setSubject(subject);
+        msg.setText(body);
+        msg.saveChanges();
+        msg.setSentDate(new Date());
+
+        // the server may have closed an idle connection
+        if (transport == null || !transport.isConnected()) {
+            connect();
+        }
+        transport.sendMessage(msg, new InternetAddress[]{new InternetAddress(address)});
+        lastUsed = System.currentTimeMillis();
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    public void close() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // connection is being discarded anyway
+            }
+            transport = null;
+        }
+    }
+
+    private void connect() throws MessagingException {
+        close();
+
+        Transport t = session.getTransport("smtp");
+        if ("true".equals(config.get("auth"))) {
+            t.connect(config.get("user"), config.get("password"));
+        } else {
+            t.connect();
+        }
+        transport = t;
+
+        if (connects != null) {
+            connects.incrementAndGet();
+        }
+    }
+
+    private static Properties createProperties(Map<String, String> config) {
+        Properties props = new Properties();
+        props.setProperty("mail.smtp.host", config.get("host"));
+
+        if (config.containsKey("port")) {
+            props.setProperty("mail.smtp.port", config.get("port"));
+        }
+
+        if ("true".equals(config.get("auth"))) {
+            props.put("mail.smtp.auth", "true");
+        }
+
+        if ("true".equals(config.get("ssl"))) {
+            props.put("mail.smtp.socketFactory.port", config.get("port"));
+            props.put("mail.smtp.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
+        }
+
+        if ("true".equals(config.get("starttls"))) {
+            props.put("mail.smtp.starttls.enable", "true");
+        }
+
+        return props;
+    }
+
+}
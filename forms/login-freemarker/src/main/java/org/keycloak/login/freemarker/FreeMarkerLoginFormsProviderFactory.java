@@ -2,10 +2,15 @@ package org.keycloak.login.freemarker;
 
 import org.keycloak.Config;
 import org.keycloak.freemarker.FreeMarkerUtil;
+import org.keycloak.freemarker.Theme;
+import org.keycloak.login.LoginFormsPages;
 import org.keycloak.login.LoginFormsProvider;
 import org.keycloak.login.LoginFormsProviderFactory;
 import org.keycloak.models.KeycloakSession;
 
+import java.util.LinkedList;
+import java.util.List;
+
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
@@ -15,6 +20,7 @@ public class FreeMarkerLoginFormsProviderFactory implements LoginFormsProviderFa
 
     @Override
     public LoginFormsProvider create(KeycloakSession session) {
+        freeMarker.precompile(session, Theme.Type.LOGIN, getTemplates());
         return new FreeMarkerLoginFormsProvider(session, freeMarker);
     }
 
@@ -33,6 +39,13 @@ public class FreeMarkerLoginFormsProviderFactory implements LoginFormsProviderFa
         return "freemarker";
     }
 
+    private static List<String> getTemplates() {
+        List<String> templates = new LinkedList<String>();
+        for (LoginFormsPages page : LoginFormsPages.values()) {
+            templates.add(Templates.getTemplate(page));
+        }
+        return templates;
+    }
 
 
 }
@@ -6,6 +6,7 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.jboss.logging.Logger;
 import org.keycloak.enums.SslRequired;
+import org.keycloak.jose.jws.crypto.RSASignaturePool;
 import org.keycloak.representations.adapters.config.AdapterConfig;
 import org.keycloak.representations.idm.PublishedRealmRepresentation;
 import org.keycloak.util.JsonSerialization;
@@ -17,6 +18,7 @@ import java.io.InputStream;
 import java.net.URI;
 import java.security.PublicKey;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -37,6 +39,15 @@ public class AdapterDeploymentContext {
         return deployment;
     }
 
+    /**
+     * Releases the resources of the deployment, called when the application is undeployed
+     */
+    public void close() {
+        if (deployment != null) {
+            deployment.close();
+        }
+    }
+
     /**
      * Resolve adapter deployment based on partial adapter configuration.
      * This will resolve a relative auth server url based on the current request
@@ -132,6 +143,11 @@ public class AdapterDeploymentContext {
             delegate.setRealmKey(realmKey);
         }
 
+        @Override
+        public RSASignaturePool getRealmKeyPool() {
+            return delegate.getRealmKeyPool();
+        }
+
         @Override
         public void setResourceName(String resourceName) {
             delegate.setResourceName(resourceName);
@@ -262,6 +278,31 @@ public class AdapterDeploymentContext {
             return delegate.isExposeToken();
         }
 
+        @Override
+        public VerifiedTokenCache getVerifiedTokenCache() {
+            return delegate.getVerifiedTokenCache();
+        }
+
+        @Override
+        public void setVerifiedTokenCache(VerifiedTokenCache verifiedTokenCache) {
+            delegate.setVerifiedTokenCache(verifiedTokenCache);
+        }
+
+        @Override
+        public int getTokenRefreshSkew() {
+            return delegate.getTokenRefreshSkew();
+        }
+
+        @Override
+        public void setTokenRefreshSkew(int tokenRefreshSkew) {
+            delegate.setTokenRefreshSkew(tokenRefreshSkew);
+        }
+
+        @Override
+        public Executor getRefreshExecutor() {
+            return delegate.getRefreshExecutor();
+        }
+
         @Override
         public void setCorsAllowedMethods(String corsAllowedMethods) {
             delegate.setCorsAllowedMethods(corsAllowedMethods);
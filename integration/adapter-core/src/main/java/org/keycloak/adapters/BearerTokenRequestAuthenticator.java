@@ -59,18 +59,26 @@ public class BearerTokenRequestAuthenticator {
             return AuthOutcome.NOT_ATTEMPTED;
         }
 
-        try {
-            token = RSATokenVerifier.verifyToken(tokenString, deployment.getRealmKey(), deployment.getRealm());
-        } catch (VerificationException e) {
-            log.error("Failed to verify token", e);
-            challenge = challengeResponse(exchange, "invalid_token", e.getMessage());
-            return AuthOutcome.FAILED;
+        VerifiedTokenCache tokenCache = deployment.getVerifiedTokenCache();
+        token = tokenCache != null ? tokenCache.get(tokenString) : null;
+        boolean cached = token != null;
+        if (!cached) {
+            try {
+                token = RSATokenVerifier.verifyToken(tokenString, deployment.getRealmKeyPool(), deployment.getRealm());
+            } catch (VerificationException e) {
+                log.error("Failed to verify token", e);
+                challenge = challengeResponse(exchange, "invalid_token", e.getMessage());
+                return AuthOutcome.FAILED;
+            }
         }
         if (token.getIssuedAt() < deployment.getNotBefore()) {
             log.error("Stale token");
             challenge = challengeResponse(exchange, "invalid_token", "Stale token");
             return AuthOutcome.FAILED;
         }
+        if (tokenCache != null && !cached) {
+            tokenCache.put(tokenString, token);
+        }
         boolean verifyCaller = false;
         if (deployment.isUseResourceRoleMappings()) {
             verifyCaller = token.isVerifyCaller(deployment.getResourceName());
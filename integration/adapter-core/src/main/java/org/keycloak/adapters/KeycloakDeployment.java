@@ -4,12 +4,18 @@ import org.apache.http.client.HttpClient;
 import org.jboss.logging.Logger;
 import org.keycloak.ServiceUrlConstants;
 import org.keycloak.enums.SslRequired;
+import org.keycloak.jose.jws.crypto.RSASignaturePool;
 import org.keycloak.util.KeycloakUriBuilder;
 
 import java.net.URI;
 import java.security.PublicKey;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -21,6 +27,7 @@ public class KeycloakDeployment {
     protected boolean relativeUrls;
     protected String realm;
     protected PublicKey realmKey;
+    protected volatile RSASignaturePool realmKeyPool;
     protected KeycloakUriBuilder serverBuilder;
     protected String authServerBaseUrl;
     protected String realmInfoUrl;
@@ -46,6 +53,10 @@ public class KeycloakDeployment {
     protected String corsAllowedMethods;
     protected boolean exposeToken;
     protected volatile int notBefore;
+    protected VerifiedTokenCache verifiedTokenCache;
+    protected int tokenRefreshSkew;
+    protected ThreadPoolExecutor refreshExecutor;
+    protected boolean closed;
 
     public KeycloakDeployment() {
     }
@@ -72,6 +83,18 @@ public class KeycloakDeployment {
 
     public void setRealmKey(PublicKey realmKey) {
         this.realmKey = realmKey;
+        RSASignaturePool previous = realmKeyPool;
+        realmKeyPool = realmKey != null ? new RSASignaturePool(realmKey) : null;
+        if (previous != null) previous.clear();
+        if (verifiedTokenCache != null) verifiedTokenCache.clear();
+    }
+
+    /**
+     * Signature engines for verifying tokens with the realm key. The pool is replaced when the realm key changes, and
+     * cleared when the deployment is closed.
+     */
+    public RSASignaturePool getRealmKeyPool() {
+        return realmKeyPool;
     }
 
     public String getAuthServerBaseUrl() {
@@ -238,6 +261,70 @@ public class KeycloakDeployment {
 
     public void setNotBefore(int notBefore) {
         this.notBefore = notBefore;
+        if (verifiedTokenCache != null) verifiedTokenCache.removeIssuedBefore(notBefore);
+    }
+
+    /**
+     * Cache of verified bearer tokens, or <code>null</code> if tokens are verified on every request
+     */
+    public VerifiedTokenCache getVerifiedTokenCache() {
+        return verifiedTokenCache;
+    }
+
+    public void setVerifiedTokenCache(VerifiedTokenCache verifiedTokenCache) {
+        this.verifiedTokenCache = verifiedTokenCache;
+    }
+
+    /**
+     * Time in seconds before a token expires that it's refreshed in the background, or 0 to refresh tokens when they
+     * have expired
+     */
+    public int getTokenRefreshSkew() {
+        return tokenRefreshSkew;
+    }
+
+    public void setTokenRefreshSkew(int tokenRefreshSkew) {
+        this.tokenRefreshSkew = tokenRefreshSkew;
+    }
+
+    /**
+     * Executor for background token refreshes. Its threads are daemon threads and exit when idle. Returns
+     * <code>null</code> once the deployment is closed.
+     */
+    public synchronized Executor getRefreshExecutor() {
+        if (closed) return null;
+        if (refreshExecutor == null) {
+            refreshExecutor = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(1000), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Keycloak Token Refresh");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            refreshExecutor.allowCoreThreadTimeOut(true);
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Stops background token refreshes and discards the signature engines of the realm key, called when the
+     * application is undeployed
+     */
+    public synchronized void close() {
+        closed = true;
+        if (realmKeyPool != null) {
+            realmKeyPool.clear();
+        }
+        if (refreshExecutor != null) {
+            // refreshes that were still queued won't run, so callers waiting for them are released
+            for (Runnable discarded : refreshExecutor.shutdownNow()) {
+                if (discarded instanceof RefreshableKeycloakSecurityContext.BackgroundRefresh) {
+                    ((RefreshableKeycloakSecurityContext.BackgroundRefresh) discarded).cancel();
+                }
+            }
+            refreshExecutor = null;
+        }
     }
 
 }
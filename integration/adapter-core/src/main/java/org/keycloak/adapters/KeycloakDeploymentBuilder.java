@@ -56,6 +56,11 @@ public class KeycloakDeploymentBuilder {
 
         deployment.setBearerOnly(adapterConfig.isBearerOnly());
 
+        if (adapterConfig.getTokenCacheSize() > 0) {
+            deployment.setVerifiedTokenCache(new VerifiedTokenCache(adapterConfig.getTokenCacheSize()));
+        }
+        deployment.setTokenRefreshSkew(adapterConfig.getTokenRefreshSkew());
+
         if (adapterConfig.isBearerOnly()) {
         }
 
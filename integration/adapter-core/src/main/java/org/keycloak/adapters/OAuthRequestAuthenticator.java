@@ -271,7 +271,7 @@ public abstract class OAuthRequestAuthenticator {
         refreshToken = tokenResponse.getRefreshToken();
         idTokenString = tokenResponse.getIdToken();
         try {
-            token = RSATokenVerifier.verifyToken(tokenString, deployment.getRealmKey(), deployment.getRealm());
+            token = RSATokenVerifier.verifyToken(tokenString, deployment.getRealmKeyPool(), deployment.getRealm());
             if (idTokenString != null) {
                 JWSInput input = new JWSInput(idTokenString);
                 try {
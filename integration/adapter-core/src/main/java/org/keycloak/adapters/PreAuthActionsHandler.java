@@ -3,7 +3,6 @@ package org.keycloak.adapters;
 import org.jboss.logging.Logger;
 import org.keycloak.Version;
 import org.keycloak.jose.jws.JWSInput;
-import org.keycloak.jose.jws.crypto.RSAProvider;
 import org.keycloak.representations.adapters.action.AdminAction;
 import org.keycloak.representations.adapters.action.LogoutAction;
 import org.keycloak.representations.adapters.action.PushNotBeforeAction;
@@ -172,7 +171,7 @@ public class PreAuthActionsHandler {
         JWSInput input = new JWSInput(token);
         boolean verified = false;
         try {
-            verified = RSAProvider.verify(input, deployment.getRealmKey());
+            verified = deployment.getRealmKeyPool().verify(input);
         } catch (Exception ignore) {
         }
         if (!verified) {
@@ -7,8 +7,11 @@ import org.keycloak.VerificationException;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.representations.AccessTokenResponse;
 import org.keycloak.representations.IDToken;
+import org.keycloak.util.Time;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -18,8 +21,17 @@ public class RefreshableKeycloakSecurityContext extends KeycloakSecurityContext
 
     protected static Logger log = Logger.getLogger(RefreshableKeycloakSecurityContext.class);
 
+    protected static final long MIN_REFRESH_BACKOFF = 1000;
+    protected static final long MAX_REFRESH_BACKOFF = 60000;
+
     protected transient KeycloakDeployment deployment;
-    protected String refreshToken;
+    protected volatile String refreshToken;
+
+    // guarded by the lock on this
+    protected transient boolean refreshing;
+    protected transient int refreshFailures;
+    // no refresh is attempted before this time after a failed one
+    protected transient volatile long nextRefreshAttempt;
 
     public RefreshableKeycloakSecurityContext() {
     }
@@ -62,40 +74,137 @@ public class RefreshableKeycloakSecurityContext extends KeycloakSecurityContext
         this.deployment = deployment;
     }
 
+    /**
+     * Refreshes the token if it has expired. Only one refresh runs at a time, concurrent callers wait for it and use
+     * the token it obtained. If the deployment has a token refresh skew, a token that's still active but expires
+     * within the skew is refreshed in the background instead, while callers keep getting the current token.
+     * <p/>
+     * The request to the server is sent without holding the lock, so callers with an active token never wait for it.
+     * After a failed refresh, no new attempt is made for a while, starting at a second and doubling up to a minute.
+     */
     public void refreshExpiredToken() {
-        log.info("checking whether to refresh.");
-        if (isActive()) return;
+        if (isActive()) {
+            if (refreshToken != null && isExpiring()) {
+                refreshInBackground();
+            }
+            return;
+        }
         if (this.deployment == null || refreshToken == null) return; // Might be serialized in HttpSession?
+        if (isBackingOff()) return;
+
+        synchronized (this) {
+            while (refreshing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            // the refresh that was running may have obtained a new token, or failed
+            if (isActive() || isBackingOff()) return;
+            refreshing = true;
+        }
+        refresh();
+    }
+
+    /**
+     * Returns true if the token expires within the token refresh skew of the deployment
+     */
+    protected boolean isExpiring() {
+        int skew = deployment != null ? deployment.getTokenRefreshSkew() : 0;
+        return skew > 0 && token.getExpiration() != 0 && token.getExpiration() - skew <= Time.currentTime();
+    }
+
+    protected boolean isBackingOff() {
+        return System.currentTimeMillis() < nextRefreshAttempt;
+    }
+
+    protected void refreshInBackground() {
+        if (isBackingOff()) return;
+        Executor executor = deployment.getRefreshExecutor();
+        if (executor == null) return;
+
+        synchronized (this) {
+            if (refreshing) return;
+            refreshing = true;
+        }
+        try {
+            executor.execute(new BackgroundRefresh());
+        } catch (RejectedExecutionException e) {
+            cancelRefresh();
+            log.debug("Background token refresh rejected, token will be refreshed when it expires");
+        }
+    }
 
-        log.info("Doing refresh");
+    /**
+     * Clears <code>refreshing</code> for a refresh that won't run, and wakes up the callers waiting for it
+     */
+    protected synchronized void cancelRefresh() {
+        refreshing = false;
+        notifyAll();
+    }
+
+    /**
+     * Obtains a new token from the server and stores it. Must only be called by the thread that set
+     * <code>refreshing</code>, which is cleared when done.
+     */
+    protected void refresh() {
         AccessTokenResponse response = null;
+        AccessToken token = null;
         try {
-            response = ServerRequest.invokeRefresh(deployment, refreshToken);
+            log.debug("Doing refresh");
+            response = invokeRefresh();
+            log.debug("received refresh response");
+            token = RSATokenVerifier.verifyToken(response.getToken(), deployment.getRealmKeyPool(), deployment.getRealm());
+            log.debug("Token Verification succeeded!");
         } catch (IOException e) {
             log.error("Refresh token failure", e);
-            return;
         } catch (ServerRequest.HttpFailure httpFailure) {
             log.error("Refresh token failure status: " + httpFailure.getStatus() + " " + httpFailure.getError());
-            return;
-        }
-        log.info("received refresh response");
-        String tokenString = response.getToken();
-        AccessToken token = null;
-        try {
-            token = RSATokenVerifier.verifyToken(tokenString, deployment.getRealmKey(), deployment.getRealm());
-            log.info("Token Verification succeeded!");
         } catch (VerificationException e) {
             log.error("failed verification of token");
+        } finally {
+            synchronized (this) {
+                if (token != null) {
+                    if (response.getNotBeforePolicy() > deployment.getNotBefore()) {
+                        deployment.setNotBefore(response.getNotBeforePolicy());
+                    }
+                    this.refreshToken = response.getRefreshToken();
+                    this.tokenString = response.getToken();
+                    this.token = token;
+                    refreshFailures = 0;
+                    nextRefreshAttempt = 0;
+                } else {
+                    refreshFailures++;
+                    long backoff = Math.min(MAX_REFRESH_BACKOFF, MIN_REFRESH_BACKOFF << Math.min(refreshFailures - 1, 16));
+                    nextRefreshAttempt = System.currentTimeMillis() + backoff;
+                }
+                refreshing = false;
+                notifyAll();
+            }
         }
-        if (response.getNotBeforePolicy() > deployment.getNotBefore()) {
-            deployment.setNotBefore(response.getNotBeforePolicy());
+    }
+
+    protected AccessTokenResponse invokeRefresh() throws IOException, ServerRequest.HttpFailure {
+        return ServerRequest.invokeRefresh(deployment, refreshToken);
+    }
+
+    /**
+     * A refresh queued on the refresh executor of the deployment. If the executor discards it, for example when the
+     * deployment is closed, it must be cancelled.
+     */
+    public class BackgroundRefresh implements Runnable {
+
+        @Override
+        public void run() {
+            refresh();
         }
 
-        this.token = token;
-        this.refreshToken = response.getRefreshToken();
-        this.tokenString = tokenString;
+        public void cancel() {
+            cancelRefresh();
+        }
 
     }
 
-
 }
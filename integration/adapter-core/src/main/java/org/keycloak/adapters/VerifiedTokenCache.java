@@ -0,0 +1,185 @@
+package org.keycloak.adapters;
+
+import org.keycloak.representations.AccessToken;
+import org.keycloak.util.Time;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bearer tokens that passed signature verification, so a token sent repeatedly is only verified and parsed once.
+ * Entries are keyed by a SHA-256 digest of the token, so the token string itself isn't kept, and expire with the token.
+ * Tokens without a signature or an expiration aren't cached.
+ * <p/>
+ * A hit returns the same {@link AccessToken} instance to every request that sends the token. The adapter only reads
+ * it, and applications must treat the token of a bearer request as read-only too.
+ * <p/>
+ * When the cache is full, expired entries are purged. If it's still full, new tokens aren't cached until older ones
+ * expire. The cache tracks the earliest expiration of its entries, so a full cache is only scanned once that time has
+ * passed, which is at most once per second.
+ */
+public class VerifiedTokenCache {
+
+    protected final int maxSize;
+    protected final ConcurrentHashMap<Key, AccessToken> entries = new ConcurrentHashMap<Key, AccessToken>();
+
+    // no entry expires before this time, it may be earlier than the actual earliest expiration but never later
+    protected final AtomicInteger nextExpiration = new AtomicInteger(Integer.MAX_VALUE);
+    protected final AtomicBoolean purging = new AtomicBoolean();
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong purges = new AtomicLong();
+
+    public VerifiedTokenCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the verified token, or <code>null</code> if the token isn't cached or has expired
+     */
+    public AccessToken get(String tokenString) {
+        Key key = getKey(tokenString);
+        AccessToken token = key != null ? entries.get(key) : null;
+        if (token == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (!token.isActive()) {
+            entries.remove(key, token);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return token;
+    }
+
+    public void put(String tokenString, AccessToken token) {
+        if (token.getExpiration() == 0) return;
+        Key key = getKey(tokenString);
+        if (key == null) return;
+
+        if (entries.size() >= maxSize) {
+            if (Time.currentTime() > nextExpiration.get()) {
+                purgeExpired();
+            }
+            if (entries.size() >= maxSize) return;
+        }
+        entries.put(key, token);
+        // after adding, so either a concurrent purge sees the entry or this lowers the value it resets
+        updateNextExpiration(token.getExpiration());
+    }
+
+    /**
+     * Removes tokens issued before the given time, called when a not before policy is pushed to the application
+     */
+    public void removeIssuedBefore(int notBefore) {
+        Iterator<AccessToken> itr = entries.values().iterator();
+        while (itr.hasNext()) {
+            if (itr.next().getIssuedAt() < notBefore) {
+                itr.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Removes expired entries and recomputes the earliest expiration. Only one thread purges at a time, others carry on
+     * without waiting.
+     */
+    protected void purgeExpired() {
+        if (!purging.compareAndSet(false, true)) return;
+        try {
+            // entries added while purging lower the value again
+            nextExpiration.set(Integer.MAX_VALUE);
+
+            int currentTime = Time.currentTime();
+            Iterator<AccessToken> itr = entries.values().iterator();
+            while (itr.hasNext()) {
+                int expiration = itr.next().getExpiration();
+                if (expiration < currentTime) {
+                    itr.remove();
+                } else {
+                    updateNextExpiration(expiration);
+                }
+            }
+            purges.incrementAndGet();
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    protected void updateNextExpiration(int expiration) {
+        int current;
+        while (expiration < (current = nextExpiration.get())) {
+            if (nextExpiration.compareAndSet(current, expiration)) return;
+        }
+    }
+
+    protected static Key getKey(String tokenString) {
+        int i = tokenString.lastIndexOf('.');
+        if (i == -1 || i == tokenString.length() - 1) return null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return new Key(digest.digest(tokenString.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of times the cache was scanned for expired entries
+     */
+    public long getPurges() {
+        return purges.get();
+    }
+
+    protected static class Key {
+        protected final byte[] digest;
+        protected final int hash;
+
+        protected Key(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(digest, ((Key) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package org.keycloak.adapters;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.jose.jws.JWSInput;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.representations.AccessTokenResponse;
+import org.keycloak.util.Time;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RefreshableKeycloakSecurityContextTest {
+
+    private static KeyPair keyPair;
+
+    private KeycloakDeployment deployment;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+    }
+
+    @Before
+    public void before() {
+        deployment = new KeycloakDeployment();
+        deployment.setRealm("test");
+        deployment.setRealmKey(keyPair.getPublic());
+        deployment.setTokenRefreshSkew(30);
+    }
+
+    @After
+    public void after() {
+        deployment.close();
+    }
+
+    @Test
+    public void readerNotBlockedByBackgroundRefresh() throws Exception {
+        String oldTokenString = tokenString("old", Time.currentTime() + 10);
+        String newTokenString = tokenString("new", Time.currentTime() + 300);
+        TestContext context = new TestContext(deployment, oldTokenString, newTokenString);
+
+        // expires within the skew, so the refresh runs in the background
+        Assert.assertEquals("old", context.getToken().getId());
+        Assert.assertTrue(context.started.await(10, TimeUnit.SECONDS));
+
+        // the refresh is blocked on the server, readers still get the current token right away
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("old", context.getToken().getId());
+            Assert.assertEquals(oldTokenString, context.getTokenString());
+        }
+
+        context.release.countDown();
+        awaitToken(context, "new");
+        Assert.assertEquals(newTokenString, context.getTokenString());
+        Assert.assertEquals("new-refresh", context.refreshToken);
+        Assert.assertEquals(1, context.invocations.get());
+    }
+
+    @Test
+    public void waitForRefreshOfExpiredToken() throws Exception {
+        final TestContext context = new TestContext(deployment, tokenString("old", Time.currentTime() - 10), tokenString("new", Time.currentTime() + 300));
+        context.release.countDown();
+
+        Thread[] threads = new Thread[5];
+        final AtomicInteger refreshed = new AtomicInteger();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    if ("new".equals(context.getToken().getId())) refreshed.incrementAndGet();
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        Assert.assertEquals(threads.length, refreshed.get());
+        Assert.assertEquals(1, context.invocations.get());
+    }
+
+    @Test
+    public void backOffAfterFailedRefresh() {
+        TestContext context = new TestContext(deployment, tokenString("old", Time.currentTime() - 10), null);
+        context.release.countDown();
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("old", context.getToken().getId());
+        }
+
+        Assert.assertEquals(1, context.invocations.get());
+        Assert.assertTrue(context.isBackingOff());
+    }
+
+    @Test
+    public void noBackgroundRefreshAfterClose() {
+        TestContext context = new TestContext(deployment, tokenString("old", Time.currentTime() + 10), tokenString("new", Time.currentTime() + 300));
+        context.release.countDown();
+        deployment.close();
+
+        Assert.assertEquals("old", context.getToken().getId());
+        Assert.assertEquals(0, context.invocations.get());
+    }
+
+    @Test
+    public void queuedRefreshReleasedOnClose() throws Exception {
+        // the refresh executor has 4 threads, so the refresh of the last context is queued
+        TestContext[] contexts = new TestContext[5];
+        for (int i = 0; i < contexts.length; i++) {
+            contexts[i] = new TestContext(deployment, tokenString("old", Time.currentTime() + 10), tokenString("new", Time.currentTime() + 300));
+            Assert.assertEquals("old", contexts[i].getToken().getId());
+            if (i < 4) {
+                Assert.assertTrue(contexts[i].started.await(10, TimeUnit.SECONDS));
+            }
+        }
+        final TestContext queued = contexts[4];
+        Assert.assertEquals(0, queued.invocations.get());
+
+        deployment.close();
+        synchronized (queued) {
+            Assert.assertFalse(queued.refreshing);
+        }
+
+        // once the token expires, callers refresh it themselves instead of waiting for the discarded refresh
+        queued.expire(tokenString("old", Time.currentTime() - 10));
+        queued.release.countDown();
+        final String[] id = new String[1];
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                id[0] = queued.getToken().getId();
+            }
+        };
+        reader.start();
+        reader.join(10000);
+
+        Assert.assertFalse(reader.isAlive());
+        Assert.assertEquals("new", id[0]);
+        Assert.assertEquals(1, queued.invocations.get());
+    }
+
+    private void awaitToken(TestContext context, String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!id.equals(context.getToken().getId())) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Expected token " + id);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private String tokenString(String id, int expiration) {
+        AccessToken token = new AccessToken();
+        token.id(id);
+        token.subject("user");
+        token.issuedAt(Time.currentTime() - 10);
+        token.audience("test");
+        token.expiration(expiration);
+        return new JWSBuilder().jsonContent(token).rsa256(keyPair.getPrivate());
+    }
+
+    /**
+     * Context that gets the refreshed token once <code>release</code> is counted down, or fails if there is no new
+     * token
+     */
+    private static class TestContext extends RefreshableKeycloakSecurityContext {
+
+        private final String newTokenString;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        private TestContext(KeycloakDeployment deployment, String tokenString, String newTokenString) {
+            super(deployment, tokenString, parse(tokenString), null, null, "old-refresh");
+            this.newTokenString = newTokenString;
+        }
+
+        private synchronized void expire(String tokenString) {
+            this.tokenString = tokenString;
+            this.token = parse(tokenString);
+        }
+
+        @Override
+        protected AccessTokenResponse invokeRefresh() throws IOException, ServerRequest.HttpFailure {
+            invocations.incrementAndGet();
+            started.countDown();
+            try {
+                if (!release.await(10, TimeUnit.SECONDS)) throw new IOException("Not released");
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (newTokenString == null) throw new IOException("Refresh failed");
+
+            AccessTokenResponse response = new AccessTokenResponse();
+            response.setToken(newTokenString);
+            response.setRefreshToken("new-refresh");
+            return response;
+        }
+
+    }
+
+    private static AccessToken parse(String tokenString) {
+        try {
+            return new JWSInput(tokenString).readJsonContent(AccessToken.class);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package org.keycloak.adapters;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.util.Time;
+
+public class VerifiedTokenCacheTest {
+
+    @Test
+    public void hit() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        AccessToken token = token(Time.currentTime() + 100);
+        cache.put("header.content.signature", token);
+
+        Assert.assertSame(token, cache.get("header.content.signature"));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void miss() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+
+        Assert.assertNull(cache.get("header.content.signature"));
+        Assert.assertNull(cache.get("unsigned"));
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void staleContent() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put("header.content.signature", token(Time.currentTime() + 100));
+
+        // same signature, but not the token that was verified
+        Assert.assertNull(cache.get("header.other.signature"));
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void keyedByDigest() {
+        StringBuilder signature = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            signature.append('s');
+        }
+        VerifiedTokenCache.Key key = VerifiedTokenCache.getKey("header.content." + signature);
+
+        // the key doesn't keep the token, however large it is
+        Assert.assertEquals(32, key.digest.length);
+        Assert.assertEquals(key, VerifiedTokenCache.getKey("header.content." + signature));
+        Assert.assertFalse(key.equals(VerifiedTokenCache.getKey("header.other." + signature)));
+    }
+
+    @Test
+    public void staleNotBefore() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        AccessToken old = token(Time.currentTime() + 100);
+        old.issuedAt(Time.currentTime() - 50);
+        AccessToken current = token(Time.currentTime() + 100);
+        current.issuedAt(Time.currentTime());
+        cache.put("a.a.old", old);
+        cache.put("a.a.current", current);
+
+        cache.removeIssuedBefore(Time.currentTime() - 10);
+
+        Assert.assertNull(cache.get("a.a.old"));
+        Assert.assertSame(current, cache.get("a.a.current"));
+    }
+
+    @Test
+    public void expired() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put("a.a.expired", token(Time.currentTime() - 10));
+
+        Assert.assertNull(cache.get("a.a.expired"));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void notCachedWithoutExpiration() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put("a.a.b", token(0));
+
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void capacity() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(5);
+        for (int i = 0; i < 5; i++) {
+            cache.put("a.a.token" + i, token(Time.currentTime() + 100));
+        }
+
+        for (int i = 5; i < 1000; i++) {
+            cache.put("a.a.token" + i, token(Time.currentTime() + 100));
+            Assert.assertNull(cache.get("a.a.token" + i));
+        }
+
+        Assert.assertEquals(5, cache.size());
+        Assert.assertNotNull(cache.get("a.a.token0"));
+        // nothing has expired yet, so the full cache is never scanned
+        Assert.assertEquals(0, cache.getPurges());
+    }
+
+    @Test
+    public void fullCachePurgesExpired() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(5);
+        cache.put("a.a.expired", token(Time.currentTime() - 10));
+        for (int i = 0; i < 4; i++) {
+            cache.put("a.a.token" + i, token(Time.currentTime() + 100));
+        }
+
+        cache.put("a.a.new", token(Time.currentTime() + 100));
+        cache.put("a.a.rejected", token(Time.currentTime() + 100));
+
+        Assert.assertEquals(5, cache.size());
+        Assert.assertNotNull(cache.get("a.a.new"));
+        Assert.assertNull(cache.get("a.a.rejected"));
+        Assert.assertEquals(1, cache.getPurges());
+    }
+
+    private AccessToken token(int expiration) {
+        AccessToken token = new AccessToken();
+        token.expiration(expiration);
+        return token;
+    }
+
+}
@@ -74,6 +74,7 @@ public class KeycloakAuthenticatorValve extends FormAuthenticator implements Lif
     @Override
     public void lifecycleEvent(LifecycleEvent event) {
         if (event.getType() == Lifecycle.AFTER_START_EVENT) init();
+        else if (event.getType() == Lifecycle.STOP_EVENT && deploymentContext != null) deploymentContext.close();
     }
 
     private static InputStream getJSONFromServletContext(ServletContext servletContext) {
@@ -171,10 +172,8 @@ public class KeycloakAuthenticatorValve extends FormAuthenticator implements Lif
         if (session == null) return;
         // just in case session got serialized
         if (session.getDeployment() == null) session.setDeployment(deploymentContext.resolveDeployment(facade));
-        if (session.isActive()) return;
-
         // FYI: A refresh requires same scope, so same roles will be set.  Otherwise, refresh will fail and token will
-        // not be updated
+        // not be updated.  An active token is only refreshed in the background if it's about to expire
         session.refreshExpiredToken();
         if (session.isActive()) return;
 
@@ -191,7 +191,7 @@ public class KeycloakInstalled {
         refreshToken = tokenResponse.getRefreshToken();
         idTokenString = tokenResponse.getIdToken();
 
-        token = RSATokenVerifier.verifyToken(tokenString, deployment.getRealmKey(), deployment.getRealm());
+        token = RSATokenVerifier.verifyToken(tokenString, deployment.getRealmKeyPool(), deployment.getRealm());
         if (idTokenString != null) {
             JWSInput input = new JWSInput(idTokenString);
             try {
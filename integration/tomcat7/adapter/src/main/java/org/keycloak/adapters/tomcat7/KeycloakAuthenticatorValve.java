@@ -57,6 +57,8 @@ public class KeycloakAuthenticatorValve extends FormAuthenticator implements Lif
             }
         } else if (Lifecycle.AFTER_START_EVENT.equals(event.getType())) {
         	initInternal();
+        } else if (Lifecycle.STOP_EVENT.equals(event.getType()) && deploymentContext != null) {
+            deploymentContext.close();
         }
     }
     
@@ -177,10 +179,8 @@ public class KeycloakAuthenticatorValve extends FormAuthenticator implements Lif
         if (session == null) return;
         // just in case session got serialized
         if (session.getDeployment() == null) session.setDeployment(deploymentContext.resolveDeployment(facade));
-        if (session.isActive()) return;
-
         // FYI: A refresh requires same scope, so same roles will be set.  Otherwise, refresh will fail and token will
-        // not be updated
+        // not be updated.  An active token is only refreshed in the background if it's about to expire
         session.refreshExpiredToken();
         if (session.isActive()) return;
 
@@ -25,8 +25,10 @@ import io.undertow.server.handlers.form.FormParserFactory;
 import io.undertow.servlet.ServletExtension;
 import io.undertow.servlet.api.AuthMethodConfig;
 import io.undertow.servlet.api.DeploymentInfo;
+import io.undertow.servlet.api.ListenerInfo;
 import io.undertow.servlet.api.LoginConfig;
 import io.undertow.servlet.api.ServletSessionConfig;
+import io.undertow.servlet.util.ImmediateInstanceFactory;
 import org.jboss.logging.Logger;
 import org.keycloak.adapters.AdapterConstants;
 import org.keycloak.adapters.AdapterDeploymentContext;
@@ -34,6 +36,8 @@ import org.keycloak.adapters.KeycloakDeployment;
 import org.keycloak.adapters.KeycloakDeploymentBuilder;
 
 import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
 import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -106,6 +110,7 @@ public class KeycloakServletExtension implements ServletExtension {
         }
         AdapterDeploymentContext deploymentContext = new AdapterDeploymentContext(deployment);
         servletContext.setAttribute(AdapterDeploymentContext.class.getName(), deploymentContext);
+        deploymentInfo.addListener(new ListenerInfo(DeploymentContextCloser.class, new ImmediateInstanceFactory<DeploymentContextCloser>(new DeploymentContextCloser(deploymentContext))));
         UndertowUserSessionManagement userSessionManagement = new UndertowUserSessionManagement();
         final ServletKeycloakAuthMech mech = createAuthenticationMechanism(deploymentInfo, deploymentContext, userSessionManagement);
 
@@ -145,6 +150,26 @@ public class KeycloakServletExtension implements ServletExtension {
         deploymentInfo.setServletSessionConfig(cookieConfig);
     }
 
+    /**
+     * Closes the deployment context when the application is undeployed
+     */
+    protected static class DeploymentContextCloser implements ServletContextListener {
+        private final AdapterDeploymentContext deploymentContext;
+
+        public DeploymentContextCloser(AdapterDeploymentContext deploymentContext) {
+            this.deploymentContext = deploymentContext;
+        }
+
+        @Override
+        public void contextInitialized(ServletContextEvent sce) {
+        }
+
+        @Override
+        public void contextDestroyed(ServletContextEvent sce) {
+            deploymentContext.close();
+        }
+    }
+
     protected ServletKeycloakAuthMech createAuthenticationMechanism(DeploymentInfo deploymentInfo, AdapterDeploymentContext deploymentContext, UndertowUserSessionManagement userSessionManagement) {
        log.debug("creating ServletKeycloakAuthMech");
        return new ServletKeycloakAuthMech(deploymentContext, userSessionManagement, deploymentInfo.getConfidentialPortManager());
@@ -88,7 +88,9 @@ public class KeycloakUndertowAccount implements Account, Serializable, KeycloakA
     public boolean isActive() {
         // this object may have been serialized, so we need to reset realm config/metadata
         if (session.isActive()) {
-            log.info("session is active");
+            log.debug("session is active");
+            // starts a background refresh if the token is about to expire
+            session.refreshExpiredToken();
             return true;
         }
 
@@ -0,0 +1,23 @@
+package org.keycloak.models;
+
+/**
+ * Thrown when a request can't be served right now because of load, for example when the password hashing queue is
+ * full. The request can be retried later.
+ */
+public class ModelUnavailableException extends ModelException {
+
+    public ModelUnavailableException() {
+    }
+
+    public ModelUnavailableException(String message) {
+        super(message);
+    }
+
+    public ModelUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public ModelUnavailableException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,26 @@
+package org.keycloak.models;
+
+import org.keycloak.provider.Provider;
+
+/**
+ * Hashes passwords off the request thread
+ */
+public interface PasswordHashingProvider extends Provider {
+
+    /**
+     * @throws ModelUnavailableException if the hashing queue is full
+     */
+    boolean verify(String rawPassword, byte[] salt, String encodedPassword, int iterations);
+
+    /**
+     * @throws ModelUnavailableException if the hashing queue is full
+     */
+    String encode(String rawPassword, byte[] salt, int iterations);
+
+    /**
+     * Runs a task, such as re-hashing a password and storing it, without delaying logins. Returns <code>false</code>
+     * if it can't be queued.
+     */
+    boolean executeInBackground(Runnable task);
+
+}
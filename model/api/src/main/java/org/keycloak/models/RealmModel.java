@@ -92,6 +92,14 @@ public interface RealmModel extends RoleContainerModel {
 
     void setPrivateKeyPem(String privateKeyPem);
 
+    String getCodeSecret();
+
+    void setCodeSecret(String codeSecret);
+
+    String getPreviousCodeSecret();
+
+    void setPreviousCodeSecret(String previousCodeSecret);
+
     PublicKey getPublicKey();
 
     void setPublicKey(PublicKey publicKey);
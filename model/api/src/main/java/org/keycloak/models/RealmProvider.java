@@ -20,6 +20,7 @@ public interface RealmProvider extends Provider {
     ApplicationModel getApplicationById(String id, RealmModel realm);
     OAuthClientModel getOAuthClientById(String id, RealmModel realm);
     List<RealmModel> getRealms();
+    List<String> getRealmIds();
     boolean removeRealm(String id);
 
     void close();
@@ -40,6 +40,8 @@ public class RealmEntity extends AbstractIdentifiableEntity {
 
     private String publicKeyPem;
     private String privateKeyPem;
+    private String codeSecret;
+    private String previousCodeSecret;
 
     private String loginTheme;
     private String accountTheme;
@@ -270,6 +272,22 @@ public class RealmEntity extends AbstractIdentifiableEntity {
         this.privateKeyPem = privateKeyPem;
     }
 
+    public String getCodeSecret() {
+        return codeSecret;
+    }
+
+    public void setCodeSecret(String codeSecret) {
+        this.codeSecret = codeSecret;
+    }
+
+    public String getPreviousCodeSecret() {
+        return previousCodeSecret;
+    }
+
+    public void setPreviousCodeSecret(String previousCodeSecret) {
+        this.previousCodeSecret = previousCodeSecret;
+    }
+
     public String getLoginTheme() {
         return loginTheme;
     }
@@ -1,7 +1,12 @@
 package org.keycloak.models.utils;
 
+import org.jboss.logging.Logger;
 import org.keycloak.jose.jws.JWSInput;
 import org.keycloak.jose.jws.crypto.RSAProvider;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.KeycloakSessionTask;
+import org.keycloak.models.PasswordHashingProvider;
 import org.keycloak.models.PasswordPolicy;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserCredentialModel;
@@ -11,7 +16,10 @@ import org.keycloak.representations.PasswordToken;
 import org.keycloak.util.Time;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -19,6 +27,10 @@ import java.util.List;
  */
 public class CredentialValidation {
 
+    private static final Logger logger = Logger.getLogger(CredentialValidation.class);
+
+    private static final Set<String> pendingUpdates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     private static int hashIterations(RealmModel realm) {
         PasswordPolicy policy = realm.getPasswordPolicy();
         if (policy != null) {
@@ -37,24 +49,45 @@ public class CredentialValidation {
      * @return
      */
     public static boolean validPassword(RealmModel realm, UserModel user, String password) {
+        return validPassword(null, realm, user, password);
+    }
+
+    /**
+     * Will update password if hash iteration policy has changed. Hashing runs on the {@link PasswordHashingProvider} of
+     * the session, and the password is re-hashed in the background, in its own transaction, so the login doesn't wait
+     * for it. If the background queue is full the update is skipped and done on a later login.
+     *
+     * @param session
+     * @param realm
+     * @param user
+     * @param password
+     * @return
+     * @throws org.keycloak.models.ModelUnavailableException if the password hashing queue is full
+     */
+    public static boolean validPassword(KeycloakSession session, RealmModel realm, UserModel user, String password) {
+        PasswordHashingProvider hashing = session != null ? session.getProvider(PasswordHashingProvider.class) : null;
+
         boolean validated = false;
         UserCredentialValueModel passwordCred = null;
         for (UserCredentialValueModel cred : user.getCredentialsDirectly()) {
             if (cred.getType().equals(UserCredentialModel.PASSWORD)) {
-                validated = new Pbkdf2PasswordEncoder(cred.getSalt()).verify(password, cred.getValue(), cred.getHashIterations());
+                if (hashing != null) {
+                    validated = hashing.verify(password, cred.getSalt(), cred.getValue(), cred.getHashIterations());
+                } else {
+                    validated = new Pbkdf2PasswordEncoder(cred.getSalt()).verify(password, cred.getValue(), cred.getHashIterations());
+                }
                 passwordCred = cred;
             }
         }
         if (validated) {
             int iterations = hashIterations(realm);
             if (iterations > -1 && iterations != passwordCred.getHashIterations()) {
-                UserCredentialValueModel newCred = new UserCredentialValueModel();
-                newCred.setType(passwordCred.getType());
-                newCred.setDevice(passwordCred.getDevice());
-                newCred.setSalt(passwordCred.getSalt());
-                newCred.setHashIterations(iterations);
-                newCred.setValue(new Pbkdf2PasswordEncoder(newCred.getSalt()).encode(password, iterations));
-                user.updateCredentialDirectly(newCred);
+                if (hashing != null) {
+                    updatePasswordInBackground(hashing, session.getKeycloakSessionFactory(), realm.getId(), user.getId(), passwordCred, password, iterations);
+                } else {
+                    String value = new Pbkdf2PasswordEncoder(passwordCred.getSalt()).encode(password, iterations);
+                    user.updateCredentialDirectly(upgradedCredential(passwordCred, value, iterations));
+                }
             }
 
         }
@@ -62,6 +95,57 @@ public class CredentialValidation {
 
     }
 
+    private static void updatePasswordInBackground(PasswordHashingProvider hashing, final KeycloakSessionFactory sessionFactory, final String realmId, final String userId,
+                                                   final UserCredentialValueModel passwordCred, final String password, final int iterations) {
+        // only one update per user at a time
+        if (!pendingUpdates.add(userId)) return;
+
+        boolean scheduled = false;
+        try {
+            scheduled = hashing.executeInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final String value = new Pbkdf2PasswordEncoder(passwordCred.getSalt()).encode(password, iterations);
+                        KeycloakModelUtils.runJobInTransaction(sessionFactory, new KeycloakSessionTask() {
+                            @Override
+                            public void run(KeycloakSession session) {
+                                RealmModel realm = session.realms().getRealm(realmId);
+                                if (realm == null) return;
+                                UserModel user = session.users().getUserById(userId, realm);
+                                if (user == null) return;
+
+                                for (UserCredentialValueModel cred : user.getCredentialsDirectly()) {
+                                    // skip if the password was changed in the meantime
+                                    if (cred.getType().equals(UserCredentialModel.PASSWORD) && passwordCred.getValue().equals(cred.getValue())) {
+                                        user.updateCredentialDirectly(upgradedCredential(passwordCred, value, iterations));
+                                        logger.debugv("Updated hash iterations of user {0} to {1}", userId, iterations);
+                                    }
+                                }
+                            }
+                        });
+                    } finally {
+                        pendingUpdates.remove(userId);
+                    }
+                }
+            });
+        } finally {
+            if (!scheduled) {
+                pendingUpdates.remove(userId);
+            }
+        }
+    }
+
+    private static UserCredentialValueModel upgradedCredential(UserCredentialValueModel passwordCred, String value, int iterations) {
+        UserCredentialValueModel newCred = new UserCredentialValueModel();
+        newCred.setType(passwordCred.getType());
+        newCred.setDevice(passwordCred.getDevice());
+        newCred.setSalt(passwordCred.getSalt());
+        newCred.setHashIterations(iterations);
+        newCred.setValue(value);
+        return newCred;
+    }
+
     public static boolean validPasswordToken(RealmModel realm, UserModel user, String encodedPasswordToken) {
         JWSInput jws = new JWSInput(encodedPasswordToken);
         if (!RSAProvider.verify(jws, realm.getPublicKey())) {
@@ -115,30 +199,58 @@ public class CredentialValidation {
      * @return
      */
     public static boolean validCredentials(RealmModel realm, UserModel user, List<UserCredentialModel> credentials) {
+        return validCredentials(null, realm, user, credentials);
+    }
+
+    /**
+     * Must validate all credentials.  FYI, password hashes may be rehashed and updated based on realm hash password policies.
+     *
+     * @param realm
+     * @param user
+     * @param credentials
+     * @return
+     */
+    public static boolean validCredentials(RealmModel realm, UserModel user, UserCredentialModel... credentials) {
+        return validCredentials(null, realm, user, credentials);
+    }
+
+    /**
+     * Must validate all credentials.  FYI, password hashes may be rehashed and updated in the background based on realm
+     * hash password policies.
+     *
+     * @param session
+     * @param realm
+     * @param user
+     * @param credentials
+     * @return
+     */
+    public static boolean validCredentials(KeycloakSession session, RealmModel realm, UserModel user, List<UserCredentialModel> credentials) {
         for (UserCredentialModel credential : credentials) {
-            if (!validCredential(realm, user, credential)) return false;
+            if (!validCredential(session, realm, user, credential)) return false;
         }
         return true;
     }
 
     /**
-     * Must validate all credentials.  FYI, password hashes may be rehashed and updated based on realm hash password policies.
+     * Must validate all credentials.  FYI, password hashes may be rehashed and updated in the background based on realm
+     * hash password policies.
      *
+     * @param session
      * @param realm
      * @param user
      * @param credentials
      * @return
      */
-    public static boolean validCredentials(RealmModel realm, UserModel user, UserCredentialModel... credentials) {
+    public static boolean validCredentials(KeycloakSession session, RealmModel realm, UserModel user, UserCredentialModel... credentials) {
         for (UserCredentialModel credential : credentials) {
-            if (!validCredential(realm, user, credential)) return false;
+            if (!validCredential(session, realm, user, credential)) return false;
         }
         return true;
     }
 
-    private static boolean validCredential(RealmModel realm, UserModel user, UserCredentialModel credential) {
+    private static boolean validCredential(KeycloakSession session, RealmModel realm, UserModel user, UserCredentialModel credential) {
         if (credential.getType().equals(UserCredentialModel.PASSWORD)) {
-            if (!validPassword(realm, user, credential.getValue())) {
+            if (!validPassword(session, realm, user, credential.getValue())) {
                 return false;
             }
         } else if (credential.getType().equals(UserCredentialModel.PASSWORD_TOKEN)) {
@@ -0,0 +1,51 @@
+package org.keycloak.models.utils;
+
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.PasswordHashingProvider;
+import org.keycloak.models.PasswordHashingProviderFactory;
+import org.keycloak.provider.ProviderStatistics;
+
+import java.util.Map;
+
+/**
+ * Creates the {@link PasswordHashing} pool shared by all sessions, configured by:
+ * <ul>
+ * <li><code>threads</code> - number of hashing threads, defaults to the number of processors</li>
+ * <li><code>queueSize</code> - hashes waiting for a thread (default 100)</li>
+ * <li><code>maxWait</code> - milliseconds to wait for a slot in a full queue (default 5000)</li>
+ * </ul>
+ */
+public class DefaultPasswordHashingProviderFactory implements PasswordHashingProviderFactory, ProviderStatistics {
+
+    private PasswordHashing hashing;
+
+    @Override
+    public PasswordHashingProvider create(KeycloakSession session) {
+        return hashing;
+    }
+
+    @Override
+    public void init(Config.Scope config) {
+        hashing = new PasswordHashing(config.getInt("threads", Runtime.getRuntime().availableProcessors()),
+                config.getInt("queueSize", PasswordHashing.DEFAULT_QUEUE_SIZE), config.getLong("maxWait", PasswordHashing.DEFAULT_MAX_WAIT));
+    }
+
+    @Override
+    public void close() {
+        if (hashing != null) {
+            hashing.shutdown();
+        }
+    }
+
+    @Override
+    public String getId() {
+        return "default";
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        return hashing.getStats();
+    }
+
+}
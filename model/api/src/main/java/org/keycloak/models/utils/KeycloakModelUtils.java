@@ -84,6 +84,16 @@ public final class KeycloakModelUtils {
         }
         realm.setPrivateKey(keyPair.getPrivate());
         realm.setPublicKey(keyPair.getPublic());
+        generateCodeSecret(realm);
+    }
+
+    /**
+     * Generates a new secret used to sign access codes. The current secret becomes the previous secret, so codes
+     * already handed out remain valid until the next rotation.
+     */
+    public static void generateCodeSecret(RealmModel realm) {
+        realm.setPreviousCodeSecret(realm.getCodeSecret());
+        realm.setCodeSecret(generateId());
     }
 
     public static UserCredentialModel generateSecret(ClientModel app) {
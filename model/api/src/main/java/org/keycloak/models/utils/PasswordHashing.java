@@ -0,0 +1,216 @@
+package org.keycloak.models.utils;
+
+import org.jboss.logging.Logger;
+import org.keycloak.models.ModelException;
+import org.keycloak.models.ModelUnavailableException;
+import org.keycloak.models.PasswordHashingProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs password hashing on a dedicated pool of <code>threads</code> workers, so a burst of logins can't use up every
+ * request thread with hashing. At most <code>queueSize</code> hashes wait for a worker. When the queue is full a
+ * caller waits up to <code>maxWait</code> milliseconds for a slot, and is then rejected with a
+ * {@link ModelUnavailableException}.
+ * <p/>
+ * Background tasks, such as re-hashing passwords after the hash iterations policy changed, run on a separate thread
+ * with a queue of the same size, so they never hold up a login.
+ */
+public class PasswordHashing implements PasswordHashingProvider {
+
+    private static final Logger logger = Logger.getLogger(PasswordHashing.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 100;
+    public static final long DEFAULT_MAX_WAIT = 5000;
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor backgroundExecutor;
+    private final Semaphore slots;
+    private final long maxWait;
+
+    private final AtomicLong hashes = new AtomicLong();
+    private final AtomicLong hashTime = new AtomicLong();
+    private final AtomicLong maxHashTime = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong backgroundRejected = new AtomicLong();
+
+    public PasswordHashing(int threads, int queueSize, long maxWait) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("Password Hashing"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.backgroundExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueSize), new NamedThreadFactory("Password Hashing Background"));
+        this.backgroundExecutor.allowCoreThreadTimeOut(true);
+        this.slots = new Semaphore(threads + queueSize);
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public boolean verify(final String rawPassword, final byte[] salt, final String encodedPassword, final int iterations) {
+        return execute(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return new Pbkdf2PasswordEncoder(salt).verify(rawPassword, encodedPassword, iterations);
+            }
+        });
+    }
+
+    @Override
+    public String encode(final String rawPassword, final byte[] salt, final int iterations) {
+        return execute(new Callable<String>() {
+            @Override
+            public String call() {
+                return new Pbkdf2PasswordEncoder(salt).encode(rawPassword, iterations);
+            }
+        });
+    }
+
+    /**
+     * Runs a hash and waits for the result
+     *
+     * @throws ModelUnavailableException if the queue stays full for more than <code>maxWait</code> milliseconds
+     */
+    public <T> T execute(Callable<T> hash) {
+        try {
+            if (!slots.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                logger.warn("Password hashing queue full, rejecting request");
+                throw new ModelUnavailableException("Password hashing queue full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModelException("Interrupted while waiting for password hashing");
+        }
+
+        Future<T> future;
+        try {
+            future = executor.submit(new TimedHash<T>(hash));
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new ModelException(cause);
+        } catch (InterruptedException e) {
+            // not cancelled, as the slot is released when the hash runs
+            Thread.currentThread().interrupt();
+            throw new ModelException("Interrupted while waiting for password hashing");
+        }
+    }
+
+    /**
+     * Runs a task on the background thread. Returns <code>false</code>, without waiting, if its queue is full.
+     */
+    @Override
+    public boolean executeInBackground(final Runnable task) {
+        try {
+            backgroundExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        logger.error("Failed to run background password hashing task", t);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            backgroundRejected.incrementAndGet();
+            logger.debug("Password hashing background queue full, skipping task");
+            return false;
+        }
+    }
+
+    /**
+     * Shared by all sessions, so closed by its factory rather than with the session
+     */
+    @Override
+    public void close() {
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        backgroundExecutor.shutdown();
+    }
+
+    public int getQueueLength() {
+        return executor.getQueue().size();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<String, Long>();
+        long count = hashes.get();
+        long time = hashTime.get();
+        stats.put("hashes", count);
+        stats.put("queueLength", (long) executor.getQueue().size());
+        stats.put("activeThreads", (long) executor.getActiveCount());
+        stats.put("rejected", rejected.get());
+        stats.put("backgroundQueueLength", (long) backgroundExecutor.getQueue().size());
+        stats.put("backgroundRejected", backgroundRejected.get());
+        stats.put("totalHashTime", time);
+        stats.put("averageHashTime", count > 0 ? time / count : 0);
+        stats.put("maxHashTime", maxHashTime.get());
+        return stats;
+    }
+
+    private class TimedHash<T> implements Callable<T> {
+
+        private final Callable<T> hash;
+
+        private TimedHash(Callable<T> hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public T call() throws Exception {
+            long start = System.currentTimeMillis();
+            try {
+                return hash.call();
+            } finally {
+                slots.release();
+                long time = System.currentTimeMillis() - start;
+                hashes.incrementAndGet();
+                hashTime.addAndGet(time);
+                long max = maxHashTime.get();
+                while (time > max && !maxHashTime.compareAndSet(max, time)) {
+                    max = maxHashTime.get();
+                }
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        private NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, name + " " + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
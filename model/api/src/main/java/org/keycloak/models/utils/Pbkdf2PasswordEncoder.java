@@ -7,13 +7,14 @@ import javax.crypto.spec.PBEKeySpec;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
 
 /**
  * <p>
  * Encoder that uses PBKDF2 function to cryptographically derive passwords.
  * </p>
  * <p>Passwords are returned with a Base64 encoding.</p>
+ * <p>A <code>SecretKeyFactory</code> is kept per thread, as looking it up is expensive and instances aren't thread
+ * safe.</p>
  *
  * @author <a href="mailto:bruno@abstractj.org">Bruno Oliveira</a>
  *
@@ -26,6 +27,17 @@ public class Pbkdf2PasswordEncoder {
     private static final int DERIVED_KEY_SIZE = 512;
     private static final int ITERATIONS = 1;
 
+    private static final ThreadLocal<SecretKeyFactory> secretKeyFactory = new ThreadLocal<SecretKeyFactory>() {
+        @Override
+        protected SecretKeyFactory initialValue() {
+            try {
+                return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("PBKDF2 algorithm not found");
+            }
+        }
+    };
+
     private final int iterations;
     private byte[] salt;
 
@@ -47,13 +59,15 @@ public class Pbkdf2PasswordEncoder {
 
         String encodedPassword;
 
-        KeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, DERIVED_KEY_SIZE);
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, DERIVED_KEY_SIZE);
 
         try {
             byte[] key = getSecretKeyFactory().generateSecret(spec).getEncoded();
             encodedPassword = Base64.encodeBytes(key);
         } catch (InvalidKeySpecException e) {
             throw new RuntimeException("Credential could not be encoded");
+        } finally {
+            spec.clearPassword();
         }
 
         return encodedPassword;
@@ -70,7 +84,7 @@ public class Pbkdf2PasswordEncoder {
      * @return true if the password is valid, otherwise false for invalid credentials
      */
     public boolean verify(String rawPassword, String encodedPassword) {
-        return encode(rawPassword).equals(encodedPassword);
+        return isEqual(encode(rawPassword), encodedPassword);
     }
 
     /**
@@ -80,7 +94,22 @@ public class Pbkdf2PasswordEncoder {
      * @return true if the password is valid, otherwise false for invalid credentials
      */
     public boolean verify(String rawPassword, String encodedPassword, int iterations) {
-        return encode(rawPassword, iterations).equals(encodedPassword);
+        return isEqual(encode(rawPassword, iterations), encodedPassword);
+    }
+
+    /**
+     * Compares in time that depends only on the length of the hashes, so the position of the first difference can't
+     * be learned from timing
+     */
+    static boolean isEqual(String a, String b) {
+        if (a == null || b == null || a.length() != b.length()) {
+            return false;
+        }
+        int result = 0;
+        for (int i = 0; i < a.length(); i++) {
+            result |= a.charAt(i) ^ b.charAt(i);
+        }
+        return result == 0;
     }
 
     /**
@@ -104,10 +133,6 @@ public class Pbkdf2PasswordEncoder {
     }
 
     private static SecretKeyFactory getSecretKeyFactory() {
-        try {
-            return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("PBKDF2 algorithm not found");
-        }
+        return secretKeyFactory.get();
     }
 }
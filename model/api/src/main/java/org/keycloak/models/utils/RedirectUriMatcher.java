@@ -0,0 +1,167 @@
+package org.keycloak.models.utils;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compiled set of valid redirect uris. Uris without a wildcard are kept in a hash set, and uris ending with
+ * <code>*</code> in a prefix trie, so matching doesn't depend on the number of valid redirect uris. Relative uris
+ * (starting with <code>/</code>) also match absolute uris with the scheme, host and port of the request.
+ * <p/>
+ * A uri ending with <code>*</code> matches any uri starting with the part before the <code>*</code>, as well as that
+ * part without a trailing <code>/</code>.
+ */
+public class RedirectUriMatcher {
+
+    private final int size;
+    private final Patterns uris = new Patterns();
+    private final Patterns relativeUris = new Patterns();
+
+    private RedirectUriMatcher(Collection<String> redirectUris) {
+        for (String redirectUri : redirectUris) {
+            uris.add(redirectUri, false);
+            if (redirectUri.startsWith("/")) {
+                relativeUris.add(redirectUri, true);
+            }
+        }
+        size = redirectUris.size();
+    }
+
+    public static RedirectUriMatcher compile(Collection<String> redirectUris) {
+        return new RedirectUriMatcher(redirectUris);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param redirect redirect uri without query parameters
+     * @param baseUri base uri of the request, used to resolve relative valid redirect uris
+     */
+    public boolean matches(String redirect, URI baseUri) {
+        if (uris.matches(redirect, 0)) return true;
+        if (relativeUris.isEmpty() || baseUri == null) return false;
+
+        int offset = matchOrigin(redirect, baseUri);
+        return offset != -1 && relativeUris.matches(redirect, offset);
+    }
+
+    /**
+     * Returns the index after <code>scheme://host[:port]</code> of the base uri if the redirect uri starts with it,
+     * otherwise -1
+     */
+    private static int matchOrigin(String redirect, URI baseUri) {
+        int offset = matchPart(redirect, 0, baseUri.getScheme());
+        offset = matchPart(redirect, offset, "://");
+        offset = matchPart(redirect, offset, baseUri.getHost());
+        if (offset != -1 && baseUri.getPort() != -1) {
+            offset = matchPart(redirect, offset, ":");
+            offset = matchPart(redirect, offset, Integer.toString(baseUri.getPort()));
+        }
+        return offset;
+    }
+
+    private static int matchPart(String s, int offset, String part) {
+        if (offset == -1 || part == null || !s.startsWith(part, offset)) return -1;
+        return offset + part.length();
+    }
+
+    private static class Patterns {
+
+        private final Set<String> exact = new HashSet<String>();
+        private final TrieNode prefixes = new TrieNode();
+        private boolean empty = true;
+
+        /**
+         * @param resolved if the uri will be resolved to an absolute uri, in which case a trailing '/' is always
+         *                 stripped from wildcard uris
+         */
+        void add(String uri, boolean resolved) {
+            empty = false;
+            if (uri.endsWith("*")) {
+                int length = uri.length() - 1;
+                String prefix = uri.substring(0, length);
+                prefixes.add(prefix);
+
+                if (length > (resolved ? 0 : 1) && prefix.charAt(length - 1) == '/') length--;
+                exact.add(prefix.substring(0, length));
+            } else {
+                exact.add(uri);
+            }
+        }
+
+        boolean isEmpty() {
+            return empty;
+        }
+
+        boolean matches(String redirect, int offset) {
+            if (prefixes.matchesPrefix(redirect, offset)) return true;
+            return exact.contains(offset == 0 ? redirect : redirect.substring(offset));
+        }
+
+    }
+
+    private static class TrieNode {
+
+        private static final char[] NO_KEYS = new char[0];
+        private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+
+        // sorted, so children can be found with a binary search
+        private char[] keys = NO_KEYS;
+        private TrieNode[] children = NO_CHILDREN;
+        private boolean terminal;
+
+        void add(String prefix) {
+            TrieNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.getOrAddChild(prefix.charAt(i));
+            }
+            node.terminal = true;
+        }
+
+        private TrieNode getOrAddChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) return children[i];
+
+            int insert = -(i + 1);
+            char[] newKeys = new char[keys.length + 1];
+            TrieNode[] newChildren = new TrieNode[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+
+            TrieNode child = new TrieNode();
+            newKeys[insert] = c;
+            newChildren[insert] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        /**
+         * Returns true if any prefix added to the trie is a prefix of the string starting at the offset
+         */
+        boolean matchesPrefix(String s, int offset) {
+            TrieNode node = this;
+            for (int i = offset; ; i++) {
+                if (node.terminal) return true;
+                if (i == s.length()) return false;
+
+                int child = Arrays.binarySearch(node.keys, s.charAt(i));
+                if (child < 0) return false;
+                node = node.children[child];
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,15 @@
+package org.keycloak.provider;
+
+import java.util.Map;
+
+/**
+ * Implemented by provider factories that keep runtime statistics, which are then reported by the server info endpoint.
+ */
+public interface ProviderStatistics {
+
+    /**
+     * Returns a snapshot of the statistics, keyed by name
+     */
+    Map<String, Long> getStats();
+
+}
@@ -0,0 +1,145 @@
+package org.keycloak.models.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.ModelUnavailableException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PasswordHashingTest {
+
+    @Test
+    public void testVerify() {
+        PasswordHashing hashing = new PasswordHashing(2, 10, 1000);
+        try {
+            byte[] salt = Pbkdf2PasswordEncoder.getSalt();
+            String encoded = hashing.encode("password", salt, 10);
+            Assert.assertEquals(new Pbkdf2PasswordEncoder(salt).encode("password", 10), encoded);
+
+            Assert.assertTrue(hashing.verify("password", salt, encoded, 10));
+            Assert.assertFalse(hashing.verify("wrong", salt, encoded, 10));
+            Assert.assertFalse(hashing.verify("password", salt, encoded, 11));
+            Assert.assertEquals(Long.valueOf(4), hashing.getStats().get("hashes"));
+        } finally {
+            hashing.shutdown();
+        }
+    }
+
+    @Test
+    public void testIsEqual() {
+        Assert.assertTrue(Pbkdf2PasswordEncoder.isEqual("abc", "abc"));
+        Assert.assertFalse(Pbkdf2PasswordEncoder.isEqual("abc", "abd"));
+        Assert.assertFalse(Pbkdf2PasswordEncoder.isEqual("abc", "abcd"));
+        Assert.assertFalse(Pbkdf2PasswordEncoder.isEqual("abc", null));
+    }
+
+    @Test
+    public void testRejectWhenFull() throws Exception {
+        // one worker and one queued hash
+        final PasswordHashing hashing = new PasswordHashing(1, 1, 100);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 2; i++) {
+                new Thread() {
+                    @Override
+                    public void run() {
+                        hashing.execute(new BlockingHash(release));
+                    }
+                }.start();
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (hashing.getStats().get("activeThreads") < 1 || hashing.getQueueLength() < 1) {
+                if (System.currentTimeMillis() > deadline) Assert.fail("Hashes not queued");
+                Thread.sleep(10);
+            }
+
+            try {
+                hashing.execute(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        return null;
+                    }
+                });
+                Assert.fail("Expected hash to be rejected");
+            } catch (ModelUnavailableException e) {
+            }
+            Assert.assertEquals(Long.valueOf(1), hashing.getStats().get("rejected"));
+
+            release.countDown();
+            Assert.assertEquals("done", hashing.execute(new Callable<String>() {
+                @Override
+                public String call() {
+                    return "done";
+                }
+            }));
+        } finally {
+            release.countDown();
+            hashing.shutdown();
+        }
+    }
+
+    @Test
+    public void testBackgroundDoesntBlockHashing() throws Exception {
+        PasswordHashing hashing = new PasswordHashing(1, 1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // one running and one queued background task
+            Assert.assertTrue(hashing.executeInBackground(new BlockingTask(release)));
+            Assert.assertTrue(hashing.executeInBackground(new BlockingTask(release)));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (hashing.getStats().get("backgroundQueueLength") < 1) {
+                if (System.currentTimeMillis() > deadline) Assert.fail("Background task not queued");
+                Thread.sleep(10);
+            }
+
+            Assert.assertFalse(hashing.executeInBackground(new BlockingTask(release)));
+            Assert.assertEquals(Long.valueOf(1), hashing.getStats().get("backgroundRejected"));
+
+            // the hashing worker is still free
+            byte[] salt = Pbkdf2PasswordEncoder.getSalt();
+            Assert.assertTrue(hashing.verify("password", salt, hashing.encode("password", salt, 1), 1));
+            Assert.assertEquals(Long.valueOf(0), hashing.getStats().get("rejected"));
+        } finally {
+            release.countDown();
+            hashing.shutdown();
+        }
+    }
+
+    private static class BlockingHash implements Callable<Object> {
+
+        private final CountDownLatch release;
+
+        private BlockingHash(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Object call() throws InterruptedException {
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }
+
+    }
+
+    private static class BlockingTask implements Runnable {
+
+        private final CountDownLatch release;
+
+        private BlockingTask(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+}
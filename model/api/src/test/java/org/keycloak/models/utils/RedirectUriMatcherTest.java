@@ -0,0 +1,59 @@
+package org.keycloak.models.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class RedirectUriMatcherTest {
+
+    private static final URI BASE_URI = URI.create("http://localhost:8081/auth");
+
+    @Test
+    public void testExact() {
+        RedirectUriMatcher matcher = RedirectUriMatcher.compile(Arrays.asList("http://example.com/app", "http://example.com/other"));
+        Assert.assertTrue(matcher.matches("http://example.com/app", BASE_URI));
+        Assert.assertTrue(matcher.matches("http://example.com/other", BASE_URI));
+        Assert.assertFalse(matcher.matches("http://example.com/app/", BASE_URI));
+        Assert.assertFalse(matcher.matches("http://example.com/ap", BASE_URI));
+    }
+
+    @Test
+    public void testWildcard() {
+        RedirectUriMatcher matcher = RedirectUriMatcher.compile(Arrays.asList("http://example.com/app/*"));
+        Assert.assertTrue(matcher.matches("http://example.com/app/", BASE_URI));
+        Assert.assertTrue(matcher.matches("http://example.com/app/page", BASE_URI));
+        Assert.assertTrue(matcher.matches("http://example.com/app", BASE_URI));
+        Assert.assertFalse(matcher.matches("http://example.com/ap", BASE_URI));
+        Assert.assertFalse(matcher.matches("http://example.com/application", BASE_URI));
+
+        matcher = RedirectUriMatcher.compile(Arrays.asList("*"));
+        Assert.assertTrue(matcher.matches("http://anything", BASE_URI));
+    }
+
+    @Test
+    public void testRelative() {
+        RedirectUriMatcher matcher = RedirectUriMatcher.compile(Arrays.asList("/app/*", "/exact"));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/app/page", BASE_URI));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/app", BASE_URI));
+        Assert.assertTrue(matcher.matches("http://localhost:8081/exact", BASE_URI));
+        Assert.assertTrue(matcher.matches("/app/page", BASE_URI));
+        Assert.assertFalse(matcher.matches("http://localhost:8082/app/page", BASE_URI));
+        Assert.assertFalse(matcher.matches("https://localhost:8081/app/page", BASE_URI));
+        Assert.assertFalse(matcher.matches("http://localhost:8081/exact/", BASE_URI));
+
+        matcher = RedirectUriMatcher.compile(Arrays.asList("/*"));
+        Assert.assertTrue(matcher.matches("http://localhost:8081", BASE_URI));
+        Assert.assertFalse(matcher.matches("http://localhost:80812", BASE_URI));
+    }
+
+    @Test
+    public void testEmpty() {
+        RedirectUriMatcher matcher = RedirectUriMatcher.compile(Collections.<String>emptySet());
+        Assert.assertTrue(matcher.isEmpty());
+        Assert.assertFalse(matcher.matches("http://example.com", BASE_URI));
+    }
+
+}
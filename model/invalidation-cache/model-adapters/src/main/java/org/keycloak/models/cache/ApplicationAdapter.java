@@ -129,6 +129,13 @@ public class ApplicationAdapter extends ClientAdapter implements ApplicationMode
         return appRoles;
     }
 
+    @Override
+    protected Set<RoleModel> getScopeRoles() {
+        Set<RoleModel> roles = getScopeMappings();
+        roles.addAll(getRoles());
+        return roles;
+    }
+
     @Override
     public boolean isBearerOnly() {
         if (updated != null) return updated.isBearerOnly();
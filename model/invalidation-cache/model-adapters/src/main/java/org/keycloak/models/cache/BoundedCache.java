@@ -0,0 +1,277 @@
+package org.keycloak.models.cache;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent cache with a maximum size, least recently used eviction and an optional time to live. Lookups go
+ * straight to a {@link ConcurrentHashMap} and only record the access in a buffer. The LRU order is kept in a linked
+ * list that is updated under a lock, by writers and by whichever reader finds the buffer full, so reads never wait
+ * for each other.
+ */
+public class BoundedCache<V> {
+
+    protected static final int READ_BUFFER_THRESHOLD = 64;
+    protected static final int READ_BUFFER_MAX = 1024;
+
+    protected final ConcurrentHashMap<String, Node<V>> map = new ConcurrentHashMap<String, Node<V>>();
+    protected final ReentrantLock evictionLock = new ReentrantLock();
+    protected final Queue<Node<V>> readBuffer = new ConcurrentLinkedQueue<Node<V>>();
+    protected final AtomicInteger readBufferSize = new AtomicInteger();
+
+    // LRU list, guarded by evictionLock. head is the least recently used entry
+    protected Node<V> head;
+    protected Node<V> tail;
+
+    protected volatile int maxSize;
+    protected volatile long ttl;
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong evictions = new AtomicLong();
+    protected final AtomicLong expirations = new AtomicLong();
+    protected final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxSize maximum number of entries, or -1 for no limit
+     * @param ttl time in milliseconds an entry is kept after it was added, or -1 to keep entries until evicted
+     */
+    public BoundedCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+    }
+
+    public V get(String key) {
+        Node<V> node = map.get(key);
+        if (node == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        if (node.expires > 0 && node.expires < System.currentTimeMillis()) {
+            if (map.remove(key, node)) {
+                expirations.incrementAndGet();
+                removed(node);
+                onRemoval(key, node.value);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        recordAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Returns the value previously cached for the key, or <code>null</code>
+     */
+    public V put(String key, V value) {
+        Node<V> node = new Node<V>(key, value, ttl > 0 ? System.currentTimeMillis() + ttl : -1);
+        Node<V> old = map.put(key, node);
+
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            if (old != null) {
+                unlink(old);
+            }
+            // a concurrent remove may already have taken the entry out of the map, in which case it must not be
+            // linked or it would never be unlinked again
+            if (map.get(key) == node) {
+                link(node);
+            }
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+        return old != null ? old.value : null;
+    }
+
+    public V remove(String key) {
+        Node<V> node = map.remove(key);
+        if (node == null) return null;
+
+        invalidations.incrementAndGet();
+        removed(node);
+        return node.value;
+    }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            map.clear();
+            while (head != null) {
+                unlink(head);
+            }
+            drainReadBuffer();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Called when an entry is evicted or expires, but not when it's explicitly removed or the cache is cleared
+     */
+    protected void onRemoval(String key, V value) {
+    }
+
+    protected void recordAccess(Node<V> node) {
+        // losing some accesses while the buffer is full only makes the LRU order less exact
+        int pending = readBufferSize.get();
+        if (pending < READ_BUFFER_MAX) {
+            readBuffer.add(node);
+            pending = readBufferSize.incrementAndGet();
+        }
+        if (pending >= READ_BUFFER_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    protected void removed(Node<V> node) {
+        evictionLock.lock();
+        try {
+            unlink(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // must be called with evictionLock held
+    protected void drainReadBuffer() {
+        Node<V> node;
+        while ((node = readBuffer.poll()) != null) {
+            readBufferSize.decrementAndGet();
+            if (node.linked) {
+                unlink(node);
+                link(node);
+            }
+        }
+    }
+
+    // must be called with evictionLock held
+    protected void evict() {
+        int max = maxSize;
+        if (max < 0) return;
+
+        while (map.size() > max && head != null) {
+            Node<V> victim = head;
+            unlink(victim);
+            if (map.remove(victim.key, victim)) {
+                evictions.incrementAndGet();
+                onRemoval(victim.key, victim.value);
+            }
+        }
+    }
+
+    // must be called with evictionLock held
+    protected void link(Node<V> node) {
+        if (node.linked) return;
+        node.prev = tail;
+        node.next = null;
+        if (tail != null) {
+            tail.next = node;
+        } else {
+            head = node;
+        }
+        tail = node;
+        node.linked = true;
+    }
+
+    // must be called with evictionLock held
+    protected void unlink(Node<V> node) {
+        if (!node.linked) return;
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.linked = false;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evictionLock.lock();
+        try {
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Only applies to entries added after the change
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(size(), maxSize, getHits(), getMisses(), getEvictions(), getExpirations(), getInvalidations());
+    }
+
+    protected static class Node<V> {
+        protected final String key;
+        protected final V value;
+        protected final long expires;
+
+        // guarded by evictionLock
+        protected Node<V> prev;
+        protected Node<V> next;
+        protected boolean linked;
+
+        protected Node(String key, V value, long expires) {
+            this.key = key;
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+}
@@ -21,4 +21,16 @@ public interface CacheRealmProvider extends RealmProvider {
     void registerOAuthClientInvalidation(String id);
 
     void registerUserInvalidation(String id);
+
+    /**
+     * Returns the role version of the realm in the cache, or -1 if role closures can't be cached in this session, for
+     * example because roles were modified in the current transaction
+     */
+    long getRoleVersion(String realmId);
+
+    /**
+     * Returns the redirect uris version of the cache, or -1 if redirect uri matchers can't be cached in this session,
+     * for example because applications or oauth clients were modified in the current transaction
+     */
+    long getRedirectUrisVersion();
 }
@@ -5,6 +5,8 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleContainerModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.cache.entities.CachedClient;
+import org.keycloak.models.cache.entities.CachedRoleClosure;
+import org.keycloak.models.utils.RedirectUriMatcher;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -74,6 +76,11 @@ public abstract class ClientAdapter implements ClientModel {
         return cachedClient.getRedirectUris();
     }
 
+    public RedirectUriMatcher getRedirectUriMatcher() {
+        if (updatedClient != null) return RedirectUriMatcher.compile(updatedClient.getRedirectUris());
+        return cachedClient.getRedirectUriMatcher();
+    }
+
     public void setRedirectUris(Set<String> redirectUris) {
         getDelegateForUpdate();
         updatedClient.setRedirectUris(redirectUris);
@@ -194,6 +201,43 @@ public abstract class ClientAdapter implements ClientModel {
         return false;
     }
 
+    /**
+     * Returns the ids of all roles the client can request for a user: its scope mappings, the roles of the client
+     * itself if it's an application, and all roles they're composed of. The set is computed once and kept with the
+     * cached client until the client or a role is invalidated. Returns <code>null</code> if the set can't be used in
+     * this session, as the client or roles were modified in the current transaction.
+     */
+    public Set<String> getScopeClosure() {
+        if (updatedClient != null) return null;
+
+        long version = cacheSession.getRoleVersion(cachedRealm.getId());
+        if (version == -1) return null;
+
+        Set<String> closure = cachedClient.getScopeClosure(version);
+        if (closure != null) return closure;
+
+        closure = new HashSet<String>();
+        for (RoleModel role : getScopeRoles()) {
+            if (!(role instanceof RoleAdapter)) return null;
+            if (closure.contains(role.getId())) continue;
+
+            Set<String> roleClosure = ((RoleAdapter) role).getRoleClosure();
+            if (roleClosure == null) return null;
+            closure.addAll(roleClosure);
+        }
+
+        CachedRoleClosure computed = new CachedRoleClosure(version, closure);
+        cachedClient.setScopeClosure(computed);
+        return computed.getRoles();
+    }
+
+    /**
+     * Roles the scope closure is computed from
+     */
+    protected Set<RoleModel> getScopeRoles() {
+        return getScopeMappings();
+    }
+
     public RealmModel getRealm() {
         return cachedRealm;
     }
@@ -13,7 +13,9 @@ import org.keycloak.models.cache.entities.CachedOAuthClient;
 import org.keycloak.models.cache.entities.CachedRealm;
 import org.keycloak.models.cache.entities.CachedRealmRole;
 import org.keycloak.models.cache.entities.CachedRole;
+import org.keycloak.models.cache.invalidation.InvalidationBus;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -42,6 +44,7 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
     protected Map<String, RoleModel> managedRoles = new HashMap<String, RoleModel>();
 
     protected boolean clearAll;
+    protected boolean realmIdsInvalidated;
 
     public DefaultCacheRealmProvider(RealmCache cache, KeycloakSession session) {
         this.cache = cache;
@@ -93,7 +96,22 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
         userInvalidations.add(id);
     }
 
+    @Override
+    public long getRoleVersion(String realmId) {
+        if (!cache.isEnabled() || clearAll || !roleInvalidations.isEmpty()) return -1;
+        return cache.getRoleVersion(realmId);
+    }
+
+    @Override
+    public long getRedirectUrisVersion() {
+        if (!cache.isEnabled() || clearAll || !appInvalidations.isEmpty() || !clientInvalidations.isEmpty()) return -1;
+        return cache.getRedirectUrisVersion();
+    }
+
     protected void runInvalidations() {
+        if (realmIdsInvalidated) {
+            cache.invalidateRealmIds();
+        }
         for (String id : realmInvalidations) {
             cache.invalidateCachedRealmById(id);
         }
@@ -108,6 +126,30 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
         }
     }
 
+    protected void publishInvalidations() {
+        InvalidationBus bus = session.getProvider(InvalidationBus.class);
+        if (bus == null) return;
+
+        if (clearAll) {
+            bus.clearRealmCache();
+        }
+        if (realmIdsInvalidated) {
+            bus.invalidateRealmIds();
+        }
+        for (String id : realmInvalidations) {
+            bus.invalidateRealm(id);
+        }
+        for (String id : roleInvalidations) {
+            bus.invalidateRole(id);
+        }
+        for (String id : appInvalidations) {
+            bus.invalidateApplication(id);
+        }
+        for (String id : clientInvalidations) {
+            bus.invalidateOAuthClient(id);
+        }
+    }
+
     private KeycloakTransaction getTransaction() {
         return new KeycloakTransaction() {
             @Override
@@ -122,6 +164,7 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
                     cache.clear();
                 }
                 runInvalidations();
+                publishInvalidations();
                 transactionActive = false;
             }
 
@@ -154,6 +197,7 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
         RealmModel realm = getDelegate().createRealm(name);
         if (!cache.isEnabled()) return realm;
         registerRealmInvalidation(realm.getId());
+        realmIdsInvalidated = true;
         return realm;
     }
 
@@ -162,6 +206,7 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
         RealmModel realm =  getDelegate().createRealm(id, name);
         if (!cache.isEnabled()) return realm;
         registerRealmInvalidation(realm.getId());
+        realmIdsInvalidated = true;
         return realm;
     }
 
@@ -205,10 +250,41 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
         return adapter;
     }
 
+    @Override
+    public List<String> getRealmIds() {
+        if (!cache.isEnabled() || realmIdsInvalidated) return getDelegate().getRealmIds();
+
+        List<String> ids = cache.getRealmIds();
+        if (ids == null) {
+            long version = cache.getRealmIdsVersion();
+            ids = getDelegate().getRealmIds();
+            cache.addRealmIds(version, ids);
+        }
+        return ids;
+    }
+
     @Override
     public List<RealmModel> getRealms() {
-        // we don't cache this for now
-        return getDelegate().getRealms();
+        if (!cache.isEnabled() || realmIdsInvalidated) return getDelegate().getRealms();
+
+        List<String> ids = cache.getRealmIds();
+        if (ids == null) {
+            long version = cache.getRealmIdsVersion();
+            List<RealmModel> realms = getDelegate().getRealms();
+            ids = new ArrayList<String>(realms.size());
+            for (RealmModel realm : realms) {
+                ids.add(realm.getId());
+            }
+            cache.addRealmIds(version, ids);
+            return realms;
+        }
+
+        List<RealmModel> realms = new ArrayList<RealmModel>(ids.size());
+        for (String id : ids) {
+            RealmModel realm = getRealm(id);
+            if (realm != null) realms.add(realm);
+        }
+        return realms;
     }
 
     @Override
@@ -224,6 +300,7 @@ public class DefaultCacheRealmProvider implements CacheRealmProvider {
 
         boolean didIt = getDelegate().removeRealm(id);
         realmInvalidations.add(id);
+        realmIdsInvalidated = true;
 
         // TODO: Temporary workaround to invalidate cached realm roles
         if (didIt && realmRoles != null) {
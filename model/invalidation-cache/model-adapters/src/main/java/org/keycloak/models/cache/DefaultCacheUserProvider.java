@@ -10,6 +10,7 @@ import org.keycloak.models.UserFederationProviderModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserProvider;
 import org.keycloak.models.cache.entities.CachedUser;
+import org.keycloak.models.cache.invalidation.InvalidationBus;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -73,6 +74,21 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
         }
     }
 
+    protected void publishInvalidations() {
+        InvalidationBus bus = session.getProvider(InvalidationBus.class);
+        if (bus == null) return;
+
+        if (clearAll) {
+            bus.clearUserCache();
+        }
+        for (Map.Entry<String, String> invalidation : userInvalidations.entrySet()) {
+            bus.invalidateUser(invalidation.getValue(), invalidation.getKey());
+        }
+        for (String realmId : realmInvalidations) {
+            bus.invalidateRealmUsers(realmId);
+        }
+    }
+
     private KeycloakTransaction getTransaction() {
         return new KeycloakTransaction() {
             @Override
@@ -87,6 +103,7 @@ public class DefaultCacheUserProvider implements CacheUserProvider {
                     cache.clear();
                 }
                 runInvalidations();
+                publishInvalidations();
                 transactionActive = false;
             }
 
@@ -8,7 +8,7 @@ import org.keycloak.models.KeycloakSession;
  * @version $Revision: 1 $
  */
 public class MemoryCacheRealmProviderFactory implements CacheRealmProviderFactory {
-    protected RealmCache cache = new MemoryRealmCache();
+    protected MemoryRealmCache cache = new MemoryRealmCache();
 
     @Override
     public CacheRealmProvider create(KeycloakSession session) {
@@ -17,8 +17,17 @@ public class MemoryCacheRealmProviderFactory implements CacheRealmProviderFactor
 
     @Override
     public void init(Config.Scope config) {
-        config.get("");
+        cache.setMaxRealms(config.getInt("maxRealms", MemoryRealmCache.DEFAULT_MAX_REALMS));
+        cache.setMaxApplications(config.getInt("maxApplications", MemoryRealmCache.DEFAULT_MAX_APPLICATIONS));
+        cache.setMaxOAuthClients(config.getInt("maxOAuthClients", MemoryRealmCache.DEFAULT_MAX_CLIENTS));
+        cache.setMaxRoles(config.getInt("maxRoles", MemoryRealmCache.DEFAULT_MAX_ROLES));
 
+        long ttl = config.getLong("ttl", -1L);
+        cache.setTtl(ttl > 0 ? ttl * 1000 : -1);
+    }
+
+    public MemoryRealmCache getCache() {
+        return cache;
     }
 
     @Override
@@ -21,6 +21,22 @@ public class MemoryCacheUserProviderFactory implements CacheUserProviderFactory
         cache = new MemoryUserCache();
         int size = config.getInt("maxSize", 10000);
         cache.setMaxUserCacheSize(size);
+
+        // per realm sizes, as a list of <realm id>:<max size>
+        String[] realmSizes = config.getArray("realmMaxSize");
+        if (realmSizes != null) {
+            for (String realmSize : realmSizes) {
+                int i = realmSize.lastIndexOf(':');
+                if (i == -1) {
+                    throw new RuntimeException("Invalid realmMaxSize '" + realmSize + "', expected <realm id>:<max size>");
+                }
+                cache.setMaxUserCacheSize(realmSize.substring(0, i).trim(), Integer.parseInt(realmSize.substring(i + 1).trim()));
+            }
+        }
+    }
+
+    public MemoryUserCache getCache() {
+        return cache;
     }
 
     @Override
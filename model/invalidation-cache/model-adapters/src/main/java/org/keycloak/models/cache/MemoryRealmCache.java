@@ -5,7 +5,13 @@ import org.keycloak.models.cache.entities.CachedOAuthClient;
 import org.keycloak.models.cache.entities.CachedRealm;
 import org.keycloak.models.cache.entities.CachedRole;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
@@ -13,13 +19,69 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class MemoryRealmCache implements RealmCache {
 
-    protected ConcurrentHashMap<String, CachedRealm> realmCache = new ConcurrentHashMap<String, CachedRealm>();
-    protected ConcurrentHashMap<String, CachedRealm> realmCacheByName = new ConcurrentHashMap<String, CachedRealm>();
-    protected ConcurrentHashMap<String, CachedApplication> applicationCache = new ConcurrentHashMap<String, CachedApplication>();
-    protected ConcurrentHashMap<String, CachedOAuthClient> clientCache = new ConcurrentHashMap<String, CachedOAuthClient>();
-    protected ConcurrentHashMap<String, CachedRole> roleCache = new ConcurrentHashMap<String, CachedRole>();
+    public static final int DEFAULT_MAX_REALMS = 10000;
+    public static final int DEFAULT_MAX_APPLICATIONS = 10000;
+    public static final int DEFAULT_MAX_CLIENTS = 10000;
+    public static final int DEFAULT_MAX_ROLES = 100000;
+
+    protected BoundedCache<CachedRealm> realmCache = new BoundedCache<CachedRealm>(DEFAULT_MAX_REALMS, -1) {
+        @Override
+        protected void onRemoval(String key, CachedRealm value) {
+            realmCacheByName.remove(value.getName(), key);
+        }
+    };
+    protected ConcurrentHashMap<String, String> realmCacheByName = new ConcurrentHashMap<String, String>();
+    protected BoundedCache<CachedApplication> applicationCache = new BoundedCache<CachedApplication>(DEFAULT_MAX_APPLICATIONS, -1);
+    protected BoundedCache<CachedOAuthClient> clientCache = new BoundedCache<CachedOAuthClient>(DEFAULT_MAX_CLIENTS, -1);
+    protected BoundedCache<CachedRole> roleCache = new BoundedCache<CachedRole>(DEFAULT_MAX_ROLES, -1);
+    // role versions are stamps taken from one counter, so bumping either the global or a realm's version raises the
+    // version of that realm above any value it had before
+    protected AtomicLong roleVersion = new AtomicLong();
+    protected volatile long globalRoleVersion;
+    protected ConcurrentHashMap<String, Long> realmRoleVersions = new ConcurrentHashMap<String, Long>();
+    protected AtomicLong redirectUrisVersion = new AtomicLong();
+    protected volatile List<String> realmIds;
+    protected AtomicLong realmIdsVersion = new AtomicLong();
     protected volatile boolean enabled = true;
 
+    public void setMaxRealms(int maxRealms) {
+        realmCache.setMaxSize(maxRealms);
+    }
+
+    public void setMaxApplications(int maxApplications) {
+        applicationCache.setMaxSize(maxApplications);
+    }
+
+    public void setMaxOAuthClients(int maxClients) {
+        clientCache.setMaxSize(maxClients);
+    }
+
+    public void setMaxRoles(int maxRoles) {
+        roleCache.setMaxSize(maxRoles);
+    }
+
+    /**
+     * @param ttl time in milliseconds entries are cached for, or -1 to cache entries until they're evicted or invalidated
+     */
+    public void setTtl(long ttl) {
+        realmCache.setTtl(ttl);
+        applicationCache.setTtl(ttl);
+        clientCache.setTtl(ttl);
+        roleCache.setTtl(ttl);
+    }
+
+    /**
+     * Returns the counters of the realm, application, oauth client and role caches
+     */
+    public Map<String, CacheStats> getStats() {
+        Map<String, CacheStats> stats = new HashMap<String, CacheStats>();
+        stats.put("realms", realmCache.getStats());
+        stats.put("applications", applicationCache.getStats());
+        stats.put("oauthClients", clientCache.getStats());
+        stats.put("roles", roleCache.getStats());
+        return stats;
+    }
+
     @Override
     public void clear() {
         realmCache.clear();
@@ -27,6 +89,9 @@ public class MemoryRealmCache implements RealmCache {
         applicationCache.clear();
         clientCache.clear();
         roleCache.clear();
+        invalidateAllRoleVersions();
+        redirectUrisVersion.incrementAndGet();
+        invalidateRealmIds();
     }
 
     @Override
@@ -49,29 +114,32 @@ public class MemoryRealmCache implements RealmCache {
 
     @Override
     public void invalidateCachedRealm(CachedRealm realm) {
-        realmCache.remove(realm.getId());
-        realmCacheByName.remove(realm.getName());
+        invalidateCachedRealmById(realm.getId());
+        realmCacheByName.remove(realm.getName(), realm.getId());
     }
 
     @Override
     public void invalidateCachedRealmById(String id) {
         CachedRealm cached = realmCache.remove(id);
-        if (cached != null) realmCacheByName.remove(cached.getName());
+        if (cached != null) realmCacheByName.remove(cached.getName(), id);
     }
 
 
     @Override
     public void addCachedRealm(CachedRealm realm) {
         if (!enabled) return;
+        realmCacheByName.put(realm.getName(), realm.getId());
         realmCache.put(realm.getId(), realm);
-        realmCacheByName.put(realm.getName(), realm);
-
     }
 
     @Override
     public CachedRealm getCachedRealmByName(String name) {
         if (!enabled) return null;
-        return realmCacheByName.get(name);
+        String id = realmCacheByName.get(name);
+        if (id == null) return null;
+        CachedRealm realm = realmCache.get(id);
+        if (realm == null || !realm.getName().equals(name)) return null;
+        return realm;
     }
 
     @Override
@@ -82,7 +150,7 @@ public class MemoryRealmCache implements RealmCache {
 
     @Override
     public void invalidateApplication(CachedApplication app) {
-        applicationCache.remove(app.getId());
+        invalidateCachedApplicationById(app.getId());
     }
 
     @Override
@@ -94,6 +162,7 @@ public class MemoryRealmCache implements RealmCache {
     @Override
     public void invalidateCachedApplicationById(String id) {
         applicationCache.remove(id);
+        redirectUrisVersion.incrementAndGet();
     }
 
     @Override
@@ -104,7 +173,7 @@ public class MemoryRealmCache implements RealmCache {
 
     @Override
     public void invalidateOAuthClient(CachedOAuthClient client) {
-        clientCache.remove(client.getId());
+        invalidateCachedOAuthClientById(client.getId());
     }
 
     @Override
@@ -116,6 +185,7 @@ public class MemoryRealmCache implements RealmCache {
     @Override
     public void invalidateCachedOAuthClientById(String id) {
         clientCache.remove(id);
+        redirectUrisVersion.incrementAndGet();
     }
 
     @Override
@@ -126,12 +196,27 @@ public class MemoryRealmCache implements RealmCache {
 
     @Override
     public void invalidateRole(CachedRole role) {
-        roleCache.remove(role);
+        invalidateRoleById(role.getId());
     }
 
     @Override
     public void invalidateRoleById(String id) {
-        roleCache.remove(id);
+        CachedRole removed = roleCache.remove(id);
+        if (removed != null) {
+            invalidateRoleVersion(removed.getRealm());
+        } else {
+            // the realm of a role that isn't cached is unknown
+            invalidateAllRoleVersions();
+        }
+    }
+
+    protected synchronized void invalidateRoleVersion(String realmId) {
+        realmRoleVersions.put(realmId, roleVersion.incrementAndGet());
+    }
+
+    protected synchronized void invalidateAllRoleVersions() {
+        globalRoleVersion = roleVersion.incrementAndGet();
+        realmRoleVersions.clear();
     }
 
     @Override
@@ -142,6 +227,41 @@ public class MemoryRealmCache implements RealmCache {
 
     @Override
     public void invalidateCachedRoleById(String id) {
-        roleCache.remove(id);
+        invalidateRoleById(id);
+    }
+
+    @Override
+    public List<String> getRealmIds() {
+        if (!enabled) return null;
+        return realmIds;
+    }
+
+    @Override
+    public long getRealmIdsVersion() {
+        return realmIdsVersion.get();
+    }
+
+    @Override
+    public synchronized void addRealmIds(long version, List<String> ids) {
+        if (!enabled || realmIdsVersion.get() != version) return;
+        realmIds = Collections.unmodifiableList(new ArrayList<String>(ids));
+    }
+
+    @Override
+    public synchronized void invalidateRealmIds() {
+        realmIds = null;
+        realmIdsVersion.incrementAndGet();
+    }
+
+    @Override
+    public long getRoleVersion(String realmId) {
+        Long realmVersion = realmRoleVersions.get(realmId);
+        long global = globalRoleVersion;
+        return realmVersion != null && realmVersion > global ? realmVersion : global;
+    }
+
+    @Override
+    public long getRedirectUrisVersion() {
+        return redirectUrisVersion.get();
     }
 }
@@ -2,8 +2,7 @@ package org.keycloak.models.cache;
 
 import org.keycloak.models.cache.entities.CachedUser;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -14,58 +13,69 @@ import java.util.concurrent.ConcurrentHashMap;
 public class MemoryUserCache implements UserCache {
 
     protected int maxUserCacheSize = 10000;
+    protected Map<String, Integer> realmMaxUserCacheSize = new ConcurrentHashMap<String, Integer>();
     protected volatile boolean enabled = true;
 
 
     protected class RealmUsers {
-        protected class LRUCache extends LinkedHashMap<String, CachedUser> {
-            public LRUCache() {
-                super(1000, 1.1F, true);
-            }
-
-            @Override
-            public CachedUser put(String key, CachedUser value) {
-                usersByUsername.put(value.getUsername(), value);
-                if (value.getEmail() != null) {
-                    usersByEmail.put(value.getEmail(), value);
+        protected BoundedCache<CachedUser> usersById;
+        protected ConcurrentHashMap<String, CachedUser> usersByUsername = new ConcurrentHashMap<String, CachedUser>();
+        protected ConcurrentHashMap<String, CachedUser> usersByEmail = new ConcurrentHashMap<String, CachedUser>();
+
+        protected RealmUsers(int maxSize) {
+            usersById = new BoundedCache<CachedUser>(maxSize, -1) {
+                @Override
+                protected void onRemoval(String key, CachedUser user) {
+                    removeIndexes(user);
                 }
-                return super.put(key, value);
-            }
+            };
+        }
 
-            @Override
-            public CachedUser remove(Object key) {
-                CachedUser user = super.remove(key);
-                if (user == null) return null;
-                removeUser(user);
-                return user;
-            }
+        protected CachedUser get(String id) {
+            return usersById.get(id);
+        }
 
-            @Override
-            public void clear() {
-                super.clear();
-                usersByUsername.clear();
-                usersByEmail.clear();
+        /**
+         * Looks up a user found in one of the indexes by id, which also refreshes its position in the LRU order. The
+         * user is only returned if it's still the one cached for the id.
+         */
+        protected CachedUser getIndexed(Map<String, CachedUser> index, String key) {
+            CachedUser user = index.get(key);
+            if (user == null) return null;
+            if (usersById.get(user.getId()) != user) {
+                index.remove(key, user);
+                return null;
             }
+            return user;
+        }
 
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
-                boolean evict = size() > maxUserCacheSize;
-                if (evict) {
-                    removeUser(eldest.getValue());
-                }
-                return evict;
+        protected void add(CachedUser user) {
+            // add to indexes first, so an immediate eviction of the user removes them again
+            usersByUsername.put(user.getUsername(), user);
+            if (user.getEmail() != null) {
+                usersByEmail.put(user.getEmail(), user);
+            }
+            CachedUser old = usersById.put(user.getId(), user);
+            if (old != null) {
+                removeIndexes(old);
             }
+        }
 
-            private void removeUser(CachedUser value) {
-                usersByUsername.remove(value.getUsername());
-                if (value.getEmail() != null) usersByEmail.remove(value.getEmail());
+        protected void remove(String id) {
+            CachedUser user = usersById.remove(id);
+            if (user != null) {
+                removeIndexes(user);
             }
         }
 
-        protected Map<String, CachedUser> usersById = Collections.synchronizedMap(new LRUCache());
-        protected Map<String, CachedUser> usersByUsername = new ConcurrentHashMap<String, CachedUser>();
-        protected Map<String, CachedUser> usersByEmail = new ConcurrentHashMap<String, CachedUser>();
+        protected void removeIndexes(CachedUser user) {
+            usersByUsername.remove(user.getUsername(), user);
+            if (user.getEmail() != null) usersByEmail.remove(user.getEmail(), user);
+        }
 
+        protected CacheStats getStats() {
+            return usersById.getStats();
+        }
     }
 
     protected ConcurrentHashMap<String, RealmUsers> realmUsers = new ConcurrentHashMap<String, RealmUsers>();
@@ -78,6 +88,33 @@ public class MemoryUserCache implements UserCache {
         this.maxUserCacheSize = maxUserCacheSize;
     }
 
+    public int getMaxUserCacheSize(String realmId) {
+        Integer size = realmMaxUserCacheSize.get(realmId);
+        return size != null ? size : maxUserCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of users cached for a realm, overriding {@link #setMaxUserCacheSize(int)}
+     */
+    public void setMaxUserCacheSize(String realmId, int maxUserCacheSize) {
+        realmMaxUserCacheSize.put(realmId, maxUserCacheSize);
+        RealmUsers users = realmUsers.get(realmId);
+        if (users != null) {
+            users.usersById.setMaxSize(maxUserCacheSize);
+        }
+    }
+
+    /**
+     * Returns the counters of the user cache of each realm, by realm id
+     */
+    public Map<String, CacheStats> getStats() {
+        Map<String, CacheStats> stats = new HashMap<String, CacheStats>();
+        for (Map.Entry<String, RealmUsers> e : realmUsers.entrySet()) {
+            stats.put(e.getKey(), e.getValue().getStats());
+        }
+        return stats;
+    }
+
     @Override
     public boolean isEnabled() {
         return enabled;
@@ -95,31 +132,32 @@ public class MemoryUserCache implements UserCache {
         if (realmId == null || id == null) return null;
         RealmUsers users = realmUsers.get(realmId);
         if (users == null) return null;
-        return users.usersById.get(id);
+        return users.get(id);
     }
 
     @Override
     public void invalidateCachedUser(String realmId, CachedUser user) {
         RealmUsers users = realmUsers.get(realmId);
         if (users == null) return;
-        users.usersById.remove(user.getId());
+        users.remove(user.getId());
     }
 
     @Override
     public void invalidateCachedUserById(String realmId, String id) {
         RealmUsers users = realmUsers.get(realmId);
         if (users == null) return;
-        users.usersById.remove(id);
+        users.remove(id);
     }
 
     @Override
     public void addCachedUser(String realmId, CachedUser user) {
         RealmUsers users = realmUsers.get(realmId);
         if (users == null) {
-            users = new RealmUsers();
-            realmUsers.put(realmId, users);
+            users = new RealmUsers(getMaxUserCacheSize(realmId));
+            RealmUsers existing = realmUsers.putIfAbsent(realmId, users);
+            if (existing != null) users = existing;
         }
-        users.usersById.put(user.getId(), user);
+        users.add(user);
     }
 
     @Override
@@ -127,10 +165,7 @@ public class MemoryUserCache implements UserCache {
         if (realmId == null || name == null) return null;
         RealmUsers users = realmUsers.get(realmId);
         if (users == null) return null;
-        CachedUser user = users.usersByUsername.get(name);
-        if (user == null) return null;
-        users.usersById.get(user.getId()); // refresh cache entry age
-        return user;
+        return users.getIndexed(users.usersByUsername, name);
     }
 
     @Override
@@ -138,10 +173,7 @@ public class MemoryUserCache implements UserCache {
         if (realmId == null || email == null) return null;
         RealmUsers users = realmUsers.get(realmId);
         if (users == null) return null;
-        CachedUser user = users.usersByEmail.get(email);
-        if (user == null) return null;
-        users.usersById.get(user.getId()); // refresh cache entry age
-        return user;
+        return users.getIndexed(users.usersByEmail, email);
     }
 
     @Override
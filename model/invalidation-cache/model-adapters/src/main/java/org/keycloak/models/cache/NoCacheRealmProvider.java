@@ -54,6 +54,16 @@ public class NoCacheRealmProvider implements CacheRealmProvider {
     public void registerOAuthClientInvalidation(String id) {
     }
 
+    @Override
+    public long getRoleVersion(String realmId) {
+        return -1;
+    }
+
+    @Override
+    public long getRedirectUrisVersion() {
+        return -1;
+    }
+
     @Override
     public RealmModel createRealm(String name) {
         return getDelegate().createRealm(name);
@@ -74,6 +84,11 @@ public class NoCacheRealmProvider implements CacheRealmProvider {
         return getDelegate().getRealmByName(name);
     }
 
+    @Override
+    public List<String> getRealmIds() {
+        return getDelegate().getRealmIds();
+    }
+
     @Override
     public List<RealmModel> getRealms() {
         // we don't cache this for now
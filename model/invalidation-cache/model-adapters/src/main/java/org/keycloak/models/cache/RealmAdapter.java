@@ -11,7 +11,9 @@ import org.keycloak.models.RequiredCredentialModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserFederationProviderModel;
 import org.keycloak.models.cache.entities.CachedRealm;
+import org.keycloak.models.cache.entities.CachedRedirectUriMatcher;
 import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.RedirectUriMatcher;
 
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -302,6 +304,7 @@ public class RealmAdapter implements RealmModel {
     @Override
     public void setPublicKeyPem(String publicKeyPem) {
         getDelegateForUpdate();
+        this.publicKey = null;
         updated.setPublicKeyPem(publicKeyPem);
     }
 
@@ -314,35 +317,62 @@ public class RealmAdapter implements RealmModel {
     @Override
     public void setPrivateKeyPem(String privateKeyPem) {
         getDelegateForUpdate();
+        this.privateKey = null;
         updated.setPrivateKeyPem(privateKeyPem);
     }
 
+    @Override
+    public String getCodeSecret() {
+        if (updated != null) return updated.getCodeSecret();
+        return cached.getCodeSecret();
+    }
+
+    @Override
+    public void setCodeSecret(String codeSecret) {
+        getDelegateForUpdate();
+        updated.setCodeSecret(codeSecret);
+    }
+
+    @Override
+    public String getPreviousCodeSecret() {
+        if (updated != null) return updated.getPreviousCodeSecret();
+        return cached.getPreviousCodeSecret();
+    }
+
+    @Override
+    public void setPreviousCodeSecret(String previousCodeSecret) {
+        getDelegateForUpdate();
+        updated.setPreviousCodeSecret(previousCodeSecret);
+    }
+
     @Override
     public PublicKey getPublicKey() {
         if (publicKey != null) return publicKey;
-        publicKey = KeycloakModelUtils.getPublicKey(getPublicKeyPem());
+        if (updated != null) publicKey = updated.getPublicKey();
+        else publicKey = cached.getPublicKey();
         return publicKey;
     }
 
     @Override
     public void setPublicKey(PublicKey publicKey) {
-        this.publicKey = publicKey;
         String publicKeyPem = KeycloakModelUtils.getPemFromKey(publicKey);
         setPublicKeyPem(publicKeyPem);
+        this.publicKey = publicKey;
     }
 
     @Override
     public PrivateKey getPrivateKey() {
         if (privateKey != null) return privateKey;
-        privateKey = KeycloakModelUtils.getPrivateKey(getPrivateKeyPem());
+        if (updated != null) privateKey = updated.getPrivateKey();
+        else privateKey = cached.getPrivateKey();
         return privateKey;
     }
 
     @Override
     public void setPrivateKey(PrivateKey privateKey) {
-        this.privateKey = privateKey;
         String privateKeyPem = KeycloakModelUtils.getPemFromKey(privateKey);
         setPrivateKeyPem(privateKeyPem);
+        this.privateKey = privateKey;
     }
 
     @Override
@@ -557,6 +587,32 @@ public class RealmAdapter implements RealmModel {
         return clients;
     }
 
+    /**
+     * Returns a matcher for the redirect uris of all applications and oauth clients of the realm. It's cached until an
+     * application or oauth client is invalidated.
+     */
+    public RedirectUriMatcher getRedirectUriMatcher() {
+        long version = updated != null ? -1 : cacheSession.getRedirectUrisVersion();
+        if (version != -1) {
+            RedirectUriMatcher matcher = cached.getRedirectUriMatcher(version);
+            if (matcher != null) return matcher;
+        }
+
+        Set<String> redirectUris = new HashSet<String>();
+        for (ApplicationModel application : getApplications()) {
+            redirectUris.addAll(application.getRedirectUris());
+        }
+        for (OAuthClientModel client : getOAuthClients()) {
+            redirectUris.addAll(client.getRedirectUris());
+        }
+
+        RedirectUriMatcher matcher = RedirectUriMatcher.compile(redirectUris);
+        if (version != -1) {
+            cached.setRedirectUriMatcher(new CachedRedirectUriMatcher(version, matcher));
+        }
+        return matcher;
+    }
+
     @Override
     public Map<String, String> getBrowserSecurityHeaders() {
         if (updated != null) return updated.getBrowserSecurityHeaders();
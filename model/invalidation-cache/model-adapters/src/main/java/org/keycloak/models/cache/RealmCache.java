@@ -5,6 +5,8 @@ import org.keycloak.models.cache.entities.CachedOAuthClient;
 import org.keycloak.models.cache.entities.CachedRealm;
 import org.keycloak.models.cache.entities.CachedRole;
 
+import java.util.List;
+
 /**
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
@@ -52,4 +54,34 @@ public interface RealmCache {
     boolean isEnabled();
 
     void setEnabled(boolean enabled);
+
+    /**
+     * Returns the ids of all realms, or <code>null</code> if they aren't cached
+     */
+    List<String> getRealmIds();
+
+    /**
+     * Incremented whenever the realm ids are invalidated
+     */
+    long getRealmIdsVersion();
+
+    /**
+     * Caches the ids of all realms, unless they were invalidated since reading the given version
+     */
+    void addRealmIds(long version, List<String> ids);
+
+    void invalidateRealmIds();
+
+    /**
+     * Incremented whenever a cached role of the realm is invalidated, or the cache is cleared. Role closures computed
+     * from the cache are only valid for the version they were computed with. Invalidating a role that isn't cached
+     * increments the version of all realms, as its realm isn't known.
+     */
+    long getRoleVersion(String realmId);
+
+    /**
+     * Incremented whenever a cached application or oauth client is invalidated or the cache is cleared. Realm redirect
+     * uri matchers computed from the cache are only valid for the version they were computed with.
+     */
+    long getRedirectUrisVersion();
 }
@@ -6,6 +6,7 @@ import org.keycloak.models.RoleModel;
 import org.keycloak.models.cache.entities.CachedApplicationRole;
 import org.keycloak.models.cache.entities.CachedRealmRole;
 import org.keycloak.models.cache.entities.CachedRole;
+import org.keycloak.models.cache.entities.CachedRoleClosure;
 import org.keycloak.models.utils.KeycloakModelUtils;
 
 import java.util.HashSet;
@@ -116,10 +117,57 @@ public class RoleAdapter implements RoleModel {
         if (this.equals(role)) return true;
         if (!isComposite()) return false;
 
+        Set<String> closure = getRoleClosure();
+        if (closure != null) return closure.contains(role.getId());
+
         Set<RoleModel> visited = new HashSet<RoleModel>();
         return KeycloakModelUtils.searchFor(role, this, visited);
     }
 
+    /**
+     * Returns the ids of this role and all roles it's composed of, directly or indirectly. The set is computed once and
+     * kept with the cached role until a role is invalidated. Returns <code>null</code> if the closure can't be used in
+     * this session, as roles were modified in the current transaction.
+     */
+    public Set<String> getRoleClosure() {
+        if (updated != null) return null;
+
+        // read the version before the roles, so a concurrent invalidation makes the computed closure stale
+        long version = cacheSession.getRoleVersion(cached.getRealm());
+        if (version == -1) return null;
+
+        Set<String> closure = cached.getClosure(version);
+        if (closure != null) return closure;
+
+        closure = new HashSet<String>();
+        closure.add(getId());
+        addComposites(this, closure, version);
+
+        CachedRoleClosure computed = new CachedRoleClosure(version, closure);
+        cached.setClosure(computed);
+        return computed.getRoles();
+    }
+
+    private static void addComposites(RoleModel role, Set<String> closure, long version) {
+        if (!role.isComposite()) return;
+        for (RoleModel child : role.getComposites()) {
+            if (closure.contains(child.getId())) continue;
+
+            // reuse closures already computed for composites, but don't compute them here as roles can form cycles
+            Set<String> childClosure = null;
+            if (child instanceof RoleAdapter && ((RoleAdapter) child).updated == null) {
+                childClosure = ((RoleAdapter) child).cached.getClosure(version);
+            }
+
+            if (childClosure != null) {
+                closure.addAll(childClosure);
+            } else {
+                closure.add(child.getId());
+                addComposites(child, closure, version);
+            }
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -3,11 +3,13 @@ package org.keycloak.models.cache;
 import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
+import org.keycloak.models.RealmProvider;
 import org.keycloak.models.RoleContainerModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserCredentialModel;
 import org.keycloak.models.UserCredentialValueModel;
 import org.keycloak.models.UserModel;
+import org.keycloak.models.cache.entities.CachedRoleClosure;
 import org.keycloak.models.cache.entities.CachedUser;
 
 import java.util.HashSet;
@@ -239,6 +241,9 @@ public class UserAdapter implements UserModel {
         if (updated != null) return updated.hasRole(role);
         if (cached.getRoleMappings().contains(role.getId())) return true;
 
+        Set<String> effectiveRoles = getEffectiveRoles();
+        if (effectiveRoles != null) return effectiveRoles.contains(role.getId());
+
         Set<RoleModel> mappings = getRoleMappings();
         for (RoleModel mapping: mappings) {
            if (mapping.hasRole(role)) return true;
@@ -246,6 +251,36 @@ public class UserAdapter implements UserModel {
         return false;
     }
 
+    /**
+     * Returns the ids of the roles mapped to the user and all roles they're composed of. The set is computed once from
+     * the closures of the cached roles and kept with the cached user until a role is invalidated. Returns
+     * <code>null</code> if the realm cache isn't used, or roles were modified in the current transaction.
+     */
+    public Set<String> getEffectiveRoles() {
+        RealmProvider realms = keycloakSession.realms();
+        if (!(realms instanceof CacheRealmProvider)) return null;
+
+        long version = ((CacheRealmProvider) realms).getRoleVersion(realm.getId());
+        if (version == -1) return null;
+
+        Set<String> effectiveRoles = cached.getEffectiveRoles(version);
+        if (effectiveRoles != null) return effectiveRoles;
+
+        effectiveRoles = new HashSet<String>();
+        for (String id : cached.getRoleMappings()) {
+            RoleModel role = realms.getRoleById(id, realm);
+            if (!(role instanceof RoleAdapter)) return null;
+
+            Set<String> closure = ((RoleAdapter) role).getRoleClosure();
+            if (closure == null) return null;
+            effectiveRoles.addAll(closure);
+        }
+
+        CachedRoleClosure computed = new CachedRoleClosure(version, effectiveRoles);
+        cached.setEffectiveRoles(computed);
+        return computed.getRoles();
+    }
+
     @Override
     public void grantRole(RoleModel role) {
         getDelegateForUpdate();
@@ -5,6 +5,7 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.RealmProvider;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.cache.RealmCache;
+import org.keycloak.models.utils.RedirectUriMatcher;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -27,6 +28,8 @@ public class CachedClient {
     protected int notBefore;
     protected Set<String> scope = new HashSet<String>();
     protected Set<String> webOrigins = new HashSet<String>();
+    protected volatile CachedRoleClosure scopeClosure;
+    protected volatile RedirectUriMatcher redirectUriMatcher;
 
     public CachedClient(RealmCache cache, RealmProvider delegate, RealmModel realm, ClientModel model) {
         id = model.getId();
@@ -98,4 +101,29 @@ public class CachedClient {
     public boolean isFullScopeAllowed() {
         return fullScopeAllowed;
     }
+
+    /**
+     * Returns the ids of all roles reachable from the client's scope, or <code>null</code> if they haven't been computed
+     * for the given role version
+     */
+    public Set<String> getScopeClosure(long version) {
+        CachedRoleClosure c = scopeClosure;
+        return c != null && c.getVersion() == version ? c.getRoles() : null;
+    }
+
+    public void setScopeClosure(CachedRoleClosure scopeClosure) {
+        this.scopeClosure = scopeClosure;
+    }
+
+    /**
+     * Compiled on first use. The redirect uris of a cached client never change, as the client is invalidated instead.
+     */
+    public RedirectUriMatcher getRedirectUriMatcher() {
+        RedirectUriMatcher matcher = redirectUriMatcher;
+        if (matcher == null) {
+            matcher = RedirectUriMatcher.compile(redirectUris);
+            redirectUriMatcher = matcher;
+        }
+        return matcher;
+    }
 }
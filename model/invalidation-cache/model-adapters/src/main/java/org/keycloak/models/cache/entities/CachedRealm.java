@@ -10,7 +10,11 @@ import org.keycloak.models.RequiredCredentialModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserFederationProviderModel;
 import org.keycloak.models.cache.RealmCache;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.RedirectUriMatcher;
 
+import java.security.PrivateKey;
+import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -56,6 +60,10 @@ public class CachedRealm {
 
     private String publicKeyPem;
     private String privateKeyPem;
+    private String codeSecret;
+    private String previousCodeSecret;
+    private volatile transient PublicKey publicKey;
+    private volatile transient PrivateKey privateKey;
 
     private String loginTheme;
     private String accountTheme;
@@ -63,6 +71,8 @@ public class CachedRealm {
     private String emailTheme;
     private String masterAdminApp;
 
+    private volatile CachedRedirectUriMatcher redirectUriMatcher;
+
     private List<RequiredCredentialModel> requiredCredentials = new ArrayList<RequiredCredentialModel>();
     private List<UserFederationProviderModel> userFederationProviders = new ArrayList<UserFederationProviderModel>();
 
@@ -113,6 +123,8 @@ public class CachedRealm {
 
         publicKeyPem = model.getPublicKeyPem();
         privateKeyPem = model.getPrivateKeyPem();
+        codeSecret = model.getCodeSecret();
+        previousCodeSecret = model.getPreviousCodeSecret();
 
         loginTheme = model.getLoginTheme();
         accountTheme = model.getAccountTheme();
@@ -265,6 +277,32 @@ public class CachedRealm {
         return privateKeyPem;
     }
 
+    public String getCodeSecret() {
+        return codeSecret;
+    }
+
+    public String getPreviousCodeSecret() {
+        return previousCodeSecret;
+    }
+
+    /**
+     * Decoded once per cached realm and shared by all adapters, so it is dropped together with this entry when
+     * the realm is invalidated.
+     */
+    public PublicKey getPublicKey() {
+        if (publicKey == null && publicKeyPem != null) {
+            publicKey = KeycloakModelUtils.getPublicKey(publicKeyPem);
+        }
+        return publicKey;
+    }
+
+    public PrivateKey getPrivateKey() {
+        if (privateKey == null && privateKeyPem != null) {
+            privateKey = KeycloakModelUtils.getPrivateKey(privateKeyPem);
+        }
+        return privateKey;
+    }
+
     public List<RequiredCredentialModel> getRequiredCredentials() {
         return requiredCredentials;
     }
@@ -328,4 +366,17 @@ public class CachedRealm {
     public List<UserFederationProviderModel> getUserFederationProviders() {
         return userFederationProviders;
     }
+
+    /**
+     * Returns the matcher for the redirect uris of all applications and oauth clients of the realm, or
+     * <code>null</code> if it hasn't been computed for the given redirect uris version
+     */
+    public RedirectUriMatcher getRedirectUriMatcher(long version) {
+        CachedRedirectUriMatcher m = redirectUriMatcher;
+        return m != null && m.getVersion() == version ? m.getMatcher() : null;
+    }
+
+    public void setRedirectUriMatcher(CachedRedirectUriMatcher redirectUriMatcher) {
+        this.redirectUriMatcher = redirectUriMatcher;
+    }
 }
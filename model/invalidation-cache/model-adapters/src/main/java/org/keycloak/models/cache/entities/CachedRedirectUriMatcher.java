@@ -0,0 +1,25 @@
+package org.keycloak.models.cache.entities;
+
+import org.keycloak.models.utils.RedirectUriMatcher;
+
+/**
+ * Redirect uri matcher of all applications and oauth clients of a realm. Only valid for the redirect uris version of
+ * the realm cache it was computed with.
+ */
+public class CachedRedirectUriMatcher {
+    final protected long version;
+    final protected RedirectUriMatcher matcher;
+
+    public CachedRedirectUriMatcher(long version, RedirectUriMatcher matcher) {
+        this.version = version;
+        this.matcher = matcher;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public RedirectUriMatcher getMatcher() {
+        return matcher;
+    }
+}
@@ -17,6 +17,7 @@ public class CachedRole {
     final protected String description;
     final protected boolean composite;
     final protected Set<String> composites = new HashSet<String>();
+    protected volatile CachedRoleClosure closure;
 
     public CachedRole(RoleModel model, RealmModel realm) {
         composite = model.isComposite();
@@ -55,4 +56,17 @@ public class CachedRole {
     public Set<String> getComposites() {
         return composites;
     }
+
+    /**
+     * Returns the ids of this role and all roles it's composed of, or <code>null</code> if they haven't been computed
+     * for the given role version
+     */
+    public Set<String> getClosure(long version) {
+        CachedRoleClosure c = closure;
+        return c != null && c.getVersion() == version ? c.getRoles() : null;
+    }
+
+    public void setClosure(CachedRoleClosure closure) {
+        this.closure = closure;
+    }
 }
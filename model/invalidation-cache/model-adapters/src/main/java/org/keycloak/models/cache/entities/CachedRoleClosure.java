@@ -0,0 +1,26 @@
+package org.keycloak.models.cache.entities;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Ids of a set of roles and all the roles they're composed of, directly or indirectly. Only valid for the role version
+ * of the realm cache it was computed with.
+ */
+public class CachedRoleClosure {
+    final protected long version;
+    final protected Set<String> roles;
+
+    public CachedRoleClosure(long version, Set<String> roles) {
+        this.version = version;
+        this.roles = Collections.unmodifiableSet(roles);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+}
@@ -30,6 +30,7 @@ public class CachedUser {
     private Map<String, String> attributes = new HashMap<String, String>();
     private Set<UserModel.RequiredAction> requiredActions = new HashSet<UserModel.RequiredAction>();
     private Set<String> roleMappings = new HashSet<String>();
+    private volatile CachedRoleClosure effectiveRoles;
 
 
     public CachedUser(RealmModel realm, UserModel user) {
@@ -98,6 +99,19 @@ public class CachedUser {
         return roleMappings;
     }
 
+    /**
+     * Returns the ids of the roles mapped to the user and all roles they're composed of, or <code>null</code> if they
+     * haven't been computed for the given role version
+     */
+    public Set<String> getEffectiveRoles(long version) {
+        CachedRoleClosure c = effectiveRoles;
+        return c != null && c.getVersion() == version ? c.getRoles() : null;
+    }
+
+    public void setEffectiveRoles(CachedRoleClosure effectiveRoles) {
+        this.effectiveRoles = effectiveRoles;
+    }
+
     public String getFederationLink() {
         return federationLink;
     }
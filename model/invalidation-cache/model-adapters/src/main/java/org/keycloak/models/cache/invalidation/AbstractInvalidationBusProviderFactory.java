@@ -0,0 +1,406 @@
+package org.keycloak.models.cache.invalidation;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.cache.CacheRealmProvider;
+import org.keycloak.models.cache.CacheUserProvider;
+import org.keycloak.models.cache.MemoryCacheRealmProviderFactory;
+import org.keycloak.models.cache.MemoryCacheUserProviderFactory;
+import org.keycloak.models.cache.RealmCache;
+import org.keycloak.models.cache.UserCache;
+import org.keycloak.provider.ProviderFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the invalidations published by sessions over a {@link InvalidationTransport}, and applies the invalidations
+ * received from other nodes to the local realm and user caches. Messages published within <code>batchWindow</code>
+ * milliseconds of each other are merged and sent as one by a background thread. If the queue overflows, the next
+ * message sent clears the caches of the other nodes, as the dropped invalidations are unknown.
+ * <p/>
+ * Messages are numbered per node. A receiver that sees a gap in the numbers of a node, because a message was lost or
+ * failed to be sent, clears its caches. Messages older than the last one applied from the same node are ignored.
+ */
+public abstract class AbstractInvalidationBusProviderFactory implements InvalidationBusProviderFactory, InvalidationTransport.Listener, Runnable {
+
+    protected static final Logger logger = Logger.getLogger(AbstractInvalidationBusProviderFactory.class);
+
+    public static final long DEFAULT_BATCH_WINDOW = 50;
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    protected final String node = UUID.randomUUID().toString();
+
+    protected long batchWindow;
+    protected BlockingQueue<InvalidationMessage> queue;
+    protected final AtomicBoolean overflow = new AtomicBoolean();
+    protected InvalidationTransport transport;
+
+    // last sequence sent by the dispatcher thread, and last sequence applied by sending node
+    protected long sequence;
+    protected final ConcurrentMap<String, Long> receivedSequences = new ConcurrentHashMap<String, Long>();
+
+    protected volatile RealmCache realmCache;
+    protected volatile UserCache userCache;
+
+    private boolean started;
+    private volatile boolean available;
+    private volatile boolean run = true;
+    private Thread dispatcher;
+
+    protected final AtomicLong sentBatches = new AtomicLong();
+    protected final AtomicLong sentTransactions = new AtomicLong();
+    protected final AtomicLong sendFailures = new AtomicLong();
+    protected final AtomicLong dropped = new AtomicLong();
+    protected final AtomicLong receivedBatches = new AtomicLong();
+    protected final AtomicLong gaps = new AtomicLong();
+    protected final AtomicLong ignored = new AtomicLong();
+    protected volatile long lastSendDelay;
+    protected volatile long lastLag;
+    protected final AtomicLong maxLag = new AtomicLong();
+    protected final AtomicLong totalLag = new AtomicLong();
+
+    @Override
+    public void init(Config.Scope config) {
+        batchWindow = config.getLong("batchWindow", DEFAULT_BATCH_WINDOW);
+        queue = new LinkedBlockingQueue<InvalidationMessage>(config.getInt("queueSize", DEFAULT_QUEUE_SIZE));
+        transport = createTransport(config);
+    }
+
+    /**
+     * Creates the transport. It shouldn't connect until {@link InvalidationTransport#start} is invoked, as factories
+     * are initialized even if they're not used.
+     */
+    protected abstract InvalidationTransport createTransport(Config.Scope config);
+
+    @Override
+    public InvalidationBus create(KeycloakSession session) {
+        start(session.getKeycloakSessionFactory());
+        return new DefaultInvalidationBus(this);
+    }
+
+    protected void start(KeycloakSessionFactory sessionFactory) {
+        synchronized (this) {
+            if (started) return;
+        }
+
+        RealmCache realmCache = null;
+        ProviderFactory<CacheRealmProvider> realmCacheFactory = sessionFactory.getProviderFactory(CacheRealmProvider.class);
+        if (realmCacheFactory instanceof MemoryCacheRealmProviderFactory) {
+            realmCache = ((MemoryCacheRealmProviderFactory) realmCacheFactory).getCache();
+        }
+        UserCache userCache = null;
+        ProviderFactory<CacheUserProvider> userCacheFactory = sessionFactory.getProviderFactory(CacheUserProvider.class);
+        if (userCacheFactory instanceof MemoryCacheUserProviderFactory) {
+            userCache = ((MemoryCacheUserProviderFactory) userCacheFactory).getCache();
+        }
+        start(realmCache, userCache);
+    }
+
+    /**
+     * Starts sending and receiving invalidations, applying the received ones to the given caches
+     */
+    protected synchronized void start(RealmCache realmCache, UserCache userCache) {
+        if (started) return;
+        started = true;
+
+        this.realmCache = realmCache;
+        this.userCache = userCache;
+
+        try {
+            transport.start(this);
+        } catch (IOException e) {
+            logger.error("Failed to start cache invalidation transport, invalidations won't be sent to other nodes", e);
+            return;
+        }
+
+        dispatcher = new Thread(this, "Cache Invalidation Bus");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        available = true;
+
+        logger.debugv("Started cache invalidation bus {0} on node {1}", getId(), node);
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    void publish(InvalidationMessage message) {
+        if (!available) return;
+        if (!queue.offer(message)) {
+            dropped.incrementAndGet();
+            overflow.set(true);
+        }
+    }
+
+    public void run() {
+        while (run) {
+            try {
+                InvalidationMessage batch = queue.poll(1000, TimeUnit.MILLISECONDS);
+                if (batch == null) continue;
+
+                long deadline = batch.getTime() + batchWindow;
+                long remaining;
+                while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+                    InvalidationMessage next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) break;
+                    batch.merge(next);
+                }
+
+                send(batch);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        InvalidationMessage batch = null;
+        InvalidationMessage next;
+        while ((next = queue.poll()) != null) {
+            if (batch == null) {
+                batch = next;
+            } else {
+                batch.merge(next);
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    protected void send(InvalidationMessage batch) {
+        if (overflow.getAndSet(false)) {
+            batch = batch.toClearAll();
+        }
+        // a failed send still uses up its number, so the other nodes see the gap and clear their caches
+        batch.setSequence(++sequence);
+
+        try {
+            transport.send(batch);
+            sentBatches.incrementAndGet();
+            sentTransactions.addAndGet(batch.getTransactions());
+            lastSendDelay = System.currentTimeMillis() - batch.getTime();
+        } catch (Throwable t) {
+            sendFailures.incrementAndGet();
+            logger.error("Failed to send cache invalidations to other nodes", t);
+        }
+    }
+
+    @Override
+    public void received(InvalidationMessage message) {
+        if (node.equals(message.getNode())) return;
+
+        if (!checkSequence(message)) {
+            ignored.incrementAndGet();
+            logger.debugv("Ignoring cache invalidations {0} from node {1}, already received later ones", message.getSequence(), message.getNode());
+            return;
+        }
+
+        try {
+            apply(message);
+        } catch (RuntimeException e) {
+            logger.error("Failed to apply cache invalidations from node " + message.getNode(), e);
+            return;
+        }
+
+        long lag = System.currentTimeMillis() - message.getTime();
+        lastLag = lag;
+        totalLag.addAndGet(lag);
+        long max;
+        while (lag > (max = maxLag.get())) {
+            if (maxLag.compareAndSet(max, lag)) break;
+        }
+        receivedBatches.incrementAndGet();
+
+        logger.debugv("Applied {0} transactions of cache invalidations from node {1}, lag {2} ms", message.getTransactions(), message.getNode(), lag);
+    }
+
+    /**
+     * Records the sequence number of a message from another node. Returns <code>false</code> if a later message from the
+     * node was already received. If messages from the node were missed, the message is changed to clear the caches.
+     */
+    protected boolean checkSequence(InvalidationMessage message) {
+        String sender = message.getNode();
+        long received = message.getSequence();
+        while (true) {
+            Long last = receivedSequences.get(sender);
+            if (last == null) {
+                if (receivedSequences.putIfAbsent(sender, received) == null) return true;
+            } else if (received <= last) {
+                return false;
+            } else if (receivedSequences.replace(sender, last, received)) {
+                if (received != last + 1) {
+                    gaps.incrementAndGet();
+                    logger.debugv("Missed cache invalidations {0} to {1} from node {2}, clearing caches", last + 1, received - 1, sender);
+                    message.setClearRealms(true);
+                    message.setRealmIds(true);
+                    message.setClearUsers(true);
+                }
+                return true;
+            }
+        }
+    }
+
+    protected void apply(InvalidationMessage message) {
+        RealmCache realmCache = this.realmCache;
+        if (realmCache != null) {
+            if (message.isClearRealms()) {
+                realmCache.clear();
+            } else {
+                for (String id : message.getRealms()) {
+                    realmCache.invalidateCachedRealmById(id);
+                }
+                for (String id : message.getRoles()) {
+                    realmCache.invalidateRoleById(id);
+                }
+                for (String id : message.getApplications()) {
+                    realmCache.invalidateCachedApplicationById(id);
+                }
+                for (String id : message.getClients()) {
+                    realmCache.invalidateCachedOAuthClientById(id);
+                }
+                if (message.isRealmIds()) {
+                    realmCache.invalidateRealmIds();
+                }
+            }
+        }
+
+        UserCache userCache = this.userCache;
+        if (userCache != null) {
+            if (message.isClearUsers()) {
+                userCache.clear();
+            } else {
+                for (Map.Entry<String, Set<String>> e : message.getUsers().entrySet()) {
+                    for (String id : e.getValue()) {
+                        userCache.invalidateCachedUserById(e.getKey(), id);
+                    }
+                }
+                for (String realmId : message.getRealmUsers()) {
+                    userCache.invalidateRealmUsers(realmId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        run = false;
+        Thread t;
+        synchronized (this) {
+            t = dispatcher;
+        }
+        if (t != null) {
+            try {
+                t.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (transport != null) {
+            transport.close();
+        }
+    }
+
+    /**
+     * Number of batches sent to other nodes
+     */
+    public long getSentBatches() {
+        return sentBatches.get();
+    }
+
+    /**
+     * Number of transactions whose invalidations were sent to other nodes
+     */
+    public long getSentTransactions() {
+        return sentTransactions.get();
+    }
+
+    /**
+     * Number of batches that failed to be sent
+     */
+    public long getSendFailures() {
+        return sendFailures.get();
+    }
+
+    /**
+     * Number of messages dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Number of batches received from other nodes
+     */
+    public long getReceivedBatches() {
+        return receivedBatches.get();
+    }
+
+    /**
+     * Number of times messages from another node were missed, each of which cleared the caches
+     */
+    public long getGaps() {
+        return gaps.get();
+    }
+
+    /**
+     * Number of messages ignored because a later message from the same node was already received
+     */
+    public long getIgnored() {
+        return ignored.get();
+    }
+
+    /**
+     * Time in milliseconds between the oldest transaction in the last sent batch completing and the batch being sent
+     */
+    public long getLastSendDelay() {
+        return lastSendDelay;
+    }
+
+    /**
+     * Time in milliseconds between the oldest transaction in the last received batch completing on the other node and
+     * the batch being applied on this node. Includes any difference between the clocks of the nodes.
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    public long getMaxLag() {
+        return maxLag.get();
+    }
+
+    public long getAverageLag() {
+        long count = receivedBatches.get();
+        return count > 0 ? totalLag.get() / count : 0;
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put("sentBatches", getSentBatches());
+        stats.put("sentTransactions", getSentTransactions());
+        stats.put("sendFailures", getSendFailures());
+        stats.put("dropped", getDropped());
+        stats.put("queueSize", (long) queue.size());
+        stats.put("receivedBatches", getReceivedBatches());
+        stats.put("gaps", getGaps());
+        stats.put("ignored", getIgnored());
+        stats.put("lastSendDelay", getLastSendDelay());
+        stats.put("lastLag", getLastLag());
+        stats.put("maxLag", getMaxLag());
+        stats.put("averageLag", getAverageLag());
+        return stats;
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.keycloak.models.cache.invalidation;
+
+/**
+ * Collects the invalidations of one session into a single message, which is handed to the factory for sending when
+ * the session is closed
+ */
+public class DefaultInvalidationBus implements InvalidationBus {
+
+    protected final AbstractInvalidationBusProviderFactory factory;
+    protected InvalidationMessage message;
+
+    public DefaultInvalidationBus(AbstractInvalidationBusProviderFactory factory) {
+        this.factory = factory;
+    }
+
+    protected InvalidationMessage getMessage() {
+        if (message == null) {
+            message = new InvalidationMessage(factory.getNode());
+        }
+        return message;
+    }
+
+    @Override
+    public void invalidateRealm(String id) {
+        getMessage().getRealms().add(id);
+    }
+
+    @Override
+    public void invalidateApplication(String id) {
+        getMessage().getApplications().add(id);
+    }
+
+    @Override
+    public void invalidateRole(String id) {
+        getMessage().getRoles().add(id);
+    }
+
+    @Override
+    public void invalidateOAuthClient(String id) {
+        getMessage().getClients().add(id);
+    }
+
+    @Override
+    public void invalidateRealmIds() {
+        getMessage().setRealmIds(true);
+    }
+
+    @Override
+    public void clearRealmCache() {
+        getMessage().setClearRealms(true);
+    }
+
+    @Override
+    public void invalidateUser(String realmId, String id) {
+        getMessage().addUser(realmId, id);
+    }
+
+    @Override
+    public void invalidateRealmUsers(String realmId) {
+        getMessage().getRealmUsers().add(realmId);
+    }
+
+    @Override
+    public void clearUserCache() {
+        getMessage().setClearUsers(true);
+    }
+
+    @Override
+    public void close() {
+        if (message != null && !message.isEmpty()) {
+            message.setTime(System.currentTimeMillis());
+            factory.publish(message);
+        }
+        message = null;
+    }
+
+}
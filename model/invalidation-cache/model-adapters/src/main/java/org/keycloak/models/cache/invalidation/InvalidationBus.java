@@ -0,0 +1,30 @@
+package org.keycloak.models.cache.invalidation;
+
+import org.keycloak.provider.Provider;
+
+/**
+ * Collects the cache invalidations of a session and broadcasts them to the other nodes of the cluster when the session
+ * is closed. Invalidations are registered by the cache providers after their transaction committed, so changes that are
+ * rolled back are never sent.
+ */
+public interface InvalidationBus extends Provider {
+
+    void invalidateRealm(String id);
+
+    void invalidateApplication(String id);
+
+    void invalidateRole(String id);
+
+    void invalidateOAuthClient(String id);
+
+    void invalidateRealmIds();
+
+    void clearRealmCache();
+
+    void invalidateUser(String realmId, String id);
+
+    void invalidateRealmUsers(String realmId);
+
+    void clearUserCache();
+
+}
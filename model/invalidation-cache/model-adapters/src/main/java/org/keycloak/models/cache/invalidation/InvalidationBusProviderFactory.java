@@ -0,0 +1,7 @@
+package org.keycloak.models.cache.invalidation;
+
+import org.keycloak.provider.ProviderFactory;
+
+public interface InvalidationBusProviderFactory extends ProviderFactory<InvalidationBus> {
+
+}
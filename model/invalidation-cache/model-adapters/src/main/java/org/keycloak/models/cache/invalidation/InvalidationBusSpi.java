@@ -0,0 +1,23 @@
+package org.keycloak.models.cache.invalidation;
+
+import org.keycloak.provider.Provider;
+import org.keycloak.provider.ProviderFactory;
+import org.keycloak.provider.Spi;
+
+public class InvalidationBusSpi implements Spi {
+
+    @Override
+    public String getName() {
+        return "invalidationBus";
+    }
+
+    @Override
+    public Class<? extends Provider> getProviderClass() {
+        return InvalidationBus.class;
+    }
+
+    @Override
+    public Class<? extends ProviderFactory> getProviderFactoryClass() {
+        return InvalidationBusProviderFactory.class;
+    }
+}
@@ -0,0 +1,307 @@
+package org.keycloak.models.cache.invalidation;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ids invalidated by one or more transactions on a node. The binary form is signed with a HMAC of a secret shared by
+ * all nodes, and carries a sequence number so receivers can detect lost messages.
+ */
+public class InvalidationMessage {
+
+    private static final int MAGIC = 0x4b43494e;
+    private static final byte VERSION = 2;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+
+    private static final byte CLEAR_REALMS = 1;
+    private static final byte CLEAR_USERS = 2;
+    private static final byte REALM_IDS = 4;
+
+    private String node;
+    private long sequence;
+    private long time;
+    private int transactions;
+
+    private boolean clearRealms;
+    private boolean clearUsers;
+    private boolean realmIds;
+    private Set<String> realms = new HashSet<String>();
+    private Set<String> applications = new HashSet<String>();
+    private Set<String> roles = new HashSet<String>();
+    private Set<String> clients = new HashSet<String>();
+    private Set<String> realmUsers = new HashSet<String>();
+    private Map<String, Set<String>> users = new HashMap<String, Set<String>>();
+
+    public InvalidationMessage(String node) {
+        this.node = node;
+        this.time = System.currentTimeMillis();
+        this.transactions = 1;
+    }
+
+    /**
+     * Id of the node that sent the message
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Number of the message among the messages sent by its node, starting at 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Time in milliseconds the oldest transaction in the message completed
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    /**
+     * Number of transactions merged into the message
+     */
+    public int getTransactions() {
+        return transactions;
+    }
+
+    public boolean isClearRealms() {
+        return clearRealms;
+    }
+
+    public void setClearRealms(boolean clearRealms) {
+        this.clearRealms = clearRealms;
+    }
+
+    public boolean isClearUsers() {
+        return clearUsers;
+    }
+
+    public void setClearUsers(boolean clearUsers) {
+        this.clearUsers = clearUsers;
+    }
+
+    public boolean isRealmIds() {
+        return realmIds;
+    }
+
+    public void setRealmIds(boolean realmIds) {
+        this.realmIds = realmIds;
+    }
+
+    public Set<String> getRealms() {
+        return realms;
+    }
+
+    public Set<String> getApplications() {
+        return applications;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    public Set<String> getClients() {
+        return clients;
+    }
+
+    public Set<String> getRealmUsers() {
+        return realmUsers;
+    }
+
+    /**
+     * Invalidated user ids by realm id
+     */
+    public Map<String, Set<String>> getUsers() {
+        return users;
+    }
+
+    public void addUser(String realmId, String id) {
+        Set<String> ids = users.get(realmId);
+        if (ids == null) {
+            ids = new HashSet<String>();
+            users.put(realmId, ids);
+        }
+        ids.add(id);
+    }
+
+    public boolean isEmpty() {
+        return !clearRealms && !clearUsers && !realmIds && realms.isEmpty() && applications.isEmpty() && roles.isEmpty()
+                && clients.isEmpty() && realmUsers.isEmpty() && users.isEmpty();
+    }
+
+    /**
+     * Adds the invalidations of another message to this one
+     */
+    public void merge(InvalidationMessage other) {
+        time = Math.min(time, other.time);
+        transactions += other.transactions;
+
+        clearRealms |= other.clearRealms;
+        clearUsers |= other.clearUsers;
+        realmIds |= other.realmIds;
+        realms.addAll(other.realms);
+        applications.addAll(other.applications);
+        roles.addAll(other.roles);
+        clients.addAll(other.clients);
+        realmUsers.addAll(other.realmUsers);
+        for (Map.Entry<String, Set<String>> e : other.users.entrySet()) {
+            for (String id : e.getValue()) {
+                addUser(e.getKey(), id);
+            }
+        }
+    }
+
+    /**
+     * Returns a message that clears both caches instead of listing ids, used when a message is too large to be sent
+     */
+    public InvalidationMessage toClearAll() {
+        InvalidationMessage message = new InvalidationMessage(node);
+        message.sequence = sequence;
+        message.time = time;
+        message.transactions = transactions;
+        message.clearRealms = true;
+        message.clearUsers = true;
+        message.realmIds = true;
+        return message;
+    }
+
+    /**
+     * Serializes the message, followed by its HMAC with the given secret
+     */
+    public byte[] toBytes(byte[] secret) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(node);
+        out.writeLong(sequence);
+        out.writeLong(time);
+        out.writeInt(transactions);
+
+        byte flags = 0;
+        if (clearRealms) flags |= CLEAR_REALMS;
+        if (clearUsers) flags |= CLEAR_USERS;
+        if (realmIds) flags |= REALM_IDS;
+        out.writeByte(flags);
+
+        writeSet(out, realms);
+        writeSet(out, applications);
+        writeSet(out, roles);
+        writeSet(out, clients);
+        writeSet(out, realmUsers);
+
+        out.writeInt(users.size());
+        for (Map.Entry<String, Set<String>> e : users.entrySet()) {
+            out.writeUTF(e.getKey());
+            writeSet(out, e.getValue());
+        }
+
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        out.write(mac(secret, payload, 0, payload.length));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a message written by {@link #toBytes}. Throws an {@link IOException} if it isn't signed with the given
+     * secret.
+     */
+    public static InvalidationMessage fromBytes(byte[] data, int offset, int length, byte[] secret) throws IOException {
+        if (length <= MAC_LENGTH) {
+            throw new IOException("Not an invalidation message");
+        }
+        int payloadLength = length - MAC_LENGTH;
+        byte[] expected = mac(secret, data, offset, payloadLength);
+        byte[] actual = new byte[MAC_LENGTH];
+        System.arraycopy(data, offset + payloadLength, actual, 0, MAC_LENGTH);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new IOException("Invalid invalidation message signature");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, payloadLength));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an invalidation message");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported invalidation message version " + version);
+        }
+
+        InvalidationMessage message = new InvalidationMessage(in.readUTF());
+        message.sequence = in.readLong();
+        message.time = in.readLong();
+        message.transactions = in.readInt();
+
+        byte flags = in.readByte();
+        message.clearRealms = (flags & CLEAR_REALMS) != 0;
+        message.clearUsers = (flags & CLEAR_USERS) != 0;
+        message.realmIds = (flags & REALM_IDS) != 0;
+
+        readSet(in, message.realms);
+        readSet(in, message.applications);
+        readSet(in, message.roles);
+        readSet(in, message.clients);
+        readSet(in, message.realmUsers);
+
+        int realmCount = in.readInt();
+        for (int i = 0; i < realmCount; i++) {
+            String realmId = in.readUTF();
+            Set<String> ids = new HashSet<String>();
+            readSet(in, ids);
+            message.users.put(realmId, ids);
+        }
+        if (in.available() > 0) {
+            throw new IOException("Unexpected data after invalidation message");
+        }
+        return message;
+    }
+
+    private static byte[] mac(byte[] secret, byte[] data, int offset, int length) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+            mac.update(data, offset, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to sign invalidation message", e);
+        }
+    }
+
+    private static void writeSet(DataOutputStream out, Set<String> set) throws IOException {
+        out.writeInt(set.size());
+        for (String s : set) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static void readSet(DataInputStream in, Set<String> set) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            set.add(in.readUTF());
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package org.keycloak.models.cache.invalidation;
+
+import java.io.IOException;
+
+/**
+ * Delivers invalidation messages to all other nodes of the cluster
+ */
+public interface InvalidationTransport {
+
+    void start(Listener listener) throws IOException;
+
+    void send(InvalidationMessage message) throws IOException;
+
+    void close();
+
+    interface Listener {
+
+        void received(InvalidationMessage message);
+
+    }
+
+}
@@ -0,0 +1,19 @@
+package org.keycloak.models.cache.invalidation;
+
+import org.keycloak.Config;
+
+public class LocalInvalidationBusProviderFactory extends AbstractInvalidationBusProviderFactory {
+
+    public static final String ID = "local";
+
+    @Override
+    protected InvalidationTransport createTransport(Config.Scope config) {
+        return new LocalInvalidationTransport(config.get("channel", "default"));
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.keycloak.models.cache.invalidation;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers messages to the other members of a channel in the same JVM, for example several deployments of the server
+ * in one container, or tests
+ */
+public class LocalInvalidationTransport implements InvalidationTransport {
+
+    private static final ConcurrentMap<String, List<Listener>> channels = new ConcurrentHashMap<String, List<Listener>>();
+
+    private final String channel;
+    private Listener listener;
+
+    public LocalInvalidationTransport(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        List<Listener> members = channels.get(channel);
+        if (members == null) {
+            members = new CopyOnWriteArrayList<Listener>();
+            List<Listener> existing = channels.putIfAbsent(channel, members);
+            if (existing != null) {
+                members = existing;
+            }
+        }
+        members.add(listener);
+    }
+
+    @Override
+    public void send(InvalidationMessage message) {
+        List<Listener> members = channels.get(channel);
+        if (members == null) return;
+        for (Listener member : members) {
+            if (member != listener) {
+                member.received(message);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Listener> members = channels.get(channel);
+        if (members != null && listener != null) {
+            members.remove(listener);
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package org.keycloak.models.cache.invalidation;
+
+import org.keycloak.Config;
+
+/**
+ * Sends invalidations over UDP multicast. All nodes must be configured with the same <code>secret</code>, which is
+ * used to sign the messages; the bus isn't started without it.
+ */
+public class MulticastInvalidationBusProviderFactory extends AbstractInvalidationBusProviderFactory {
+
+    public static final String ID = "multicast";
+
+    public static final String DEFAULT_GROUP = "230.0.0.4";
+    public static final int DEFAULT_PORT = 45688;
+    public static final int DEFAULT_TIME_TO_LIVE = 1;
+
+    @Override
+    protected InvalidationTransport createTransport(Config.Scope config) {
+        return new MulticastInvalidationTransport(config.get("group", DEFAULT_GROUP), config.getInt("port", DEFAULT_PORT),
+                config.getInt("timeToLive", DEFAULT_TIME_TO_LIVE), config.get("interface"), config.get("secret"));
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+}
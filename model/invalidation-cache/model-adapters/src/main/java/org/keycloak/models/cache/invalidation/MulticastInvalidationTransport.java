@@ -0,0 +1,115 @@
+package org.keycloak.models.cache.invalidation;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+
+/**
+ * Sends each message as a single UDP multicast datagram. Messages too large for a datagram are replaced by a message
+ * that clears the caches of the other nodes. Datagrams that aren't signed with the shared secret are dropped.
+ */
+public class MulticastInvalidationTransport implements InvalidationTransport, Runnable {
+
+    private static final Logger logger = Logger.getLogger(MulticastInvalidationTransport.class);
+
+    public static final int MAX_DATAGRAM_SIZE = 60000;
+
+    private final String group;
+    private final int port;
+    private final int timeToLive;
+    private final String networkInterface;
+    private final byte[] secret;
+
+    private InetAddress groupAddress;
+    private MulticastSocket socket;
+    private Listener listener;
+    private volatile boolean run = true;
+    private Thread receiver;
+
+    public MulticastInvalidationTransport(String group, int port, int timeToLive, String networkInterface, String secret) {
+        this.group = group;
+        this.port = port;
+        this.timeToLive = timeToLive;
+        this.networkInterface = networkInterface;
+        try {
+            this.secret = secret != null ? secret.getBytes("UTF-8") : null;
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void start(Listener listener) throws IOException {
+        if (secret == null || secret.length == 0) {
+            throw new IOException("No secret configured for multicast cache invalidation");
+        }
+        this.listener = listener;
+
+        groupAddress = InetAddress.getByName(group);
+        socket = new MulticastSocket(port);
+        socket.setTimeToLive(timeToLive);
+        if (networkInterface != null) {
+            socket.setInterface(InetAddress.getByName(networkInterface));
+        }
+        socket.joinGroup(groupAddress);
+
+        receiver = new Thread(this, "Cache Invalidation Receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        logger.debugv("Joined cache invalidation group {0}:{1}", group, port);
+    }
+
+    @Override
+    public void send(InvalidationMessage message) throws IOException {
+        byte[] data = message.toBytes(secret);
+        if (data.length > MAX_DATAGRAM_SIZE) {
+            logger.debugv("Invalidation message of {0} bytes too large, clearing caches instead", data.length);
+            data = message.toClearAll().toBytes(secret);
+        }
+        socket.send(new DatagramPacket(data, data.length, groupAddress, port));
+    }
+
+    public void run() {
+        byte[] buffer = new byte[65536];
+        while (run) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (!run || socket.isClosed()) {
+                    break;
+                }
+                logger.error("Failed to receive cache invalidations", e);
+                continue;
+            }
+
+            InvalidationMessage message;
+            try {
+                message = InvalidationMessage.fromBytes(packet.getData(), packet.getOffset(), packet.getLength(), secret);
+            } catch (IOException e) {
+                logger.warnv("Ignoring invalid cache invalidation message from {0}: {1}", packet.getSocketAddress(), e.getMessage());
+                continue;
+            }
+            listener.received(message);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        run = false;
+        if (socket != null) {
+            try {
+                socket.leaveGroup(groupAddress);
+            } catch (IOException e) {
+                // ignore
+            }
+            socket.close();
+        }
+    }
+
+}
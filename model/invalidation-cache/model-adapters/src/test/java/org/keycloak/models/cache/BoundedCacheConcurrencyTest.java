@@ -0,0 +1,162 @@
+package org.keycloak.models.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedCacheConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 20000;
+
+    @Test
+    public void concurrentGetAndPut() throws Exception {
+        final BoundedCache<String> cache = new BoundedCache<String>(100, -1);
+
+        run(new Worker() {
+            @Override
+            public void run(Random random) {
+                String key = "key-" + random.nextInt(500);
+                String value = cache.get(key);
+                if (value == null) {
+                    cache.put(key, "value-" + key);
+                } else {
+                    Assert.assertEquals("value-" + key, value);
+                }
+            }
+        });
+
+        Assert.assertTrue(cache.size() <= 100);
+        assertConsistent(cache);
+    }
+
+    @Test
+    public void invalidateDuringDrain() throws Exception {
+        final BoundedCache<String> cache = new BoundedCache<String>(50, -1);
+        for (int i = 0; i < 50; i++) {
+            cache.put("key-" + i, "value-" + i);
+        }
+
+        // Readers keep the read buffer full so it's drained all the time, while entries in it are removed and re-added
+        run(new Worker() {
+            @Override
+            public void run(Random random) {
+                String key = "key-" + random.nextInt(100);
+                int op = random.nextInt(10);
+                if (op < 7) {
+                    cache.get(key);
+                } else if (op < 9) {
+                    cache.remove(key);
+                } else {
+                    cache.put(key, "value-" + key);
+                }
+            }
+        });
+
+        Assert.assertTrue(cache.size() <= 50);
+        assertConsistent(cache);
+
+        // Entries removed while their access was buffered must not be evicted or re-linked later
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        assertConsistent(cache);
+
+        for (int i = 0; i < 60; i++) {
+            cache.put("new-" + i, "value-" + i);
+        }
+        Assert.assertEquals(50, cache.size());
+        assertConsistent(cache);
+    }
+
+    @Test
+    public void concurrentClear() throws Exception {
+        final BoundedCache<String> cache = new BoundedCache<String>(20, -1);
+
+        run(new Worker() {
+            @Override
+            public void run(Random random) {
+                String key = "key-" + random.nextInt(50);
+                int op = random.nextInt(100);
+                if (op == 0) {
+                    cache.clear();
+                } else if (op < 50) {
+                    cache.get(key);
+                } else {
+                    cache.put(key, "value-" + key);
+                }
+            }
+        });
+
+        Assert.assertTrue(cache.size() <= 20);
+        assertConsistent(cache);
+    }
+
+    /**
+     * Checks that the LRU list holds exactly the entries in the map, once no other thread uses the cache
+     */
+    private void assertConsistent(BoundedCache<String> cache) {
+        cache.evictionLock.lock();
+        try {
+            cache.drainReadBuffer();
+
+            Set<BoundedCache.Node<String>> linked = new HashSet<BoundedCache.Node<String>>();
+            BoundedCache.Node<String> prev = null;
+            for (BoundedCache.Node<String> node = cache.head; node != null; node = node.next) {
+                Assert.assertTrue(node.linked);
+                Assert.assertSame(prev, node.prev);
+                Assert.assertTrue(linked.add(node));
+                prev = node;
+            }
+            Assert.assertSame(prev, cache.tail);
+
+            Assert.assertEquals(new HashSet<BoundedCache.Node<String>>(cache.map.values()), linked);
+        } finally {
+            cache.evictionLock.unlock();
+        }
+    }
+
+    private void run(final Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new LinkedList<Future<Void>>();
+            for (int t = 0; t < THREADS; t++) {
+                final long seed = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Random random = new Random(seed);
+                        start.await();
+                        for (int i = 0; i < OPERATIONS; i++) {
+                            worker.run(random);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface Worker {
+        void run(Random random);
+    }
+
+}
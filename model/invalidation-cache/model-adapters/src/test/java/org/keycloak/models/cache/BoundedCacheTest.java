@@ -0,0 +1,136 @@
+package org.keycloak.models.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        BoundedCache<String> cache = new BoundedCache<String>(3, -1);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+
+        Assert.assertEquals("A", cache.get("a"));
+
+        cache.put("d", "D");
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("A", cache.get("a"));
+        Assert.assertEquals("C", cache.get("c"));
+        Assert.assertEquals("D", cache.get("d"));
+
+        cache.put("e", "E");
+
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    public void replacedEntryIsMostRecentlyUsed() {
+        BoundedCache<String> cache = new BoundedCache<String>(2, -1);
+        cache.put("a", "A");
+        cache.put("b", "B");
+
+        Assert.assertEquals("A", cache.put("a", "A2"));
+
+        cache.put("c", "C");
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("A2", cache.get("a"));
+    }
+
+    @Test
+    public void sizeNeverExceedsCapacity() {
+        BoundedCache<String> cache = new BoundedCache<String>(10, -1);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key-" + i, "value-" + i);
+            cache.get("key-" + (i / 2));
+            Assert.assertTrue(cache.size() <= 10);
+        }
+
+        Assert.assertEquals(10, cache.size());
+        Assert.assertEquals(990, cache.getEvictions());
+        for (int i = 990; i < 1000; i++) {
+            Assert.assertEquals("value-" + i, cache.get("key-" + i));
+        }
+    }
+
+    @Test
+    public void shrinkingEvicts() {
+        BoundedCache<String> cache = new BoundedCache<String>(5, -1);
+        for (int i = 0; i < 5; i++) {
+            cache.put("key-" + i, "value-" + i);
+        }
+
+        cache.setMaxSize(2);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals("value-3", cache.get("key-3"));
+        Assert.assertEquals("value-4", cache.get("key-4"));
+    }
+
+    @Test
+    public void unbounded() {
+        BoundedCache<String> cache = new BoundedCache<String>(-1, -1);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key-" + i, "value-" + i);
+        }
+
+        Assert.assertEquals(1000, cache.size());
+        Assert.assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void expires() throws InterruptedException {
+        BoundedCache<String> cache = new BoundedCache<String>(10, 50);
+        cache.put("a", "A");
+
+        Assert.assertEquals("A", cache.get("a"));
+
+        Thread.sleep(100);
+
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    public void removalCallback() {
+        final List<String> removed = new LinkedList<String>();
+        BoundedCache<String> cache = new BoundedCache<String>(1, -1) {
+            @Override
+            protected void onRemoval(String key, String value) {
+                removed.add(key);
+            }
+        };
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.remove("b");
+
+        Assert.assertEquals(1, removed.size());
+        Assert.assertEquals("a", removed.get(0));
+        Assert.assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void stats() {
+        BoundedCache<String> cache = new BoundedCache<String>(1, -1);
+        cache.put("a", "A");
+        cache.get("a");
+        cache.get("b");
+        cache.put("b", "B");
+
+        CacheStats stats = cache.getStats();
+        Assert.assertEquals(1, stats.getSize());
+        Assert.assertEquals(1, stats.getMaxSize());
+        Assert.assertEquals(1, stats.getHits());
+        Assert.assertEquals(1, stats.getMisses());
+        Assert.assertEquals(1, stats.getEvictions());
+    }
+
+}
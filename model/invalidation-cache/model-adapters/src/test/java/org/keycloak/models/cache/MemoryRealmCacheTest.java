@@ -0,0 +1,74 @@
+package org.keycloak.models.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+import org.keycloak.models.cache.entities.CachedRealmRole;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+public class MemoryRealmCacheTest {
+
+    private MemoryRealmCache cache = new MemoryRealmCache();
+
+    @Test
+    public void roleInvalidationOnlyChangesItsRealm() {
+        cache.addCachedRole(new CachedRealmRole(role("a-role"), realm("a")));
+        long a = cache.getRoleVersion("a");
+        long b = cache.getRoleVersion("b");
+
+        cache.invalidateRoleById("a-role");
+
+        Assert.assertNotEquals(a, cache.getRoleVersion("a"));
+        Assert.assertEquals(b, cache.getRoleVersion("b"));
+    }
+
+    @Test
+    public void uncachedRoleInvalidationChangesAllRealms() {
+        cache.addCachedRole(new CachedRealmRole(role("a-role"), realm("a")));
+        cache.invalidateRoleById("a-role");
+        long a = cache.getRoleVersion("a");
+        long b = cache.getRoleVersion("b");
+
+        cache.invalidateRoleById("unknown");
+
+        Assert.assertNotEquals(a, cache.getRoleVersion("a"));
+        Assert.assertNotEquals(b, cache.getRoleVersion("b"));
+    }
+
+    @Test
+    public void versionsNeverRepeat() {
+        cache.addCachedRole(new CachedRealmRole(role("a-role"), realm("a")));
+        cache.invalidateRoleById("a-role");
+        long a = cache.getRoleVersion("a");
+
+        // the realm's own version is dropped on clear, but the new global version is higher
+        cache.clear();
+        Assert.assertTrue(cache.getRoleVersion("a") > a);
+    }
+
+    private static RealmModel realm(final String id) {
+        return stub(RealmModel.class, id);
+    }
+
+    private static RoleModel role(final String id) {
+        return stub(RoleModel.class, id);
+    }
+
+    private static <T> T stub(Class<T> type, final String id) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getId") || method.getName().equals("getName")) return id;
+                if (method.getName().equals("isComposite")) return false;
+                if (method.getName().equals("getComposites")) return Collections.emptySet();
+                return null;
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,172 @@
+package org.keycloak.models.cache.invalidation;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.Config;
+import org.keycloak.models.cache.RealmCache;
+import org.keycloak.models.cache.UserCache;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class InvalidationBusTest {
+
+    private String prefix;
+
+    private LocalInvalidationBusProviderFactory node1;
+    private LocalInvalidationBusProviderFactory node2;
+
+    private List<String> node1Calls = new CopyOnWriteArrayList<String>();
+    private List<String> node2Calls = new CopyOnWriteArrayList<String>();
+
+    @Before
+    public void before() {
+        prefix = "test.invalidationBus." + UUID.randomUUID() + ".";
+        System.setProperty(prefix + "channel", UUID.randomUUID().toString());
+        System.setProperty(prefix + "batchWindow", "10");
+
+        node1 = start(node1Calls);
+        node2 = start(node2Calls);
+    }
+
+    @After
+    public void after() {
+        node1.close();
+        node2.close();
+        System.clearProperty(prefix + "channel");
+        System.clearProperty(prefix + "batchWindow");
+    }
+
+    @Test
+    public void invalidationsReachOtherNode() throws InterruptedException {
+        DefaultInvalidationBus bus = new DefaultInvalidationBus(node1);
+        bus.invalidateRealm("realm-1");
+        bus.invalidateRole("role-1");
+        bus.invalidateUser("realm-1", "user-1");
+        bus.close();
+
+        awaitCall(node2Calls, "invalidateCachedUserById realm-1 user-1");
+        Assert.assertTrue(node2Calls.contains("invalidateCachedRealmById realm-1"));
+        Assert.assertTrue(node2Calls.contains("invalidateRoleById role-1"));
+        Assert.assertFalse(node2Calls.contains("clear"));
+
+        Assert.assertTrue(node1Calls.isEmpty());
+        Assert.assertEquals(1, node1.getSentBatches());
+        Assert.assertEquals(1, node2.getReceivedBatches());
+    }
+
+    @Test
+    public void consecutiveBatchesDontClear() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            DefaultInvalidationBus bus = new DefaultInvalidationBus(node1);
+            bus.invalidateRealm("realm-" + i);
+            bus.close();
+            awaitCall(node2Calls, "invalidateCachedRealmById realm-" + i);
+        }
+
+        Assert.assertEquals(5, node2.getReceivedBatches());
+        Assert.assertEquals(0, node2.getGaps());
+        Assert.assertFalse(node2Calls.contains("clear"));
+    }
+
+    @Test
+    public void missedMessagesClearCaches() {
+        node2.received(message(1, "realm-1"));
+        Assert.assertTrue(node2Calls.contains("invalidateCachedRealmById realm-1"));
+        Assert.assertFalse(node2Calls.contains("clear"));
+
+        node2.received(message(3, "realm-3"));
+        Assert.assertEquals(2, count(node2Calls, "clear"));
+        Assert.assertEquals(1, node2.getGaps());
+
+        node2Calls.clear();
+        node2.received(message(2, "realm-2"));
+        node2.received(message(3, "realm-3"));
+        Assert.assertTrue(node2Calls.isEmpty());
+        Assert.assertEquals(2, node2.getIgnored());
+
+        node2.received(message(4, "realm-4"));
+        Assert.assertTrue(node2Calls.contains("invalidateCachedRealmById realm-4"));
+        Assert.assertFalse(node2Calls.contains("clear"));
+        Assert.assertEquals(1, node2.getGaps());
+        Assert.assertEquals(3, node2.getReceivedBatches());
+    }
+
+    @Test
+    public void sequencesArePerNode() {
+        node2.received(message("other-1", 5, "realm-1"));
+        node2.received(message("other-2", 1, "realm-2"));
+        node2.received(message("other-1", 6, "realm-3"));
+        node2.received(message("other-2", 2, "realm-4"));
+
+        Assert.assertFalse(node2Calls.contains("clear"));
+        Assert.assertEquals(0, node2.getGaps());
+        Assert.assertEquals(4, node2.getReceivedBatches());
+    }
+
+    private LocalInvalidationBusProviderFactory start(List<String> calls) {
+        LocalInvalidationBusProviderFactory factory = new LocalInvalidationBusProviderFactory();
+        factory.init(new Config.SystemPropertiesScope(prefix));
+        factory.start(recorder(RealmCache.class, calls), recorder(UserCache.class, calls));
+        return factory;
+    }
+
+    private InvalidationMessage message(long sequence, String realmId) {
+        return message("other", sequence, realmId);
+    }
+
+    private InvalidationMessage message(String node, long sequence, String realmId) {
+        InvalidationMessage message = new InvalidationMessage(node);
+        message.setSequence(sequence);
+        message.getRealms().add(realmId);
+        return message;
+    }
+
+    private void awaitCall(List<String> calls, String call) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!calls.contains(call)) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Expected " + call + " in " + calls);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private int count(List<String> calls, String call) {
+        int count = 0;
+        for (String c : calls) {
+            if (c.equals(call)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Cache that records the invalidations applied to it as "method arg1 arg2"
+     */
+    private <T> T recorder(Class<T> type, final List<String> calls) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                StringBuilder call = new StringBuilder(method.getName());
+                if (args != null) {
+                    for (Object arg : args) {
+                        call.append(" ").append(arg);
+                    }
+                }
+                calls.add(call.toString());
+
+                Class<?> returnType = method.getReturnType();
+                if (returnType == boolean.class) return false;
+                if (returnType == long.class) return 0L;
+                return null;
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.keycloak.models.cache.invalidation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class InvalidationMessageTest {
+
+    private static final byte[] SECRET = "secret".getBytes();
+
+    @Test
+    public void roundTrip() throws IOException {
+        InvalidationMessage message = new InvalidationMessage("node-1");
+        message.setSequence(42);
+        message.setTime(1234567890L);
+        message.setRealmIds(true);
+        message.getRealms().add("realm-1");
+        message.getApplications().add("app-1");
+        message.getRoles().add("role-1");
+        message.getRoles().add("role-2");
+        message.getClients().add("client-1");
+        message.getRealmUsers().add("realm-2");
+        message.addUser("realm-1", "user-1");
+        message.addUser("realm-1", "user-2");
+        message.addUser("realm-3", "user-3");
+
+        byte[] data = message.toBytes(SECRET);
+        byte[] padded = new byte[data.length + 10];
+        System.arraycopy(data, 0, padded, 5, data.length);
+
+        InvalidationMessage read = InvalidationMessage.fromBytes(padded, 5, data.length, SECRET);
+
+        Assert.assertEquals("node-1", read.getNode());
+        Assert.assertEquals(42, read.getSequence());
+        Assert.assertEquals(1234567890L, read.getTime());
+        Assert.assertEquals(1, read.getTransactions());
+        Assert.assertFalse(read.isClearRealms());
+        Assert.assertFalse(read.isClearUsers());
+        Assert.assertTrue(read.isRealmIds());
+        Assert.assertEquals(message.getRealms(), read.getRealms());
+        Assert.assertEquals(message.getApplications(), read.getApplications());
+        Assert.assertEquals(message.getRoles(), read.getRoles());
+        Assert.assertEquals(message.getClients(), read.getClients());
+        Assert.assertEquals(message.getRealmUsers(), read.getRealmUsers());
+        Assert.assertEquals(message.getUsers(), read.getUsers());
+    }
+
+    @Test
+    public void roundTripClearAll() throws IOException {
+        InvalidationMessage message = new InvalidationMessage("node-1");
+        message.setSequence(7);
+        message.getRealms().add("realm-1");
+        message.merge(new InvalidationMessage("node-1"));
+
+        InvalidationMessage clearAll = message.toClearAll();
+        byte[] data = clearAll.toBytes(SECRET);
+        InvalidationMessage read = InvalidationMessage.fromBytes(data, 0, data.length, SECRET);
+
+        Assert.assertEquals(7, read.getSequence());
+        Assert.assertEquals(2, read.getTransactions());
+        Assert.assertTrue(read.isClearRealms());
+        Assert.assertTrue(read.isClearUsers());
+        Assert.assertTrue(read.isRealmIds());
+        Assert.assertTrue(read.getRealms().isEmpty());
+    }
+
+    @Test
+    public void wrongSecret() throws IOException {
+        InvalidationMessage message = new InvalidationMessage("node-1");
+        message.setClearRealms(true);
+        byte[] data = message.toBytes(SECRET);
+
+        assertInvalid(data, "other".getBytes());
+    }
+
+    @Test
+    public void tampered() throws IOException {
+        InvalidationMessage message = new InvalidationMessage("node-1");
+        message.getRealms().add("realm-1");
+        byte[] data = message.toBytes(SECRET);
+
+        for (int i = 0; i < data.length; i++) {
+            byte[] tampered = Arrays.copyOf(data, data.length);
+            tampered[i] ^= 1;
+            assertInvalid(tampered, SECRET);
+        }
+    }
+
+    @Test
+    public void truncated() throws IOException {
+        InvalidationMessage message = new InvalidationMessage("node-1");
+        message.getRealms().addAll(new HashSet<String>(Arrays.asList("realm-1", "realm-2")));
+        byte[] data = message.toBytes(SECRET);
+
+        for (int length = 0; length < data.length; length++) {
+            assertInvalid(Arrays.copyOf(data, length), SECRET);
+        }
+    }
+
+    private void assertInvalid(byte[] data, byte[] secret) {
+        try {
+            InvalidationMessage.fromBytes(data, 0, data.length, secret);
+            Assert.fail("Expected invalid message");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+}
@@ -105,7 +105,7 @@ public class ApplicationAdapter extends ClientAdapter implements ApplicationMode
     public RoleModel getRole(String name) {
         TypedQuery<RoleEntity> query = em.createNamedQuery("getAppRoleByName", RoleEntity.class);
         query.setParameter("name", name);
-        query.setParameter("application", entity);
+        query.setParameter("application", entity.getId());
         List<RoleEntity> roles = query.getResultList();
         if (roles.size() == 0) return null;
         return new RoleAdapter(realm, em, roles.get(0));
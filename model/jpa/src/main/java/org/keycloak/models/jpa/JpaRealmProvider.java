@@ -25,6 +25,7 @@ import java.util.List;
 public class JpaRealmProvider implements RealmProvider {
     private final KeycloakSession session;
     protected EntityManager em;
+    protected NameIndex names = new NameIndex();
 
     public JpaRealmProvider(KeycloakSession session, EntityManager em) {
         this.session = session;
@@ -43,14 +44,14 @@ public class JpaRealmProvider implements RealmProvider {
         realm.setId(id);
         em.persist(realm);
         em.flush();
-        return new RealmAdapter(session, em, realm);
+        return new RealmAdapter(session, em, realm, names);
     }
 
     @Override
     public RealmModel getRealm(String id) {
         RealmEntity realm = em.find(RealmEntity.class, id);
         if (realm == null) return null;
-        return new RealmAdapter(session, em, realm);
+        return new RealmAdapter(session, em, realm, names);
     }
 
     @Override
@@ -59,11 +60,17 @@ public class JpaRealmProvider implements RealmProvider {
         List<RealmEntity> entities = query.getResultList();
         List<RealmModel> realms = new ArrayList<RealmModel>();
         for (RealmEntity entity : entities) {
-            realms.add(new RealmAdapter(session, em, entity));
+            realms.add(new RealmAdapter(session, em, entity, names));
         }
         return realms;
     }
 
+    @Override
+    public List<String> getRealmIds() {
+        TypedQuery<String> query = em.createNamedQuery("getAllRealmIds", String.class);
+        return query.getResultList();
+    }
+
     @Override
     public RealmModel getRealmByName(String name) {
         TypedQuery<RealmEntity> query = em.createNamedQuery("getRealmByName", RealmEntity.class);
@@ -73,7 +80,7 @@ public class JpaRealmProvider implements RealmProvider {
         if (entities.size() > 1) throw new IllegalStateException("Should not be more than one realm with same name");
         RealmEntity realm = query.getResultList().get(0);
         if (realm == null) return null;
-        return new RealmAdapter(session, em, realm);
+        return new RealmAdapter(session, em, realm, names);
     }
 
     @Override
@@ -83,7 +90,7 @@ public class JpaRealmProvider implements RealmProvider {
             return false;
         }
 
-        RealmAdapter adapter = new RealmAdapter(session, em, realm);
+        RealmAdapter adapter = new RealmAdapter(session, em, realm, names);
         session.users().preRemove(adapter);
         for (ApplicationEntity a : new LinkedList<ApplicationEntity>(realm.getApplications())) {
             adapter.removeApplication(a.getId());
@@ -357,11 +357,11 @@ public class JpaUserProvider implements UserProvider {
 
     @Override
     public boolean validCredentials(RealmModel realm, UserModel user, List<UserCredentialModel> input) {
-        return CredentialValidation.validCredentials(realm, user, input);
+        return CredentialValidation.validCredentials(session, realm, user, input);
     }
 
     @Override
     public boolean validCredentials(RealmModel realm, UserModel user, UserCredentialModel... input) {
-        return CredentialValidation.validCredentials(realm, user, input);
+        return CredentialValidation.validCredentials(session, realm, user, input);
     }
 }
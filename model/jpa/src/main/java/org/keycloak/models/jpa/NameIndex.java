@@ -0,0 +1,60 @@
+package org.keycloak.models.jpa;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the ids of applications and realm roles looked up by name, for the lifetime of an entity manager. Entries
+ * are only hints, the entity is loaded by id and its name checked before it's returned.
+ */
+class NameIndex {
+
+    private final Map<String, Map<String, String>> applications = new HashMap<String, Map<String, String>>();
+    private final Map<String, Map<String, String>> realmRoles = new HashMap<String, Map<String, String>>();
+
+    String getApplicationId(String realmId, String name) {
+        return get(applications, realmId, name);
+    }
+
+    void putApplicationId(String realmId, String name, String id) {
+        put(applications, realmId, name, id);
+    }
+
+    void removeApplicationId(String realmId, String name) {
+        remove(applications, realmId, name);
+    }
+
+    String getRealmRoleId(String realmId, String name) {
+        return get(realmRoles, realmId, name);
+    }
+
+    void putRealmRoleId(String realmId, String name, String id) {
+        put(realmRoles, realmId, name, id);
+    }
+
+    void removeRealmRoleId(String realmId, String name) {
+        remove(realmRoles, realmId, name);
+    }
+
+    private static String get(Map<String, Map<String, String>> index, String realmId, String name) {
+        Map<String, String> ids = index.get(realmId);
+        return ids != null ? ids.get(name) : null;
+    }
+
+    private static void put(Map<String, Map<String, String>> index, String realmId, String name, String id) {
+        Map<String, String> ids = index.get(realmId);
+        if (ids == null) {
+            ids = new HashMap<String, String>();
+            index.put(realmId, ids);
+        }
+        ids.put(name, id);
+    }
+
+    private static void remove(Map<String, Map<String, String>> index, String realmId, String name) {
+        Map<String, String> ids = index.get(realmId);
+        if (ids != null) {
+            ids.remove(name);
+        }
+    }
+
+}
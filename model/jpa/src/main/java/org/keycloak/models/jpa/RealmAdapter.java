@@ -46,11 +46,17 @@ public class RealmAdapter implements RealmModel {
     protected volatile transient PrivateKey privateKey;
     protected KeycloakSession session;
     private PasswordPolicy passwordPolicy;
+    protected NameIndex names;
 
     public RealmAdapter(KeycloakSession session, EntityManager em, RealmEntity realm) {
+        this(session, em, realm, new NameIndex());
+    }
+
+    RealmAdapter(KeycloakSession session, EntityManager em, RealmEntity realm, NameIndex names) {
         this.session = session;
         this.em = em;
         this.realm = realm;
+        this.names = names;
     }
 
     public RealmEntity getEntity() {
@@ -364,6 +370,7 @@ public class RealmAdapter implements RealmModel {
     @Override
     public void setPublicKeyPem(String publicKeyPem) {
         realm.setPublicKeyPem(publicKeyPem);
+        this.publicKey = null;
         em.flush();
     }
 
@@ -375,6 +382,29 @@ public class RealmAdapter implements RealmModel {
     @Override
     public void setPrivateKeyPem(String privateKeyPem) {
         realm.setPrivateKeyPem(privateKeyPem);
+        this.privateKey = null;
+        em.flush();
+    }
+
+    @Override
+    public String getCodeSecret() {
+        return realm.getCodeSecret();
+    }
+
+    @Override
+    public void setCodeSecret(String codeSecret) {
+        realm.setCodeSecret(codeSecret);
+        em.flush();
+    }
+
+    @Override
+    public String getPreviousCodeSecret() {
+        return realm.getPreviousCodeSecret();
+    }
+
+    @Override
+    public void setPreviousCodeSecret(String previousCodeSecret) {
+        realm.setPreviousCodeSecret(previousCodeSecret);
         em.flush();
     }
 
@@ -387,9 +417,9 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public void setPublicKey(PublicKey publicKey) {
-        this.publicKey = publicKey;
         String publicKeyPem = KeycloakModelUtils.getPemFromKey(publicKey);
         setPublicKeyPem(publicKeyPem);
+        this.publicKey = publicKey;
     }
 
     @Override
@@ -401,9 +431,9 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public void setPrivateKey(PrivateKey privateKey) {
-        this.privateKey = privateKey;
         String privateKeyPem = KeycloakModelUtils.getPemFromKey(privateKey);
         setPrivateKeyPem(privateKeyPem);
+        this.privateKey = privateKey;
     }
 
     protected RequiredCredentialModel initRequiredCredentialModel(String type) {
@@ -631,7 +661,23 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public ApplicationModel getApplicationByName(String name) {
-        return getApplicationNameMap().get(name);
+        String id = names.getApplicationId(realm.getId(), name);
+        if (id != null) {
+            ApplicationEntity app = em.find(ApplicationEntity.class, id);
+            if (app != null && name.equals(app.getName()) && realm.getId().equals(app.getRealm().getId())) {
+                return new ApplicationAdapter(this, em, session, app);
+            }
+            names.removeApplicationId(realm.getId(), name);
+        }
+
+        TypedQuery<ApplicationEntity> query = em.createNamedQuery("findApplicationByName", ApplicationEntity.class);
+        query.setParameter("name", name);
+        query.setParameter("realm", realm);
+        List<ApplicationEntity> apps = query.getResultList();
+        if (apps.size() == 0) return null;
+        ApplicationEntity app = apps.get(0);
+        names.putApplicationId(realm.getId(), name, app.getId());
+        return new ApplicationAdapter(this, em, session, app);
     }
 
     @Override
@@ -903,12 +949,23 @@ public class RealmAdapter implements RealmModel {
 
     @Override
     public RoleModel getRole(String name) {
+        String id = names.getRealmRoleId(realm.getId(), name);
+        if (id != null) {
+            RoleEntity role = em.find(RoleEntity.class, id);
+            if (role != null && !role.isApplicationRole() && name.equals(role.getName()) && realm.getId().equals(role.getRealmId())) {
+                return new RoleAdapter(this, em, role);
+            }
+            names.removeRealmRoleId(realm.getId(), name);
+        }
+
         TypedQuery<RoleEntity> query = em.createNamedQuery("getRealmRoleByName", RoleEntity.class);
         query.setParameter("name", name);
-        query.setParameter("realm", realm);
+        query.setParameter("realm", realm.getId());
         List<RoleEntity> roles = query.getResultList();
         if (roles.size() == 0) return null;
-        return new RoleAdapter(this, em, roles.get(0));
+        RoleEntity role = roles.get(0);
+        names.putRealmRoleId(realm.getId(), name, role.getId());
+        return new RoleAdapter(this, em, role);
     }
 
     @Override
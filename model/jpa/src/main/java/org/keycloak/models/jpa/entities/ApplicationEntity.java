@@ -6,6 +6,8 @@ import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -15,6 +17,9 @@ import java.util.Collection;
  * @version $Revision: 1 $
  */
 @Entity
+@NamedQueries({
+        @NamedQuery(name="findApplicationByName", query="select a from ApplicationEntity a where a.name = :name and a.realm = :realm")
+})
 public class ApplicationEntity extends ClientEntity {
 
     @Column(name="SURROGATE_AUTH_REQUIRED")
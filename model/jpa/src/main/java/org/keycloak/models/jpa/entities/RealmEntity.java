@@ -32,6 +32,7 @@ import java.util.Set;
 @Entity
 @NamedQueries({
         @NamedQuery(name="getAllRealms", query="select realm from RealmEntity realm"),
+        @NamedQuery(name="getAllRealmIds", query="select realm.id from RealmEntity realm"),
         @NamedQuery(name="getRealmByName", query="select realm from RealmEntity realm where realm.name = :name"),
 })
 public class RealmEntity {
@@ -80,6 +81,10 @@ public class RealmEntity {
     protected String publicKeyPem;
     @Column(name="PRIVATE_KEY", length = 2048)
     protected String privateKeyPem;
+    @Column(name="CODE_SECRET")
+    protected String codeSecret;
+    @Column(name="PREVIOUS_CODE_SECRET")
+    protected String previousCodeSecret;
 
     @Column(name="LOGIN_THEME")
     protected String loginTheme;
@@ -282,6 +287,22 @@ public class RealmEntity {
         this.privateKeyPem = privateKeyPem;
     }
 
+    public String getCodeSecret() {
+        return codeSecret;
+    }
+
+    public void setCodeSecret(String codeSecret) {
+        this.codeSecret = codeSecret;
+    }
+
+    public String getPreviousCodeSecret() {
+        return previousCodeSecret;
+    }
+
+    public void setPreviousCodeSecret(String previousCodeSecret) {
+        this.previousCodeSecret = previousCodeSecret;
+    }
+
     public Collection<RequiredCredentialEntity> getRequiredCredentials() {
         return requiredCredentials;
     }
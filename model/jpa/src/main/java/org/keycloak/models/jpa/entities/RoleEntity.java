@@ -24,8 +24,8 @@ import java.util.Collection;
         @UniqueConstraint(columnNames = { "NAME", "APP_REALM_CONSTRAINT" })
 })
 @NamedQueries({
-        @NamedQuery(name="getAppRoleByName", query="select role from RoleEntity role where role.name = :name and role.application = :application"),
-        @NamedQuery(name="getRealmRoleByName", query="select role from RoleEntity role where role.applicationRole = false and role.name = :name and role.realm = :realm")
+        @NamedQuery(name="getAppRoleByName", query="select role from RoleEntity role where role.name = :name and role.appRealmConstraint = :application and role.applicationRole = true"),
+        @NamedQuery(name="getRealmRoleByName", query="select role from RoleEntity role where role.name = :name and role.appRealmConstraint = :realm and role.applicationRole = false")
 })
 
 public class RoleEntity {
@@ -74,6 +74,12 @@ public class MongoRealmProvider implements RealmProvider {
         return results;
     }
 
+    @Override
+    public List<String> getRealmIds() {
+        DBObject query = new BasicDBObject();
+        return getMongoStore().loadEntityIds(MongoRealmEntity.class, query, invocationContext);
+    }
+
     @Override
     public RealmModel getRealmByName(String name) {
         DBObject query = new QueryBuilder()
@@ -362,11 +362,11 @@ public class MongoUserProvider implements UserProvider {
 
     @Override
     public boolean validCredentials(RealmModel realm, UserModel user, List<UserCredentialModel> input) {
-        return CredentialValidation.validCredentials(realm, user, input);
+        return CredentialValidation.validCredentials(session, realm, user, input);
     }
 
     @Override
     public boolean validCredentials(RealmModel realm, UserModel user, UserCredentialModel... input) {
-        return CredentialValidation.validCredentials(realm, user, input);
+        return CredentialValidation.validCredentials(session, realm, user, input);
     }
 }
@@ -362,6 +362,28 @@ public class RealmAdapter extends AbstractMongoAdapter<MongoRealmEntity> impleme
         updateRealm();
     }
 
+    @Override
+    public String getCodeSecret() {
+        return realm.getCodeSecret();
+    }
+
+    @Override
+    public void setCodeSecret(String codeSecret) {
+        realm.setCodeSecret(codeSecret);
+        updateRealm();
+    }
+
+    @Override
+    public String getPreviousCodeSecret() {
+        return realm.getPreviousCodeSecret();
+    }
+
+    @Override
+    public void setPreviousCodeSecret(String previousCodeSecret) {
+        realm.setPreviousCodeSecret(previousCodeSecret);
+        updateRealm();
+    }
+
     @Override
     public PublicKey getPublicKey() {
         if (publicKey != null) return publicKey;
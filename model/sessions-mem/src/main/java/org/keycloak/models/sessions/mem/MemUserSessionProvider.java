@@ -1,5 +1,6 @@
 package org.keycloak.models.sessions.mem;
 
+import org.jboss.logging.Logger;
 import org.keycloak.models.ClientModel;
 import org.keycloak.models.ClientSessionModel;
 import org.keycloak.models.KeycloakSession;
@@ -19,6 +20,7 @@ import org.keycloak.util.Time;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -29,16 +31,27 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class MemUserSessionProvider implements UserSessionProvider {
 
+    private static final Logger logger = Logger.getLogger(MemUserSessionProvider.class);
+
     private final KeycloakSession session;
     private final ConcurrentHashMap<String, UserSessionEntity> userSessions;
     private final ConcurrentHashMap<String, ClientSessionEntity> clientSessions;
     private final ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity> loginFailures;
+    private final SessionIndex<UserSessionEntity> realmSessions;
+    private final SessionIndex<UserSessionEntity> userSessionsByUser;
+    private final SessionIndex<ClientSessionEntity> clientSessionsByClient;
+    private final SessionExpiration expiration;
 
-    public MemUserSessionProvider(KeycloakSession session, ConcurrentHashMap<String, UserSessionEntity> userSessions, ConcurrentHashMap<String, ClientSessionEntity> clientSessions, ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity> loginFailures) {
+    public MemUserSessionProvider(KeycloakSession session, ConcurrentHashMap<String, UserSessionEntity> userSessions, ConcurrentHashMap<String, ClientSessionEntity> clientSessions, ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity> loginFailures,
+                                  SessionIndex<UserSessionEntity> realmSessions, SessionIndex<UserSessionEntity> userSessionsByUser, SessionIndex<ClientSessionEntity> clientSessionsByClient, SessionExpiration expiration) {
         this.session = session;
         this.userSessions = userSessions;
         this.clientSessions = clientSessions;
         this.loginFailures = loginFailures;
+        this.realmSessions = realmSessions;
+        this.userSessionsByUser = userSessionsByUser;
+        this.clientSessionsByClient = clientSessionsByClient;
+        this.expiration = expiration;
     }
 
     @Override
@@ -57,6 +70,13 @@ public class MemUserSessionProvider implements UserSessionProvider {
         userSessionEntity.addClientSession(entity);
 
         clientSessions.put(entity.getId(), entity);
+        clientSessionsByClient.add(entity.getClientId(), entity);
+
+        // user session was removed concurrently, make sure the client session doesn't outlive it
+        if (!userSessions.containsKey(userSessionEntity.getId())) {
+            clientSessions.remove(entity.getId());
+            clientSessionsByClient.remove(entity.getClientId(), entity);
+        }
         return new ClientSessionAdapter(session, this, realm, entity);
     }
 
@@ -85,6 +105,14 @@ public class MemUserSessionProvider implements UserSessionProvider {
         entity.setLastSessionRefresh(currentTime);
 
         userSessions.put(id, entity);
+        realmSessions.add(entity.getRealm(), entity);
+        userSessionsByUser.add(entity.getUser(), entity);
+        expiration.add(entity);
+
+        // removed concurrently before it was indexed, make sure it doesn't linger in the indexes
+        if (!userSessions.containsKey(id)) {
+            removeFromIndexes(entity);
+        }
 
         return new UserSessionAdapter(session, this, realm, entity);
     }
@@ -106,8 +134,8 @@ public class MemUserSessionProvider implements UserSessionProvider {
     @Override
     public List<UserSessionModel> getUserSessions(RealmModel realm, UserModel user) {
         List<UserSessionModel> userSessions = new LinkedList<UserSessionModel>();
-        for (UserSessionEntity s : this.userSessions.values()) {
-            if (s.getRealm().equals(realm.getId()) && s.getUser().equals(user.getId())) {
+        for (UserSessionEntity s : userSessionsByUser.get(user.getId())) {
+            if (s.getRealm().equals(realm.getId())) {
                 userSessions.add(new UserSessionAdapter(session, this, realm, s));
             }
         }
@@ -116,12 +144,10 @@ public class MemUserSessionProvider implements UserSessionProvider {
 
     @Override
     public List<UserSessionModel> getUserSessions(RealmModel realm, ClientModel client) {
-        List<UserSessionEntity> userSessionEntities = new LinkedList<UserSessionEntity>();
-        for (ClientSessionEntity s : clientSessions.values()) {
-            if (s.getSession().getRealm().equals(realm.getId()) && s.getClientId().equals(client.getId())) {
-                if (!userSessionEntities.contains(s.getSession())) {
-                    userSessionEntities.add(s.getSession());
-                }
+        Set<UserSessionEntity> userSessionEntities = new LinkedHashSet<UserSessionEntity>();
+        for (ClientSessionEntity s : clientSessionsByClient.get(client.getId())) {
+            if (s.getSession().getRealm().equals(realm.getId())) {
+                userSessionEntities.add(s.getSession());
             }
         }
 
@@ -153,55 +179,93 @@ public class MemUserSessionProvider implements UserSessionProvider {
     public void removeUserSession(RealmModel realm, UserSessionModel session) {
         UserSessionEntity entity = getUserSessionEntity(realm, session.getId());
         if (entity != null) {
-            userSessions.remove(entity.getId());
-            for (ClientSessionEntity clientSession : entity.getClientSessions()) {
-                clientSessions.remove(clientSession.getId());
-            }
+            removeUserSession(entity);
         }
     }
 
     @Override
     public void removeUserSessions(RealmModel realm, UserModel user) {
-        Iterator<UserSessionEntity> itr = userSessions.values().iterator();
-        while (itr.hasNext()) {
-            UserSessionEntity s = itr.next();
-            if (s.getRealm().equals(realm.getId()) && s.getUser().equals(user.getId())) {
-                itr.remove();
-
-                for (ClientSessionEntity clientSession : s.getClientSessions()) {
-                    clientSessions.remove(clientSession.getId());
-                }
+        for (UserSessionEntity s : userSessionsByUser.get(user.getId())) {
+            if (s.getRealm().equals(realm.getId())) {
+                removeUserSession(s);
             }
         }
     }
 
     @Override
     public void removeExpiredUserSessions(RealmModel realm) {
-        Iterator<UserSessionEntity> itr = userSessions.values().iterator();
-        while (itr.hasNext()) {
-            UserSessionEntity s = itr.next();
-            if (s.getRealm().equals(realm.getId()) && (s.getLastSessionRefresh() < Time.currentTime() - realm.getSsoSessionIdleTimeout() || s.getStarted() < Time.currentTime() - realm.getSsoSessionMaxLifespan())) {
-                itr.remove();
+        long start = System.currentTimeMillis();
+
+        int currentTime = Time.currentTime();
+        int expiredRefresh = currentTime - realm.getSsoSessionIdleTimeout();
+        int expiredStarted = currentTime - realm.getSsoSessionMaxLifespan();
 
-                for (ClientSessionEntity clientSession : s.getClientSessions()) {
-                    clientSessions.remove(clientSession.getId());
-                }
+        int expired = 0;
+        for (UserSessionEntity s : expiration.getExpired(realm.getId(), expiredRefresh, expiredStarted)) {
+            if (removeUserSession(s)) {
+                expired++;
+            } else {
+                expiration.remove(s);
             }
         }
+
+        long duration = System.currentTimeMillis() - start;
+        expiration.recordSweep(duration, expired);
+        if (logger.isDebugEnabled()) {
+            logger.debugv("Removed {0} expired user sessions from realm {1} in {2} ms", expired, realm.getName(), duration);
+        }
     }
 
     @Override
     public void removeUserSessions(RealmModel realm) {
-        Iterator<UserSessionEntity> itr = userSessions.values().iterator();
-        while (itr.hasNext()) {
-            UserSessionEntity s = itr.next();
-            if (s.getRealm().equals(realm.getId())) {
-                itr.remove();
+        for (UserSessionEntity s : realmSessions.removeAll(realm.getId())) {
+            removeUserSession(s);
+        }
+        expiration.removeRealm(realm.getId());
+    }
 
-                for (ClientSessionEntity clientSession : s.getClientSessions()) {
-                    clientSessions.remove(clientSession.getId());
-                }
-            }
+    /**
+     * Removes the session from the session map and every index. Only the caller that actually removes the session
+     * from the map updates the indexes, so concurrent removals of the same session are harmless.
+     */
+    private boolean removeUserSession(UserSessionEntity entity) {
+        if (userSessions.remove(entity.getId()) == null) {
+            return false;
+        }
+
+        removeFromIndexes(entity);
+        return true;
+    }
+
+    private void removeFromIndexes(UserSessionEntity entity) {
+        realmSessions.remove(entity.getRealm(), entity);
+        userSessionsByUser.remove(entity.getUser(), entity);
+        expiration.remove(entity);
+
+        List<ClientSessionEntity> sessionClientSessions;
+        synchronized (entity.getClientSessions()) {
+            sessionClientSessions = new LinkedList<ClientSessionEntity>(entity.getClientSessions());
+        }
+        for (ClientSessionEntity clientSession : sessionClientSessions) {
+            clientSessions.remove(clientSession.getId());
+            clientSessionsByClient.remove(clientSession.getClientId(), clientSession);
+        }
+    }
+
+    void updateLastSessionRefresh(UserSessionEntity entity, int lastSessionRefresh) {
+        expiration.updateLastSessionRefresh(entity, lastSessionRefresh);
+    }
+
+    void updateStarted(UserSessionEntity entity, int started) {
+        expiration.updateStarted(entity, started);
+    }
+
+    void updateUser(UserSessionEntity entity, String userId) {
+        String previous = entity.getUser();
+        entity.setUser(userId);
+        if (userSessions.containsKey(entity.getId())) {
+            userSessionsByUser.remove(previous, entity);
+            userSessionsByUser.add(userId, entity);
         }
     }
 
@@ -246,11 +310,9 @@ public class MemUserSessionProvider implements UserSessionProvider {
 
     @Override
     public void onClientRemoved(RealmModel realm, ClientModel client) {
-        for (ClientSessionEntity e : clientSessions.values()) {
-            if (e.getSession().getRealm().equals(realm.getId()) && e.getClientId().equals(client.getId())) {
-                clientSessions.remove(e.getId());
-                e.getSession().removeClientSession(e);
-            }
+        for (ClientSessionEntity e : clientSessionsByClient.removeAll(client.getId())) {
+            clientSessions.remove(e.getId());
+            e.getSession().removeClientSession(e);
         }
     }
 
@@ -8,13 +8,16 @@ import org.keycloak.models.sessions.mem.entities.ClientSessionEntity;
 import org.keycloak.models.sessions.mem.entities.UserSessionEntity;
 import org.keycloak.models.sessions.mem.entities.UsernameLoginFailureEntity;
 import org.keycloak.models.sessions.mem.entities.UsernameLoginFailureKey;
+import org.keycloak.provider.ProviderStatistics;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class MemUserSessionProviderFactory implements UserSessionProviderFactory {
+public class MemUserSessionProviderFactory implements UserSessionProviderFactory, ProviderStatistics {
 
     public static final String ID = "mem";
 
@@ -24,9 +27,17 @@ public class MemUserSessionProviderFactory implements UserSessionProviderFactory
 
     private ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity> loginFailures = new ConcurrentHashMap<UsernameLoginFailureKey, UsernameLoginFailureEntity>();
 
+    private SessionIndex<UserSessionEntity> realmSessions = new SessionIndex<UserSessionEntity>();
+
+    private SessionIndex<UserSessionEntity> userSessionsByUser = new SessionIndex<UserSessionEntity>();
+
+    private SessionIndex<ClientSessionEntity> clientSessionsByClient = new SessionIndex<ClientSessionEntity>();
+
+    private SessionExpiration expiration = new SessionExpiration();
+
     @Override
     public UserSessionProvider create(KeycloakSession session) {
-        return new MemUserSessionProvider(session, userSessions, clientSessions, loginFailures);
+        return new MemUserSessionProvider(session, userSessions, clientSessions, loginFailures, realmSessions, userSessionsByUser, clientSessionsByClient, expiration);
     }
 
     @Override
@@ -36,7 +47,12 @@ public class MemUserSessionProviderFactory implements UserSessionProviderFactory
     @Override
     public void close() {
         userSessions.clear();
+        clientSessions.clear();
         loginFailures.clear();
+        realmSessions.clear();
+        userSessionsByUser.clear();
+        clientSessionsByClient.clear();
+        expiration.clear();
     }
 
     @Override
@@ -44,4 +60,15 @@ public class MemUserSessionProviderFactory implements UserSessionProviderFactory
         return ID;
     }
 
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put("sessions", (long) userSessions.size());
+        stats.put("expirationSweeps", expiration.getSweeps());
+        stats.put("expiredSessions", expiration.getExpiredTotal());
+        stats.put("lastSweepDuration", expiration.getLastSweepDuration());
+        stats.put("lastSweepExpired", (long) expiration.getLastSweepExpired());
+        return stats;
+    }
+
 }
@@ -0,0 +1,173 @@
+package org.keycloak.models.sessions.mem;
+
+import org.keycloak.models.sessions.mem.entities.UserSessionEntity;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the user sessions of each realm ordered by last refresh and by start time. Expiry thresholds depend on the
+ * realm settings at the time of the sweep, so sessions are ordered on the timestamps themselves rather than on a
+ * precomputed deadline. A sweep only visits the head of each ordering, which are exactly the sessions that are due.
+ */
+class SessionExpiration {
+
+    private final ConcurrentHashMap<String, RealmExpiration> realms = new ConcurrentHashMap<String, RealmExpiration>();
+
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong expiredTotal = new AtomicLong();
+    private volatile long lastSweepDuration;
+    private volatile int lastSweepExpired;
+
+    void add(UserSessionEntity entity) {
+        RealmExpiration expiration = getRealm(entity.getRealm());
+        synchronized (entity) {
+            expiration.byRefresh.put(new Key(entity.getLastSessionRefresh(), entity.getId()), entity);
+            expiration.byStarted.put(new Key(entity.getStarted(), entity.getId()), entity);
+        }
+    }
+
+    void remove(UserSessionEntity entity) {
+        RealmExpiration expiration = realms.get(entity.getRealm());
+        if (expiration == null) {
+            return;
+        }
+
+        synchronized (entity) {
+            expiration.byRefresh.remove(new Key(entity.getLastSessionRefresh(), entity.getId()));
+            expiration.byStarted.remove(new Key(entity.getStarted(), entity.getId()));
+        }
+    }
+
+    void updateLastSessionRefresh(UserSessionEntity entity, int lastSessionRefresh) {
+        RealmExpiration expiration = realms.get(entity.getRealm());
+        synchronized (entity) {
+            if (expiration != null && expiration.byRefresh.remove(new Key(entity.getLastSessionRefresh(), entity.getId())) != null) {
+                entity.setLastSessionRefresh(lastSessionRefresh);
+                expiration.byRefresh.put(new Key(lastSessionRefresh, entity.getId()), entity);
+            } else {
+                entity.setLastSessionRefresh(lastSessionRefresh);
+            }
+        }
+    }
+
+    void updateStarted(UserSessionEntity entity, int started) {
+        RealmExpiration expiration = realms.get(entity.getRealm());
+        synchronized (entity) {
+            if (expiration != null && expiration.byStarted.remove(new Key(entity.getStarted(), entity.getId())) != null) {
+                entity.setStarted(started);
+                expiration.byStarted.put(new Key(started, entity.getId()), entity);
+            } else {
+                entity.setStarted(started);
+            }
+        }
+    }
+
+    /**
+     * Returns sessions last refreshed before <code>refreshedBefore</code> or started before <code>startedBefore</code>.
+     */
+    Set<UserSessionEntity> getExpired(String realm, int refreshedBefore, int startedBefore) {
+        Set<UserSessionEntity> expired = new LinkedHashSet<UserSessionEntity>();
+        RealmExpiration expiration = realms.get(realm);
+        if (expiration != null) {
+            expired.addAll(expiration.byRefresh.headMap(new Key(refreshedBefore, "")).values());
+            expired.addAll(expiration.byStarted.headMap(new Key(startedBefore, "")).values());
+        }
+        return expired;
+    }
+
+    void removeRealm(String realm) {
+        realms.remove(realm);
+    }
+
+    void clear() {
+        realms.clear();
+    }
+
+    void recordSweep(long duration, int expired) {
+        sweeps.incrementAndGet();
+        expiredTotal.addAndGet(expired);
+        lastSweepDuration = duration;
+        lastSweepExpired = expired;
+    }
+
+    /**
+     * Number of sweeps run since startup
+     */
+    long getSweeps() {
+        return sweeps.get();
+    }
+
+    /**
+     * Number of sessions expired since startup
+     */
+    long getExpiredTotal() {
+        return expiredTotal.get();
+    }
+
+    /**
+     * Duration of the last sweep in milliseconds
+     */
+    long getLastSweepDuration() {
+        return lastSweepDuration;
+    }
+
+    /**
+     * Number of sessions expired by the last sweep
+     */
+    int getLastSweepExpired() {
+        return lastSweepExpired;
+    }
+
+    private RealmExpiration getRealm(String realm) {
+        RealmExpiration expiration = realms.get(realm);
+        if (expiration == null) {
+            RealmExpiration created = new RealmExpiration();
+            expiration = realms.putIfAbsent(realm, created);
+            if (expiration == null) {
+                expiration = created;
+            }
+        }
+        return expiration;
+    }
+
+    private static class RealmExpiration {
+        private final ConcurrentSkipListMap<Key, UserSessionEntity> byRefresh = new ConcurrentSkipListMap<Key, UserSessionEntity>();
+        private final ConcurrentSkipListMap<Key, UserSessionEntity> byStarted = new ConcurrentSkipListMap<Key, UserSessionEntity>();
+    }
+
+    private static class Key implements Comparable<Key> {
+        private final int time;
+        private final String id;
+
+        private Key(int time, String id) {
+            this.time = time;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            if (time != o.time) {
+                return time < o.time ? -1 : 1;
+            }
+            return id.compareTo(o.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return time == key.time && id.equals(key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * time + id.hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.keycloak.models.sessions.mem;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent secondary index from a key (realm, user or client id) to the session entities that refer to it. Each key
+ * has its own bucket, so updates for different keys never contend. A bucket is removed from the index once it becomes
+ * empty; adds that race with the removal retry against a fresh bucket, so no entry is ever lost.
+ */
+class SessionIndex<V> {
+
+    private final ConcurrentHashMap<String, Bucket<V>> buckets = new ConcurrentHashMap<String, Bucket<V>>();
+
+    void add(String key, V value) {
+        while (true) {
+            Bucket<V> bucket = buckets.get(key);
+            if (bucket == null) {
+                Bucket<V> created = new Bucket<V>();
+                bucket = buckets.putIfAbsent(key, created);
+                if (bucket == null) {
+                    bucket = created;
+                }
+            }
+
+            synchronized (bucket) {
+                if (!bucket.removed) {
+                    bucket.values.add(value);
+                    return;
+                }
+            }
+        }
+    }
+
+    void remove(String key, V value) {
+        Bucket<V> bucket = buckets.get(key);
+        if (bucket == null) {
+            return;
+        }
+
+        synchronized (bucket) {
+            bucket.values.remove(value);
+            if (bucket.values.isEmpty() && !bucket.removed) {
+                bucket.removed = true;
+                buckets.remove(key, bucket);
+            }
+        }
+    }
+
+    List<V> get(String key) {
+        Bucket<V> bucket = buckets.get(key);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+
+        synchronized (bucket) {
+            return new LinkedList<V>(bucket.values);
+        }
+    }
+
+    List<V> removeAll(String key) {
+        Bucket<V> bucket = buckets.remove(key);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+
+        synchronized (bucket) {
+            bucket.removed = true;
+            return new LinkedList<V>(bucket.values);
+        }
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+
+    private static class Bucket<V> {
+        private final Set<V> values = new HashSet<V>();
+        private boolean removed;
+    }
+
+}
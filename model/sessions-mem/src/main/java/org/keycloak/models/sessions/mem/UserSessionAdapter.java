@@ -43,7 +43,7 @@ public class UserSessionAdapter implements UserSessionModel {
     }
 
     public void setUser(UserModel user) {
-        entity.setUser(user.getId());
+        provider.updateUser(entity, user.getId());
     }
 
     @Override
@@ -89,7 +89,7 @@ public class UserSessionAdapter implements UserSessionModel {
     }
 
     public void setStarted(int started) {
-        entity.setStarted(started);
+        provider.updateStarted(entity, started);
     }
 
     public int getLastSessionRefresh() {
@@ -97,7 +97,7 @@ public class UserSessionAdapter implements UserSessionModel {
     }
 
     public void setLastSessionRefresh(int lastSessionRefresh) {
-        entity.setLastSessionRefresh(lastSessionRefresh);
+        provider.updateLastSessionRefresh(entity, lastSessionRefresh);
     }
 
     @Override
@@ -0,0 +1,101 @@
+package org.keycloak.models.sessions.mem;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.models.sessions.mem.entities.UserSessionEntity;
+
+import java.util.Set;
+
+public class SessionExpirationTest {
+
+    @Test
+    public void testExpiredByRefreshAndStarted() {
+        SessionExpiration expiration = new SessionExpiration();
+        UserSessionEntity idle = session("idle", "realm", 100, 100);
+        UserSessionEntity old = session("old", "realm", 10, 500);
+        UserSessionEntity active = session("active", "realm", 400, 500);
+        expiration.add(idle);
+        expiration.add(old);
+        expiration.add(active);
+
+        Set<UserSessionEntity> expired = expiration.getExpired("realm", 200, 50);
+        Assert.assertEquals(2, expired.size());
+        Assert.assertTrue(expired.contains(idle));
+        Assert.assertTrue(expired.contains(old));
+
+        Assert.assertTrue(expiration.getExpired("realm", 10, 10).isEmpty());
+        Assert.assertTrue(expiration.getExpired("other", 1000, 1000).isEmpty());
+    }
+
+    @Test
+    public void testRefreshMovesSession() {
+        SessionExpiration expiration = new SessionExpiration();
+        UserSessionEntity s = session("s", "realm", 100, 100);
+        expiration.add(s);
+
+        expiration.updateLastSessionRefresh(s, 300);
+        Assert.assertEquals(300, s.getLastSessionRefresh());
+        Assert.assertTrue(expiration.getExpired("realm", 200, 0).isEmpty());
+        Assert.assertTrue(expiration.getExpired("realm", 301, 0).contains(s));
+
+        expiration.updateStarted(s, 50);
+        Assert.assertEquals(50, s.getStarted());
+        Assert.assertTrue(expiration.getExpired("realm", 0, 60).contains(s));
+        Assert.assertTrue(expiration.getExpired("realm", 0, 50).isEmpty());
+    }
+
+    @Test
+    public void testUpdateUnindexedSession() {
+        SessionExpiration expiration = new SessionExpiration();
+        UserSessionEntity s = session("s", "realm", 100, 100);
+
+        expiration.updateLastSessionRefresh(s, 200);
+        Assert.assertEquals(200, s.getLastSessionRefresh());
+        Assert.assertTrue(expiration.getExpired("realm", 1000, 1000).isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        SessionExpiration expiration = new SessionExpiration();
+        UserSessionEntity s1 = session("s1", "realm", 100, 100);
+        UserSessionEntity s2 = session("s2", "realm", 100, 100);
+        UserSessionEntity s3 = session("s3", "other", 100, 100);
+        expiration.add(s1);
+        expiration.add(s2);
+        expiration.add(s3);
+
+        expiration.remove(s1);
+        Set<UserSessionEntity> expired = expiration.getExpired("realm", 1000, 1000);
+        Assert.assertEquals(1, expired.size());
+        Assert.assertTrue(expired.contains(s2));
+
+        expiration.removeRealm("realm");
+        Assert.assertTrue(expiration.getExpired("realm", 1000, 1000).isEmpty());
+        Assert.assertTrue(expiration.getExpired("other", 1000, 1000).contains(s3));
+
+        expiration.clear();
+        Assert.assertTrue(expiration.getExpired("other", 1000, 1000).isEmpty());
+    }
+
+    @Test
+    public void testSweepStats() {
+        SessionExpiration expiration = new SessionExpiration();
+        expiration.recordSweep(5, 3);
+        expiration.recordSweep(7, 2);
+
+        Assert.assertEquals(2, expiration.getSweeps());
+        Assert.assertEquals(5, expiration.getExpiredTotal());
+        Assert.assertEquals(7, expiration.getLastSweepDuration());
+        Assert.assertEquals(2, expiration.getLastSweepExpired());
+    }
+
+    private static UserSessionEntity session(String id, String realm, int started, int lastSessionRefresh) {
+        UserSessionEntity entity = new UserSessionEntity();
+        entity.setId(id);
+        entity.setRealm(realm);
+        entity.setStarted(started);
+        entity.setLastSessionRefresh(lastSessionRefresh);
+        return entity;
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.keycloak.models.sessions.mem;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class SessionIndexTest {
+
+    @Test
+    public void testAddGetRemove() {
+        SessionIndex<String> index = new SessionIndex<String>();
+        index.add("realm", "s1");
+        index.add("realm", "s2");
+        index.add("other", "s3");
+
+        assertContainsExactly(index.get("realm"), "s1", "s2");
+        assertContainsExactly(index.get("other"), "s3");
+        Assert.assertTrue(index.get("missing").isEmpty());
+
+        index.remove("realm", "s1");
+        assertContainsExactly(index.get("realm"), "s2");
+
+        index.remove("realm", "s2");
+        Assert.assertTrue(index.get("realm").isEmpty());
+
+        index.add("realm", "s4");
+        assertContainsExactly(index.get("realm"), "s4");
+    }
+
+    @Test
+    public void testRemoveAll() {
+        SessionIndex<String> index = new SessionIndex<String>();
+        index.add("realm", "s1");
+        index.add("realm", "s2");
+
+        assertContainsExactly(index.removeAll("realm"), "s1", "s2");
+        Assert.assertTrue(index.get("realm").isEmpty());
+        Assert.assertTrue(index.removeAll("realm").isEmpty());
+
+        index.add("realm", "s3");
+        assertContainsExactly(index.get("realm"), "s3");
+    }
+
+    @Test
+    public void testClear() {
+        SessionIndex<String> index = new SessionIndex<String>();
+        index.add("realm", "s1");
+        index.add("other", "s2");
+        index.clear();
+
+        Assert.assertTrue(index.get("realm").isEmpty());
+        Assert.assertTrue(index.get("other").isEmpty());
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws Exception {
+        final SessionIndex<String> index = new SessionIndex<String>();
+        final int threads = 8;
+        final int perThread = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            Thread worker = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        String value = id + "-" + i;
+                        index.add("realm", value);
+                        if (i % 2 == 0) {
+                            index.remove("realm", value);
+                        }
+                    }
+                }
+            };
+            workers.add(worker);
+            worker.start();
+        }
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Buckets emptied and dropped by one thread must never swallow an add from another
+        Assert.assertEquals(threads * perThread / 2, index.get("realm").size());
+    }
+
+    private static void assertContainsExactly(List<String> actual, String... expected) {
+        Assert.assertEquals(expected.length, actual.size());
+        for (String e : expected) {
+            Assert.assertTrue(actual.contains(e));
+        }
+    }
+
+}
@@ -2,12 +2,17 @@ package org.keycloak.services;
 
 import org.jboss.logging.Logger;
 import org.keycloak.Config;
+import org.keycloak.events.AsyncEventListenerProviderFactory;
+import org.keycloak.events.EventListenerProvider;
+import org.keycloak.events.EventListenerProviderFactory;
+import org.keycloak.events.EventStoreProvider;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.provider.Provider;
 import org.keycloak.provider.ProviderFactory;
 import org.keycloak.provider.Spi;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -20,6 +25,8 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
 
     private static final Logger log = Logger.getLogger(DefaultKeycloakSessionFactory.class);
 
+    private static final List<Class<? extends Provider>> CLOSE_FIRST = Arrays.<Class<? extends Provider>>asList(EventListenerProvider.class, EventStoreProvider.class);
+
     private Map<Class<? extends Provider>, String> provider = new HashMap<Class<? extends Provider>, String>();
     private Map<Class<? extends Provider>, Map<String, ProviderFactory>> factoriesMap = new HashMap<Class<? extends Provider>, Map<String, ProviderFactory>>();
 
@@ -32,16 +39,17 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
             if (provider != null) {
                 this.provider.put(spi.getProviderClass(), provider);
 
-                ProviderFactory factory = loadProviderFactory(spi, provider);
                 Config.Scope scope = Config.scope(spi.getName(), provider);
+                ProviderFactory factory = wrapProviderFactory(loadProviderFactory(spi, provider), scope);
                 factory.init(scope);
 
                 factories.put(factory.getId(), factory);
 
                 log.debugv("Loaded SPI {0} (provider = {1})", spi.getName(), provider);
             } else {
-                for (ProviderFactory factory : ServiceLoader.load(spi.getProviderFactoryClass())) {
-                    Config.Scope scope = Config.scope(spi.getName(), factory.getId());
+                for (ProviderFactory f : ServiceLoader.load(spi.getProviderFactoryClass())) {
+                    Config.Scope scope = Config.scope(spi.getName(), f.getId());
+                    ProviderFactory factory = wrapProviderFactory(f, scope);
                     factory.init(scope);
 
                     factories.put(factory.getId(), factory);
@@ -59,6 +67,14 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
         }
     }
 
+    private ProviderFactory wrapProviderFactory(ProviderFactory factory, Config.Scope scope) {
+        if (factory instanceof EventListenerProviderFactory && scope.getBoolean("async", false)) {
+            log.debugv("Event listener {0} is asynchronous", factory.getId());
+            return new AsyncEventListenerProviderFactory((EventListenerProviderFactory) factory);
+        }
+        return factory;
+    }
+
     private ProviderFactory loadProviderFactory(Spi spi, String id) {
         for (ProviderFactory factory : ServiceLoader.load(spi.getProviderFactoryClass())) {
             if (factory.getId().equals(id)){
@@ -105,8 +121,22 @@ public class DefaultKeycloakSessionFactory implements KeycloakSessionFactory {
     }
 
     public void close() {
-        for (Map<String, ProviderFactory> factories : factoriesMap.values()) {
-            for (ProviderFactory factory : factories.values()) {
+        // asynchronous event listeners and the asynchronous event store use the other providers (for example the JPA
+        // connection) while draining their queues, so are closed first and in this order
+        for (Class<? extends Provider> clazz : CLOSE_FIRST) {
+            Map<String, ProviderFactory> factories = factoriesMap.get(clazz);
+            if (factories != null) {
+                for (ProviderFactory factory : factories.values()) {
+                    factory.close();
+                }
+            }
+        }
+
+        for (Map.Entry<Class<? extends Provider>, Map<String, ProviderFactory>> e : factoriesMap.entrySet()) {
+            if (CLOSE_FIRST.contains(e.getKey())) {
+                continue;
+            }
+            for (ProviderFactory factory : e.getValue().values()) {
                 factory.close();
             }
         }
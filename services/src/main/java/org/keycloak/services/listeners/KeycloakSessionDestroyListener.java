@@ -1,7 +1,9 @@
 package org.keycloak.services.listeners;
 
 import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.services.managers.AdminCallbackClient;
 import org.keycloak.services.managers.BruteForceProtector;
+import org.keycloak.services.util.ThemeResourceCache;
 
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
@@ -21,6 +23,14 @@ public class KeycloakSessionDestroyListener implements ServletContextListener {
         if (protector != null) {
             protector.shutdown();
         }
+        AdminCallbackClient callbackClient = (AdminCallbackClient) sce.getServletContext().getAttribute(AdminCallbackClient.class.getName());
+        if (callbackClient != null) {
+            callbackClient.close();
+        }
+        ThemeResourceCache resourceCache = (ThemeResourceCache) sce.getServletContext().getAttribute(ThemeResourceCache.class.getName());
+        if (resourceCache != null) {
+            resourceCache.clear();
+        }
         KeycloakSessionFactory sessionFactory = (KeycloakSessionFactory) sce.getServletContext().getAttribute(KeycloakSessionFactory.class.getName());
         if (sessionFactory != null) {
             sessionFactory.close();
@@ -1,5 +1,6 @@
 package org.keycloak.services.managers;
 
+import org.keycloak.Config;
 import org.keycloak.OAuthErrorException;
 import org.keycloak.jose.jws.Algorithm;
 import org.keycloak.jose.jws.crypto.RSAProvider;
@@ -13,6 +14,8 @@ import org.keycloak.models.UserModel.RequiredAction;
 import org.keycloak.util.Base64Url;
 import org.keycloak.util.Time;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.Signature;
@@ -25,6 +28,25 @@ import java.util.Set;
  */
 public class AccessCode {
 
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * Codes are signed with the realm code secret (<code>hmac</code>, default) or with the realm private key
+     * (<code>rsa</code>). Realms without a code secret always use the realm private key.
+     */
+    private static volatile boolean rsaSignature;
+
+    private static final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                return Mac.getInstance(HMAC_ALGORITHM);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
     private final RealmModel realm;
     private final ClientSessionModel clientSession;
 
@@ -33,6 +55,10 @@ public class AccessCode {
         this.clientSession = clientSession;
     }
 
+    public static void init(Config.Scope config) {
+        rsaSignature = "rsa".equals(config.get("signature", "hmac"));
+    }
+
     public static AccessCode parse(String code, KeycloakSession session, RealmModel realm) {
         try {
             String[] parts = code.split("\\.");
@@ -43,8 +69,7 @@ public class AccessCode {
                 return null;
             }
 
-            String hash = createSignatureHash(realm, clientSession);
-            if (!hash.equals(parts[0])) {
+            if (!verifySignatureHash(realm, clientSession, parts[0])) {
                 return null;
             }
 
@@ -149,7 +174,54 @@ public class AccessCode {
         return sb.toString();
     }
 
+    /**
+     * Codes signed with the previous code secret are accepted as well, so rotating the secret does not invalidate codes
+     * that are already in flight.
+     */
+    private static boolean verifySignatureHash(RealmModel realm, ClientSessionModel clientSession, String hash) {
+        String codeSecret = realm.getCodeSecret();
+        if (rsaSignature || codeSecret == null) {
+            return isEqual(createRsaSignatureHash(realm, clientSession), hash);
+        }
+
+        if (isEqual(createMacHash(codeSecret, clientSession), hash)) {
+            return true;
+        }
+
+        String previousCodeSecret = realm.getPreviousCodeSecret();
+        return previousCodeSecret != null && isEqual(createMacHash(previousCodeSecret, clientSession), hash);
+    }
+
+    private static boolean isEqual(String expected, String actual) {
+        return MessageDigest.isEqual(expected.getBytes(), actual.getBytes());
+    }
+
     private static String createSignatureHash(RealmModel realm, ClientSessionModel clientSession) {
+        String codeSecret = realm.getCodeSecret();
+        if (rsaSignature || codeSecret == null) {
+            return createRsaSignatureHash(realm, clientSession);
+        } else {
+            return createMacHash(codeSecret, clientSession);
+        }
+    }
+
+    private static String createMacHash(String codeSecret, ClientSessionModel clientSession) {
+        Mac mac = macs.get();
+        try {
+            mac.init(new SecretKeySpec(codeSecret.getBytes("utf-8"), HMAC_ALGORITHM));
+            mac.update(clientSession.getId().getBytes());
+            mac.update(ByteBuffer.allocate(4).putInt(clientSession.getTimestamp()).array());
+            if (clientSession.getAction() != null) {
+                mac.update(clientSession.getAction().toString().getBytes());
+            }
+            return Base64Url.encode(mac.doFinal());
+        } catch (Exception e) {
+            mac.reset();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String createRsaSignatureHash(RealmModel realm, ClientSessionModel clientSession) {
         try {
             Signature signature = Signature.getInstance(RSAProvider.getJavaAlgorithm(Algorithm.RS256));
             signature.initSign(realm.getPrivateKey());
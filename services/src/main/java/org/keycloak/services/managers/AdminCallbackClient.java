@@ -0,0 +1,113 @@
+package org.keycloak.services.managers;
+
+import org.apache.http.client.HttpClient;
+import org.jboss.logging.Logger;
+import org.jboss.resteasy.client.core.executors.ApacheHttpClient4Executor;
+import org.keycloak.Config;
+import org.keycloak.services.util.HttpClientBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pooled http client used to invoke the admin urls of applications. Calls to several applications are made
+ * concurrently, by at most <code>maxConcurrent</code> threads. Connecting and reading are each limited to
+ * <code>timeout</code> milliseconds, and so is the whole wait for a call to complete, including the time it waits for a
+ * free thread.
+ * <p/>
+ * The server's instance is created by {@link org.keycloak.services.resources.KeycloakApplication} from the
+ * <code>adminCallbacks</code> scope of the server config, and closed when the server is undeployed.
+ */
+public class AdminCallbackClient {
+
+    private static final Logger logger = Logger.getLogger(AdminCallbackClient.class);
+
+    public static final int DEFAULT_CONNECTION_POOL_SIZE = 100;
+    public static final int DEFAULT_MAX_CONCURRENT = 20;
+    public static final long DEFAULT_TIMEOUT = 10000;
+
+    private final ApacheHttpClient4Executor executor;
+    private final ThreadPoolExecutor workers;
+    private final long timeout;
+
+    public AdminCallbackClient(int connectionPoolSize, int maxConcurrent, long timeout) {
+        HttpClient client = new HttpClientBuilder()
+                .disableTrustManager() // todo fix this, should have a trust manager or a good default
+                .connectionPoolSize(connectionPoolSize)
+                .establishConnectionTimeout(timeout, TimeUnit.MILLISECONDS)
+                .socketTimeout(timeout, TimeUnit.MILLISECONDS)
+                .build();
+        this.executor = new ApacheHttpClient4Executor(client);
+        this.timeout = timeout;
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Admin Callback " + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    public static AdminCallbackClient create(Config.Scope config) {
+        return new AdminCallbackClient(config.getInt("connectionPoolSize", DEFAULT_CONNECTION_POOL_SIZE),
+                config.getInt("maxConcurrent", DEFAULT_MAX_CONCURRENT), config.getLong("timeout", DEFAULT_TIMEOUT));
+    }
+
+    public ApacheHttpClient4Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Runs the calls concurrently and returns their results by the same keys. A call that fails or doesn't complete
+     * within the timeout has a <code>null</code> result.
+     */
+    public <T> Map<String, T> invokeAll(Map<String, Callable<T>> calls) {
+        long deadline = System.currentTimeMillis() + timeout;
+        Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+        for (Map.Entry<String, Callable<T>> e : calls.entrySet()) {
+            futures.put(e.getKey(), workers.submit(e.getValue()));
+        }
+
+        Map<String, T> results = new LinkedHashMap<String, T>();
+        for (Map.Entry<String, Future<T>> e : futures.entrySet()) {
+            results.put(e.getKey(), getResult(e.getKey(), e.getValue(), deadline));
+        }
+        return results;
+    }
+
+    private <T> T getResult(String key, Future<T> future, long deadline) {
+        try {
+            return future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warnv("Admin callback {0} timed out", key);
+            return null;
+        } catch (ExecutionException e) {
+            logger.warnv("Admin callback {0} failed: {1}", key, e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return null;
+        }
+    }
+
+    public void close() {
+        workers.shutdownNow();
+        executor.getHttpClient().getConnectionManager().shutdown();
+    }
+
+}
@@ -6,6 +6,7 @@ import org.keycloak.RSATokenVerifier;
 import org.keycloak.VerificationException;
 import org.keycloak.jose.jws.JWSBuilder;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.ModelUnavailableException;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RequiredCredentialModel;
 import org.keycloak.models.UserCredentialModel;
@@ -226,7 +227,14 @@ public class AuthenticationManager {
             }
         }
 
-        AuthenticationStatus status = authenticateInternal(session, realm, formData, username);
+        AuthenticationStatus status;
+        try {
+            status = authenticateInternal(session, realm, formData, username);
+        } catch (ModelUnavailableException e) {
+            // for example the password hashing queue is full, not counted as a failed login
+            logger.warnv("Could not authenticate user {0}: {1}", username, e.getMessage());
+            return AuthenticationStatus.TEMPORARILY_UNAVAILABLE;
+        }
         if (realm.isBruteForceProtected()) {
             switch (status) {
                 case SUCCESS:
@@ -326,7 +334,7 @@ public class AuthenticationManager {
     }
 
     public enum AuthenticationStatus {
-        SUCCESS, ACCOUNT_TEMPORARILY_DISABLED, ACCOUNT_DISABLED, ACTIONS_REQUIRED, INVALID_USER, INVALID_CREDENTIALS, MISSING_PASSWORD, MISSING_TOTP, FAILED
+        SUCCESS, ACCOUNT_TEMPORARILY_DISABLED, ACCOUNT_DISABLED, ACTIONS_REQUIRED, INVALID_USER, INVALID_CREDENTIALS, MISSING_PASSWORD, MISSING_TOTP, FAILED, TEMPORARILY_UNAVAILABLE
     }
 
     public class AuthResult {
@@ -10,6 +10,8 @@ import org.keycloak.models.UsernameLoginFailureModel;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -40,6 +42,7 @@ public class BruteForceProtector implements Runnable {
         protected final String realmId;
         protected final String username;
         protected final String ip;
+        protected final long time = System.currentTimeMillis();
 
         protected LoginEvent(String realmId, String username, String ip) {
             this.realmId = realmId;
@@ -85,8 +88,14 @@ public class BruteForceProtector implements Runnable {
         if (user == null) {
             user = session.sessions().addUserLoginFailure(realm, event.username);
         }
-        user.setLastIPFailure(event.ip);
-        long currentTime = System.currentTimeMillis();
+        recordFailure(realm, user, event.ip, event.time);
+    }
+
+    /**
+     * Updates the failure count and lockout of a user for a failed login that happened at <code>currentTime</code>
+     */
+    protected void recordFailure(RealmModel realm, UsernameLoginFailureModel user, String ip, long currentTime) {
+        user.setLastIPFailure(ip);
         long last = user.getLastFailure();
         long deltaTime = 0;
         if (last > 0) {
@@ -155,6 +164,7 @@ public class BruteForceProtector implements Runnable {
                 try {
                     LoginEvent take = queue.poll(2, TimeUnit.SECONDS);
                     if (take == null) {
+                        housekeeping();
                         continue;
                     }
                     try {
@@ -177,9 +187,7 @@ public class BruteForceProtector implements Runnable {
                             throw e;
                         } finally {
                             for (LoginEvent event : events) {
-                                if (event instanceof FailedLogin) {
-                                    ((FailedLogin) event).latch.countDown();
-                                }
+                                completed(event);
                             }
                             events.clear();
                             session.close();
@@ -187,6 +195,7 @@ public class BruteForceProtector implements Runnable {
                     } catch (Exception e) {
                         logger.error("Failed processing type", e);
                     }
+                    housekeeping();
                 } catch (InterruptedException e) {
                     break;
                 }
@@ -196,6 +205,21 @@ public class BruteForceProtector implements Runnable {
         }
     }
 
+    /**
+     * Called for each event of a batch once the batch is done, whether or not it was written
+     */
+    protected void completed(LoginEvent event) {
+        if (event instanceof FailedLogin) {
+            ((FailedLogin) event).latch.countDown();
+        }
+    }
+
+    /**
+     * Called by the background thread after each batch, and when it has been idle for a while
+     */
+    protected void housekeeping() {
+    }
+
     protected void logSuccess(LoginEvent event) {
         logger.warn("login success for user " + event.username + " from ip " + event.ip);
     }
@@ -251,6 +275,18 @@ public class BruteForceProtector implements Runnable {
         return false;
     }
 
+    /**
+     * Called when a user is removed, so any failures kept in memory for the username are forgotten
+     */
+    public void onUserRemoved(RealmModel realm, String username) {
+    }
+
+    /**
+     * Called when a realm is removed, so any failures kept in memory for the realm are forgotten
+     */
+    public void onRealmRemoved(RealmModel realm) {
+    }
+
     public long getFailures() {
         return failures;
     }
@@ -259,5 +295,12 @@ public class BruteForceProtector implements Runnable {
         return lastFailure;
     }
 
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put("failures", failures);
+        stats.put("queueDepth", (long) queue.size());
+        return stats;
+    }
+
 
 }
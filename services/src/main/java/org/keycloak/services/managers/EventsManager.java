@@ -2,11 +2,15 @@ package org.keycloak.services.managers;
 
 import org.jboss.logging.Logger;
 import org.keycloak.ClientConnection;
+import org.keycloak.events.AsyncEventListenerProviderFactory;
+import org.keycloak.events.Event;
 import org.keycloak.events.EventBuilder;
 import org.keycloak.events.EventListenerProvider;
 import org.keycloak.events.EventStoreProvider;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.RealmModel;
+import org.keycloak.provider.ProviderFactory;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -41,10 +45,14 @@ public class EventsManager {
         }
 
         if (realm.getEventsListeners() != null) {
+            KeycloakSessionFactory sessionFactory = session.getKeycloakSessionFactory();
             for (String id : realm.getEventsListeners()) {
-                EventListenerProvider listener = session.getProvider(EventListenerProvider.class, id);
-                if (listener != null) {
-                    listeners.add(listener);
+                ProviderFactory<EventListenerProvider> factory = sessionFactory.getProviderFactory(EventListenerProvider.class, id);
+                if (factory instanceof AsyncEventListenerProviderFactory) {
+                    // only holds the events until the transaction commits, so it is cheap to create and needs no closing
+                    listeners.add(factory.create(session));
+                } else if (factory != null) {
+                    listeners.add(new LazyEventListenerProvider(session, id));
                 } else {
                     log.error("Event listener '" + id + "' registered, but provider not found");
                 }
@@ -54,4 +62,38 @@ public class EventsManager {
         return new EventBuilder(listeners, realm, clientConnection.getRemoteAddr());
     }
 
+    /**
+     * Creates the listener when the first event is sent, as many requests don't send any
+     */
+    private static class LazyEventListenerProvider implements EventListenerProvider {
+
+        private final KeycloakSession session;
+        private final String id;
+        private EventListenerProvider listener;
+
+        private LazyEventListenerProvider(KeycloakSession session, String id) {
+            this.session = session;
+            this.id = id;
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            if (listener == null) {
+                listener = session.getProvider(EventListenerProvider.class, id);
+            }
+            listener.onEvent(event);
+        }
+
+        @Override
+        public void close() {
+            // closed by the session
+        }
+
+        @Override
+        public String toString() {
+            return listener != null ? listener.toString() : id;
+        }
+
+    }
+
 }
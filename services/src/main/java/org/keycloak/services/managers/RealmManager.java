@@ -1,6 +1,7 @@
 package org.keycloak.services.managers;
 
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.keycloak.Config;
 import org.keycloak.enums.SslRequired;
 import org.keycloak.exportimport.util.ImportUtils;
@@ -146,6 +147,11 @@ public class RealmManager {
                 sessions.onRealmRemoved(realm);
             }
 
+            BruteForceProtector protector = ResteasyProviderFactory.getContextData(BruteForceProtector.class);
+            if (protector != null) {
+                protector.onRealmRemoved(realm);
+            }
+
             // Remove all periodic syncs for configured federation providers
             UsersSyncManager usersSyncManager = new UsersSyncManager();
             for (final UserFederationProviderModel fedProvider : federationProviders) {
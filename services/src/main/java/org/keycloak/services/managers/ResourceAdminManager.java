@@ -5,12 +5,14 @@ import org.jboss.logging.Logger;
 import org.jboss.resteasy.client.ClientRequest;
 import org.jboss.resteasy.client.ClientResponse;
 import org.jboss.resteasy.client.core.executors.ApacheHttpClient4Executor;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.keycloak.TokenIdGenerator;
 import org.keycloak.adapters.AdapterConstants;
 import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
+import org.keycloak.representations.adapters.action.AdminAction;
 import org.keycloak.representations.adapters.action.LogoutAction;
 import org.keycloak.representations.adapters.action.PushNotBeforeAction;
 import org.keycloak.representations.adapters.action.SessionStats;
@@ -25,27 +27,44 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
+ * Invokes the admin urls of applications. Calls to all applications of a realm are made concurrently through the
+ * {@link AdminCallbackClient} of the server, and the results are returned per application name. Admin tokens are
+ * created before the calls are made, as the model can only be used by the thread of the request.
+ *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
 public class ResourceAdminManager {
     protected static Logger logger = Logger.getLogger(ResourceAdminManager.class);
 
-    public SessionStats getSessionStats(URI requestUri, KeycloakSession session, RealmModel realm, ApplicationModel application, boolean users) {
-        ApacheHttpClient4Executor executor = createExecutor();
+    protected final AdminCallbackClient callbackClient;
 
-        try {
-            return getSessionStats(requestUri, session, realm, application, users, executor);
-        } finally {
-            executor.getHttpClient().getConnectionManager().shutdown();
-        }
+    /**
+     * Uses the admin callback client of the server, must be called while handling a request
+     */
+    public ResourceAdminManager() {
+        this(ResteasyProviderFactory.getContextData(AdminCallbackClient.class));
+    }
 
+    public ResourceAdminManager(AdminCallbackClient callbackClient) {
+        if (callbackClient == null) throw new IllegalStateException("No admin callback client");
+        this.callbackClient = callbackClient;
+    }
+
+    public SessionStats getSessionStats(URI requestUri, KeycloakSession session, RealmModel realm, ApplicationModel application, boolean users) {
+        return getSessionStats(requestUri, session, realm, application, users, callbackClient.getExecutor());
     }
 
+    /**
+     * @deprecated admin calls should use the pooled {@link AdminCallbackClient}
+     */
+    @Deprecated
     public static ApacheHttpClient4Executor createExecutor() {
         HttpClient client = new HttpClientBuilder()
                 .disableTrustManager() // todo fix this, should have a trust manager or a good default
@@ -54,46 +73,55 @@ public class ResourceAdminManager {
     }
 
     public SessionStats getSessionStats(URI requestUri, KeycloakSession session, RealmModel realm, ApplicationModel application, boolean users, ApacheHttpClient4Executor client) {
-        String managementUrl = getManagementUrl(requestUri, application);
-        if (managementUrl != null) {
-            SessionStatsAction adminAction = new SessionStatsAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, application.getName());
-            adminAction.setListUsers(users);
-            String token = new TokenManager().encodeToken(realm, adminAction);
-            logger.debugv("session stats for application: {0} url: {1}", application.getName(), managementUrl);
-            ClientRequest request = client.createRequest(UriBuilder.fromUri(managementUrl).path(AdapterConstants.K_GET_SESSION_STATS).build().toString());
-            ClientResponse<SessionStats> response = null;
-            try {
-                response = request.body(MediaType.TEXT_PLAIN_TYPE, token).post(SessionStats.class);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-            try {
-                if (response.getStatus() != 200) {
-                    logger.warn("Failed to get stats: " + response.getStatus());
-                    return null;
-                }
-                SessionStats stats = response.getEntity();
-
-                // replace with username
-                if (users && stats.getUsers() != null) {
-                    Map<String, UserStats> newUsers = new HashMap<String, UserStats>();
-                    for (Map.Entry<String, UserStats> entry : stats.getUsers().entrySet()) {
-                        UserModel user = session.users().getUserById(entry.getKey(), realm);
-                        if (user == null) continue;
-                        newUsers.put(user.getUsername(), entry.getValue());
-
-                    }
-                    stats.setUsers(newUsers);
-                }
-                return stats;
-            } finally {
-                response.releaseConnection();
-            }
-        } else {
+        Callable<SessionStats> request = createSessionStatsRequest(requestUri, realm, application, users, client);
+        if (request == null) {
             logger.debug("no management url.");
             return null;
         }
+        SessionStats stats = call(request);
+        replaceUserIds(session, realm, stats, users);
+        return stats;
+    }
+
+    /**
+     * Gets the session stats of all applications with a management url
+     */
+    public Map<String, SessionStats> getSessionStats(URI requestUri, KeycloakSession session, RealmModel realm, boolean users) {
+        Map<String, Callable<SessionStats>> requests = new LinkedHashMap<String, Callable<SessionStats>>();
+        for (ApplicationModel application : realm.getApplications()) {
+            Callable<SessionStats> request = createSessionStatsRequest(requestUri, realm, application, users, callbackClient.getExecutor());
+            if (request != null) requests.put(application.getName(), request);
+        }
 
+        Map<String, SessionStats> stats = callbackClient.invokeAll(requests);
+        for (SessionStats appStats : stats.values()) {
+            replaceUserIds(session, realm, appStats, users);
+        }
+        return stats;
+    }
+
+    protected Callable<SessionStats> createSessionStatsRequest(URI requestUri, RealmModel realm, ApplicationModel application, boolean users, ApacheHttpClient4Executor client) {
+        String managementUrl = getManagementUrl(requestUri, application);
+        if (managementUrl == null) return null;
+
+        SessionStatsAction adminAction = new SessionStatsAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, application.getName());
+        adminAction.setListUsers(users);
+        logger.debugv("session stats for application: {0} url: {1}", application.getName(), managementUrl);
+        return new StatsRequest<SessionStats>(client, managementUrl, AdapterConstants.K_GET_SESSION_STATS, encodeToken(realm, adminAction), SessionStats.class);
+    }
+
+    protected void replaceUserIds(KeycloakSession session, RealmModel realm, SessionStats stats, boolean users) {
+        // replace with username
+        if (users && stats != null && stats.getUsers() != null) {
+            Map<String, UserStats> newUsers = new HashMap<String, UserStats>();
+            for (Map.Entry<String, UserStats> entry : stats.getUsers().entrySet()) {
+                UserModel user = session.users().getUserById(entry.getKey(), realm);
+                if (user == null) continue;
+                newUsers.put(user.getUsername(), entry.getValue());
+
+            }
+            stats.setUsers(newUsers);
+        }
     }
 
     protected String getManagementUrl(URI requestUri, ApplicationModel application) {
@@ -105,182 +133,211 @@ public class ResourceAdminManager {
     }
 
     public UserStats getUserStats(URI requestUri, RealmModel realm, ApplicationModel application, UserModel user) {
-        ApacheHttpClient4Executor executor = createExecutor();
-
-        try {
-            return getUserStats(requestUri, realm, application, user, executor);
-        } finally {
-            executor.getHttpClient().getConnectionManager().shutdown();
-        }
-
+        return getUserStats(requestUri, realm, application, user, callbackClient.getExecutor());
     }
 
 
     public UserStats getUserStats(URI requestUri, RealmModel realm, ApplicationModel application, UserModel user, ApacheHttpClient4Executor client) {
-        String managementUrl = getManagementUrl(requestUri, application);
-        if (managementUrl != null) {
-            UserStatsAction adminAction = new UserStatsAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, application.getName(), user.getId());
-            String token = new TokenManager().encodeToken(realm, adminAction);
-            logger.debugv("session stats for application: {0} url: {1}", application.getName(), managementUrl);
-            ClientRequest request = client.createRequest(UriBuilder.fromUri(managementUrl).path(AdapterConstants.K_GET_USER_STATS).build().toString());
-            ClientResponse<UserStats> response = null;
-            try {
-                response = request.body(MediaType.TEXT_PLAIN_TYPE, token).post(UserStats.class);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-
-            try {
-                if (response.getStatus() != 200) {
-                    logger.warn("Failed to get stats: " + response.getStatus());
-                    return null;
-                }
-                UserStats stats = response.getEntity();
-                return stats;
-            } finally {
-                response.releaseConnection();
-            }
-        } else {
+        Callable<UserStats> request = createUserStatsRequest(requestUri, realm, application, user, client);
+        if (request == null) {
             logger.debug("no management url.");
             return null;
         }
+        return call(request);
+    }
 
+    /**
+     * Gets the stats of a user from all applications with a management url
+     */
+    public Map<String, UserStats> getUserStats(URI requestUri, RealmModel realm, UserModel user) {
+        Map<String, Callable<UserStats>> requests = new LinkedHashMap<String, Callable<UserStats>>();
+        for (ApplicationModel application : realm.getApplications()) {
+            Callable<UserStats> request = createUserStatsRequest(requestUri, realm, application, user, callbackClient.getExecutor());
+            if (request != null) requests.put(application.getName(), request);
+        }
+        return callbackClient.invokeAll(requests);
     }
 
-    public void logoutUser(URI requestUri, RealmModel realm, String user, String session) {
-        ApacheHttpClient4Executor executor = createExecutor();
+    protected Callable<UserStats> createUserStatsRequest(URI requestUri, RealmModel realm, ApplicationModel application, UserModel user, ApacheHttpClient4Executor client) {
+        String managementUrl = getManagementUrl(requestUri, application);
+        if (managementUrl == null) return null;
 
-        try {
-            // don't set user notBefore as we don't want a database hit on a user driven logout
-            List<ApplicationModel> resources = realm.getApplications();
-            logger.debugv("logging out {0} resources ", resources.size());
-            for (ApplicationModel resource : resources) {
-                logoutApplication(requestUri, realm, resource, user, session, executor, 0);
-            }
-        } finally {
-            executor.getHttpClient().getConnectionManager().shutdown();
-        }
+        UserStatsAction adminAction = new UserStatsAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, application.getName(), user.getId());
+        logger.debugv("session stats for application: {0} url: {1}", application.getName(), managementUrl);
+        return new StatsRequest<UserStats>(client, managementUrl, AdapterConstants.K_GET_USER_STATS, encodeToken(realm, adminAction), UserStats.class);
+    }
+
+    public Map<String, Boolean> logoutUser(URI requestUri, RealmModel realm, String user, String session) {
+        // don't set user notBefore as we don't want a database hit on a user driven logout
+        List<ApplicationModel> resources = realm.getApplications();
+        logger.debugv("logging out {0} resources ", resources.size());
+        return logoutApplications(requestUri, realm, resources, user, session, 0);
     }
 
-    public void logoutSession(URI requestUri, RealmModel realm, String session) {
-        ApacheHttpClient4Executor executor = createExecutor();
+    public Map<String, Boolean> logoutSession(URI requestUri, RealmModel realm, String session) {
+        // don't set user notBefore as we don't want a database hit on a user driven logout
+        List<ApplicationModel> resources = realm.getApplications();
+        logger.debugv("logging out {0} resources ", resources.size());
+        return logoutApplications(requestUri, realm, resources, null, session, 0);
+    }
 
-        try {
-            // don't set user notBefore as we don't want a database hit on a user driven logout
-            List<ApplicationModel> resources = realm.getApplications();
-            logger.debugv("logging out {0} resources ", resources.size());
-            for (ApplicationModel resource : resources) {
-                logoutApplication(requestUri, realm, resource, null, session, executor, 0);
-            }
-        } finally {
-            executor.getHttpClient().getConnectionManager().shutdown();
-        }
+    public Map<String, Boolean> logoutAll(URI requestUri, RealmModel realm) {
+        realm.setNotBefore(Time.currentTime());
+        List<ApplicationModel> resources = realm.getApplications();
+        logger.debugv("logging out {0} resources ", resources.size());
+        return logoutApplications(requestUri, realm, resources, null, null, realm.getNotBefore());
     }
 
-    public void logoutAll(URI requestUri, RealmModel realm) {
-        ApacheHttpClient4Executor executor = createExecutor();
+    public boolean logoutApplication(URI requestUri, RealmModel realm, ApplicationModel resource, String user, String session) {
+        resource.setNotBefore(Time.currentTime());
+        return logoutApplication(requestUri, realm, resource, user, session, callbackClient.getExecutor(), resource.getNotBefore());
+    }
 
-        try {
-            realm.setNotBefore(Time.currentTime());
-            List<ApplicationModel> resources = realm.getApplications();
-            logger.debugv("logging out {0} resources ", resources.size());
-            for (ApplicationModel resource : resources) {
-                logoutApplication(requestUri, realm, resource, null, null, executor, realm.getNotBefore());
-            }
-        } finally {
-            executor.getHttpClient().getConnectionManager().shutdown();
+    protected Map<String, Boolean> logoutApplications(URI requestUri, RealmModel realm, List<ApplicationModel> resources, String user, String session, int notBefore) {
+        Map<String, Callable<Boolean>> requests = new LinkedHashMap<String, Callable<Boolean>>();
+        for (ApplicationModel resource : resources) {
+            requests.put(resource.getName(), createLogoutRequest(requestUri, realm, resource, user, session, callbackClient.getExecutor(), notBefore));
         }
+        return invokeAll(requests);
     }
 
-    public void logoutApplication(URI requestUri, RealmModel realm, ApplicationModel resource, String user, String session) {
-        ApacheHttpClient4Executor executor = createExecutor();
+    protected boolean logoutApplication(URI requestUri, RealmModel realm, ApplicationModel resource, String user, String session, ApacheHttpClient4Executor client, int notBefore) {
+        Callable<Boolean> request = createLogoutRequest(requestUri, realm, resource, user, session, client, notBefore);
+        return request != null && call(request);
+    }
 
-        try {
-            resource.setNotBefore(Time.currentTime());
-            logoutApplication(requestUri, realm, resource, user, session, executor, resource.getNotBefore());
-        } finally {
-            executor.getHttpClient().getConnectionManager().shutdown();
+    protected Callable<Boolean> createLogoutRequest(URI requestUri, RealmModel realm, ApplicationModel resource, String user, String session, ApacheHttpClient4Executor client, int notBefore) {
+        String managementUrl = getManagementUrl(requestUri, resource);
+        if (managementUrl == null) {
+            logger.debugv("Can't logout {0}: no management url", resource.getName());
+            return null;
         }
 
+        LogoutAction adminAction = new LogoutAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, resource.getName(), user, session, notBefore);
+        logger.debugv("logout user: {0} resource: {1} url: {2}", user, resource.getName(), managementUrl);
+        return new ActionRequest(client, managementUrl, AdapterConstants.K_LOGOUT, encodeToken(realm, adminAction));
     }
 
+    public Map<String, Boolean> pushRealmRevocationPolicy(URI requestUri, RealmModel realm) {
+        Map<String, Callable<Boolean>> requests = new LinkedHashMap<String, Callable<Boolean>>();
+        for (ApplicationModel application : realm.getApplications()) {
+            requests.put(application.getName(), createPushRevocationRequest(requestUri, realm, application, realm.getNotBefore(), callbackClient.getExecutor()));
+        }
+        return invokeAll(requests);
+    }
 
-    protected boolean logoutApplication(URI requestUri, RealmModel realm, ApplicationModel resource, String user, String session, ApacheHttpClient4Executor client, int notBefore) {
+    public boolean pushApplicationRevocationPolicy(URI requestUri, RealmModel realm, ApplicationModel application) {
+        return pushRevocationPolicy(requestUri, realm, application, application.getNotBefore(), callbackClient.getExecutor());
+    }
+
+
+    protected boolean pushRevocationPolicy(URI requestUri, RealmModel realm, ApplicationModel resource, int notBefore, ApacheHttpClient4Executor client) {
+        Callable<Boolean> request = createPushRevocationRequest(requestUri, realm, resource, notBefore, client);
+        return request != null && call(request);
+    }
+
+    protected Callable<Boolean> createPushRevocationRequest(URI requestUri, RealmModel realm, ApplicationModel resource, int notBefore, ApacheHttpClient4Executor client) {
+        if (notBefore <= 0) return null;
         String managementUrl = getManagementUrl(requestUri, resource);
-        if (managementUrl != null) {
-            LogoutAction adminAction = new LogoutAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, resource.getName(), user, session, notBefore);
-            String token = new TokenManager().encodeToken(realm, adminAction);
-            logger.debugv("logout user: {0} resource: {1} url: {2}", user, resource.getName(), managementUrl);
-            ClientRequest request = client.createRequest(UriBuilder.fromUri(managementUrl).path(AdapterConstants.K_LOGOUT).build().toString());
-            ClientResponse response;
-            try {
-                response = request.body(MediaType.TEXT_PLAIN_TYPE, token).post(UserStats.class);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-            try {
-                boolean success = response.getStatus() == 204;
-                logger.debug("logout success.");
-                return success;
-            } finally {
-                response.releaseConnection();
-            }
-        } else {
-            logger.debugv("Can't logout {0}: no management url", resource.getName());
-            return false;
+        if (managementUrl == null) {
+            logger.debug("no management URL for application: " + resource.getName());
+            return null;
         }
+
+        PushNotBeforeAction adminAction = new PushNotBeforeAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, resource.getName(), notBefore);
+        logger.debugv("pushRevocation resource: {0} url: {1}", resource.getName(), managementUrl);
+        return new ActionRequest(client, managementUrl, AdapterConstants.K_PUSH_NOT_BEFORE, encodeToken(realm, adminAction));
     }
 
-    public void pushRealmRevocationPolicy(URI requestUri, RealmModel realm) {
-        ApacheHttpClient4Executor executor = createExecutor();
+    /**
+     * Runs the requests concurrently. Applications without a request, and requests that failed, have a
+     * <code>false</code> result.
+     */
+    protected Map<String, Boolean> invokeAll(Map<String, Callable<Boolean>> requests) {
+        Map<String, Callable<Boolean>> calls = new LinkedHashMap<String, Callable<Boolean>>();
+        for (Map.Entry<String, Callable<Boolean>> e : requests.entrySet()) {
+            if (e.getValue() != null) calls.put(e.getKey(), e.getValue());
+        }
+        Map<String, Boolean> results = callbackClient.invokeAll(calls);
 
-        try {
-            for (ApplicationModel application : realm.getApplications()) {
-                pushRevocationPolicy(requestUri, realm, application, realm.getNotBefore(), executor);
-            }
-        } finally {
-            executor.getHttpClient().getConnectionManager().shutdown();
+        Map<String, Boolean> aggregated = new LinkedHashMap<String, Boolean>();
+        for (String name : requests.keySet()) {
+            aggregated.put(name, Boolean.TRUE.equals(results.get(name)));
         }
+        return aggregated;
     }
 
-    public void pushApplicationRevocationPolicy(URI requestUri, RealmModel realm, ApplicationModel application) {
-        ApacheHttpClient4Executor executor = createExecutor();
+    protected String encodeToken(RealmModel realm, AdminAction adminAction) {
+        return new TokenManager().encodeToken(realm, adminAction);
+    }
 
+    protected static <T> T call(Callable<T> request) {
         try {
-            pushRevocationPolicy(requestUri, realm, application, application.getNotBefore(), executor);
-        } finally {
-            executor.getHttpClient().getConnectionManager().shutdown();
+            return request.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Posts an admin action token and returns the response entity, or <code>null</code> if it failed
+     */
+    protected static class StatsRequest<T> implements Callable<T> {
+        private final ApacheHttpClient4Executor client;
+        private final String url;
+        private final String token;
+        private final Class<T> type;
+
+        protected StatsRequest(ApacheHttpClient4Executor client, String managementUrl, String path, String token, Class<T> type) {
+            this.client = client;
+            this.url = UriBuilder.fromUri(managementUrl).path(path).build().toString();
+            this.token = token;
+            this.type = type;
+        }
 
-    protected boolean pushRevocationPolicy(URI requestUri, RealmModel realm, ApplicationModel resource, int notBefore, ApacheHttpClient4Executor client) {
-        if (notBefore <= 0) return false;
-        String managementUrl = getManagementUrl(requestUri, resource);
-        if (managementUrl != null) {
-            PushNotBeforeAction adminAction = new PushNotBeforeAction(TokenIdGenerator.generateId(), Time.currentTime() + 30, resource.getName(), notBefore);
-            String token = new TokenManager().encodeToken(realm, adminAction);
-            logger.debugv("pushRevocation resource: {0} url: {1}", resource.getName(), managementUrl);
-            ClientRequest request = client.createRequest(UriBuilder.fromUri(managementUrl).path(AdapterConstants.K_PUSH_NOT_BEFORE).build().toString());
-            ClientResponse response = null;
+        @Override
+        public T call() throws Exception {
+            ClientRequest request = client.createRequest(url);
+            ClientResponse<T> response = request.body(MediaType.TEXT_PLAIN_TYPE, token).post(type);
             try {
-                response = request.body(MediaType.TEXT_PLAIN_TYPE, token).post();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                if (response.getStatus() != 200) {
+                    logger.warn("Failed to get stats: " + response.getStatus());
+                    return null;
+                }
+                return response.getEntity();
+            } finally {
+                response.releaseConnection();
             }
+        }
+    }
+
+    /**
+     * Posts an admin action token and returns whether the application accepted it
+     */
+    protected static class ActionRequest implements Callable<Boolean> {
+        private final ApacheHttpClient4Executor client;
+        private final String url;
+        private final String token;
+
+        protected ActionRequest(ApacheHttpClient4Executor client, String managementUrl, String path, String token) {
+            this.client = client;
+            this.url = UriBuilder.fromUri(managementUrl).path(path).build().toString();
+            this.token = token;
+        }
 
+        @Override
+        public Boolean call() throws Exception {
+            ClientRequest request = client.createRequest(url);
+            ClientResponse response = request.body(MediaType.TEXT_PLAIN_TYPE, token).post();
             try {
                 boolean success = response.getStatus() == 204;
-                logger.debug("pushRevocation success.");
+                logger.debugv("admin action {0} success: {1}", url, success);
                 return success;
             } finally {
                 response.releaseConnection();
             }
-        } else {
-            logger.debug("no management URL for application: " + resource.getName());
-            return false;
         }
-
-
     }
 }
@@ -0,0 +1,427 @@
+package org.keycloak.services.managers;
+
+import org.keycloak.ClientConnection;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UsernameLoginFailureModel;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides lockouts from failure counters kept in memory, so a failed login never waits for the database. The counters
+ * are split over a number of shards, each with its own lock, keyed by realm and username. Failures are still written
+ * through to {@link UsernameLoginFailureModel} in batches by the background thread.
+ * <p/>
+ * The stored failures are the shared state of all nodes in a cluster. They seed the counters of users that aren't known
+ * in memory yet, are merged back into the counter after each write, and are re-read when a counter hasn't been
+ * reconciled with them for <code>syncInterval</code> milliseconds. A lockout caused by failures on another node is
+ * therefore seen here within that interval, and a counter whose stored failures were removed (for example because the
+ * user was removed) is dropped.
+ * <p/>
+ * Each shard keeps at most <code>maxCounters / shards</code> counters, and drops the least recently used one when it's
+ * full. A dropped counter is seeded again from the stored failures on the next lockout check.
+ */
+public class ShardedBruteForceProtector extends BruteForceProtector {
+
+    public static final int DEFAULT_SHARDS = 16;
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+    public static final long DEFAULT_SYNC_INTERVAL = 1000;
+    public static final int DEFAULT_MAX_COUNTERS = 100000;
+
+    protected static final long PURGE_INTERVAL = 60000;
+
+    protected final Shard[] shards;
+    protected final long syncInterval;
+
+    protected final AtomicLong processed = new AtomicLong();
+    protected final AtomicLong dropped = new AtomicLong();
+    protected final AtomicLong synced = new AtomicLong();
+    protected volatile long lastLatency;
+    protected volatile long totalLatency;
+    protected volatile long lastPurge = System.currentTimeMillis();
+
+    public ShardedBruteForceProtector(KeycloakSessionFactory factory) {
+        this(factory, DEFAULT_SHARDS, DEFAULT_QUEUE_SIZE, DEFAULT_SYNC_INTERVAL, DEFAULT_MAX_COUNTERS);
+    }
+
+    public ShardedBruteForceProtector(KeycloakSessionFactory factory, int shards, int queueSize, long syncInterval, int maxCounters) {
+        super(factory);
+        this.queue = new LinkedBlockingQueue<LoginEvent>(queueSize);
+        this.syncInterval = syncInterval;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(Math.max(1, maxCounters / shards));
+        }
+    }
+
+    @Override
+    public void failedLogin(RealmModel realm, String username, ClientConnection clientConnection) {
+        FailedLogin event = new FailedLogin(realm.getId(), username, clientConnection.getRemoteAddr());
+
+        Key key = new Key(realm.getId(), username);
+        Shard shard = getShard(key);
+        Failure failure;
+        synchronized (shard) {
+            failure = shard.failures.get(key);
+            if (failure == null) {
+                failure = new Failure(username);
+                shard.failures.put(key, failure);
+            }
+            recordFailure(realm, failure, event.ip, event.time);
+            failure.maxDeltaTime = (long) realm.getMaxDeltaTimeSeconds() * 1000L;
+            failure.pending++;
+        }
+
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+            synchronized (shard) {
+                failure.pending--;
+            }
+            logger.debugv("Brute force protector queue full, failure for user {0} not persisted", username);
+        }
+    }
+
+    @Override
+    public boolean isTemporarilyDisabled(KeycloakSession session, RealmModel realm, String username) {
+        Key key = new Key(realm.getId(), username);
+        Shard shard = getShard(key);
+
+        Failure failure;
+        boolean sync;
+        synchronized (shard) {
+            failure = shard.failures.get(key);
+            sync = failure == null || System.currentTimeMillis() - failure.synced > syncInterval;
+        }
+
+        if (sync) {
+            UsernameLoginFailureModel model = session.sessions().getUserLoginFailure(realm, username);
+            synced.incrementAndGet();
+            failure = merge(realm, key, model);
+            if (failure == null) {
+                return false;
+            }
+        }
+
+        int notBefore;
+        synchronized (shard) {
+            notBefore = failure.failedLoginNotBefore;
+        }
+
+        int currTime = (int) (System.currentTimeMillis() / 1000);
+        if (currTime < notBefore) {
+            logger.debugv("Current: {0} notBefore: {1}", currTime, notBefore);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void failure(KeycloakSession session, LoginEvent event) {
+        super.failure(session, event);
+
+        RealmModel realm = getRealmModel(session, event);
+        Key key = new Key(event.realmId, event.username);
+        if (realm != null) {
+            merge(realm, key, session.sessions().getUserLoginFailure(realm, event.username));
+        }
+
+        long latency = System.currentTimeMillis() - event.time;
+        lastLatency = latency;
+        totalLatency += latency;
+        processed.incrementAndGet();
+    }
+
+    @Override
+    protected void completed(LoginEvent event) {
+        super.completed(event);
+
+        // also when the batch failed, otherwise the counter would be kept for failures that will never be written
+        if (event instanceof FailedLogin) {
+            Key key = new Key(event.realmId, event.username);
+            Shard shard = getShard(key);
+            synchronized (shard) {
+                Failure failure = shard.failures.get(key);
+                if (failure != null && failure.pending > 0) {
+                    failure.pending--;
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void housekeeping() {
+        if (System.currentTimeMillis() - lastPurge > PURGE_INTERVAL) {
+            purge();
+        }
+    }
+
+    /**
+     * Reconciles the counter of a user with the stored failures, which include failures recorded by other nodes. Returns
+     * the counter, or <code>null</code> if there are no failures for the user.
+     */
+    protected Failure merge(RealmModel realm, Key key, UsernameLoginFailureModel model) {
+        Shard shard = getShard(key);
+        synchronized (shard) {
+            Failure failure = shard.failures.get(key);
+            if (model == null) {
+                // Failures that are still queued haven't reached the store yet, so the counter is kept for them
+                if (failure != null && failure.pending == 0) {
+                    shard.failures.remove(key);
+                    return null;
+                }
+            } else if (failure == null) {
+                failure = new Failure(model);
+                failure.maxDeltaTime = (long) realm.getMaxDeltaTimeSeconds() * 1000L;
+                shard.failures.put(key, failure);
+            } else {
+                failure.numFailures = Math.max(failure.numFailures, model.getNumFailures());
+                failure.failedLoginNotBefore = Math.max(failure.failedLoginNotBefore, model.getFailedLoginNotBefore());
+                if (model.getLastFailure() > failure.lastFailure) {
+                    failure.lastFailure = model.getLastFailure();
+                    failure.lastIPFailure = model.getLastIPFailure();
+                }
+            }
+
+            if (failure != null) {
+                failure.synced = System.currentTimeMillis();
+            }
+            return failure;
+        }
+    }
+
+    @Override
+    public void onUserRemoved(RealmModel realm, String username) {
+        Key key = new Key(realm.getId(), username);
+        Shard shard = getShard(key);
+        synchronized (shard) {
+            shard.failures.remove(key);
+        }
+    }
+
+    @Override
+    public void onRealmRemoved(RealmModel realm) {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<Key> itr = shard.failures.keySet().iterator();
+                while (itr.hasNext()) {
+                    if (itr.next().realmId.equals(realm.getId())) {
+                        itr.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes counters that are past both their lockout and the realm's failure reset time. Queued failures don't keep
+     * a counter, as they are newer than the reset time unless the queue is stuck.
+     */
+    protected void purge() {
+        long currentTime = System.currentTimeMillis();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<Failure> itr = shard.failures.values().iterator();
+                while (itr.hasNext()) {
+                    Failure failure = itr.next();
+                    if (currentTime - failure.lastFailure > failure.maxDeltaTime && currentTime / 1000 >= failure.failedLoginNotBefore) {
+                        itr.remove();
+                    }
+                }
+            }
+        }
+        lastPurge = currentTime;
+    }
+
+    protected Shard getShard(Key key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return shards[(hash & 0x7fffffff) % shards.length];
+    }
+
+    /**
+     * Number of failures waiting to be written to the database
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Number of failures written to the database
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * Number of failures not written to the database because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Number of times stored failures were read to reconcile a counter before a lockout check
+     */
+    public long getSynced() {
+        return synced.get();
+    }
+
+    /**
+     * Time in milliseconds between the last processed failure and it being written to the database
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * Average time in milliseconds between a failure and it being written to the database
+     */
+    public long getAverageLatency() {
+        long count = processed.get();
+        return count > 0 ? totalLatency / count : 0;
+    }
+
+    /**
+     * Number of users with a failure counter in memory
+     */
+    public long getCounters() {
+        long count = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                count += shard.failures.size();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = super.getStats();
+        stats.put("processed", getProcessed());
+        stats.put("dropped", getDropped());
+        stats.put("synced", getSynced());
+        stats.put("lastLatency", getLastLatency());
+        stats.put("averageLatency", getAverageLatency());
+        stats.put("counters", getCounters());
+        return stats;
+    }
+
+    protected static class Shard {
+        protected final Map<Key, Failure> failures;
+
+        protected Shard(final int maxCounters) {
+            failures = new LinkedHashMap<Key, Failure>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Failure> eldest) {
+                    return size() > maxCounters;
+                }
+            };
+        }
+    }
+
+    protected static class Key {
+        protected final String realmId;
+        protected final String username;
+
+        protected Key(String realmId, String username) {
+            this.realmId = realmId;
+            this.username = username;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return realmId.equals(key.realmId) && username.equals(key.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * realmId.hashCode() + username.hashCode();
+        }
+    }
+
+    /**
+     * In-memory failure counter, guarded by the lock of the shard it's in
+     */
+    protected static class Failure implements UsernameLoginFailureModel {
+        protected final String username;
+        protected int failedLoginNotBefore;
+        protected int numFailures;
+        protected long lastFailure;
+        protected String lastIPFailure;
+        protected long maxDeltaTime;
+        protected long synced = System.currentTimeMillis();
+        protected int pending;
+
+        protected Failure(String username) {
+            this.username = username;
+        }
+
+        protected Failure(UsernameLoginFailureModel model) {
+            this.username = model.getUsername();
+            this.failedLoginNotBefore = model.getFailedLoginNotBefore();
+            this.numFailures = model.getNumFailures();
+            this.lastFailure = model.getLastFailure();
+            this.lastIPFailure = model.getLastIPFailure();
+        }
+
+        @Override
+        public String getUsername() {
+            return username;
+        }
+
+        @Override
+        public int getFailedLoginNotBefore() {
+            return failedLoginNotBefore;
+        }
+
+        @Override
+        public void setFailedLoginNotBefore(int notBefore) {
+            this.failedLoginNotBefore = notBefore;
+        }
+
+        @Override
+        public int getNumFailures() {
+            return numFailures;
+        }
+
+        @Override
+        public void incrementFailures() {
+            numFailures++;
+        }
+
+        @Override
+        public void clearFailures() {
+            numFailures = 0;
+        }
+
+        @Override
+        public long getLastFailure() {
+            return lastFailure;
+        }
+
+        @Override
+        public void setLastFailure(long lastFailure) {
+            this.lastFailure = lastFailure;
+        }
+
+        @Override
+        public String getLastIPFailure() {
+            return lastIPFailure;
+        }
+
+        @Override
+        public void setLastIPFailure(String ip) {
+            this.lastIPFailure = ip;
+        }
+    }
+
+}
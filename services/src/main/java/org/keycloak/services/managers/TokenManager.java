@@ -17,6 +17,9 @@ import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.cache.ClientAdapter;
+import org.keycloak.models.cache.RoleAdapter;
+import org.keycloak.models.cache.UserAdapter;
 import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.representations.AccessTokenResponse;
@@ -136,15 +139,19 @@ public class TokenManager {
         // todo scopeParam is ignored until we figure out a scheme that fits with openid connect
         Set<RoleModel> requestedRoles = new HashSet<RoleModel>();
 
-        Set<RoleModel> roleMappings = user.getRoleMappings();
-        if (client.isFullScopeAllowed()) return roleMappings;
+        if (client.isFullScopeAllowed()) return user.getRoleMappings();
+
+        Set<String> inScope = getCachedRolesInScope(client, user);
+        if (inScope != null && inScope.isEmpty()) return requestedRoles;
 
+        Set<RoleModel> roleMappings = user.getRoleMappings();
         Set<RoleModel> scopeMappings = client.getScopeMappings();
         if (client instanceof ApplicationModel) {
             scopeMappings.addAll(((ApplicationModel) client).getRoles());
         }
 
         for (RoleModel role : roleMappings) {
+            if (inScope != null && !isInScope(role, inScope)) continue;
             for (RoleModel desiredRole : scopeMappings) {
                 Set<RoleModel> visited = new HashSet<RoleModel>();
                 applyScope(role, desiredRole, visited, requestedRoles);
@@ -154,6 +161,44 @@ public class TokenManager {
         return requestedRoles;
     }
 
+    /**
+     * Intersects the cached scope closure of the client with the cached effective roles of the user. Returns the ids of
+     * every role the user has within the client's scope, or <code>null</code> if the closures aren't available. Role
+     * mappings that have none of these roles can be skipped, as {@link #applyScope} can't find anything for them.
+     */
+    protected Set<String> getCachedRolesInScope(ClientModel client, UserModel user) {
+        if (!(client instanceof ClientAdapter) || !(user instanceof UserAdapter)) return null;
+
+        Set<String> scope = ((ClientAdapter) client).getScopeClosure();
+        if (scope == null) return null;
+
+        Set<String> effectiveRoles = ((UserAdapter) user).getEffectiveRoles();
+        if (effectiveRoles == null) return null;
+
+        Set<String> smaller = scope.size() < effectiveRoles.size() ? scope : effectiveRoles;
+        Set<String> larger = smaller == scope ? effectiveRoles : scope;
+
+        Set<String> inScope = new HashSet<String>();
+        for (String id : smaller) {
+            if (larger.contains(id)) inScope.add(id);
+        }
+        return inScope;
+    }
+
+    protected boolean isInScope(RoleModel role, Set<String> inScope) {
+        if (!(role instanceof RoleAdapter)) return true;
+
+        Set<String> closure = ((RoleAdapter) role).getRoleClosure();
+        if (closure == null) return true;
+
+        Set<String> smaller = closure.size() < inScope.size() ? closure : inScope;
+        Set<String> larger = smaller == closure ? inScope : closure;
+        for (String id : smaller) {
+            if (larger.contains(id)) return true;
+        }
+        return false;
+    }
+
     public void verifyAccess(AccessToken token, RealmModel realm, ClientModel client, UserModel user) throws OAuthErrorException {
         ApplicationModel clientApp = (client instanceof ApplicationModel) ? (ApplicationModel)client : null;
 
@@ -1,5 +1,6 @@
 package org.keycloak.services.managers;
 
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.UserModel;
@@ -22,6 +23,11 @@ public class UserManager {
             if (sessions != null) {
                 sessions.onUserRemoved(realm, user);
             }
+
+            BruteForceProtector protector = ResteasyProviderFactory.getContextData(BruteForceProtector.class);
+            if (protector != null) {
+                protector.onUserRemoved(realm, user.getUsername());
+            }
             return true;
         }
         return false;
@@ -32,8 +32,9 @@ public class UsersSyncManager {
 
             @Override
             public void run(KeycloakSession session) {
-                List<RealmModel> realms = session.realms().getRealms();
-                for (final RealmModel realm : realms) {
+                for (String realmId : session.realms().getRealmIds()) {
+                    RealmModel realm = session.realms().getRealm(realmId);
+                    if (realm == null) continue;
                     List<UserFederationProviderModel> federationProviders = realm.getUserFederationProviders();
                     for (final UserFederationProviderModel fedProvider : federationProviders) {
                         refreshPeriodicSyncForProvider(sessionFactory, timer, fedProvider, realm.getId());
@@ -65,11 +66,8 @@ public class UsersSyncManager {
 
                 @Override
                 public void run() {
-                    try {
-                        syncAllUsers(sessionFactory, realmId, fedProvider);
-                    } catch (Throwable t) {
-                        logger.error("Error occurred during full sync of users", t);
-                    }
+                    // failures are logged and counted by the timer
+                    syncAllUsers(sessionFactory, realmId, fedProvider);
                 }
 
             }, fedProvider.getFullSyncPeriod() * 1000, fedProvider.getId() + "-FULL");
@@ -83,11 +81,8 @@ public class UsersSyncManager {
 
                 @Override
                 public void run() {
-                    try {
-                        syncChangedUsers(sessionFactory, realmId, fedProvider);
-                    } catch (Throwable t) {
-                        logger.error("Error occurred during sync of changed users", t);
-                    }
+                    // failures are logged and counted by the timer
+                    syncChangedUsers(sessionFactory, realmId, fedProvider);
                 }
 
             }, fedProvider.getChangedSyncPeriod() * 1000, fedProvider.getId() + "-CHANGED");
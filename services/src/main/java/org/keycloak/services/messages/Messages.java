@@ -29,6 +29,8 @@ public class Messages {
     public static final String ACCOUNT_DISABLED = "accountDisabled";
     public static final String ACCOUNT_TEMPORARILY_DISABLED = "accountTemporarilyDisabled";
 
+    public static final String LOGIN_TEMPORARILY_UNAVAILABLE = "loginTemporarilyUnavailable";
+
     public static final String INVALID_PASSWORD = "invalidPassword";
 
     public static final String INVALID_PASSWORD_EXISTING = "invalidPasswordExisting";
@@ -7,14 +7,21 @@ import org.jboss.resteasy.core.Dispatcher;
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.keycloak.Config;
 import org.keycloak.SkeletonKeyContextResolver;
+import org.keycloak.account.AccountProvider;
+import org.keycloak.email.EmailProvider;
 import org.keycloak.exportimport.ExportImportManager;
+import org.keycloak.login.LoginFormsProvider;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.RealmModel;
+import org.keycloak.models.utils.KeycloakModelUtils;
 import org.keycloak.representations.idm.RealmRepresentation;
 import org.keycloak.services.DefaultKeycloakSessionFactory;
+import org.keycloak.services.managers.AccessCode;
+import org.keycloak.services.managers.AdminCallbackClient;
 import org.keycloak.services.managers.ApplianceBootstrap;
 import org.keycloak.services.managers.BruteForceProtector;
+import org.keycloak.services.managers.ShardedBruteForceProtector;
 import org.keycloak.services.managers.UsersSyncManager;
 import org.keycloak.services.managers.RealmManager;
 import org.keycloak.services.managers.TokenManager;
@@ -23,6 +30,7 @@ import org.keycloak.services.scheduled.ClearExpiredEvents;
 import org.keycloak.services.scheduled.ClearExpiredUserSessions;
 import org.keycloak.services.scheduled.ScheduledTaskRunner;
 import org.keycloak.services.util.JsonConfigProvider;
+import org.keycloak.services.util.ThemeResourceCache;
 import org.keycloak.timer.TimerProvider;
 import org.keycloak.util.JsonSerialization;
 
@@ -57,16 +65,25 @@ public class KeycloakApplication extends Application {
 
     public KeycloakApplication(@Context ServletContext context, @Context Dispatcher dispatcher) {
         loadConfig();
+        AccessCode.init(Config.scope("accessCode"));
 
         this.sessionFactory = createSessionFactory();
 
         dispatcher.getDefaultContextObjects().put(KeycloakApplication.class, this);
         this.contextPath = context.getContextPath();
-        BruteForceProtector protector = new BruteForceProtector(sessionFactory);
+        BruteForceProtector protector = createBruteForceProtector(sessionFactory);
         dispatcher.getDefaultContextObjects().put(BruteForceProtector.class, protector);
         ResteasyProviderFactory.pushContext(BruteForceProtector.class, protector); // for injection
         protector.start();
         context.setAttribute(BruteForceProtector.class.getName(), protector);
+
+        AdminCallbackClient callbackClient = AdminCallbackClient.create(Config.scope("adminCallbacks"));
+        dispatcher.getDefaultContextObjects().put(AdminCallbackClient.class, callbackClient);
+        context.setAttribute(AdminCallbackClient.class.getName(), callbackClient);
+
+        ThemeResourceCache resourceCache = ThemeResourceCache.create(Config.scope("theme"));
+        dispatcher.getDefaultContextObjects().put(ThemeResourceCache.class, resourceCache);
+        context.setAttribute(ThemeResourceCache.class.getName(), resourceCache);
         context.setAttribute(KeycloakSessionFactory.class.getName(), this.sessionFactory);
 
         TokenManager tokenManager = new TokenManager();
@@ -78,15 +95,18 @@ public class KeycloakApplication extends Application {
         classes.add(SkeletonKeyContextResolver.class);
         classes.add(QRCodeResource.class);
         classes.add(ThemeResource.class);
+        classes.add(ThemeResourceCache.GzipContentWriter.class);
         classes.add(JsResource.class);
         classes.add(WelcomeResource.class);
 
         new ExportImportManager().checkExportImport(this.sessionFactory);
 
         setupDefaultRealm(context.getContextPath());
+        migrateCodeSecrets(sessionFactory);
 
         importRealms(context);
         setupScheduledTasks(sessionFactory);
+        precompileTemplates(sessionFactory);
     }
 
     public String getContextPath() {
@@ -137,12 +157,41 @@ public class KeycloakApplication extends Application {
         new ApplianceBootstrap().bootstrap(sessionFactory, contextPath);
     }
 
+    /**
+     * Generates a code secret for realms created before access codes were signed with one, so they stop falling back
+     * to signing codes with the realm private key
+     */
+    public static void migrateCodeSecrets(KeycloakSessionFactory sessionFactory) {
+        KeycloakSession session = sessionFactory.create();
+        try {
+            session.getTransaction().begin();
+            for (RealmModel realm : session.realms().getRealms()) {
+                if (realm.getCodeSecret() == null) {
+                    KeycloakModelUtils.generateCodeSecret(realm);
+                    log.info("Generated code secret for realm " + realm.getName());
+                }
+            }
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+    }
+
     public static KeycloakSessionFactory createSessionFactory() {
         DefaultKeycloakSessionFactory factory = new DefaultKeycloakSessionFactory();
         factory.init();
         return factory;
     }
 
+    public static BruteForceProtector createBruteForceProtector(KeycloakSessionFactory sessionFactory) {
+        Config.Scope config = Config.scope("bruteForceProtector");
+        if ("queue".equals(config.get("type", "sharded"))) {
+            return new BruteForceProtector(sessionFactory);
+        } else {
+            return new ShardedBruteForceProtector(sessionFactory, config.getInt("shards", ShardedBruteForceProtector.DEFAULT_SHARDS), config.getInt("queueSize", ShardedBruteForceProtector.DEFAULT_QUEUE_SIZE), config.getLong("syncInterval", ShardedBruteForceProtector.DEFAULT_SYNC_INTERVAL), config.getInt("maxCounters", ShardedBruteForceProtector.DEFAULT_MAX_COUNTERS));
+        }
+    }
+
     public static void setupScheduledTasks(final KeycloakSessionFactory sessionFactory) {
         long interval = Config.scope("scheduled").getLong("interval", 60L) * 1000;
 
@@ -152,6 +201,29 @@ public class KeycloakApplication extends Application {
         new UsersSyncManager().bootstrapPeriodic(sessionFactory, timer);
     }
 
+    /**
+     * Creates the login, account and email providers, which compile their templates on creation if
+     * <code>precompileTemplates</code> is enabled
+     */
+    public static void precompileTemplates(KeycloakSessionFactory sessionFactory) {
+        if (!Config.scope("theme").getBoolean("precompileTemplates", false)) {
+            return;
+        }
+
+        KeycloakSession session = sessionFactory.create();
+        try {
+            session.getTransaction().begin();
+            session.getProvider(LoginFormsProvider.class);
+            session.getProvider(AccountProvider.class);
+            session.getProvider(EmailProvider.class);
+            session.getTransaction().commit();
+        } catch (Exception e) {
+            log.warn("Failed to precompile templates", e);
+        } finally {
+            session.close();
+        }
+    }
+
     public KeycloakSessionFactory getSessionFactory() {
         return sessionFactory;
     }
@@ -5,6 +5,7 @@ import org.keycloak.Config;
 import org.keycloak.freemarker.Theme;
 import org.keycloak.freemarker.ThemeProvider;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.services.util.ThemeResourceCache;
 
 import javax.activation.FileTypeMap;
 import javax.activation.MimetypesFileTypeMap;
@@ -13,6 +14,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.io.InputStream;
 
@@ -31,6 +34,15 @@ public class ThemeResource {
     @Context
     private KeycloakSession session;
 
+    @Context
+    private Request request;
+
+    @Context
+    private HttpHeaders headers;
+
+    @Context
+    private ThemeResourceCache cache;
+
     /**
      * Get theme content
      *
@@ -45,12 +57,19 @@ public class ThemeResource {
         try {
             ThemeProvider themeProvider = session.getProvider(ThemeProvider.class, "extending");
             Theme theme = themeProvider.getTheme(themeName, Theme.Type.valueOf(themType.toUpperCase()));
+
+            CacheControl cacheControl = new CacheControl();
+            cacheControl.setNoTransform(false);
+            cacheControl.setMaxAge(Config.scope("theme").getInt("staticMaxAge", -1));
+
+            ThemeResourceCache.Entry entry = cache != null ? cache.get(theme, path) : null;
+            if (entry != null) {
+                return cache.createResponse(entry, request, headers).cacheControl(cacheControl).build();
+            }
+
+            // too large to keep in memory, or not found
             InputStream resource = theme.getResourceAsStream(path);
             if (resource != null) {
-                CacheControl cacheControl = new CacheControl();
-                cacheControl.setNoTransform(false);
-                cacheControl.setMaxAge(Config.scope("theme").getInt("staticMaxAge", -1));
-
                 return Response.ok(resource).type(mimeTypes.getContentType(path)).cacheControl(cacheControl).build();
             } else {
                 return Response.status(Response.Status.NOT_FOUND).build();
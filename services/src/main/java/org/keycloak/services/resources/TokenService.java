@@ -30,7 +30,10 @@ import org.keycloak.models.RequiredCredentialModel;
 import org.keycloak.models.UserCredentialModel;
 import org.keycloak.models.UserModel;
 import org.keycloak.models.UserSessionModel;
+import org.keycloak.models.cache.ClientAdapter;
+import org.keycloak.models.cache.RealmAdapter;
 import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.models.utils.RedirectUriMatcher;
 import org.keycloak.representations.AccessToken;
 import org.keycloak.representations.AccessTokenResponse;
 import org.keycloak.representations.RefreshToken;
@@ -274,6 +277,13 @@ public class TokenService {
                 event.error(Errors.USER_DISABLED);
                 return Response.status(Response.Status.BAD_REQUEST).type(MediaType.APPLICATION_JSON_TYPE).entity(err)
                         .build();
+            case TEMPORARILY_UNAVAILABLE:
+                err = new HashMap<String, String>();
+                err.put(OAuth2Constants.ERROR, "temporarily_unavailable");
+                err.put(OAuth2Constants.ERROR_DESCRIPTION, "Server busy, try again later");
+                event.error(Errors.TEMPORARILY_UNAVAILABLE);
+                return Response.status(Response.Status.SERVICE_UNAVAILABLE).type(MediaType.APPLICATION_JSON_TYPE).entity(err)
+                        .build();
             default:
                 err = new HashMap<String, String>();
                 err.put(OAuth2Constants.ERROR, "invalid_grant");
@@ -546,6 +556,9 @@ public class TokenService {
             case ACCOUNT_DISABLED:
                 event.error(Errors.USER_DISABLED);
                 return Flows.forms(this.session, realm, client, uriInfo).setError(Messages.ACCOUNT_DISABLED).setFormData(formData).createLogin();
+            case TEMPORARILY_UNAVAILABLE:
+                event.error(Errors.TEMPORARILY_UNAVAILABLE);
+                return Flows.forms(this.session, realm, client, uriInfo).setError(Messages.LOGIN_TEMPORARILY_UNAVAILABLE).setFormData(formData).createLogin();
             case MISSING_TOTP:
                 formData.remove(CredentialRepresentation.PASSWORD);
 
@@ -1196,22 +1209,6 @@ public class TokenService {
         return location.build();
     }
 
-    public static boolean matchesRedirects(Set<String> validRedirects, String redirect) {
-        for (String validRedirect : validRedirects) {
-            if (validRedirect.endsWith("*")) {
-                // strip off *
-                int length = validRedirect.length() - 1;
-                validRedirect = validRedirect.substring(0, length);
-                if (redirect.startsWith(validRedirect)) return true;
-                // strip off trailing '/'
-                if (length - 1 > 0 && validRedirect.charAt(length - 1) == '/') length--;
-                validRedirect = validRedirect.substring(0, length);
-                if (validRedirect.equals(redirect)) return true;
-            } else if (validRedirect.equals(redirect)) return true;
-        }
-        return false;
-    }
-
     public static Set<String> getValidateRedirectUris(RealmModel realm) {
         Set<String> redirects = new HashSet<String>();
         for (ApplicationModel client : realm.getApplications()) {
@@ -1228,16 +1225,21 @@ public class TokenService {
     }
 
     public static String verifyRealmRedirectUri(UriInfo uriInfo, String redirectUri, RealmModel realm) {
-        Set<String> validRedirects = getValidateRedirectUris(realm);
-        return verifyRedirectUri(uriInfo, redirectUri, realm, validRedirects);
+        if (redirectUri == null) {
+            return verifyRedirectUri(uriInfo, null, realm, getValidateRedirectUris(realm));
+        }
+        return verifyRedirectUri(uriInfo, redirectUri, realm, null, getRedirectUriMatcher(realm));
     }
 
     public static String verifyRedirectUri(UriInfo uriInfo, String redirectUri, RealmModel realm, ClientModel client) {
-        Set<String> validRedirects = client.getRedirectUris();
-        return verifyRedirectUri(uriInfo, redirectUri, realm, validRedirects);
+        return verifyRedirectUri(uriInfo, redirectUri, realm, client.getRedirectUris(), getRedirectUriMatcher(client));
     }
 
     public static String verifyRedirectUri(UriInfo uriInfo, String redirectUri, RealmModel realm, Set<String> validRedirects) {
+        return verifyRedirectUri(uriInfo, redirectUri, realm, validRedirects, RedirectUriMatcher.compile(validRedirects));
+    }
+
+    private static String verifyRedirectUri(UriInfo uriInfo, String redirectUri, RealmModel realm, Set<String> validRedirects, RedirectUriMatcher matcher) {
         if (redirectUri == null) {
             if (validRedirects.size() != 1) return null;
             String validRedirect = validRedirects.iterator().next();
@@ -1246,14 +1248,13 @@ public class TokenService {
                 validRedirect = validRedirect.substring(0, idx);
             }
             redirectUri = validRedirect;
-        } else if (validRedirects.isEmpty()) {
+        } else if (matcher.isEmpty()) {
             logger.debug("No Redirect URIs supplied");
             redirectUri = null;
         } else {
             String r = redirectUri.indexOf('?') != -1 ? redirectUri.substring(0, redirectUri.indexOf('?')) : redirectUri;
-            Set<String> resolveValidRedirects = resolveValidRedirects(uriInfo, validRedirects);
 
-            boolean valid = matchesRedirects(resolveValidRedirects, r);
+            boolean valid = matcher.matches(r, uriInfo.getBaseUri());
 
             if (!valid && r.startsWith(Constants.INSTALLED_APP_URL) && r.indexOf(':', Constants.INSTALLED_APP_URL.length()) >= 0) {
                 int i = r.indexOf(':', Constants.INSTALLED_APP_URL.length());
@@ -1268,7 +1269,7 @@ public class TokenService {
 
                 r = sb.toString();
 
-                valid = matchesRedirects(resolveValidRedirects, r);
+                valid = matcher.matches(r, uriInfo.getBaseUri());
             }
             if (valid && redirectUri.startsWith("/")) {
                 redirectUri = relativeToAbsoluteURI(uriInfo, redirectUri);
@@ -1283,6 +1284,23 @@ public class TokenService {
         }
     }
 
+    /**
+     * Uses the matcher kept in the realm cache if available, as compiling it requires loading all clients of the realm
+     */
+    private static RedirectUriMatcher getRedirectUriMatcher(RealmModel realm) {
+        if (realm instanceof RealmAdapter) {
+            return ((RealmAdapter) realm).getRedirectUriMatcher();
+        }
+        return RedirectUriMatcher.compile(getValidateRedirectUris(realm));
+    }
+
+    private static RedirectUriMatcher getRedirectUriMatcher(ClientModel client) {
+        if (client instanceof ClientAdapter) {
+            return ((ClientAdapter) client).getRedirectUriMatcher();
+        }
+        return RedirectUriMatcher.compile(client.getRedirectUris());
+    }
+
     public static Set<String> resolveValidRedirects(UriInfo uriInfo, Set<String> validRedirects) {
         // If the valid redirect URI is relative (no scheme, host, port) then use the request's scheme, host, and port
         Set<String> resolveValidRedirects = new HashSet<String>();
@@ -24,6 +24,7 @@ import org.keycloak.services.managers.AuthenticationManager;
 import org.keycloak.services.managers.RealmManager;
 import org.keycloak.services.resources.KeycloakApplication;
 import org.keycloak.services.resources.TokenService;
+import org.keycloak.services.util.ThemeResourceCache;
 
 import javax.activation.FileTypeMap;
 import javax.activation.MimetypesFileTypeMap;
@@ -34,6 +35,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.Providers;
@@ -65,6 +67,15 @@ public class AdminConsole {
     @Context
     protected HttpResponse response;
 
+    @Context
+    protected Request jaxrsRequest;
+
+    @Context
+    protected HttpHeaders headers;
+
+    @Context
+    protected ThemeResourceCache resourceCache;
+
     @Context
     protected KeycloakSession session;
 
@@ -317,14 +328,23 @@ public class AdminConsole {
         try {
             ThemeProvider themeProvider = session.getProvider(ThemeProvider.class, "extending");
             Theme theme = themeProvider.getTheme(realm.getAdminTheme(), Theme.Type.ADMIN);
+
+            CacheControl cacheControl = new CacheControl();
+            cacheControl.setNoTransform(false);
+            cacheControl.setMaxAge(Config.scope("theme").getInt("staticMaxAge", -1));
+
+            ThemeResourceCache.Entry entry = resourceCache != null ? resourceCache.get(theme, path) : null;
+            if (entry != null) {
+                Response.ResponseBuilder builder = resourceCache.createResponse(entry, jaxrsRequest, headers).cacheControl(cacheControl);
+                BrowserSecurityHeaderSetup.headers(builder, realm);
+                return builder.build();
+            }
+
+            // too large to keep in memory, or not found
             InputStream resource = theme.getResourceAsStream(path);
             if (resource != null) {
                 String contentType = mimeTypes.getContentType(path);
 
-                CacheControl cacheControl = new CacheControl();
-                cacheControl.setNoTransform(false);
-                cacheControl.setMaxAge(Config.scope("theme").getInt("staticMaxAge", -1));
-
                 Response.ResponseBuilder builder = Response.ok(resource).type(contentType).cacheControl(cacheControl);
                 BrowserSecurityHeaderSetup.headers(builder, realm);
                 return builder.build();
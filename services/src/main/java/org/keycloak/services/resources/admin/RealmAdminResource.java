@@ -296,13 +296,7 @@ public class RealmAdminResource {
     public Map<String, SessionStats> getSessionStats() {
         logger.info("session-stats");
         auth.requireView();
-        Map<String, SessionStats> stats = new HashMap<String, SessionStats>();
-        for (ApplicationModel applicationModel : realm.getApplications()) {
-            if (applicationModel.getManagementUrl() == null) continue;
-            SessionStats appStats = new ResourceAdminManager().getSessionStats(uriInfo.getRequestUri(), this.session, realm, applicationModel, false);
-            stats.put(applicationModel.getName(), appStats);
-        }
-        return stats;
+        return new ResourceAdminManager().getSessionStats(uriInfo.getRequestUri(), this.session, realm, false);
     }
 
     /**
@@ -344,6 +338,8 @@ public class RealmAdminResource {
      * @param ipAddress
      * @param firstResult
      * @param maxResults
+     * @param afterTime time of the last event of the previous page, used together with afterId instead of firstResult
+     * @param afterId id of the last event of the previous page
      * @return
      */
     @Path("events")
@@ -351,7 +347,8 @@ public class RealmAdminResource {
     @NoCache
     @Produces(MediaType.APPLICATION_JSON)
     public List<Event> getEvents(@QueryParam("client") String client, @QueryParam("type") String type, @QueryParam("user") String user,
-                                 @QueryParam("ipAddress") String ipAddress, @QueryParam("first") Integer firstResult, @QueryParam("max") Integer maxResults) {
+                                 @QueryParam("ipAddress") String ipAddress, @QueryParam("first") Integer firstResult, @QueryParam("max") Integer maxResults,
+                                 @QueryParam("afterTime") Long afterTime, @QueryParam("afterId") String afterId) {
         auth.init(RealmAuth.Resource.EVENTS).requireView();
 
         EventStoreProvider eventStore = session.getProvider(EventStoreProvider.class);
@@ -375,6 +372,9 @@ public class RealmAdminResource {
         if (maxResults != null) {
             query.maxResults(maxResults);
         }
+        if (afterTime != null && afterId != null) {
+            query.after(afterTime, afterId);
+        }
 
         return query.getResultList();
     }
@@ -1,11 +1,30 @@
 package org.keycloak.services.resources.admin;
 
 import org.jboss.resteasy.annotations.cache.NoCache;
+import org.keycloak.email.EmailProvider;
+import org.keycloak.events.AsyncEventListenerProviderFactory;
 import org.keycloak.events.EventListenerProvider;
+import org.keycloak.events.EventStoreProvider;
+import org.keycloak.freemarker.FreeMarkerUtil;
 import org.keycloak.freemarker.Theme;
 import org.keycloak.freemarker.ThemeProvider;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.PasswordHashingProvider;
+import org.keycloak.models.UserSessionProvider;
+import org.keycloak.models.cache.CacheRealmProvider;
+import org.keycloak.models.cache.CacheStats;
+import org.keycloak.models.cache.CacheUserProvider;
+import org.keycloak.models.cache.MemoryCacheRealmProviderFactory;
+import org.keycloak.models.cache.MemoryCacheUserProviderFactory;
+import org.keycloak.models.cache.invalidation.AbstractInvalidationBusProviderFactory;
+import org.keycloak.models.cache.invalidation.InvalidationBus;
+import org.keycloak.provider.ProviderFactory;
+import org.keycloak.provider.ProviderStatistics;
+import org.keycloak.services.managers.BruteForceProtector;
+import org.keycloak.services.util.ThemeResourceCache;
 import org.keycloak.social.SocialProvider;
+import org.keycloak.timer.TimerProvider;
+import org.keycloak.timer.TimerTaskStats;
 import org.keycloak.util.ProviderLoader;
 
 import javax.ws.rs.GET;
@@ -25,8 +44,16 @@ public class ServerInfoAdminResource {
     @Context
     private KeycloakSession session;
 
+    @Context
+    private BruteForceProtector protector;
+
+    @Context
+    private ThemeResourceCache resourceCache;
+
     /**
-     * Returns a list of themes, social providers, auth providers, and event listeners available on this server
+     * Returns a list of themes, social providers, auth providers, and event listeners available on this server, and
+     * the statistics of the realm and user caches, user sessions, brute force protection, event store, asynchronous
+     * event listeners, scheduled tasks, password hashing, the email queue, template rendering and theme resources
      *
      * @return
      */
@@ -37,6 +64,22 @@ public class ServerInfoAdminResource {
         setSocialProviders(info);
         setThemes(info);
         setEventListeners(info);
+        setEventListenerQueues(info);
+        setEventStore(info);
+        setRealmCache(info);
+        setUserCache(info);
+        setUserSessions(info);
+        if (protector != null) {
+            info.bruteForceProtector = protector.getStats();
+        }
+        setInvalidationBus(info);
+        setTimerTasks(info);
+        setPasswordHashing(info);
+        setEmailQueue(info);
+        info.templates = FreeMarkerUtil.getRenderStats();
+        if (resourceCache != null) {
+            info.themeResources = resourceCache.getStats();
+        }
         return info;
     }
 
@@ -69,6 +112,71 @@ public class ServerInfoAdminResource {
         }
     }
 
+    private void setEventListenerQueues(ServerInfoRepresentation info) {
+        info.eventListenerQueues = new HashMap<String, Map<String, Long>>();
+        for (ProviderFactory factory : session.getKeycloakSessionFactory().getProviderFactories(EventListenerProvider.class)) {
+            if (factory instanceof AsyncEventListenerProviderFactory) {
+                info.eventListenerQueues.put(factory.getId(), ((AsyncEventListenerProviderFactory) factory).getStats());
+            }
+        }
+    }
+
+    private void setEventStore(ServerInfoRepresentation info) {
+        ProviderFactory<EventStoreProvider> factory = session.getKeycloakSessionFactory().getProviderFactory(EventStoreProvider.class);
+        if (factory instanceof ProviderStatistics) {
+            info.eventStore = ((ProviderStatistics) factory).getStats();
+        }
+    }
+
+    private void setRealmCache(ServerInfoRepresentation info) {
+        ProviderFactory<CacheRealmProvider> factory = session.getKeycloakSessionFactory().getProviderFactory(CacheRealmProvider.class);
+        if (factory instanceof MemoryCacheRealmProviderFactory) {
+            info.realmCache = ((MemoryCacheRealmProviderFactory) factory).getCache().getStats();
+        }
+    }
+
+    private void setUserCache(ServerInfoRepresentation info) {
+        ProviderFactory<CacheUserProvider> factory = session.getKeycloakSessionFactory().getProviderFactory(CacheUserProvider.class);
+        if (factory instanceof MemoryCacheUserProviderFactory) {
+            info.userCache = ((MemoryCacheUserProviderFactory) factory).getCache().getStats();
+        }
+    }
+
+    private void setUserSessions(ServerInfoRepresentation info) {
+        ProviderFactory<UserSessionProvider> factory = session.getKeycloakSessionFactory().getProviderFactory(UserSessionProvider.class);
+        if (factory instanceof ProviderStatistics) {
+            info.userSessions = ((ProviderStatistics) factory).getStats();
+        }
+    }
+
+    private void setPasswordHashing(ServerInfoRepresentation info) {
+        ProviderFactory<PasswordHashingProvider> factory = session.getKeycloakSessionFactory().getProviderFactory(PasswordHashingProvider.class);
+        if (factory instanceof ProviderStatistics) {
+            info.passwordHashing = ((ProviderStatistics) factory).getStats();
+        }
+    }
+
+    private void setEmailQueue(ServerInfoRepresentation info) {
+        ProviderFactory<EmailProvider> factory = session.getKeycloakSessionFactory().getProviderFactory(EmailProvider.class);
+        if (factory instanceof ProviderStatistics) {
+            info.emailQueue = ((ProviderStatistics) factory).getStats();
+        }
+    }
+
+    private void setInvalidationBus(ServerInfoRepresentation info) {
+        ProviderFactory<InvalidationBus> factory = session.getKeycloakSessionFactory().getProviderFactory(InvalidationBus.class);
+        if (factory instanceof AbstractInvalidationBusProviderFactory) {
+            info.invalidationBus = ((AbstractInvalidationBusProviderFactory) factory).getStats();
+        }
+    }
+
+    private void setTimerTasks(ServerInfoRepresentation info) {
+        TimerProvider timer = session.getProvider(TimerProvider.class);
+        if (timer != null) {
+            info.timerTasks = timer.getTaskStats();
+        }
+    }
+
     public static class ServerInfoRepresentation {
 
         private Map<String, List<String>> themes;
@@ -78,6 +186,30 @@ public class ServerInfoAdminResource {
 
         private List<String> eventListeners;
 
+        private Map<String, Map<String, Long>> eventListenerQueues;
+
+        private Map<String, Long> eventStore;
+
+        private Map<String, CacheStats> realmCache;
+
+        private Map<String, CacheStats> userCache;
+
+        private Map<String, Long> userSessions;
+
+        private Map<String, Long> bruteForceProtector;
+
+        private Map<String, Long> invalidationBus;
+
+        private Map<String, TimerTaskStats> timerTasks;
+
+        private Map<String, Long> passwordHashing;
+
+        private Map<String, Long> emailQueue;
+
+        private Map<String, Map<String, Long>> templates;
+
+        private CacheStats themeResources;
+
         public ServerInfoRepresentation() {
         }
 
@@ -92,6 +224,54 @@ public class ServerInfoAdminResource {
         public List<String> getEventListeners() {
             return eventListeners;
         }
+
+        public Map<String, Map<String, Long>> getEventListenerQueues() {
+            return eventListenerQueues;
+        }
+
+        public Map<String, Long> getEventStore() {
+            return eventStore;
+        }
+
+        public Map<String, CacheStats> getRealmCache() {
+            return realmCache;
+        }
+
+        public Map<String, CacheStats> getUserCache() {
+            return userCache;
+        }
+
+        public Map<String, Long> getUserSessions() {
+            return userSessions;
+        }
+
+        public Map<String, Long> getBruteForceProtector() {
+            return bruteForceProtector;
+        }
+
+        public Map<String, Long> getInvalidationBus() {
+            return invalidationBus;
+        }
+
+        public Map<String, TimerTaskStats> getTimerTasks() {
+            return timerTasks;
+        }
+
+        public Map<String, Long> getPasswordHashing() {
+            return passwordHashing;
+        }
+
+        public Map<String, Long> getEmailQueue() {
+            return emailQueue;
+        }
+
+        public Map<String, Map<String, Long>> getTemplates() {
+            return templates;
+        }
+
+        public CacheStats getThemeResources() {
+            return themeResources;
+        }
     }
 
 }
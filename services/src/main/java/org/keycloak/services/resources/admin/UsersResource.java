@@ -230,11 +230,10 @@ public class UsersResource {
             throw new NotFoundException("User not found");
         }
         Map<String, UserStats> stats = new HashMap<String, UserStats>();
-        for (ApplicationModel applicationModel : realm.getApplications()) {
-            if (applicationModel.getManagementUrl() == null) continue;
-            UserStats appStats = new ResourceAdminManager().getUserStats(uriInfo.getRequestUri(), realm, applicationModel, user);
+        for (Map.Entry<String, UserStats> entry : new ResourceAdminManager().getUserStats(uriInfo.getRequestUri(), realm, user).entrySet()) {
+            UserStats appStats = entry.getValue();
             if (appStats == null) continue;
-            if (appStats.isLoggedIn()) stats.put(applicationModel.getName(), appStats);
+            if (appStats.isLoggedIn()) stats.put(entry.getKey(), appStats);
         }
         return stats;
     }
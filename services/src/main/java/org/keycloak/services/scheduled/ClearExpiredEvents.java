@@ -2,24 +2,61 @@ package org.keycloak.services.scheduled;
 
 import org.keycloak.events.EventStoreProvider;
 import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
 import org.keycloak.models.RealmModel;
 
 /**
+ * Expired events are removed in chunks of at most <code>chunkSize</code> events, each in its own transaction, so
+ * expiring a large backlog doesn't hold locks on the event table for the whole run.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public class ClearExpiredEvents implements ScheduledTask {
 
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final int chunkSize;
+
+    public ClearExpiredEvents() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public ClearExpiredEvents(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
     @Override
     public void run(KeycloakSession session) {
         EventStoreProvider eventStore = session.getProvider(EventStoreProvider.class);
         if (eventStore != null) {
-            for (RealmModel realm : session.realms().getRealms()) {
-                if (realm.isEventsEnabled() && realm.getEventsExpiration() > 0) {
+            for (String realmId : session.realms().getRealmIds()) {
+                RealmModel realm = session.realms().getRealm(realmId);
+                if (realm != null && realm.isEventsEnabled() && realm.getEventsExpiration() > 0) {
                     long olderThan = System.currentTimeMillis() - realm.getEventsExpiration() * 1000;
-                    eventStore.clear(realm.getId(), olderThan);
+                    int removed;
+                    do {
+                        removed = clearChunk(session.getKeycloakSessionFactory(), realm.getId(), olderThan);
+                    } while (removed == chunkSize);
                 }
             }
         }
     }
 
+    private int clearChunk(KeycloakSessionFactory sessionFactory, String realmId, long olderThan) {
+        KeycloakSession session = sessionFactory.create();
+        try {
+            session.getTransaction().begin();
+            int removed = session.getProvider(EventStoreProvider.class).clear(realmId, olderThan, chunkSize);
+            session.getTransaction().commit();
+            return removed;
+        } catch (RuntimeException e) {
+            if (session.getTransaction().isActive()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
 }
@@ -12,8 +12,11 @@ public class ClearExpiredUserSessions implements ScheduledTask {
     @Override
     public void run(KeycloakSession session) {
         UserSessionProvider sessions = session.sessions();
-        for (RealmModel realm : session.realms().getRealms()) {
-            sessions.removeExpiredUserSessions(realm);
+        for (String realmId : session.realms().getRealmIds()) {
+            RealmModel realm = session.realms().getRealm(realmId);
+            if (realm != null) {
+                sessions.removeExpiredUserSessions(realm);
+            }
         }
     }
 
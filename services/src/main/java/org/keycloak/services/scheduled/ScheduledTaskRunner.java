@@ -28,10 +28,13 @@ public class ScheduledTaskRunner implements Runnable {
             session.getTransaction().commit();
 
             logger.debug("Executed scheduled task " + task.getClass().getSimpleName());
-        } catch (Throwable t) {
-            logger.error("Failed to run scheduled task " + task.getClass().getSimpleName(), t);
-
+        } catch (RuntimeException e) {
+            // rethrown so the timer logs and records the failure
+            session.getTransaction().rollback();
+            throw e;
+        } catch (Error e) {
             session.getTransaction().rollback();
+            throw e;
         } finally {
             try {
                 session.close();
@@ -0,0 +1,314 @@
+package org.keycloak.services.util;
+
+import org.keycloak.Config;
+import org.keycloak.freemarker.Theme;
+import org.keycloak.models.cache.BoundedCache;
+import org.keycloak.models.cache.CacheStats;
+
+import javax.activation.FileTypeMap;
+import javax.activation.MimetypesFileTypeMap;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Static theme resources kept in memory, keyed by theme type, theme name and path. Each resource has a strong ETag,
+ * so browsers can revalidate it with <code>If-None-Match</code> and get a 304 response. Text resources also keep a gzip
+ * variant, compressed once when the resource is loaded, which is sent to clients that accept it.
+ * <p/>
+ * At most <code>staticCacheSize</code> resources are cached, and resources larger than <code>staticCacheMaxEntrySize</code>
+ * bytes are only remembered as too large, so they're streamed from the theme without being read twice. When themes
+ * aren't cached resources aren't either, as they are expected to change.
+ * <p/>
+ * The cache is created by {@link org.keycloak.services.resources.KeycloakApplication} and injected with
+ * <code>@Context</code>.
+ */
+public class ThemeResourceCache {
+
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 512 * 1024;
+
+    // smaller resources aren't worth compressing
+    private static final int MIN_COMPRESS_SIZE = 256;
+
+    private static final Set<String> COMPRESSIBLE = new HashSet<String>(Arrays.asList("css", "js", "html", "htm", "json", "svg", "txt", "xml", "map", "ttf", "eot", "otf"));
+
+    private static final FileTypeMap mimeTypes = MimetypesFileTypeMap.getDefaultFileTypeMap();
+
+    // marks resources larger than maxEntrySize
+    private static final Entry TOO_LARGE = new Entry();
+
+    private final BoundedCache<Entry> cache;
+    private final int maxEntrySize;
+
+    /**
+     * @param maxSize maximum number of cached resources, or 0 to not cache resources
+     * @param maxEntrySize size in bytes of the largest resource that is cached
+     */
+    public ThemeResourceCache(int maxSize, int maxEntrySize) {
+        this.cache = maxSize > 0 ? new BoundedCache<Entry>(maxSize, -1) : null;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * @param config the <code>theme</code> config scope
+     */
+    public static ThemeResourceCache create(Config.Scope config) {
+        int size = config.getBoolean("cacheThemes", true) ? config.getInt("staticCacheSize", DEFAULT_CACHE_SIZE) : 0;
+        return new ThemeResourceCache(size, config.getInt("staticCacheMaxEntrySize", DEFAULT_MAX_ENTRY_SIZE));
+    }
+
+    /**
+     * Returns the resource, or <code>null</code> if the theme doesn't have it or if it's larger than
+     * <code>maxEntrySize</code>, in which case it should be streamed from the theme
+     */
+    public Entry get(Theme theme, String path) throws IOException {
+        if (cache == null) {
+            Entry entry = load(theme, path);
+            return entry != TOO_LARGE ? entry : null;
+        }
+
+        String key = theme.getType() + "/" + theme.getName() + "/" + path;
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            entry = load(theme, path);
+            if (entry != null) {
+                cache.put(key, entry);
+            }
+        }
+        return entry != TOO_LARGE ? entry : null;
+    }
+
+    /**
+     * Creates a 304 response if the client already has the variant it accepts, or else a response with that variant.
+     * The gzip variant is sent as {@link GzipContent}, which gets its <code>Content-Encoding</code> from
+     * {@link GzipContentWriter}.
+     */
+    public Response.ResponseBuilder createResponse(Entry entry, Request request, HttpHeaders headers) {
+        boolean gzip = entry.gzipContent != null && acceptsGzip(headers);
+        EntityTag tag = gzip ? entry.gzipTag : entry.tag;
+
+        Response.ResponseBuilder builder = request.evaluatePreconditions(tag);
+        if (builder == null) {
+            Object content = gzip ? new GzipContent(entry.gzipContent) : entry.content;
+            builder = Response.ok(content).type(entry.contentType).tag(tag);
+        }
+        if (entry.gzipContent != null) {
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        return builder;
+    }
+
+    public void clear() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns <code>null</code> if resources aren't cached
+     */
+    public CacheStats getStats() {
+        return cache != null ? cache.getStats() : null;
+    }
+
+    protected Entry load(Theme theme, String path) throws IOException {
+        InputStream is = theme.getResourceAsStream(path);
+        if (is == null) {
+            return null;
+        }
+
+        byte[] content;
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+                if (os.size() > maxEntrySize) {
+                    return TOO_LARGE;
+                }
+            }
+            content = os.toByteArray();
+        } finally {
+            is.close();
+        }
+
+        byte[] gzipContent = null;
+        if (content.length >= MIN_COMPRESS_SIZE && isCompressible(path)) {
+            gzipContent = gzip(content);
+            // only keep the variant if it saves at least 10%
+            if (gzipContent.length > content.length * 0.9) {
+                gzipContent = null;
+            }
+        }
+
+        return new Entry(content, gzipContent, mimeTypes.getContentType(path));
+    }
+
+    protected static boolean isCompressible(String path) {
+        int i = path.lastIndexOf('.');
+        return i != -1 && COMPRESSIBLE.contains(path.substring(i + 1).toLowerCase());
+    }
+
+    protected static boolean acceptsGzip(HttpHeaders headers) {
+        List<String> values = headers.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (values == null) {
+            return false;
+        }
+        for (String value : values) {
+            for (String coding : value.split(",")) {
+                String[] params = coding.split(";");
+                if (!params[0].trim().equalsIgnoreCase("gzip")) {
+                    continue;
+                }
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            if (Float.parseFloat(param.substring(2)) == 0) {
+                                return false;
+                            }
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream(content.length / 2);
+        GZIPOutputStream gzip = new GZIPOutputStream(os);
+        gzip.write(content);
+        gzip.close();
+        return os.toByteArray();
+    }
+
+    protected static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class Entry {
+
+        private final byte[] content;
+        private final byte[] gzipContent;
+        private final String contentType;
+        private final EntityTag tag;
+        private final EntityTag gzipTag;
+
+        private Entry() {
+            this.content = null;
+            this.gzipContent = null;
+            this.contentType = null;
+            this.tag = null;
+            this.gzipTag = null;
+        }
+
+        public Entry(byte[] content, byte[] gzipContent, String contentType) {
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.contentType = contentType;
+
+            // the variants have different bytes so need different strong tags
+            String hash = hash(content);
+            this.tag = new EntityTag(hash);
+            this.gzipTag = gzipContent != null ? new EntityTag(hash + "-gzip") : null;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public byte[] getGzipContent() {
+            return gzipContent;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public EntityTag getTag() {
+            return tag;
+        }
+
+    }
+
+    /**
+     * Content that is already gzip compressed
+     */
+    public static class GzipContent {
+
+        private final byte[] content;
+
+        public GzipContent(byte[] content) {
+            this.content = content;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+    }
+
+    /**
+     * Writes {@link GzipContent} and sets its <code>Content-Encoding</code>. The header is only added here, when the
+     * compressed bytes are actually written, so it can't end up on another response. RESTEasy's gzip interceptor
+     * checks the header before the writer is called, so it doesn't compress the content a second time.
+     */
+    @Provider
+    @Produces("*/*")
+    public static class GzipContentWriter implements MessageBodyWriter<GzipContent> {
+
+        @Override
+        public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return GzipContent.class.isAssignableFrom(type);
+        }
+
+        @Override
+        public long getSize(GzipContent content, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+            return content.content.length;
+        }
+
+        @Override
+        public void writeTo(GzipContent content, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+            httpHeaders.putSingle(HttpHeaders.CONTENT_ENCODING, "gzip");
+            entityStream.write(content.content);
+        }
+
+    }
+
+}
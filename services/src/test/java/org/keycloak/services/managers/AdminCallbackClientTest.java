@@ -0,0 +1,154 @@
+package org.keycloak.services.managers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.adapters.AdapterConstants;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs admin callbacks against stub http endpoints
+ */
+public class AdminCallbackClientTest {
+
+    private HttpServer server;
+    private AdminCallbackClient client;
+    private String baseUrl;
+
+    // all requests to /concurrent wait for each other, and requests to /hanging wait until the test is done
+    private CountDownLatch concurrent = new CountDownLatch(4);
+    private CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/ok", new StubHandler(204, null, null));
+        server.createContext("/concurrent", new StubHandler(204, concurrent, concurrent));
+        server.createContext("/hanging", new StubHandler(204, null, release));
+        server.createContext("/error", new StubHandler(500, null, null));
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+        client = new AdminCallbackClient(10, 4, 1000);
+    }
+
+    @After
+    public void after() {
+        release.countDown();
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testResultsPerApplication() {
+        Map<String, Callable<Boolean>> calls = new LinkedHashMap<String, Callable<Boolean>>();
+        calls.put("ok", request("/ok"));
+        calls.put("error", request("/error"));
+        calls.put("unreachable", new ResourceAdminManager.ActionRequest(client.getExecutor(), "http://localhost:1", AdapterConstants.K_LOGOUT, "token"));
+
+        Map<String, Boolean> results = client.invokeAll(calls);
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(Boolean.TRUE, results.get("ok"));
+        Assert.assertEquals(Boolean.FALSE, results.get("error"));
+        Assert.assertNull(results.get("unreachable"));
+    }
+
+    @Test
+    public void testConcurrent() {
+        Map<String, Callable<Boolean>> calls = new LinkedHashMap<String, Callable<Boolean>>();
+        for (int i = 0; i < 4; i++) {
+            calls.put("concurrent" + i, request("/concurrent"));
+        }
+
+        // each request only completes once all of them have been received
+        Map<String, Boolean> results = client.invokeAll(calls);
+        Assert.assertEquals(4, results.size());
+        for (Boolean result : results.values()) {
+            Assert.assertEquals(Boolean.TRUE, result);
+        }
+    }
+
+    @Test
+    public void testTimeout() {
+        Map<String, Callable<Boolean>> calls = new LinkedHashMap<String, Callable<Boolean>>();
+        calls.put("hanging", request("/hanging"));
+        calls.put("ok", request("/ok"));
+
+        Map<String, Boolean> results = client.invokeAll(calls);
+        Assert.assertNull(results.get("hanging"));
+        Assert.assertEquals(Boolean.TRUE, results.get("ok"));
+    }
+
+    @Test
+    public void testTimeoutIncludesQueueTime() {
+        client.close();
+        client = new AdminCallbackClient(10, 1, 1000);
+
+        Map<String, Callable<Boolean>> calls = new LinkedHashMap<String, Callable<Boolean>>();
+        calls.put("hanging", request("/hanging"));
+        calls.put("queued", request("/ok"));
+
+        // the only worker is busy until the timeout, so the queued call never runs
+        Map<String, Boolean> results = client.invokeAll(calls);
+        Assert.assertEquals(2, results.size());
+        Assert.assertNull(results.get("hanging"));
+        Assert.assertNull(results.get("queued"));
+    }
+
+    private Callable<Boolean> request(String path) {
+        return new ResourceAdminManager.ActionRequest(client.getExecutor(), baseUrl + path, AdapterConstants.K_LOGOUT, "token");
+    }
+
+    /**
+     * Counts down <code>arrived</code> and responds with the status once <code>release</code> is released, or with 500
+     * if it isn't
+     */
+    private static class StubHandler implements HttpHandler {
+        private final int status;
+        private final CountDownLatch arrived;
+        private final CountDownLatch release;
+
+        private StubHandler(int status, CountDownLatch arrived, CountDownLatch release) {
+            this.status = status;
+            this.arrived = arrived;
+            this.release = release;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int status = this.status;
+            if (arrived != null) {
+                arrived.countDown();
+            }
+            if (release != null) {
+                try {
+                    if (!release.await(10, TimeUnit.SECONDS)) status = 500;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    status = 500;
+                }
+            }
+            exchange.getRequestBody().close();
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package org.keycloak.services.util;
+
+import org.jboss.resteasy.mock.MockHttpRequest;
+import org.jboss.resteasy.specimpl.RequestImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.keycloak.freemarker.Theme;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+public class ThemeResourceCacheTest {
+
+    private ThemeResourceCache cache = new ThemeResourceCache(10, 16 * 1024);
+
+    private TestTheme theme = new TestTheme();
+
+    @Test
+    public void notModified() throws Exception {
+        ThemeResourceCache.Entry entry = cache.get(theme, "css/style.css");
+        String tag = "\"" + entry.getTag().getValue() + "\"";
+
+        Response response = build(entry, MockHttpRequest.get("/").header(HttpHeaders.IF_NONE_MATCH, tag));
+        Assert.assertEquals(304, response.getStatus());
+        Assert.assertNull(response.getEntity());
+        Assert.assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getMetadata().getFirst(HttpHeaders.VARY));
+
+        response = build(entry, MockHttpRequest.get("/").header(HttpHeaders.IF_NONE_MATCH, "\"other\""));
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertArrayEquals(theme.resources.get("css/style.css"), (byte[]) response.getEntity());
+    }
+
+    @Test
+    public void variantsHaveDifferentTags() throws Exception {
+        ThemeResourceCache.Entry entry = cache.get(theme, "css/style.css");
+        String tag = "\"" + entry.getTag().getValue() + "\"";
+
+        // the client has the identity variant, but accepts gzip
+        Response response = build(entry, MockHttpRequest.get("/").header(HttpHeaders.IF_NONE_MATCH, tag).header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertTrue(response.getEntity() instanceof ThemeResourceCache.GzipContent);
+
+        String gzipTag = response.getMetadata().getFirst(HttpHeaders.ETAG).toString();
+        Assert.assertFalse(gzipTag.equals(entry.getTag().toString()));
+
+        response = build(entry, MockHttpRequest.get("/").header(HttpHeaders.IF_NONE_MATCH, gzipTag).header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+        Assert.assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    public void acceptEncoding() throws Exception {
+        ThemeResourceCache.Entry entry = cache.get(theme, "css/style.css");
+
+        Assert.assertFalse(isGzip(build(entry, MockHttpRequest.get("/"))));
+        Assert.assertTrue(isGzip(build(entry, MockHttpRequest.get("/").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))));
+        Assert.assertTrue(isGzip(build(entry, MockHttpRequest.get("/").header(HttpHeaders.ACCEPT_ENCODING, "deflate;q=1.0, GZIP;q=0.5"))));
+        Assert.assertFalse(isGzip(build(entry, MockHttpRequest.get("/").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))));
+        Assert.assertFalse(isGzip(build(entry, MockHttpRequest.get("/").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=invalid"))));
+        Assert.assertFalse(isGzip(build(entry, MockHttpRequest.get("/").header(HttpHeaders.ACCEPT_ENCODING, "identity"))));
+    }
+
+    @Test
+    public void gzipContentWriter() throws Exception {
+        ThemeResourceCache.Entry entry = cache.get(theme, "css/style.css");
+        Response response = build(entry, MockHttpRequest.get("/").header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+
+        // the encoding is only set once the compressed content is written
+        Assert.assertNull(response.getMetadata().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        MultivaluedMap<String, Object> headers = response.getMetadata();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new ThemeResourceCache.GzipContentWriter().writeTo((ThemeResourceCache.GzipContent) response.getEntity(), ThemeResourceCache.GzipContent.class, null, null, null, headers, os);
+
+        Assert.assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertArrayEquals(theme.resources.get("css/style.css"), gunzip(os.toByteArray()));
+    }
+
+    @Test
+    public void notCompressed() throws Exception {
+        // images are already compressed, and small resources aren't worth it
+        for (String path : new String[] { "img/logo.png", "css/small.css" }) {
+            ThemeResourceCache.Entry entry = cache.get(theme, path);
+            Assert.assertNull(entry.getGzipContent());
+
+            Response response = build(entry, MockHttpRequest.get("/").header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+            Assert.assertFalse(isGzip(response));
+            Assert.assertNull(response.getMetadata().getFirst(HttpHeaders.VARY));
+        }
+    }
+
+    @Test
+    public void tooLargeReadOnce() throws Exception {
+        Assert.assertNull(cache.get(theme, "js/large.js"));
+        Assert.assertNull(cache.get(theme, "js/large.js"));
+        Assert.assertEquals(1, theme.reads.get());
+    }
+
+    @Test
+    public void notFound() throws Exception {
+        Assert.assertNull(cache.get(theme, "missing.css"));
+    }
+
+    @Test
+    public void cached() throws Exception {
+        ThemeResourceCache.Entry entry = cache.get(theme, "css/style.css");
+        Assert.assertSame(entry, cache.get(theme, "css/style.css"));
+        Assert.assertEquals(1, theme.reads.get());
+    }
+
+    private Response build(ThemeResourceCache.Entry entry, MockHttpRequest request) {
+        return cache.createResponse(entry, new RequestImpl(request), request.getHttpHeaders()).build();
+    }
+
+    private boolean isGzip(Response response) {
+        return response.getEntity() instanceof ThemeResourceCache.GzipContent;
+    }
+
+    private byte[] gunzip(byte[] content) throws IOException {
+        GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(content));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            os.write(buffer, 0, read);
+        }
+        return os.toByteArray();
+    }
+
+    private static class TestTheme implements Theme {
+
+        private final Map<String, byte[]> resources = new HashMap<String, byte[]>();
+        private final AtomicInteger reads = new AtomicInteger();
+
+        private TestTheme() {
+            StringBuilder css = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                css.append(".class").append(i).append(" { color: black; }\n");
+            }
+            resources.put("css/style.css", css.toString().getBytes());
+            resources.put("css/small.css", "body { color: black; }".getBytes());
+
+            byte[] png = new byte[1024];
+            Arrays.fill(png, (byte) 1);
+            resources.put("img/logo.png", png);
+
+            resources.put("js/large.js", new byte[32 * 1024]);
+        }
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public String getParentName() {
+            return null;
+        }
+
+        @Override
+        public String getImportName() {
+            return null;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.LOGIN;
+        }
+
+        @Override
+        public URL getTemplate(String name) {
+            return null;
+        }
+
+        @Override
+        public InputStream getTemplateAsStream(String name) {
+            return null;
+        }
+
+        @Override
+        public URL getResource(String path) {
+            return null;
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String path) {
+            byte[] resource = resources.get(path);
+            if (resource == null) {
+                return null;
+            }
+            reads.incrementAndGet();
+            return new ByteArrayInputStream(resource);
+        }
+
+        @Override
+        public Properties getMessages() {
+            return new Properties();
+        }
+
+        @Override
+        public Properties getProperties() {
+            return new Properties();
+        }
+
+    }
+
+}
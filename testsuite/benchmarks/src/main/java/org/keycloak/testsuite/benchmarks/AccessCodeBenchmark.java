@@ -0,0 +1,99 @@
+package org.keycloak.testsuite.benchmarks;
+
+import org.keycloak.Config;
+import org.keycloak.models.ClientSessionModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.UserSessionProvider;
+import org.keycloak.models.utils.KeycloakModelUtils;
+import org.keycloak.services.managers.AccessCode;
+import org.keycloak.util.Time;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of creating and verifying an access code, signed with the realm code secret (<code>hmac</code>) or with the
+ * realm private key (<code>rsa</code>).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AccessCodeBenchmark {
+
+    @Param({ "hmac", "rsa" })
+    public String signature;
+
+    private KeycloakSession session;
+    private RealmModel realm;
+    private AccessCode accessCode;
+    private String code;
+    private String previousSecretCode;
+
+    @Setup
+    public void setup() throws Exception {
+        System.setProperty("benchmark.accessCode.signature", signature);
+        AccessCode.init(new Config.SystemPropertiesScope("benchmark.accessCode."));
+
+        KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        String previousSecret = KeycloakModelUtils.generateId();
+
+        ClientSessionModel clientSession = new Stubs()
+                .with("getId", KeycloakModelUtils.generateId())
+                .with("getTimestamp", Time.currentTime())
+                .with("getAction", ClientSessionModel.Action.CODE_TO_TOKEN)
+                .create(ClientSessionModel.class);
+
+        RealmModel previousRealm = new Stubs()
+                .with("getCodeSecret", previousSecret)
+                .with("getPrivateKey", keyPair.getPrivate())
+                .create(RealmModel.class);
+        previousSecretCode = new AccessCode(previousRealm, clientSession).getCode();
+
+        realm = new Stubs()
+                .with("getCodeSecret", KeycloakModelUtils.generateId())
+                .with("getPreviousCodeSecret", previousSecret)
+                .with("getPrivateKey", keyPair.getPrivate())
+                .create(RealmModel.class);
+
+        UserSessionProvider sessions = new Stubs().with("getClientSession", clientSession).create(UserSessionProvider.class);
+        session = new Stubs().with("sessions", sessions).create(KeycloakSession.class);
+
+        accessCode = new AccessCode(realm, clientSession);
+        code = accessCode.getCode();
+    }
+
+    @Benchmark
+    public String create() {
+        return accessCode.getCode();
+    }
+
+    @Benchmark
+    public AccessCode verify() {
+        return AccessCode.parse(code, session, realm);
+    }
+
+    /**
+     * Code signed before the last rotation of the code secret, which is verified against both secrets
+     */
+    @Benchmark
+    public AccessCode verifyPreviousSecret() {
+        return AccessCode.parse(previousSecretCode, session, realm);
+    }
+
+}
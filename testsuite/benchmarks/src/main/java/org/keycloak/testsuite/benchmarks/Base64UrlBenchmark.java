@@ -0,0 +1,103 @@
+package org.keycloak.testsuite.benchmarks;
+
+import net.iharder.Base64;
+import org.keycloak.jose.jws.JWSInput;
+import org.keycloak.util.Base64Url;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a token sized payload with {@link Base64Url}, and parsing a signed token with
+ * {@link JWSInput}. The <code>legacy</code> benchmarks are the previous implementation on top of the standard base64
+ * codec, with the extra string copies it made. Run with <code>-prof gc</code> to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class Base64UrlBenchmark {
+
+    private byte[] bytes;
+    private String encoded;
+    private String token;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        bytes = new byte[700];
+        random.nextBytes(bytes);
+        encoded = Base64Url.encode(bytes);
+
+        byte[] signature = new byte[256];
+        random.nextBytes(signature);
+        token = Base64Url.encode("{\"alg\":\"RS256\"}".getBytes()) + "." + encoded + "." + Base64Url.encode(signature);
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base64Url.encode(bytes);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return Base64Url.decode(encoded);
+    }
+
+    @Benchmark
+    public JWSInput parseToken() {
+        return new JWSInput(token);
+    }
+
+    @Benchmark
+    public String legacyEncode() {
+        String s = Base64.encodeBytes(bytes);
+        s = s.split("=")[0];
+        s = s.replace('+', '-');
+        s = s.replace('/', '_');
+        return s;
+    }
+
+    @Benchmark
+    public byte[] legacyDecode() throws IOException {
+        return legacyDecode(encoded);
+    }
+
+    @Benchmark
+    public byte[][] legacyParseToken() throws IOException {
+        String[] parts = token.split("\\.");
+        return new byte[][] { legacyDecode(parts[0]), legacyDecode(parts[1]), legacyDecode(parts[2]) };
+    }
+
+    private static byte[] legacyDecode(String s) throws IOException {
+        s = s.replace('-', '+');
+        s = s.replace('_', '/');
+        switch (s.length() % 4) {
+            case 0:
+                break;
+            case 2:
+                s += "==";
+                break;
+            case 3:
+                s += "=";
+                break;
+            default:
+                throw new RuntimeException("Illegal base64url string!");
+        }
+        return Base64.decode(s);
+    }
+
+}
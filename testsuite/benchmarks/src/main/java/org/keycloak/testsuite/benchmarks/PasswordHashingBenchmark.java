@@ -0,0 +1,77 @@
+package org.keycloak.testsuite.benchmarks;
+
+import net.iharder.Base64;
+import org.keycloak.models.utils.PasswordHashing;
+import org.keycloak.models.utils.Pbkdf2PasswordEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifying a password by 16 concurrent logins. <code>direct</code> hashes on the calling thread, as logins did before
+ * hashing was moved to {@link PasswordHashing}, and <code>pooled</code> goes through a pool of 4 hashing threads.
+ * <code>legacy</code> is the previous encoder, which looked up a new <code>SecretKeyFactory</code> for every hash.
+ * <p/>
+ * With one iteration the score is dominated by the hand-over to the pool. The pool caps the CPU used by hashing at its
+ * thread count, so compare the scores with the number of cores of the machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(16)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    @Param({ "1", "1000" })
+    public int iterations;
+
+    private PasswordHashing hashing;
+    private byte[] salt;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        hashing = new PasswordHashing(4, 100, 60000);
+        salt = Pbkdf2PasswordEncoder.getSalt();
+        encoded = new Pbkdf2PasswordEncoder(salt).encode("password", iterations);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hashing.shutdown();
+    }
+
+    @Benchmark
+    public boolean direct() {
+        return new Pbkdf2PasswordEncoder(salt).verify("password", encoded, iterations);
+    }
+
+    @Benchmark
+    public boolean pooled() {
+        return hashing.verify("password", salt, encoded, iterations);
+    }
+
+    @Benchmark
+    public boolean legacy() throws Exception {
+        PBEKeySpec spec = new PBEKeySpec("password".toCharArray(), salt, iterations, 512);
+        byte[] key = SecretKeyFactory.getInstance(Pbkdf2PasswordEncoder.PBKDF2_ALGORITHM).generateSecret(spec).getEncoded();
+        return Base64.encodeBytes(key).equals(encoded);
+    }
+
+}
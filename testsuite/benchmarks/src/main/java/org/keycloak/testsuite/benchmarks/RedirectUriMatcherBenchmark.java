@@ -0,0 +1,108 @@
+package org.keycloak.testsuite.benchmarks;
+
+import org.keycloak.models.utils.RedirectUriMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching a redirect uri against the valid redirect uris of all clients of a realm, as done on logout. Each client has
+ * an exact uri, a wildcard uri and a relative wildcard uri. <code>linearScan</code> is the loop over all valid redirect
+ * uris that the matcher replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RedirectUriMatcherBenchmark {
+
+    @Param({ "10", "10000" })
+    public int clients;
+
+    private Set<String> redirectUris;
+    private RedirectUriMatcher matcher;
+    private URI baseUri;
+
+    private String exact;
+    private String wildcard;
+    private String relative;
+    private String noMatch;
+
+    @Setup
+    public void setup() {
+        redirectUris = new HashSet<String>();
+        for (int i = 0; i < clients; i++) {
+            redirectUris.add("http://localhost:8080/app-" + i + "/callback");
+            redirectUris.add("https://app-" + i + ".example.com/*");
+            redirectUris.add("/relative-" + i + "/*");
+        }
+        matcher = RedirectUriMatcher.compile(redirectUris);
+        baseUri = URI.create("http://localhost:8081/auth");
+
+        int last = clients - 1;
+        exact = "http://localhost:8080/app-" + last + "/callback";
+        wildcard = "https://app-" + last + ".example.com/secured/page";
+        relative = "http://localhost:8081/relative-" + last + "/page";
+        noMatch = "http://attacker.example.com/app-" + last + "/callback";
+    }
+
+    @Benchmark
+    public RedirectUriMatcher compile() {
+        return RedirectUriMatcher.compile(redirectUris);
+    }
+
+    @Benchmark
+    public boolean matchExact() {
+        return matcher.matches(exact, baseUri);
+    }
+
+    @Benchmark
+    public boolean matchWildcard() {
+        return matcher.matches(wildcard, baseUri);
+    }
+
+    @Benchmark
+    public boolean matchRelative() {
+        return matcher.matches(relative, baseUri);
+    }
+
+    @Benchmark
+    public boolean noMatch() {
+        return matcher.matches(noMatch, baseUri);
+    }
+
+    @Benchmark
+    public boolean linearScan() {
+        return linearScan(redirectUris, wildcard);
+    }
+
+    private static boolean linearScan(Set<String> validRedirects, String redirect) {
+        for (String validRedirect : validRedirects) {
+            if (validRedirect.endsWith("*")) {
+                int length = validRedirect.length() - 1;
+                validRedirect = validRedirect.substring(0, length);
+                if (redirect.startsWith(validRedirect)) return true;
+                if (length - 1 > 0 && validRedirect.charAt(length - 1) == '/') length--;
+                validRedirect = validRedirect.substring(0, length);
+                if (validRedirect.equals(redirect)) return true;
+            } else if (validRedirect.equals(redirect)) return true;
+        }
+        return false;
+    }
+
+}
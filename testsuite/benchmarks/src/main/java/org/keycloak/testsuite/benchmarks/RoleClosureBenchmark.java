@@ -0,0 +1,133 @@
+package org.keycloak.testsuite.benchmarks;
+
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.OAuthClientModel;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+import org.keycloak.models.UserCredentialValueModel;
+import org.keycloak.models.UserModel;
+import org.keycloak.models.cache.CacheRealmProvider;
+import org.keycloak.models.cache.OAuthClientAdapter;
+import org.keycloak.models.cache.RoleAdapter;
+import org.keycloak.models.cache.UserAdapter;
+import org.keycloak.models.cache.entities.CachedOAuthClient;
+import org.keycloak.models.cache.entities.CachedRealmRole;
+import org.keycloak.models.cache.entities.CachedUser;
+import org.keycloak.services.managers.TokenManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving the roles of a token and checking a role of a user, on cached roles of a realm with 200 roles in composites
+ * 4 levels deep. With <code>closures</code> the cache keeps the closures of roles, users and clients. Without them
+ * composites are walked on every call, as before the closures were added, which is also what happens when the realm
+ * cache can't be used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RoleClosureBenchmark {
+
+    private static final int LEVELS = 4;
+    private static final int ROLES_PER_LEVEL = 50;
+    private static final int COMPOSITES_PER_ROLE = 3;
+
+    @Param({ "true", "false" })
+    public boolean closures;
+
+    private TokenManager tokenManager;
+    private UserModel user;
+    private OAuthClientModel client;
+    private RoleModel deepRole;
+    private RoleModel missingRole;
+
+    @Setup
+    public void setup() {
+        Map<String, RoleModel> roles = new HashMap<String, RoleModel>();
+        Map<String, RoleModel> adapters = new HashMap<String, RoleModel>();
+
+        RealmModel realm = new Stubs().with("getId", "bench").lookup("getRoleById", adapters).create(RealmModel.class);
+        CacheRealmProvider cacheSession = new Stubs().with("getRoleVersion", closures ? 1L : -1L)
+                .lookup("getRoleById", adapters).create(CacheRealmProvider.class);
+        KeycloakSession session = new Stubs().with("realms", cacheSession).create(KeycloakSession.class);
+
+        // each role is composed of roles of the next level, so the roles of the first level reach all levels
+        for (int level = LEVELS - 1; level >= 0; level--) {
+            for (int i = 0; i < ROLES_PER_LEVEL; i++) {
+                Set<RoleModel> composites = new HashSet<RoleModel>();
+                if (level < LEVELS - 1) {
+                    for (int c = 0; c < COMPOSITES_PER_ROLE; c++) {
+                        composites.add(roles.get(id(level + 1, (i + c) % ROLES_PER_LEVEL)));
+                    }
+                }
+
+                String id = id(level, i);
+                RoleModel role = new Stubs().with("getId", id).with("getName", id).with("isComposite", !composites.isEmpty())
+                        .with("getComposites", composites).create(RoleModel.class);
+                roles.put(id, role);
+                adapters.put(id, new RoleAdapter(new CachedRealmRole(role, realm), null, cacheSession, realm));
+            }
+        }
+
+        Set<RoleModel> roleMappings = new HashSet<RoleModel>();
+        for (int i = 0; i < 5; i++) {
+            roleMappings.add(roles.get(id(0, i * 10)));
+        }
+        UserModel userModel = new Stubs().with("getId", "user").with("getRoleMappings", roleMappings)
+                .with("getAttributes", Collections.emptyMap()).with("getCredentialsDirectly", Collections.<UserCredentialValueModel>emptyList())
+                .with("getRequiredActions", Collections.emptySet()).create(UserModel.class);
+        user = new UserAdapter(new CachedUser(realm, userModel), null, session, realm);
+
+        Set<RoleModel> scopeMappings = new HashSet<RoleModel>();
+        for (int i = 0; i < 10; i++) {
+            scopeMappings.add(roles.get(id(2, i * 5)));
+        }
+        OAuthClientModel clientModel = new Stubs().with("getId", "client").with("getClientId", "client")
+                .with("getScopeMappings", scopeMappings).with("getRedirectUris", Collections.emptySet())
+                .with("getWebOrigins", Collections.emptySet()).create(OAuthClientModel.class);
+        client = new OAuthClientAdapter(realm, new CachedOAuthClient(null, null, realm, clientModel), cacheSession, null);
+
+        tokenManager = new TokenManager();
+        deepRole = adapters.get(id(LEVELS - 1, 2));
+        missingRole = adapters.get(id(LEVELS - 1, 8));
+    }
+
+    private static String id(int level, int i) {
+        return "role-" + level + "-" + i;
+    }
+
+    @Benchmark
+    public Set<RoleModel> getAccess() {
+        return tokenManager.getAccess(null, client, user);
+    }
+
+    @Benchmark
+    public boolean hasRole() {
+        return user.hasRole(deepRole);
+    }
+
+    @Benchmark
+    public boolean hasRoleMissing() {
+        return user.hasRole(missingRole);
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.keycloak.testsuite.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates stubs of model interfaces that return fixed values by method name, so benchmarks can exercise services code
+ * without a database behind it.
+ */
+class Stubs {
+
+    private final Map<String, Object> values = new HashMap<String, Object>();
+    private final Map<String, Map<?, ?>> lookups = new HashMap<String, Map<?, ?>>();
+
+    Stubs with(String method, Object value) {
+        values.put(method, value);
+        return this;
+    }
+
+    /**
+     * Returns the value mapped to the first argument of the method
+     */
+    Stubs lookup(String method, Map<?, ?> values) {
+        lookups.put(method, values);
+        return this;
+    }
+
+    <T> T create(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (lookups.containsKey(method.getName())) {
+                    return lookups.get(method.getName()).get(args[0]);
+                }
+                if (values.containsKey(method.getName())) {
+                    return values.get(method.getName());
+                }
+
+                Class<?> returnType = method.getReturnType();
+                if (returnType == boolean.class) {
+                    return false;
+                } else if (returnType == int.class) {
+                    return 0;
+                } else if (returnType == long.class) {
+                    return 0L;
+                } else {
+                    return null;
+                }
+            }
+        }));
+    }
+
+}
@@ -108,6 +108,8 @@ public class RequiredActionEmailVerificationTest {
 
         Assert.assertTrue(verifyEmailPage.isCurrent());
 
+        greenMail.waitForIncomingEmail(1);
+
         Assert.assertEquals(1, greenMail.getReceivedMessages().length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
@@ -141,6 +143,8 @@ public class RequiredActionEmailVerificationTest {
 
         Assert.assertTrue(verifyEmailPage.isCurrent());
 
+        greenMail.waitForIncomingEmail(1);
+
         Assert.assertEquals(1, greenMail.getReceivedMessages().length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
@@ -170,6 +174,8 @@ public class RequiredActionEmailVerificationTest {
 
         Assert.assertTrue(verifyEmailPage.isCurrent());
 
+        greenMail.waitForIncomingEmail(1);
+
         Assert.assertEquals(1, greenMail.getReceivedMessages().length);
 
         Event sendEvent = events.expectRequiredAction(EventType.SEND_VERIFY_EMAIL).detail("email", "test-user@localhost").assertEvent();
@@ -179,6 +185,8 @@ public class RequiredActionEmailVerificationTest {
 
         verifyEmailPage.clickResendEmail();
 
+        greenMail.waitForIncomingEmail(2);
+
         Assert.assertEquals(2, greenMail.getReceivedMessages().length);
 
         MimeMessage message = greenMail.getReceivedMessages()[1];
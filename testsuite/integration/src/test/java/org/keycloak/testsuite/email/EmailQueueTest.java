@@ -0,0 +1,106 @@
+package org.keycloak.testsuite.email;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.keycloak.email.EmailException;
+import org.keycloak.email.freemarker.EmailQueue;
+import org.keycloak.testsuite.rule.GreenMailRule;
+
+import javax.mail.internet.MimeMessage;
+import java.util.HashMap;
+import java.util.Map;
+
+public class EmailQueueTest {
+
+    @Rule
+    public GreenMailRule greenMail = new GreenMailRule();
+
+    private EmailQueue queue;
+
+    @After
+    public void after() {
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void sendReusesConnection() throws Exception {
+        queue = new EmailQueue(1, 10, 3, 100, 30000);
+        queue.start();
+
+        for (int i = 0; i < 3; i++) {
+            queue.add(smtpConfig(3025), "test" + i + "@localhost", "Subject " + i, "Body " + i);
+        }
+
+        Assert.assertTrue(greenMail.waitForIncomingEmail(3));
+
+        MimeMessage message = greenMail.getReceivedMessages()[0];
+        Assert.assertEquals("Subject 0", message.getSubject());
+        Assert.assertEquals("auto@keycloak.org", message.getFrom()[0].toString());
+
+        waitFor(3, "sent");
+        Assert.assertEquals(3, queue.getSent());
+        Assert.assertEquals(1, queue.getConnects());
+        Assert.assertEquals(0, queue.getQueueSize());
+        Assert.assertEquals(Long.valueOf(3), queue.getStats().get("sent"));
+    }
+
+    @Test
+    public void retryThenFail() throws Exception {
+        queue = new EmailQueue(1, 10, 2, 50, 30000);
+        queue.start();
+
+        // nothing listening
+        queue.add(smtpConfig(3026), "test@localhost", "Subject", "Body");
+
+        waitFor(1, "failed");
+        Assert.assertEquals(2, queue.getRetried());
+        Assert.assertEquals(0, queue.getSent());
+    }
+
+    @Test
+    public void rejectWhenFull() throws Exception {
+        // not started, so nothing is taken from the queue
+        queue = new EmailQueue(1, 1, 3, 100, 30000);
+
+        queue.add(smtpConfig(3025), "test@localhost", "Subject", "Body");
+        try {
+            queue.add(smtpConfig(3025), "test@localhost", "Subject", "Body");
+            Assert.fail("Expected queue to be full");
+        } catch (EmailException e) {
+        }
+
+        Assert.assertEquals(1, queue.getRejected());
+        Assert.assertEquals(1, queue.getQueueSize());
+    }
+
+    @Test(expected = EmailException.class)
+    public void rejectInvalidAddress() throws Exception {
+        queue = new EmailQueue(1, 10, 3, 100, 30000);
+        queue.add(smtpConfig(3025), "not an address", "Subject", "Body");
+    }
+
+    private void waitFor(long expected, String counter) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < timeout) {
+            long value = counter.equals("sent") ? queue.getSent() : queue.getFailed();
+            if (value >= expected) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        Assert.fail("Timed out waiting for " + expected + " " + counter);
+    }
+
+    private static Map<String, String> smtpConfig(int port) {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put("host", "localhost");
+        config.put("port", String.valueOf(port));
+        config.put("from", "auto@keycloak.org");
+        return config;
+    }
+
+}
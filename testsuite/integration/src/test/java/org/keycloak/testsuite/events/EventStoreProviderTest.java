@@ -12,7 +12,11 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.testsuite.rule.KeycloakRule;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
@@ -102,6 +106,75 @@ public class EventStoreProviderTest {
         Assert.assertEquals(3, eventStore.createQuery().getResultList().size());
     }
 
+    @Test
+    public void queryAfter() {
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            eventStore.onEvent(create(time - (i % 2) * 1000, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        }
+
+        resetSession();
+
+        Set<String> ids = new HashSet<String>();
+
+        List<Event> page = eventStore.createQuery().realm("realmId").maxResults(2).getResultList();
+        Assert.assertEquals(2, page.size());
+        for (Event e : page) {
+            ids.add(e.getId());
+        }
+
+        Event last = page.get(1);
+        page = eventStore.createQuery().realm("realmId").after(last.getTime(), last.getId()).maxResults(2).getResultList();
+        Assert.assertEquals(2, page.size());
+        for (Event e : page) {
+            ids.add(e.getId());
+        }
+
+        last = page.get(1);
+        page = eventStore.createQuery().realm("realmId").after(last.getTime(), last.getId()).maxResults(2).getResultList();
+        Assert.assertEquals(1, page.size());
+        ids.add(page.get(0).getId());
+
+        Assert.assertEquals(5, ids.size());
+    }
+
+    @Test
+    public void queryIterator() {
+        for (int i = 0; i < 5; i++) {
+            eventStore.onEvent(create(System.currentTimeMillis() - i * 1000, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        }
+
+        resetSession();
+
+        Iterator<Event> itr = eventStore.createQuery().realm("realmId").getResultIterator(2);
+        long previous = Long.MAX_VALUE;
+        int count = 0;
+        while (itr.hasNext()) {
+            Event e = itr.next();
+            Assert.assertTrue(e.getTime() <= previous);
+            previous = e.getTime();
+            count++;
+        }
+        Assert.assertEquals(5, count);
+    }
+
+    @Test
+    public void clearOldChunked() {
+        for (int i = 0; i < 5; i++) {
+            eventStore.onEvent(create(System.currentTimeMillis() - 30000 - i * 1000, EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+        }
+        eventStore.onEvent(create(System.currentTimeMillis(), EventType.LOGIN, "realmId", "clientId", "userId", "127.0.0.1", "error"));
+
+        resetSession();
+
+        Assert.assertEquals(2, eventStore.clear("realmId", System.currentTimeMillis() - 10000, 2));
+        Assert.assertEquals(2, eventStore.clear("realmId", System.currentTimeMillis() - 10000, 2));
+        Assert.assertEquals(1, eventStore.clear("realmId", System.currentTimeMillis() - 10000, 2));
+        Assert.assertEquals(0, eventStore.clear("realmId", System.currentTimeMillis() - 10000, 2));
+
+        Assert.assertEquals(1, eventStore.createQuery().getResultList().size());
+    }
+
     private Event create(EventType event, String realmId, String clientId, String userId, String ipAddress, String error) {
         return create(System.currentTimeMillis(), event, realmId, clientId, userId, ipAddress, error);
     }
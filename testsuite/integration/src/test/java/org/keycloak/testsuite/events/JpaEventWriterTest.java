@@ -0,0 +1,124 @@
+package org.keycloak.testsuite.events;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.keycloak.connections.jpa.JpaConnectionProvider;
+import org.keycloak.events.Event;
+import org.keycloak.events.EventStoreProvider;
+import org.keycloak.events.EventType;
+import org.keycloak.events.jpa.JpaEventStoreProvider;
+import org.keycloak.events.jpa.JpaEventWriter;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.KeycloakSessionFactory;
+import org.keycloak.testsuite.rule.KeycloakRule;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.UUID;
+
+public class JpaEventWriterTest {
+
+    @ClassRule
+    public static KeycloakRule kc = new KeycloakRule();
+
+    private JpaEventWriter writer;
+
+    @Before
+    public void before() {
+        KeycloakSessionFactory sessionFactory;
+        KeycloakSession session = kc.startSession();
+        try {
+            Assume.assumeTrue(session.getProvider(EventStoreProvider.class) instanceof JpaEventStoreProvider);
+            sessionFactory = session.getKeycloakSessionFactory();
+        } finally {
+            kc.stopSession(session, false);
+        }
+
+        writer = new JpaEventWriter(sessionFactory, 100, 10, 100, JpaEventWriter.Overflow.BLOCK);
+        writer.start();
+    }
+
+    @After
+    public void after() {
+        if (writer != null) {
+            writer.close();
+        }
+
+        KeycloakSession session = kc.startSession();
+        session.getProvider(EventStoreProvider.class).clear();
+        kc.stopSession(session, true);
+    }
+
+    @Test
+    public void failingEventDoesNotDropBatch() {
+        Event duplicate = create();
+        writer.add(duplicate);
+        writer.add(create());
+        writer.add(create());
+        writer.add(create());
+
+        Event copy = create();
+        copy.setId(duplicate.getId());
+        writer.add(copy);
+
+        writer.close();
+
+        Assert.assertEquals(4, writer.getWritten());
+        Assert.assertEquals(1, writer.getFailed());
+        Assert.assertEquals(4, countStored());
+    }
+
+    @Test
+    public void storedOnCommit() {
+        KeycloakSession session = kc.startSession();
+        createProvider(session).onEvent(create());
+        kc.stopSession(session, true);
+
+        writer.close();
+
+        Assert.assertEquals(1, countStored());
+    }
+
+    @Test
+    public void discardedOnRollback() {
+        KeycloakSession session = kc.startSession();
+        createProvider(session).onEvent(create());
+        kc.stopSession(session, false);
+
+        writer.close();
+
+        Assert.assertEquals(0, writer.getWritten());
+        Assert.assertEquals(0, countStored());
+    }
+
+    private JpaEventStoreProvider createProvider(KeycloakSession session) {
+        return new JpaEventStoreProvider(session, session.getProvider(JpaConnectionProvider.class).getEntityManager(), EnumSet.allOf(EventType.class), writer);
+    }
+
+    private int countStored() {
+        KeycloakSession session = kc.startSession();
+        try {
+            return session.getProvider(EventStoreProvider.class).createQuery().realm("realmId").getResultList().size();
+        } finally {
+            kc.stopSession(session, false);
+        }
+    }
+
+    private Event create() {
+        Event e = new Event();
+        e.setId(UUID.randomUUID().toString());
+        e.setTime(System.currentTimeMillis());
+        e.setType(EventType.LOGIN);
+        e.setRealmId("realmId");
+        e.setClientId("clientId");
+        e.setUserId("userId");
+        e.setIpAddress("127.0.0.1");
+        e.setDetails(Collections.<String, String>emptyMap());
+        return e;
+    }
+
+}
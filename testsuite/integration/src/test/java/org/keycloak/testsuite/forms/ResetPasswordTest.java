@@ -129,6 +129,8 @@ public class ResetPasswordTest {
 
         Assert.assertEquals("You should receive an email shortly with further instructions.", resetPasswordPage.getSuccessMessage());
 
+        greenMail.waitForIncomingEmail(1);
+
         Assert.assertEquals(1, greenMail.getReceivedMessages().length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
@@ -201,6 +203,8 @@ public class ResetPasswordTest {
 
         Assert.assertEquals("You should receive an email shortly with further instructions.", resetPasswordPage.getSuccessMessage());
 
+        greenMail.waitForIncomingEmail(1);
+
         Assert.assertEquals(1, greenMail.getReceivedMessages().length);
 
         MimeMessage message = greenMail.getReceivedMessages()[0];
@@ -140,7 +140,20 @@ public class AdapterTest extends AbstractModelTest {
         List<UserCredentialValueModel> creds = user.getCredentialsDirectly();
         Assert.assertEquals(creds.get(0).getHashIterations(), 1);
         realmModel.setPasswordPolicy( new PasswordPolicy("hashIterations(200)"));
-        Assert.assertTrue(userProvider.validCredentials(realmModel, user, UserCredentialModel.password("geheim")));
+        commit();
+
+        realmModel = realmManager.getRealm(realmModel.getId());
+        user = session.users().getUserByUsername("bburke", realmModel);
+        Assert.assertTrue(session.users().validCredentials(realmModel, user, UserCredentialModel.password("geheim")));
+
+        // the password is re-hashed in the background
+        for (int i = 0; i < 50; i++) {
+            resetSession();
+            realmModel = realmManager.getRealm(realmModel.getId());
+            user = session.users().getUserByUsername("bburke", realmModel);
+            if (user.getCredentialsDirectly().get(0).getHashIterations() == 200) break;
+            Thread.sleep(100);
+        }
         creds = user.getCredentialsDirectly();
         Assert.assertEquals(creds.get(0).getHashIterations(), 200);
         realmModel.setPasswordPolicy( new PasswordPolicy("hashIterations(1)"));
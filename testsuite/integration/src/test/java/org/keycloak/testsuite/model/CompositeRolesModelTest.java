@@ -7,8 +7,13 @@ import org.keycloak.models.ApplicationModel;
 import org.keycloak.models.RealmModel;
 import org.keycloak.models.RoleModel;
 import org.keycloak.models.UserModel;
+import org.keycloak.models.UserProvider;
+import org.keycloak.models.cache.CacheRealmProvider;
+import org.keycloak.models.cache.CacheUserProvider;
+import org.keycloak.models.cache.ClientAdapter;
 import org.keycloak.representations.idm.RealmRepresentation;
 import org.keycloak.services.managers.RealmManager;
+import org.keycloak.services.managers.TokenManager;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -52,6 +57,43 @@ public class CompositeRolesModelTest extends AbstractModelTest {
         assertContains("realm", "REALM_ROLE_1", requestedRoles);
     }
 
+    @Test
+    public void testCachedAccess() {
+        commit();
+
+        RealmModel realm = realmManager.getRealm("TestComposites");
+        Assert.assertTrue(realm instanceof org.keycloak.models.cache.RealmAdapter);
+
+        RealmModel uncachedRealm = ((CacheRealmProvider) session.realms()).getDelegate().getRealm("TestComposites");
+        UserProvider uncachedUsers = ((CacheUserProvider) session.userStorage()).getDelegate();
+
+        TokenManager tokenManager = new TokenManager();
+        for (ApplicationModel application : realm.getApplications()) {
+            ApplicationModel uncachedApplication = uncachedRealm.getApplicationByName(application.getName());
+            Assert.assertNotNull(((ClientAdapter) application).getScopeClosure());
+
+            for (UserModel user : session.users().getUsers(realm)) {
+                UserModel uncachedUser = uncachedUsers.getUserByUsername(user.getUsername(), uncachedRealm);
+
+                Set<RoleModel> cached = tokenManager.getAccess(null, application, user);
+                Set<RoleModel> uncached = tokenManager.getAccess(null, uncachedApplication, uncachedUser);
+                Assert.assertEquals(application.getName() + " " + user.getUsername(), getIds(uncached), getIds(cached));
+            }
+        }
+
+        Set<RoleModel> requestedRoles = tokenManager.getAccess(null, realm.getApplicationByName("REALM_COMPOSITE_1_APPLICATION"), session.users().getUserByUsername("REALM_COMPOSITE_1_USER", realm));
+        Assert.assertEquals(1, requestedRoles.size());
+        assertContains("realm", "REALM_COMPOSITE_1", requestedRoles);
+    }
+
+    private Set<String> getIds(Set<RoleModel> roles) {
+        Set<String> ids = new HashSet<String>();
+        for (RoleModel role : roles) {
+            ids.add(role.getId());
+        }
+        return ids;
+    }
+
     // Same algorithm as in TokenManager.createAccessCode
     private Set<RoleModel> getRequestedRoles(String applicationName, String username) {
         Set<RoleModel> requestedRoles = new HashSet<RoleModel>();
@@ -67,4 +67,16 @@ public class GreenMailRule extends ExternalResource {
         return greenMail.getReceivedMessages();
     }
 
+    /**
+     * Waits up to 5 seconds for the given number of emails to be received, as emails may be sent in the background
+     */
+    public boolean waitForIncomingEmail(int emailCount) {
+        try {
+            return greenMail.waitForIncomingEmail(5000, emailCount);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
 }
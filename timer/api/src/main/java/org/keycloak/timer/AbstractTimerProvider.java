@@ -0,0 +1,21 @@
+package org.keycloak.timer;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Base class for timer providers. Providers written before {@link #getTaskStats()} was added to {@link TimerProvider}
+ * keep working by extending it, and report no task stats.
+ */
+public abstract class AbstractTimerProvider implements TimerProvider {
+
+    @Override
+    public Map<String, TimerTaskStats> getTaskStats() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.keycloak.timer;
+
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a scheduled task and records its duration and outcome. A run is skipped if the previous run of the task is
+ * still going, and failures are logged instead of being thrown to the timer.
+ * <p/>
+ * Tasks sharing a <code>running</code> flag don't run at the same time, so a task that's rescheduled under the same
+ * name doesn't start while a run scheduled before is still going.
+ */
+public class MonitoredTask implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(MonitoredTask.class);
+
+    private final Runnable runnable;
+    private final String taskName;
+    private final long interval;
+
+    private final AtomicBoolean running;
+    private volatile long lastStart;
+    private volatile long lastDuration;
+    private volatile long lastSuccess;
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public MonitoredTask(Runnable runnable, String taskName, long interval) {
+        this(runnable, taskName, interval, new AtomicBoolean());
+    }
+
+    public MonitoredTask(Runnable runnable, String taskName, long interval, AtomicBoolean running) {
+        this.runnable = runnable;
+        this.taskName = taskName;
+        this.interval = interval;
+        this.running = running;
+    }
+
+    /**
+     * Marks the task as running. Returns <code>false</code>, and counts the run as skipped, if the previous run is
+     * still going.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            skipped.incrementAndGet();
+            logger.debugf("Task '%s' still running, skipping run", taskName);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases a task marked as running by {@link #start()} that couldn't be run
+     */
+    public void abortStart() {
+        running.set(false);
+    }
+
+    @Override
+    public void run() {
+        if (!start()) return;
+        runStarted();
+    }
+
+    /**
+     * Runs a task that was marked as running by {@link #start()}
+     */
+    public void runStarted() {
+        long start = System.currentTimeMillis();
+        lastStart = start;
+        try {
+            runnable.run();
+
+            long end = System.currentTimeMillis();
+            lastDuration = end - start;
+            lastSuccess = end;
+            successes.incrementAndGet();
+            logger.debugf("Task '%s' completed in %d ms", taskName, lastDuration);
+        } catch (Throwable t) {
+            lastDuration = System.currentTimeMillis() - start;
+            failures.incrementAndGet();
+            logger.errorf(t, "Failed to run task '%s'", taskName);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public TimerTaskStats getStats() {
+        return new TimerTaskStats(taskName, interval, running.get(), lastStart, lastDuration, lastSuccess, successes.get(), failures.get(), skipped.get());
+    }
+
+}
@@ -2,7 +2,11 @@ package org.keycloak.timer;
 
 import org.keycloak.provider.Provider;
 
+import java.util.Map;
+
 /**
+ * Implementations should extend {@link AbstractTimerProvider}, which implements methods added to this interface.
+ *
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
 public interface TimerProvider extends Provider {
@@ -11,4 +15,9 @@ public interface TimerProvider extends Provider {
 
     public void cancelTask(String taskName);
 
+    /**
+     * Returns the stats of the scheduled tasks by task name
+     */
+    public Map<String, TimerTaskStats> getTaskStats();
+
 }
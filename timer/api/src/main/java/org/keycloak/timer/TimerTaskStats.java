@@ -0,0 +1,78 @@
+package org.keycloak.timer;
+
+/**
+ * Snapshot of the counters of a scheduled task
+ */
+public class TimerTaskStats {
+
+    private final String taskName;
+    private final long interval;
+    private final boolean running;
+    private final long lastStart;
+    private final long lastDuration;
+    private final long lastSuccess;
+    private final long successes;
+    private final long failures;
+    private final long skipped;
+
+    public TimerTaskStats(String taskName, long interval, boolean running, long lastStart, long lastDuration, long lastSuccess, long successes, long failures, long skipped) {
+        this.taskName = taskName;
+        this.interval = interval;
+        this.running = running;
+        this.lastStart = lastStart;
+        this.lastDuration = lastDuration;
+        this.lastSuccess = lastSuccess;
+        this.successes = successes;
+        this.failures = failures;
+        this.skipped = skipped;
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Time in milliseconds when the task was last started, or 0 if it hasn't run yet
+     */
+    public long getLastStart() {
+        return lastStart;
+    }
+
+    /**
+     * Duration in milliseconds of the last completed run
+     */
+    public long getLastDuration() {
+        return lastDuration;
+    }
+
+    /**
+     * Time in milliseconds when the task last completed without failure, or 0 if it never did
+     */
+    public long getLastSuccess() {
+        return lastSuccess;
+    }
+
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Number of runs skipped because the previous run of the task was still going
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+}
@@ -1,15 +1,19 @@
 package org.keycloak.timer.basic;
 
 import org.jboss.logging.Logger;
-import org.keycloak.timer.TimerProvider;
+import org.keycloak.timer.AbstractTimerProvider;
+import org.keycloak.timer.MonitoredTask;
+import org.keycloak.timer.TimerTaskStats;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 
 /**
  * @author <a href="mailto:sthorger@redhat.com">Stian Thorgersen</a>
  */
-public class BasicTimerProvider implements TimerProvider {
+public class BasicTimerProvider extends AbstractTimerProvider {
 
     private static final Logger logger = Logger.getLogger(BasicTimerProvider.class);
 
@@ -23,12 +27,7 @@ public class BasicTimerProvider implements TimerProvider {
 
     @Override
     public void schedule(final Runnable runnable, final long interval, String taskName) {
-        TimerTask task = new TimerTask() {
-            @Override
-            public void run() {
-                runnable.run();
-            }
-        };
+        BasicTimerTask task = new BasicTimerTask(new MonitoredTask(runnable, taskName, interval));
 
         TimerTask existingTask = factory.putTask(taskName, task);
         if (existingTask != null) {
@@ -49,9 +48,34 @@ public class BasicTimerProvider implements TimerProvider {
         }
     }
 
+    @Override
+    public Map<String, TimerTaskStats> getTaskStats() {
+        Map<String, TimerTaskStats> stats = new HashMap<String, TimerTaskStats>();
+        for (Map.Entry<String, BasicTimerTask> e : factory.getTasks().entrySet()) {
+            stats.put(e.getKey(), e.getValue().task.getStats());
+        }
+        return stats;
+    }
+
     @Override
     public void close() {
         // do nothing
     }
 
+    static class BasicTimerTask extends TimerTask {
+
+        // failures are caught by the monitored task, so they can't kill the timer thread
+        private final MonitoredTask task;
+
+        BasicTimerTask(MonitoredTask task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+    }
+
 }
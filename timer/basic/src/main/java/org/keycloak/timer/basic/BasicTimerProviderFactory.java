@@ -5,8 +5,8 @@ import org.keycloak.models.KeycloakSession;
 import org.keycloak.timer.TimerProvider;
 import org.keycloak.timer.TimerProviderFactory;
 
+import java.util.Map;
 import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -17,7 +17,7 @@ public class BasicTimerProviderFactory implements TimerProviderFactory {
 
     private Timer timer;
 
-    private ConcurrentMap<String, TimerTask> scheduledTasks = new ConcurrentHashMap<String, TimerTask>();
+    private ConcurrentMap<String, BasicTimerProvider.BasicTimerTask> scheduledTasks = new ConcurrentHashMap<String, BasicTimerProvider.BasicTimerTask>();
 
     @Override
     public TimerProvider create(KeycloakSession session) {
@@ -40,12 +40,16 @@ public class BasicTimerProviderFactory implements TimerProviderFactory {
         return "basic";
     }
 
-    protected TimerTask putTask(String taskName, TimerTask task) {
+    protected BasicTimerProvider.BasicTimerTask putTask(String taskName, BasicTimerProvider.BasicTimerTask task) {
         return scheduledTasks.put(taskName, task);
     }
 
-    protected TimerTask removeTask(String taskName) {
+    protected BasicTimerProvider.BasicTimerTask removeTask(String taskName) {
         return scheduledTasks.remove(taskName);
     }
 
+    protected Map<String, BasicTimerProvider.BasicTimerTask> getTasks() {
+        return scheduledTasks;
+    }
+
 }
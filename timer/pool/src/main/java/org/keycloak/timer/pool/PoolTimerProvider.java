@@ -0,0 +1,124 @@
+package org.keycloak.timer.pool;
+
+import org.jboss.logging.Logger;
+import org.keycloak.timer.AbstractTimerProvider;
+import org.keycloak.timer.MonitoredTask;
+import org.keycloak.timer.TimerTaskStats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class PoolTimerProvider extends AbstractTimerProvider {
+
+    private static final Logger logger = Logger.getLogger(PoolTimerProvider.class);
+
+    private static final Random random = new Random();
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+    private final int jitter;
+    private final PoolTimerProviderFactory factory;
+
+    public PoolTimerProvider(ScheduledExecutorService scheduler, ExecutorService workers, int jitter, PoolTimerProviderFactory factory) {
+        this.scheduler = scheduler;
+        this.workers = workers;
+        this.jitter = jitter;
+        this.factory = factory;
+    }
+
+    @Override
+    public void schedule(Runnable runnable, long interval, String taskName) {
+        PoolTimerTask task = new PoolTimerTask(new MonitoredTask(runnable, taskName, interval, factory.getRunningFlag(taskName)), workers);
+
+        PoolTimerTask existingTask = factory.putTask(taskName, task);
+        if (existingTask != null) {
+            logger.debugf("Existing timer task '%s' found. Cancelling it", taskName);
+            existingTask.cancel();
+        }
+
+        long delay = interval + getJitter(interval);
+        logger.debugf("Starting task '%s' with interval '%d' and initial delay '%d'", taskName, interval, delay);
+        task.future = scheduler.scheduleAtFixedRate(task, delay, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private long getJitter(long interval) {
+        long maxJitter = interval * jitter / 100;
+        if (maxJitter <= 0) return 0;
+        synchronized (random) {
+            return (long) (random.nextDouble() * maxJitter);
+        }
+    }
+
+    @Override
+    public void cancelTask(String taskName) {
+        PoolTimerTask existingTask = factory.removeTask(taskName);
+        if (existingTask != null) {
+            logger.debugf("Cancelling task '%s'", taskName);
+            existingTask.cancel();
+        }
+    }
+
+    @Override
+    public Map<String, TimerTaskStats> getTaskStats() {
+        Map<String, TimerTaskStats> stats = new HashMap<String, TimerTaskStats>();
+        for (Map.Entry<String, PoolTimerTask> e : factory.getTasks().entrySet()) {
+            stats.put(e.getKey(), e.getValue().task.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Run on the scheduler thread, hands the run over to a worker unless the previous run is still going
+     */
+    static class PoolTimerTask implements Runnable {
+
+        private final MonitoredTask task;
+        private final ExecutorService workers;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+
+        PoolTimerTask(MonitoredTask task, ExecutorService workers) {
+            this.task = task;
+            this.workers = workers;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                // cancelled before the future was set
+                cancel();
+                return;
+            }
+            if (!task.start()) return;
+
+            try {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.runStarted();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // release the task so the next run isn't skipped as well
+                task.abortStart();
+                logger.debugf("Timer shut down, not running task '%s'", task.getTaskName());
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+package org.keycloak.timer.pool;
+
+import org.jboss.logging.Logger;
+import org.keycloak.Config;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.timer.TimerProvider;
+import org.keycloak.timer.TimerProviderFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer that runs tasks on a pool of worker threads, so a slow task doesn't delay the others. A single scheduler
+ * thread only hands runs over to the workers. A run is skipped if the previous run of a task with the same name is still
+ * going, even if the task was rescheduled since.
+ * <p/>
+ * The first run of a task is delayed by a random jitter of up to <code>jitter</code> percent of its interval, so
+ * tasks of cluster nodes started at the same time don't run at the same time.
+ */
+public class PoolTimerProviderFactory implements TimerProviderFactory {
+
+    private static final Logger logger = Logger.getLogger(PoolTimerProviderFactory.class);
+
+    private ScheduledThreadPoolExecutor scheduler;
+    private ThreadPoolExecutor workers;
+    private int jitter;
+
+    private ConcurrentMap<String, PoolTimerProvider.PoolTimerTask> scheduledTasks = new ConcurrentHashMap<String, PoolTimerProvider.PoolTimerTask>();
+    private ConcurrentMap<String, AtomicBoolean> runningFlags = new ConcurrentHashMap<String, AtomicBoolean>();
+
+    @Override
+    public TimerProvider create(KeycloakSession session) {
+        return new PoolTimerProvider(scheduler, workers, jitter, this);
+    }
+
+    @Override
+    public void init(Config.Scope config) {
+        int threads = config.getInt("threads", 4);
+        jitter = config.getInt("jitter", 10);
+
+        scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("Timer Scheduler"));
+        workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("Timer Worker"));
+        workers.allowCoreThreadTimeOut(true);
+
+        logger.debugf("Timer started with %d worker threads and %d%% jitter", threads, jitter);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Timer tasks still running after 10 seconds, interrupting them");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        scheduledTasks.clear();
+        runningFlags.clear();
+    }
+
+    @Override
+    public String getId() {
+        return "pool";
+    }
+
+    protected PoolTimerProvider.PoolTimerTask putTask(String taskName, PoolTimerProvider.PoolTimerTask task) {
+        return scheduledTasks.put(taskName, task);
+    }
+
+    protected PoolTimerProvider.PoolTimerTask removeTask(String taskName) {
+        return scheduledTasks.remove(taskName);
+    }
+
+    protected Map<String, PoolTimerProvider.PoolTimerTask> getTasks() {
+        return scheduledTasks;
+    }
+
+    /**
+     * Returns the flag shared by all tasks scheduled with the name, which is set while one of them is running
+     */
+    protected AtomicBoolean getRunningFlag(String taskName) {
+        AtomicBoolean flag = runningFlags.get(taskName);
+        if (flag == null) {
+            AtomicBoolean existing = runningFlags.putIfAbsent(taskName, flag = new AtomicBoolean());
+            if (existing != null) flag = existing;
+        }
+        return flag;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        private NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, name + " " + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+package org.keycloak.timer.pool;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.Config;
+import org.keycloak.timer.TimerProvider;
+import org.keycloak.timer.TimerTaskStats;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PoolTimerProviderTest {
+
+    private static final long INTERVAL = 20;
+
+    private String prefix;
+    private PoolTimerProviderFactory factory;
+    private TimerProvider timer;
+
+    private CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void before() {
+        prefix = "test.timer." + UUID.randomUUID() + ".";
+        System.setProperty(prefix + "threads", "2");
+        System.setProperty(prefix + "jitter", "0");
+
+        factory = new PoolTimerProviderFactory();
+        factory.init(new Config.SystemPropertiesScope(prefix));
+        timer = factory.create(null);
+    }
+
+    @After
+    public void after() {
+        release.countDown();
+        factory.close();
+        System.clearProperty(prefix + "threads");
+        System.clearProperty(prefix + "jitter");
+    }
+
+    @Test
+    public void slowTaskDoesntDelayOthers() throws InterruptedException {
+        BlockingTask slow = new BlockingTask();
+        CountingTask fast = new CountingTask();
+        timer.schedule(slow, INTERVAL, "slow");
+        timer.schedule(fast, INTERVAL, "fast");
+
+        Assert.assertTrue(slow.started.await(10, TimeUnit.SECONDS));
+        fast.await(5);
+
+        Assert.assertEquals(1, slow.runs.get());
+        Assert.assertTrue(timer.getTaskStats().get("slow").isRunning());
+    }
+
+    @Test
+    public void overlappingRunsSkipped() throws InterruptedException {
+        BlockingTask slow = new BlockingTask();
+        timer.schedule(slow, INTERVAL, "slow");
+
+        Assert.assertTrue(slow.started.await(10, TimeUnit.SECONDS));
+        awaitSkipped("slow", 3);
+        Assert.assertEquals(1, slow.runs.get());
+
+        release.countDown();
+        awaitSuccesses("slow", 2);
+        Assert.assertEquals(0, timer.getTaskStats().get("slow").getFailures());
+    }
+
+    @Test
+    public void rescheduledTaskWaitsForPreviousRun() throws InterruptedException {
+        BlockingTask previous = new BlockingTask();
+        timer.schedule(previous, INTERVAL, "task");
+        Assert.assertTrue(previous.started.await(10, TimeUnit.SECONDS));
+
+        CountingTask rescheduled = new CountingTask();
+        timer.schedule(rescheduled, INTERVAL, "task");
+        awaitSkipped("task", 3);
+        Assert.assertEquals(0, rescheduled.runs.get());
+
+        // the new task runs once the run of the previous one is done
+        release.countDown();
+        rescheduled.await(1);
+        Assert.assertEquals(1, previous.runs.get());
+    }
+
+    @Test
+    public void failuresCountedAndTaskKeepsRunning() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                throw new RuntimeException("Expected");
+            }
+        }, INTERVAL, "failing");
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (runs.get() < 3) {
+            if (System.currentTimeMillis() > deadline) Assert.fail("Task not run again after failure");
+            Thread.sleep(10);
+        }
+
+        TimerTaskStats stats = timer.getTaskStats().get("failing");
+        Assert.assertTrue(stats.getFailures() >= 2);
+        Assert.assertEquals(0, stats.getSuccesses());
+    }
+
+    @Test
+    public void cancelTask() throws InterruptedException {
+        CountingTask task = new CountingTask();
+        timer.schedule(task, INTERVAL, "task");
+        task.await(1);
+
+        timer.cancelTask("task");
+        Assert.assertNull(timer.getTaskStats().get("task"));
+
+        int runs = task.runs.get();
+        Thread.sleep(INTERVAL * 5);
+        // at most a run that was already handed over to a worker
+        Assert.assertTrue(task.runs.get() <= runs + 1);
+    }
+
+    private void awaitSkipped(String taskName, long skipped) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (timer.getTaskStats().get(taskName).getSkipped() < skipped) {
+            if (System.currentTimeMillis() > deadline) Assert.fail("Expected " + skipped + " skipped runs of " + taskName);
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitSuccesses(String taskName, long successes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (timer.getTaskStats().get(taskName).getSuccesses() < successes) {
+            if (System.currentTimeMillis() > deadline) Assert.fail("Expected " + successes + " successful runs of " + taskName);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class CountingTask implements Runnable {
+
+        private final AtomicInteger runs = new AtomicInteger();
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+        }
+
+        private void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (runs.get() < count) {
+                if (System.currentTimeMillis() > deadline) Assert.fail("Expected " + count + " runs");
+                Thread.sleep(10);
+            }
+        }
+
+    }
+
+    /**
+     * Blocks its first run until the test releases it
+     */
+    private class BlockingTask implements Runnable {
+
+        private final AtomicInteger runs = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        @Override
+        public void run() {
+            if (runs.incrementAndGet() > 1) return;
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+}